@@ -0,0 +1,90 @@
+package com.example.techtest.termfrequency.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.example.techtest.termfrequency.algorithm.DocumentTermVector;
+import com.example.techtest.termfrequency.algorithm.TermsFrequencyInFileConfig;
+import com.example.techtest.termfrequency.algorithm.TermsFrequencyInFileProcessor;
+import com.example.techtest.termfrequency.stream.RingBufferTransport;
+import com.example.techtest.termfrequency.stream.Transport;
+
+/**
+ * Round trip of a file through a running TF processor: the file counted, its
+ * frequencies computed and its term vector published, every term of the file
+ * informed as in the inverted index mode.
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FileProcessorBenchmark {
+
+	private static final int VOCABULARY_SIZE = 50000;
+	private static final int FILES = 64;
+
+	@Param({ "4096", "65536" })
+	int fileSize;
+
+	private Path folder;
+	private List<Path> files;
+	private int nextFile = 0;
+	private ExecutorService executorService;
+	private Transport<Path> source;
+	private Transport<DocumentTermVector> output;
+
+	@Setup
+	public void setup() throws IOException {
+		folder = Files.createTempDirectory("FileProcessorBenchmark-");
+		files = new SyntheticCorpus(VOCABULARY_SIZE, 42l).writeFiles(folder, FILES, fileSize);
+
+		source = new RingBufferTransport<>(16);
+		output = new RingBufferTransport<>(16);
+		TermsFrequencyInFileProcessor processor = new TermsFrequencyInFileProcessor(new TermsFrequencyInFileConfig());
+		processor.from(source);
+		processor.output(output);
+
+		executorService = Executors.newSingleThreadExecutor();
+		executorService.submit(processor);
+	}
+
+	@TearDown
+	public void tearDown() throws IOException, InterruptedException {
+		executorService.shutdownNow();
+		executorService.awaitTermination(10, TimeUnit.SECONDS);
+
+		for (Path file : files) {
+			Files.delete(file);
+		}
+		Files.delete(folder);
+	}
+
+	@Benchmark
+	public DocumentTermVector processFile() throws InterruptedException {
+		source.put(files.get(nextFile));
+		nextFile = (nextFile + 1) % FILES;
+		return output.take();
+	}
+}
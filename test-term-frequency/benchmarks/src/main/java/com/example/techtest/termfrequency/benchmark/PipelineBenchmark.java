@@ -0,0 +1,149 @@
+package com.example.techtest.termfrequency.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.example.techtest.termfrequency.algorithm.DocumentTermVector;
+import com.example.techtest.termfrequency.algorithm.TermsFrequencyInFileConfig;
+import com.example.techtest.termfrequency.algorithm.TermsFrequencyInFileProcessor;
+import com.example.techtest.termfrequency.algorithm.TfidfProcessor;
+import com.example.techtest.termfrequency.algorithm.TfidfProcessorConfig;
+import com.example.techtest.termfrequency.file.NewFilesWatcher;
+import com.example.techtest.termfrequency.stream.RingBufferTransport;
+import com.example.techtest.termfrequency.stream.Transport;
+
+/**
+ * Files per second through the whole pipeline, wired as the calculator does:
+ * the watcher informing the existing files of a synthetic corpus, the TF
+ * processors and the TF-IDF processor ranking some given terms. Every
+ * invocation starts a new pipeline and waits for every file to be ranked.
+ *
+ * The files ranked are reported as the files counter, normalized per second.
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 10)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+public class PipelineBenchmark {
+
+	private static final int VOCABULARY_SIZE = 50000;
+	private static final int[] TERMS_RANKS = { 10, 100, 1000 };
+	private static final int MAX_STALENESS_MS = 10;
+
+	@Param({ "1000", "10000" })
+	int files;
+
+	@Param({ "4096", "65536" })
+	int fileSize;
+
+	@Param({ "0" })
+	int processors;
+
+	private Path folder;
+	private List<String> terms;
+
+	/**
+	 * Files processed by the invocations of an iteration
+	 *
+	 */
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.OPERATIONS)
+	public static class FileCounters {
+
+		public long files;
+
+		@Setup(Level.Iteration)
+		public void reset() {
+			files = 0;
+		}
+	}
+
+	@Setup
+	public void setup() throws IOException {
+		SyntheticCorpus corpus = new SyntheticCorpus(VOCABULARY_SIZE, 42l);
+		folder = Files.createTempDirectory("PipelineBenchmark-");
+		corpus.writeFiles(folder, files, fileSize);
+
+		terms = new ArrayList<>();
+		for (int rank : TERMS_RANKS) {
+			terms.add(corpus.word(rank));
+		}
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		List<Path> paths = new ArrayList<>();
+		Files.list(folder).forEach(paths::add);
+		for (Path path : paths) {
+			Files.delete(path);
+		}
+		Files.delete(folder);
+	}
+
+	@Benchmark
+	public long rankAllFiles(FileCounters counters) throws Exception {
+		int cores = Runtime.getRuntime().availableProcessors();
+		int numberOfTFProcessors = (processors > 0 ? processors : Math.max(1, cores - 1));
+		ExecutorService executorService = Executors.newCachedThreadPool();
+
+		try {
+			Transport<Path> filesToProcessQueue = new RingBufferTransport<>(65536);
+			Transport<DocumentTermVector> termsFrequenciesQueue = new RingBufferTransport<>(1024);
+
+			NewFilesWatcher folderWatcher = NewFilesWatcher.watcherFor(folder);
+			folderWatcher.output(filesToProcessQueue);
+
+			TermsFrequencyInFileConfig termsFreqConfig = new TermsFrequencyInFileConfig();
+			termsFreqConfig.addTokensToInform(terms);
+			for (int i = 0; i < numberOfTFProcessors; i++) {
+				TermsFrequencyInFileProcessor tfProcessor = new TermsFrequencyInFileProcessor(termsFreqConfig);
+				tfProcessor.from(filesToProcessQueue);
+				tfProcessor.output(termsFrequenciesQueue);
+				executorService.submit(tfProcessor);
+			}
+
+			TfidfProcessor tfidfProcessor = new TfidfProcessor(new TfidfProcessorConfig().rankingSize(5)
+					.shards(Math.max(1, cores / 4)).maxStalenessMs(MAX_STALENESS_MS));
+			tfidfProcessor.from(termsFrequenciesQueue);
+
+			executorService.submit(folderWatcher);
+			executorService.submit(tfidfProcessor);
+
+			long analyzedPaths;
+			while ((analyzedPaths = tfidfProcessor.getStats().analyzedPaths()) < files) {
+				Thread.sleep(1);
+			}
+
+			counters.files += analyzedPaths;
+			return analyzedPaths;
+
+		} finally {
+			executorService.shutdownNow();
+			executorService.awaitTermination(10, TimeUnit.SECONDS);
+		}
+	}
+}
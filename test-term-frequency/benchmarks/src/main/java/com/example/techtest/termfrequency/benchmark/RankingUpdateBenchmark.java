@@ -0,0 +1,107 @@
+package com.example.techtest.termfrequency.benchmark;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.example.techtest.termfrequency.algorithm.DocumentTermVector;
+import com.example.techtest.termfrequency.algorithm.TfidfIndex;
+import com.example.techtest.termfrequency.algorithm.TfidfProcessorConfig.IDF_MODE;
+
+/**
+ * Ranking update done by the TF-IDF processor for every buffer of term
+ * vectors: the buffered vectors applied to the index, the affected paths
+ * rescored and the top paths recovered, at several corpus sizes.
+ *
+ * The buffered vectors replace files already indexed, as modified files, so
+ * the corpus size is kept along the whole measurement.
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class RankingUpdateBenchmark {
+
+	private static final int VOCABULARY_SIZE = 50000;
+	private static final int WORDS_PER_DOCUMENT = 200;
+	private static final int RANKING_SIZE = 10;
+	private static final int BATCHES = 64;
+
+	@Param({ "1000", "10000", "100000" })
+	int corpusSize;
+
+	@Param({ "100" })
+	int batchSize;
+
+	@Param({ "1", "4" })
+	int shards;
+
+	private List<DocumentTermVector> corpus;
+	private List<List<DocumentTermVector>> batches;
+	private int nextBatch = 0;
+	private ExecutorService shardsExecutor;
+	private TfidfIndex tfidfIndex;
+
+	@Setup(Level.Trial)
+	public void setupTrial() {
+		SyntheticCorpus generator = new SyntheticCorpus(VOCABULARY_SIZE, 42l);
+		corpus = generator.termVectors(corpusSize, WORDS_PER_DOCUMENT);
+
+		// New vectors for paths spread over the whole corpus
+		batches = new ArrayList<>(BATCHES);
+		for (int i = 0; i < BATCHES; i++) {
+			List<DocumentTermVector> batch = new ArrayList<>(batchSize);
+			for (int j = 0; j < batchSize; j++) {
+				Path path = corpus.get((int) ((i * batchSize + j) * 7919l % corpusSize)).path();
+				batch.add(generator.termVector(path, WORDS_PER_DOCUMENT));
+			}
+			batches.add(batch);
+		}
+
+		shardsExecutor = (shards > 1 ? Executors.newFixedThreadPool(shards) : null);
+	}
+
+	@Setup(Level.Iteration)
+	public void setupIteration() {
+		tfidfIndex = new TfidfIndex(IDF_MODE.NORMAL, RANKING_SIZE, shards, shardsExecutor);
+		tfidfIndex.apply(corpus);
+		tfidfIndex.updateScores();
+		nextBatch = 0;
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		if (shardsExecutor != null) {
+			shardsExecutor.shutdownNow();
+		}
+	}
+
+	@Benchmark
+	public List<Entry<Path, Double>> applyAndUpdateRanking() {
+		tfidfIndex.apply(batches.get(nextBatch));
+		nextBatch = (nextBatch + 1) % BATCHES;
+		tfidfIndex.updateScores();
+		return tfidfIndex.ranking(RANKING_SIZE);
+	}
+}
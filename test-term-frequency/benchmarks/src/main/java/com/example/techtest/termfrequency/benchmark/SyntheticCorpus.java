@@ -0,0 +1,201 @@
+package com.example.techtest.termfrequency.benchmark;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import com.example.techtest.termfrequency.algorithm.DocumentTermVector;
+
+/**
+ * Generator of synthetic documents, with the words drawn from a vocabulary
+ * following a Zipfian distribution, as the words of natural language texts: the
+ * frequency of the word with rank k is proportional to 1 / k^exponent.
+ *
+ * The words are the ranks written in base 26, so the most frequent ones are
+ * the shortest ones. Every generator with the same seed produces the same
+ * documents.
+ *
+ */
+public class SyntheticCorpus {
+
+	public static final double DEFAULT_EXPONENT = 1.07;
+
+	private static final int WORDS_PER_LINE = 12;
+
+	private final String[] vocabulary;
+	private final double[] cumulativeProbabilities;
+	private final SplittableRandom random;
+
+	/**
+	 * New generator
+	 *
+	 * @param vocabularySize number of distinct words
+	 * @param exponent       exponent of the distribution, greater for more skewed
+	 *                       frequencies
+	 * @param seed
+	 */
+	public SyntheticCorpus(int vocabularySize, double exponent, long seed) {
+		if (vocabularySize <= 0 || exponent < 0) {
+			throw new IllegalArgumentException("Invalid vocabulary size " + vocabularySize + " or exponent " + exponent);
+		}
+
+		this.vocabulary = new String[vocabularySize];
+		this.cumulativeProbabilities = new double[vocabularySize];
+		double total = 0d;
+		for (int rank = 1; rank <= vocabularySize; rank++) {
+			vocabulary[rank - 1] = spell(rank);
+			total += 1d / Math.pow(rank, exponent);
+			cumulativeProbabilities[rank - 1] = total;
+		}
+		for (int i = 0; i < vocabularySize; i++) {
+			cumulativeProbabilities[i] /= total;
+		}
+		this.random = new SplittableRandom(seed);
+	}
+
+	/**
+	 * New generator with the usual exponent of natural language texts
+	 *
+	 * @param vocabularySize number of distinct words
+	 * @param seed
+	 */
+	public SyntheticCorpus(int vocabularySize, long seed) {
+		this(vocabularySize, DEFAULT_EXPONENT, seed);
+	}
+
+	private static String spell(int rank) {
+		StringBuilder word = new StringBuilder();
+		for (int value = rank; value > 0; value = (value - 1) / 26) {
+			word.append((char) ('a' + (value - 1) % 26));
+		}
+		return word.reverse().toString();
+	}
+
+	/**
+	 * Word with a given rank, 1 the most frequent one
+	 *
+	 * @param rank
+	 * @return the word
+	 */
+	public String word(int rank) {
+		return vocabulary[rank - 1];
+	}
+
+	/**
+	 * Number of distinct words
+	 *
+	 */
+	public int vocabularySize() {
+		return vocabulary.length;
+	}
+
+	/**
+	 * Next random word
+	 *
+	 * @return the word
+	 */
+	public String nextWord() {
+		return vocabulary[nextIndex()];
+	}
+
+	private int nextIndex() {
+		int index = Arrays.binarySearch(cumulativeProbabilities, random.nextDouble());
+		return Math.min(index < 0 ? -index - 1 : index, vocabulary.length - 1);
+	}
+
+	/**
+	 * Random text of about a given size, words separated by spaces and commas,
+	 * and split in lines
+	 *
+	 * @param chars min number of chars
+	 * @return the text
+	 */
+	public String text(int chars) {
+		StringBuilder text = new StringBuilder(chars + 64);
+		int words = 0;
+		while (text.length() < chars) {
+			text.append(nextWord());
+			words++;
+			text.append(words % WORDS_PER_LINE == 0 ? "\n" : (words % 5 == 0 ? ", " : " "));
+		}
+		return text.toString();
+	}
+
+	/**
+	 * Write some random files in a folder
+	 *
+	 * @param folder target folder, created if needed
+	 * @param files  number of files
+	 * @param chars  min number of chars of every file
+	 * @return the files written
+	 * @throws IOException
+	 */
+	public List<Path> writeFiles(Path folder, int files, int chars) throws IOException {
+		Files.createDirectories(folder);
+		List<Path> paths = new ArrayList<>(files);
+		for (int i = 0; i < files; i++) {
+			Path path = folder.resolve("document-" + i + ".txt");
+			try (Writer writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+				writer.write(text(chars));
+			}
+			paths.add(path);
+		}
+		return paths;
+	}
+
+	/**
+	 * Random term vector, as computed from a file with the given number of words
+	 *
+	 * @param path  path of the document
+	 * @param words number of words of the document
+	 * @return the vector
+	 */
+	public DocumentTermVector termVector(Path path, int words) {
+		int[] indexes = new int[words];
+		for (int i = 0; i < words; i++) {
+			indexes[i] = nextIndex();
+		}
+		Arrays.sort(indexes);
+
+		int distinct = 0;
+		for (int i = 0; i < words; i++) {
+			if (i == 0 || indexes[i] != indexes[i - 1]) {
+				distinct++;
+			}
+		}
+
+		DocumentTermVector termVector = new DocumentTermVector(distinct).path(path).totalTokens(words);
+		int from = 0;
+		while (from < words) {
+			int to = from + 1;
+			while (to < words && indexes[to] == indexes[from]) {
+				to++;
+			}
+			termVector.add(vocabulary[indexes[from]], (to - from) / (float) words, true);
+			from = to;
+		}
+		return termVector;
+	}
+
+	/**
+	 * Random term vectors of documents with synthetic paths
+	 *
+	 * @param documents number of documents
+	 * @param words     number of words of every document
+	 * @return the vectors
+	 */
+	public List<DocumentTermVector> termVectors(int documents, int words) {
+		List<DocumentTermVector> termVectors = new ArrayList<>(documents);
+		for (int i = 0; i < documents; i++) {
+			termVectors.add(termVector(Paths.get("corpus", "document-" + i + ".txt"), words));
+		}
+		return termVectors;
+	}
+}
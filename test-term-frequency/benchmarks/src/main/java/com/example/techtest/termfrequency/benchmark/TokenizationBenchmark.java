@@ -0,0 +1,107 @@
+package com.example.techtest.termfrequency.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.example.techtest.termfrequency.algorithm.TermsFrequencyInFileConfig;
+import com.example.techtest.termfrequency.token.FileTermCounter;
+import com.example.techtest.termfrequency.token.TermAutomaton;
+import com.example.techtest.termfrequency.token.TermCounts;
+import com.example.techtest.termfrequency.token.Tokenizer;
+
+/**
+ * Tokenization of a single file: splitting an in-memory text, and counting the
+ * terms of a file as done by the TF processors, with every term counted or only
+ * some given terms matched by the term automaton.
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TokenizationBenchmark {
+
+	private static final int VOCABULARY_SIZE = 50000;
+	private static final int[] GIVEN_TERMS_RANKS = { 10, 100, 1000, 10000 };
+
+	@Param({ "4096", "65536", "1048576" })
+	int fileSize;
+
+	@Param({ "ALL", "GIVEN" })
+	String countedTerms;
+
+	@Param({ "MAPPED", "LINES" })
+	TermsFrequencyInFileConfig.READ_MODE readMode;
+
+	private Path folder;
+	private Path file;
+	private String text;
+	private Tokenizer tokenizer;
+	private FileTermCounter fileTermCounter;
+
+	@Setup
+	public void setup() throws IOException {
+		SyntheticCorpus corpus = new SyntheticCorpus(VOCABULARY_SIZE, 42l);
+		folder = Files.createTempDirectory("TokenizationBenchmark-");
+		file = corpus.writeFiles(folder, 1, fileSize).get(0);
+		text = Files.readString(file);
+
+		TermsFrequencyInFileConfig config = new TermsFrequencyInFileConfig().readMode(readMode);
+		tokenizer = config.newTokenizer();
+
+		// Same counter than the one built by the TF processors
+		Set<String> terms = new LinkedHashSet<>();
+		if ("GIVEN".equals(countedTerms)) {
+			for (int rank : GIVEN_TERMS_RANKS) {
+				terms.add(corpus.word(rank));
+			}
+		}
+		fileTermCounter = new FileTermCounter(config::newTokenizer, config.charset()).termsToCount(terms)
+				.mapped(TermsFrequencyInFileConfig.READ_MODE.MAPPED.equals(readMode));
+		if (!terms.isEmpty()) {
+			fileTermCounter.termAutomaton(new TermAutomaton(terms));
+		}
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		List<Path> paths = new ArrayList<>();
+		Files.list(folder).forEach(paths::add);
+		for (Path path : paths) {
+			Files.delete(path);
+		}
+		Files.delete(folder);
+	}
+
+	@Benchmark
+	public void tokenize(Blackhole blackhole) {
+		tokenizer.tokenize(text, (buffer, length) -> blackhole.consume(length));
+	}
+
+	@Benchmark
+	public TermCounts countFile() throws IOException {
+		return fileTermCounter.count(file);
+	}
+}
@@ -0,0 +1,58 @@
+package com.example.techtest.termfrequency.benchmark;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.example.techtest.termfrequency.algorithm.TfidfIndex;
+import com.example.techtest.termfrequency.algorithm.TfidfProcessorConfig.IDF_MODE;
+
+/**
+ * Recovery of the top N scored paths of an index already scored, as done on
+ * every ranking update and report.
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class TopPathsBenchmark {
+
+	private static final int VOCABULARY_SIZE = 50000;
+	private static final int WORDS_PER_DOCUMENT = 200;
+
+	@Param({ "10000", "100000" })
+	int corpusSize;
+
+	@Param({ "10", "100", "10000" })
+	int limit;
+
+	private TfidfIndex tfidfIndex;
+
+	@Setup
+	public void setup() {
+		tfidfIndex = new TfidfIndex(IDF_MODE.NORMAL, limit, 1, null);
+		tfidfIndex.apply(new SyntheticCorpus(VOCABULARY_SIZE, 42l).termVectors(corpusSize, WORDS_PER_DOCUMENT));
+		tfidfIndex.updateScores();
+	}
+
+	@Benchmark
+	public List<Entry<Path, Double>> topPaths() {
+		return tfidfIndex.ranking(limit);
+	}
+}
@@ -0,0 +1,154 @@
+package com.example.techtest.termfrequency.algorithm;
+
+import java.util.Arrays;
+
+/**
+ * Paths left outside the ranking of a TfidfIndex @see TfidfIndex, ordered by a
+ * key bounding their score, so the paths that could enter the ranking are
+ * found from the best bound down, stopping at the first one below the ranking
+ * threshold, without visiting the rest.
+ *
+ * Kept in a max-heap, the best key at the root, with the heap position of every
+ * path indexed by path id, so a path is updated or removed in place.
+ *
+ * This class is not thread safe.
+ *
+ */
+class CandidatePaths {
+
+	private static final int INITIAL_CAPACITY = 64;
+
+	private int[] heap = new int[INITIAL_CAPACITY];
+	private int size = 0;
+
+	// Columns indexed by path id, heap position + 1 (0 for non candidates)
+	private int[] positionByPath = new int[INITIAL_CAPACITY];
+	private double[] keyByPath = new double[INITIAL_CAPACITY];
+
+	/**
+	 * Adds a path, or updates its key if already a candidate
+	 *
+	 * @param pathId path id
+	 * @param key    key of the path
+	 */
+	void add(int pathId, double key) {
+		ensurePathCapacity(pathId);
+		int position = positionByPath[pathId] - 1;
+		if (position < 0) {
+			if (size == heap.length) {
+				heap = Arrays.copyOf(heap, size * 2);
+			}
+			position = size++;
+			heap[position] = pathId;
+		}
+		keyByPath[pathId] = key;
+		siftUp(position);
+		siftDown(positionByPath[pathId] - 1);
+	}
+
+	/**
+	 * Removes a path, if it is a candidate
+	 *
+	 * @param pathId path id
+	 */
+	void remove(int pathId) {
+		if (pathId >= positionByPath.length || positionByPath[pathId] == 0) {
+			return;
+		}
+
+		int position = positionByPath[pathId] - 1;
+		positionByPath[pathId] = 0;
+		size--;
+		if (position < size) {
+			int moved = heap[size];
+			heap[position] = moved;
+			positionByPath[moved] = position + 1;
+			siftUp(position);
+			siftDown(positionByPath[moved] - 1);
+		}
+	}
+
+	/**
+	 * Candidate with the best key, to be polled
+	 *
+	 * @return the path id
+	 */
+	int peek() {
+		return heap[0];
+	}
+
+	/**
+	 * Best key of the candidates
+	 *
+	 */
+	double peekKey() {
+		return keyByPath[heap[0]];
+	}
+
+	/**
+	 * Removes the candidate with the best key
+	 *
+	 * @return the path id
+	 */
+	int poll() {
+		int pathId = heap[0];
+		remove(pathId);
+		return pathId;
+	}
+
+	boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * Number of candidates
+	 *
+	 */
+	int size() {
+		return size;
+	}
+
+	private void siftUp(int position) {
+		int pathId = heap[position];
+		double key = keyByPath[pathId];
+		while (position > 0) {
+			int parent = (position - 1) >>> 1;
+			if (keyByPath[heap[parent]] >= key) {
+				break;
+			}
+			heap[position] = heap[parent];
+			positionByPath[heap[position]] = position + 1;
+			position = parent;
+		}
+		heap[position] = pathId;
+		positionByPath[pathId] = position + 1;
+	}
+
+	private void siftDown(int position) {
+		int pathId = heap[position];
+		double key = keyByPath[pathId];
+		int half = size >>> 1;
+		while (position < half) {
+			int child = 2 * position + 1;
+			if (child + 1 < size && keyByPath[heap[child + 1]] > keyByPath[heap[child]]) {
+				child++;
+			}
+			if (keyByPath[heap[child]] <= key) {
+				break;
+			}
+			heap[position] = heap[child];
+			positionByPath[heap[position]] = position + 1;
+			position = child;
+		}
+		heap[position] = pathId;
+		positionByPath[pathId] = position + 1;
+	}
+
+	private void ensurePathCapacity(int pathId) {
+		if (pathId >= positionByPath.length) {
+			int newCapacity = Math.max(positionByPath.length * 2, pathId + 1);
+			positionByPath = Arrays.copyOf(positionByPath, newCapacity);
+			keyByPath = Arrays.copyOf(keyByPath, newCapacity);
+		}
+	}
+}
@@ -0,0 +1,193 @@
+package com.example.techtest.termfrequency.algorithm;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Term frequency information of all the terms of a specific file, published as
+ * a single event. Terms, frequencies and rankable flags are kept in parallel
+ * arrays, so a whole document is a handful of objects whatever its number of
+ * terms.
+ *
+ * A new vector for an already known path replaces all the previous frequency
+ * information of that path.
+ *
+ * The time the file was discovered and the time the vector was computed are
+ * carried along, so the sinks can measure the freshness of their results.
+ *
+ */
+public class DocumentTermVector {
+
+	private static final int DEFAULT_CAPACITY = 16;
+
+	private Path path;
+	private long totalTokens = 0l;
+	private String[] terms;
+	private float[] freqs;
+	private boolean[] rankable;
+	private int size = 0;
+	private long discoveredAt = 0l;
+	private long tokenizedAt = 0l;
+
+	/**
+	 * New empty vector
+	 */
+	public DocumentTermVector() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * New empty vector with room for some terms
+	 *
+	 * @param capacity expected number of terms
+	 */
+	public DocumentTermVector(int capacity) {
+		this.terms = new String[Math.max(capacity, 1)];
+		this.freqs = new float[terms.length];
+		this.rankable = new boolean[terms.length];
+	}
+
+	/**
+	 * @return the path
+	 */
+	public Path path() {
+		return path;
+	}
+
+	/**
+	 * @param path the path to set
+	 */
+	public DocumentTermVector path(Path path) {
+		this.path = path;
+		return this;
+	}
+
+	/**
+	 * @return the number of tokens of the file
+	 */
+	public long totalTokens() {
+		return totalTokens;
+	}
+
+	/**
+	 * @param totalTokens the number of tokens of the file
+	 */
+	public DocumentTermVector totalTokens(long totalTokens) {
+		this.totalTokens = totalTokens;
+		return this;
+	}
+
+	/**
+	 * @return the time the file was discovered, in ns, 0 if unknown
+	 */
+	public long discoveredAt() {
+		return discoveredAt;
+	}
+
+	/**
+	 * @param discoveredAt the time the file was discovered, in ns
+	 */
+	public DocumentTermVector discoveredAt(long discoveredAt) {
+		this.discoveredAt = discoveredAt;
+		return this;
+	}
+
+	/**
+	 * @return the time the vector was computed, in ns, 0 if unknown
+	 */
+	public long tokenizedAt() {
+		return tokenizedAt;
+	}
+
+	/**
+	 * @param tokenizedAt the time the vector was computed, in ns
+	 */
+	public DocumentTermVector tokenizedAt(long tokenizedAt) {
+		this.tokenizedAt = tokenizedAt;
+		return this;
+	}
+
+	/**
+	 * Add the frequency of a term. Every term is expected once per vector
+	 *
+	 * @param term
+	 * @param freq
+	 * @param rankable if the term frequency should be ranked
+	 * @return this DocumentTermVector instance
+	 */
+	public DocumentTermVector add(String term, float freq, boolean rankable) {
+		if (size == terms.length) {
+			int capacity = terms.length * 2;
+			this.terms = Arrays.copyOf(this.terms, capacity);
+			this.freqs = Arrays.copyOf(this.freqs, capacity);
+			this.rankable = Arrays.copyOf(this.rankable, capacity);
+		}
+		this.terms[size] = term;
+		this.freqs[size] = freq;
+		this.rankable[size++] = rankable;
+		return this;
+	}
+
+	/**
+	 * @return the number of terms
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @param index position of the term, from 0 to size - 1
+	 * @return the term
+	 */
+	public String term(int index) {
+		checkIndex(index);
+		return terms[index];
+	}
+
+	/**
+	 * @param index position of the term, from 0 to size - 1
+	 * @return the freq of the term
+	 */
+	public float freq(int index) {
+		checkIndex(index);
+		return freqs[index];
+	}
+
+	/**
+	 * @param index position of the term, from 0 to size - 1
+	 * @return if the term frequency should be ranked
+	 */
+	public boolean rankable(int index) {
+		checkIndex(index);
+		return rankable[index];
+	}
+
+	/**
+	 * One TermFrequency per term of the vector
+	 *
+	 * @return the list of TermFrequency items
+	 */
+	public List<TermFrequency> termFrequencies() {
+		List<TermFrequency> termFreqs = new ArrayList<>(size);
+		for (int i = 0; i < size; i++) {
+			termFreqs.add(new TermFrequency().path(path).term(terms[i]).freq(freqs[i]).rankable(rankable[i]));
+		}
+		return termFreqs;
+	}
+
+	private void checkIndex(int index) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + size);
+		}
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		sb.append("DocumentTermVector [").append("path=").append(path).append(", terms=").append(size)
+				.append(", totalTokens=").append(totalTokens).append("]");
+		return sb.toString();
+	}
+}
@@ -0,0 +1,145 @@
+package com.example.techtest.termfrequency.algorithm;
+
+/**
+ * Policy deciding when the ranking of the TF-IDF processor @see TfidfProcessor
+ * is refreshed, from the observed cost of the refreshes and the rate of the
+ * incoming term frequencies.
+ *
+ * Every refresh has a fixed cost, mostly rescoring and ranking the affected
+ * paths, so the batches grow with the cost: the target batch is the term
+ * frequencies expected to arrive while twice the last refreshes cost is
+ * spent, so at most half of the time is spent refreshing. An idle processor
+ * refreshes as soon as something arrives, and a busy one in larger batches.
+ * Whatever the batch size, the oldest pending term frequencies are refreshed
+ * before the max staleness minus the expected refresh cost, and no batch is
+ * greater than the max batch size.
+ *
+ * Not thread safe, the times are given by the caller, in ms.
+ *
+ */
+public class RefreshScheduler {
+
+	private static final double EWMA_WEIGHT = 0.3d;
+	private static final double REFRESH_DUTY_CYCLE = 0.5d;
+	private static final long RATE_WINDOW_MS = 100;
+
+	private final long maxStalenessMs;
+	private final int maxBatchSize;
+
+	private double refreshCostMs = 0d;
+	private double arrivalRatePerMs = 0d;
+	private long rateWindowStart = -1l;
+	private long rateWindowArrivals = 0l;
+	private long oldestPendingAt = -1l;
+
+	/**
+	 * New instance
+	 *
+	 * @param maxStalenessMs max time from the arrival of a term frequency to the
+	 *                       end of the refresh including it
+	 * @param maxBatchSize   max term frequencies refreshed at once
+	 */
+	public RefreshScheduler(long maxStalenessMs, int maxBatchSize) {
+		this.maxStalenessMs = Math.max(1l, maxStalenessMs);
+		this.maxBatchSize = Math.max(1, maxBatchSize);
+	}
+
+	/**
+	 * Record the arrival of term frequencies
+	 *
+	 * @param termFrequencies number of term frequencies
+	 * @param nowMs           current time
+	 */
+	public void received(int termFrequencies, long nowMs) {
+		if (oldestPendingAt < 0) {
+			oldestPendingAt = nowMs;
+		}
+
+		if (rateWindowStart < 0) {
+			rateWindowStart = nowMs;
+		}
+		rateWindowArrivals += termFrequencies;
+		long elapsed = nowMs - rateWindowStart;
+		if (elapsed >= RATE_WINDOW_MS) {
+			arrivalRatePerMs = ewma(arrivalRatePerMs, rateWindowArrivals / (double) elapsed);
+			rateWindowStart = nowMs;
+			rateWindowArrivals = 0l;
+		}
+	}
+
+	/**
+	 * Whether the pending term frequencies must be refreshed now
+	 *
+	 * @param pendingTermFrequencies term frequencies waiting to be refreshed
+	 * @param nowMs                  current time
+	 * @return true to refresh them
+	 */
+	public boolean shouldRefresh(int pendingTermFrequencies, long nowMs) {
+		if (pendingTermFrequencies <= 0 || oldestPendingAt < 0) {
+			return false;
+		}
+		return pendingTermFrequencies >= targetBatchSize() || delayMs(nowMs) == 0l;
+	}
+
+	/**
+	 * Time until the pending term frequencies must be refreshed to keep the max
+	 * staleness
+	 *
+	 * @param nowMs current time
+	 * @return the delay, 0 if already due, Long.MAX_VALUE if nothing is pending
+	 */
+	public long delayMs(long nowMs) {
+		if (oldestPendingAt < 0) {
+			return Long.MAX_VALUE;
+		}
+		long budget = Math.max(0l, maxStalenessMs - (long) Math.ceil(refreshCostMs));
+		return Math.max(0l, oldestPendingAt + budget - nowMs);
+	}
+
+	/**
+	 * Record the start of a refresh, including every pending term frequency
+	 *
+	 */
+	public void refreshing() {
+		oldestPendingAt = -1l;
+	}
+
+	/**
+	 * Record the end of a refresh
+	 *
+	 * @param costMs time spent by the refresh
+	 */
+	public void refreshed(long costMs) {
+		refreshCostMs = ewma(refreshCostMs, costMs);
+	}
+
+	/**
+	 * Term frequencies to be refreshed at once, from the refresh cost and the
+	 * arrival rate
+	 *
+	 */
+	public int targetBatchSize() {
+		double target = arrivalRatePerMs * refreshCostMs / REFRESH_DUTY_CYCLE;
+		return (int) Math.max(1d, Math.min(maxBatchSize, target));
+	}
+
+	/**
+	 * Expected cost of a refresh, in ms
+	 *
+	 */
+	public double refreshCostMs() {
+		return refreshCostMs;
+	}
+
+	/**
+	 * Observed arrival rate, in term frequencies per ms
+	 *
+	 */
+	public double arrivalRatePerMs() {
+		return arrivalRatePerMs;
+	}
+
+	private static double ewma(double average, double value) {
+		return average + EWMA_WEIGHT * (value - average);
+	}
+}
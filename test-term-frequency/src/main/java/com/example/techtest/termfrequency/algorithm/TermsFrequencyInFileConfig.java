@@ -5,6 +5,15 @@ import java.nio.charset.StandardCharsets;
 import java.util.Collection;
 import java.util.LinkedHashSet;
 import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Supplier;
+
+import com.example.techtest.termfrequency.store.TermVectorStore;
+import com.example.techtest.termfrequency.token.CharClassTokenizer;
+import com.example.techtest.termfrequency.token.FileTermCounter;
+import com.example.techtest.termfrequency.token.RegexTokenizer;
+import com.example.techtest.termfrequency.token.Tokenizer;
 
 /**
  * Auxiliary class to define configuration parameters used by the
@@ -15,13 +24,58 @@ import java.util.Set;
  */
 public class TermsFrequencyInFileConfig {
 
-	private static final String TOKEN_SPLIT_REGEX = "[\\s,\\-_]";
-	private static final String TERM_NORMALIZATION_REGEX = "[\\p{Punct}|¿]";
+	/**
+	 * Way of reading the file contents
+	 *
+	 */
+	public enum READ_MODE {
+		/**
+		 * Tokenize the file bytes directly, mapping the file in memory, when the
+		 * tokenizer and the charset allow it. Otherwise the file lines are decoded
+		 */
+		MAPPED,
+		/**
+		 * Always decode the file lines before tokenizing them
+		 */
+		LINES
+	}
+
+	/**
+	 * Way of matching the tokens against the tokens to inform
+	 *
+	 */
+	public enum MATCHER_STRATEGY {
+		/**
+		 * Automaton when some tokens to inform are configured and the tokenizer
+		 * allows it, hash otherwise
+		 */
+		AUTO,
+		/**
+		 * Look up every normalized token in a hash set
+		 */
+		HASH,
+		/**
+		 * Match the tokens to inform with an automaton run over the file bytes, when
+		 * the tokenizer and the read mode allow it
+		 */
+		AUTOMATON
+	}
+
+	public static final String DEFAULT_TOKEN_SPLIT_REGEX = "[\\s,\\-_]";
+	public static final String DEFAULT_TERM_NORMALIZATION_REGEX = "[\\p{Punct}|¿]";
+	public static final int DEFAULT_CHUNK_SIZE = 64 * 1024 * 1024;
 
 	private final Set<String> tokensToInform = new LinkedHashSet<>();
-	private String tokenSplitRegex = TOKEN_SPLIT_REGEX;
-	private String tokenNormalizationRegex = TERM_NORMALIZATION_REGEX;
+	private String tokenSplitRegex = DEFAULT_TOKEN_SPLIT_REGEX;
+	private String tokenNormalizationRegex = DEFAULT_TERM_NORMALIZATION_REGEX;
 	private Charset charset = StandardCharsets.UTF_8;
+	private Supplier<Tokenizer> tokenizerFactory = null;
+	private READ_MODE readMode = READ_MODE.MAPPED;
+	private int chunkSize = DEFAULT_CHUNK_SIZE;
+	private long parallelThreshold = FileTermCounter.DEFAULT_PARALLEL_THRESHOLD;
+	private ForkJoinPool forkJoinPool = ForkJoinPool.commonPool();
+	private MATCHER_STRATEGY matcherStrategy = MATCHER_STRATEGY.AUTO;
+	private TermVectorStore termVectorStore = null;
 
 	/**
 	 * Tokens to inform.
@@ -113,4 +167,177 @@ public class TermsFrequencyInFileConfig {
 		this.charset = charset;
 		return this;
 	}
+
+	/**
+	 * Set a factory of personalized tokenizers. If set, the split and
+	 * normalization regular expressions are ignored.
+	 *
+	 * @param tokenizerFactory the factory, invoked once per processor
+	 * @return this TermsFrequencyInFileConfig instance
+	 */
+	public TermsFrequencyInFileConfig tokenizer(Supplier<Tokenizer> tokenizerFactory) {
+		this.tokenizerFactory = tokenizerFactory;
+		return this;
+	}
+
+	/**
+	 * New tokenizer instance according to the config. With the default split and
+	 * normalization regular expressions a char scanning tokenizer is used, and a
+	 * tokenizer based on the regular expressions otherwise.
+	 *
+	 * @return the tokenizer
+	 */
+	public Tokenizer newTokenizer() {
+		if (this.tokenizerFactory != null) {
+			return this.tokenizerFactory.get();
+		} else if (DEFAULT_TOKEN_SPLIT_REGEX.equals(this.tokenSplitRegex)
+				&& DEFAULT_TERM_NORMALIZATION_REGEX.equals(this.tokenNormalizationRegex)) {
+			return new CharClassTokenizer();
+		} else {
+			return new RegexTokenizer(this.tokenSplitRegex, this.tokenNormalizationRegex);
+		}
+	}
+
+	/**
+	 * Mode used to read the file contents
+	 *
+	 * @return the read mode
+	 */
+	public READ_MODE readMode() {
+		return this.readMode;
+	}
+
+	/**
+	 * Set the mode used to read the file contents
+	 *
+	 * @param readMode the read mode
+	 * @return this TermsFrequencyInFileConfig instance
+	 */
+	public TermsFrequencyInFileConfig readMode(READ_MODE readMode) {
+		this.readMode = readMode;
+		return this;
+	}
+
+	/**
+	 * Max number of bytes mapped and tokenized at once. Bigger files are processed
+	 * in chunks, split at token boundaries
+	 *
+	 * @return the chunk size in bytes
+	 */
+	public int chunkSize() {
+		return this.chunkSize;
+	}
+
+	/**
+	 * Set the max number of bytes mapped and tokenized at once
+	 *
+	 * @param chunkSize the chunk size in bytes
+	 * @return this TermsFrequencyInFileConfig instance
+	 */
+	public TermsFrequencyInFileConfig chunkSize(int chunkSize) {
+		this.chunkSize = chunkSize;
+		return this;
+	}
+
+	/**
+	 * Min size of the files split in ranges and tokenized in parallel. Only
+	 * applied when the files are tokenized directly from their bytes
+	 *
+	 * @return the threshold in bytes
+	 */
+	public long parallelThreshold() {
+		return this.parallelThreshold;
+	}
+
+	/**
+	 * Set the min size of the files split in ranges and tokenized in parallel
+	 *
+	 * @param parallelThreshold the threshold in bytes
+	 * @return this TermsFrequencyInFileConfig instance
+	 */
+	public TermsFrequencyInFileConfig parallelThreshold(long parallelThreshold) {
+		this.parallelThreshold = parallelThreshold;
+		return this;
+	}
+
+	/**
+	 * Pool used to tokenize in parallel the ranges of big files. The common pool
+	 * by default
+	 *
+	 * @return the pool
+	 */
+	public ForkJoinPool forkJoinPool() {
+		return this.forkJoinPool;
+	}
+
+	/**
+	 * Set the pool used to tokenize in parallel the ranges of big files
+	 *
+	 * @param forkJoinPool the pool
+	 * @return this TermsFrequencyInFileConfig instance
+	 */
+	public TermsFrequencyInFileConfig forkJoinPool(ForkJoinPool forkJoinPool) {
+		this.forkJoinPool = forkJoinPool;
+		return this;
+	}
+
+	/**
+	 * Way of matching the tokens against the tokens to inform
+	 *
+	 * @return the matcher strategy
+	 */
+	public MATCHER_STRATEGY matcherStrategy() {
+		return this.matcherStrategy;
+	}
+
+	/**
+	 * Set the way of matching the tokens against the tokens to inform
+	 *
+	 * @param matcherStrategy
+	 * @return this TermsFrequencyInFileConfig instance
+	 */
+	public TermsFrequencyInFileConfig matcherStrategy(MATCHER_STRATEGY matcherStrategy) {
+		this.matcherStrategy = matcherStrategy;
+		return this;
+	}
+
+	/**
+	 * Store of the term vectors already computed, reused for the files not
+	 * changed since they were stored. By default none
+	 *
+	 * @return the store, or null
+	 */
+	public TermVectorStore termVectorStore() {
+		return this.termVectorStore;
+	}
+
+	/**
+	 * Set the store of the term vectors already computed. It should be opened with
+	 * the fingerprint of this config @see #fingerprint()
+	 *
+	 * @param termVectorStore
+	 * @return this TermsFrequencyInFileConfig instance
+	 */
+	public TermsFrequencyInFileConfig termVectorStore(TermVectorStore termVectorStore) {
+		this.termVectorStore = termVectorStore;
+		return this;
+	}
+
+	/**
+	 * Hash of the parameters that change the term vectors computed for a file:
+	 * tokens to inform, split and normalization patterns, charset and tokenizer
+	 *
+	 * @return the fingerprint
+	 */
+	public long fingerprint() {
+		long fingerprint = 17;
+		for (String token : new TreeSet<>(this.tokensToInform)) {
+			fingerprint = 31 * fingerprint + token.hashCode();
+		}
+		fingerprint = 31 * fingerprint + this.tokenSplitRegex.hashCode();
+		fingerprint = 31 * fingerprint + this.tokenNormalizationRegex.hashCode();
+		fingerprint = 31 * fingerprint + this.charset.name().hashCode();
+		fingerprint = 31 * fingerprint + newTokenizer().getClass().getName().hashCode();
+		return fingerprint;
+	}
 }
@@ -1,42 +1,64 @@
 package com.example.techtest.termfrequency.algorithm;
 
+import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.LinkedHashSet;
-import java.util.Map;
-import java.util.Queue;
 import java.util.Set;
-import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Callable;
-import java.util.concurrent.ConcurrentMap;
-import java.util.regex.Pattern;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import com.example.techtest.termfrequency.algorithm.TermsFrequencyInFileConfig.MATCHER_STRATEGY;
+import com.example.techtest.termfrequency.algorithm.TermsFrequencyInFileConfig.READ_MODE;
+import com.example.techtest.termfrequency.store.TermVectorStore;
+import com.example.techtest.termfrequency.stream.DiscoveryTimes;
 import com.example.techtest.termfrequency.stream.Processor;
-import com.example.techtest.termfrequency.util.ImmutablePair;
+import com.example.techtest.termfrequency.stream.StageMetrics;
+import com.example.techtest.termfrequency.stream.Transport;
+import com.example.techtest.termfrequency.token.CharClassTokenizer;
+import com.example.techtest.termfrequency.token.FileTermCounter;
+import com.example.techtest.termfrequency.token.TermAutomaton;
+import com.example.techtest.termfrequency.token.TermCounts;
+import com.example.techtest.termfrequency.token.Tokenizer;
 
 /**
  * Processor capable of computing the frequency information of existing terms in
- * a specific file.
+ * a specific file. The frequencies of all the terms of a file are published
+ * together in a single event @see DocumentTermVector.
  * 
  * Using the config class @see TermsFrequencyInFileConfig, the patterns used to
  * split the terms of a text file, and to do some normalization of the contents,
- * can be personalized.
+ * can be personalized. The file contents are split and normalized by a
+ * Tokenizer @see Tokenizer, obtained from the config. When possible, the files
+ * are tokenized directly from their bytes, without decoding them into lines,
+ * and the big files are split in ranges tokenized in parallel @see
+ * FileTermCounter.
  * 
  * Optionally, a list of terms/tokens to be informed can be included in the
  * config. If some terms were indicated, the processor will only produce
  * frequency results for the specific terms, and any other token extracted from
  * the file will be grouped by the special name "OTHER_TOKENS_GROUP" @see
- * TermsFrequencyInFile.OTHER_TOKENS_GROUP
+ * TermsFrequencyInFile.OTHER_TOKENS_GROUP. By default, the selected terms are
+ * matched with an automaton run directly over the file bytes @see
+ * TermAutomaton, instead of looking up every token in a hash set.
+ * 
+ * When a term vector store is configured @see TermVectorStore, the vectors of
+ * the files not modified since they were stored are published without reading
+ * the files again, and the new vectors are stored.
+ * 
+ * The files received and read, their bytes and tokens, and the time spent
+ * computing every vector are recorded in the processor metrics @see
+ * StageMetrics, usually shared by all the processors of the pipeline. When
+ * the discovery times of the files are tracked @see DiscoveryTimes, every
+ * vector carries the time its file was discovered and the time it was computed.
  * 
  * @author dmacia
  *
  */
-public class TermsFrequencyInFileProcessor implements Callable<Integer>, Processor<Path, TermFrequency> {
+public class TermsFrequencyInFileProcessor implements Callable<Integer>, Processor<Path, DocumentTermVector> {
 
 	private static final Logger log = LogManager.getLogger(TermsFrequencyInFileProcessor.class);
 
@@ -45,12 +67,14 @@ public class TermsFrequencyInFileProcessor implements Callable<Integer>, Process
 	public static final String OTHER_TOKENS_GROUP = "";
 
 	private final TermsFrequencyInFileConfig config;
-	private final Pattern tokenSplitPattern;
-	private final Pattern termNormPattern;
-	private final Set<String> normalizedTokensToInform = new LinkedHashSet<>();
+	private final FileTermCounter fileTermCounter;
 
-	private BlockingQueue<Path> sourceQueue = null;
-	private Queue<TermFrequency> outputQueue = null;
+	private Transport<Path> sourceQueue = null;
+	private Transport<DocumentTermVector> outputQueue = null;
+	private StageMetrics metrics = new StageMetrics("term-frequencies");
+	private DiscoveryTimes discoveryTimes = null;
+	private long processingStart = 0l;
+	private long discoveredAt = DiscoveryTimes.UNKNOWN;
 
 	/**
 	 * New instance from config
@@ -65,21 +89,77 @@ public class TermsFrequencyInFileProcessor implements Callable<Integer>, Process
 		}
 
 		// Parse config
-		this.tokenSplitPattern = Pattern.compile(this.config.tokenSplitRegex());
-		this.termNormPattern = Pattern.compile(this.config.tokenNormalizationRegex());
-		this.config.tokensToInform().stream().forEach(t -> normalizedTokensToInform.add(normalizeToken(t)));
+		Tokenizer tokenizer = this.config.newTokenizer();
+		Set<String> normalizedTokensToInform = new LinkedHashSet<>();
+		this.config.tokensToInform().stream().forEach(t -> normalizedTokensToInform.add(tokenizer.normalize(t)));
+
+		this.fileTermCounter = new FileTermCounter(this.config::newTokenizer, this.config.charset())
+				.termsToCount(normalizedTokensToInform).mapped(READ_MODE.MAPPED.equals(this.config.readMode()))
+				.chunkSize(this.config.chunkSize())
+				.parallelThreshold(this.config.parallelThreshold(), this.config.forkJoinPool());
+
+		if (useTermAutomaton(tokenizer, normalizedTokensToInform)) {
+			this.fileTermCounter.termAutomaton(new TermAutomaton(normalizedTokensToInform));
+		}
+	}
+
+	/**
+	 * The automaton follows the token rules of the default tokenizer, and it only
+	 * makes sense with some terms to inform
+	 */
+	private boolean useTermAutomaton(Tokenizer tokenizer, Set<String> normalizedTokensToInform) {
+		MATCHER_STRATEGY strategy = this.config.matcherStrategy();
+		if (MATCHER_STRATEGY.HASH.equals(strategy) || normalizedTokensToInform.isEmpty()) {
+			return false;
+		} else if (!(tokenizer instanceof CharClassTokenizer)) {
+			if (MATCHER_STRATEGY.AUTOMATON.equals(strategy)) {
+				log.warn("Term automaton not available for tokenizer {}, using hash matching",
+						tokenizer.getClass().getSimpleName());
+			}
+			return false;
+		}
+		return true;
 	}
 
 	@Override
-	public void from(BlockingQueue<Path> queue) {
-		if (queue != null) {
-			this.sourceQueue = queue;
+	public void from(Transport<Path> transport) {
+		if (transport != null) {
+			this.sourceQueue = transport;
 		}
 	}
 
 	@Override
-	public void output(BlockingQueue<TermFrequency> queue) {
-		this.outputQueue = queue;
+	public void output(Transport<DocumentTermVector> transport) {
+		this.outputQueue = transport;
+	}
+
+	/**
+	 * Define the metrics the processing is recorded to
+	 * 
+	 * @param metrics
+	 */
+	public void metrics(StageMetrics metrics) {
+		if (metrics != null) {
+			this.metrics = metrics;
+		}
+	}
+
+	/**
+	 * Metrics of the processing
+	 * 
+	 */
+	public StageMetrics metrics() {
+		return this.metrics;
+	}
+
+	/**
+	 * Define the discovery times of the files, taken when the files are received
+	 * and carried by their vectors
+	 * 
+	 * @param discoveryTimes
+	 */
+	public void discoveryTimes(DiscoveryTimes discoveryTimes) {
+		this.discoveryTimes = discoveryTimes;
 	}
 
 	@Override
@@ -91,83 +171,97 @@ public class TermsFrequencyInFileProcessor implements Callable<Integer>, Process
 		}
 
 		while (!Thread.currentThread().isInterrupted()) {
-			Path sourcePath = sourceQueue.take();
+			Path sourcePath;
+			try {
+				sourcePath = sourceQueue.take();
+			} catch (InterruptedException e) {
+				// Stopped while waiting for files
+				Thread.currentThread().interrupt();
+				break;
+			}
+			metrics.received(1);
+			discoveredAt = (discoveryTimes != null ? discoveryTimes.remove(sourcePath) : DiscoveryTimes.UNKNOWN);
 			if (!Files.exists(sourcePath) || !Files.isRegularFile(sourcePath)) {
 				continue;
 			}
 
-			Stream<String> fileLines = null;
-
 			try {
-				fileLines = Files.lines(sourcePath, config.charset());
+				processingStart = System.nanoTime();
+				if (config.termVectorStore() != null) {
+					processWithStore(sourcePath, config.termVectorStore());
+				} else {
+					// Group and count tokens extracted from the file content
+					final TermCounts tokenCounts = fileTermCounter.count(sourcePath);
+					metrics.read(sourcePath.toFile().length(), tokenCounts.total());
 
-				// Group and count tokens extracted from the file content
-				final ConcurrentMap<String, Integer> tokenCounts = fileLines.flatMap(tokenSplitPattern::splitAsStream)
-						.parallel().filter(token -> !token.isEmpty())
-						.flatMap(token -> Stream.of(ImmutablePair.of(tokenGroupName(token), 1))).collect(Collectors
-								.groupingByConcurrent(ImmutablePair::key, Collectors.summingInt(ImmutablePair::value)));
-
-				// Compute frequency and publish the results
-				final int tokenTotal = tokenCounts.values().parallelStream().reduce(0, Integer::sum);
-				computeAndPublishFrequencies(sourcePath, tokenCounts, tokenTotal);
+					// Compute frequency and publish the results
+					publish(computeFrequencies(sourcePath, tokenCounts));
+				}
 
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
 			} catch (java.io.UncheckedIOException | java.io.IOException ioex) {
-				log.warn("Error reading file {} using UTF-8 encoding. The file is discarded", sourcePath, ioex);
+				metrics.failed();
+				log.warn("Error reading file {} using {} encoding. The file is discarded", sourcePath,
+						config.charset(), ioex);
 			} catch (Exception e) {
 				log.error("Unexpected error reading file {}. The processor will crash.", sourcePath, e);
 				return RESULT_ERROR;
-			} finally {
-				if (fileLines != null) {
-					try {
-						fileLines.close();
-					} catch (Exception fce) {
-						log.warn("Error closing file lines stream", fce);
-					}
-				}
 			}
 		}
 
 		return RESULT_OK;
 	}
 
-	private void computeAndPublishFrequencies(Path sourcePath, Map<String, Integer> tokenCounts, int tokenTotal) {
-		tokenCounts.entrySet().parallelStream().forEach(e -> {
+	/**
+	 * Publish the stored vector of the file if it didn't change since it was
+	 * stored, or compute, store and publish a new one
+	 */
+	private void processWithStore(Path sourcePath, TermVectorStore store) throws IOException, InterruptedException {
+		BasicFileAttributes attrs = Files.readAttributes(sourcePath, BasicFileAttributes.class);
+		long lastModified = attrs.lastModifiedTime().toMillis();
 
-			// Set as "no rankable" the special OTHER_TOKENS_GROUP
-			TermFrequency termFreq = new TermFrequency().path(sourcePath).term(e.getKey())
-					.freq(e.getValue() / (float) tokenTotal).rankable(!OTHER_TOKENS_GROUP.equals(e.getKey()));
+		DocumentTermVector storedVector = store.lookup(sourcePath, attrs.size(), lastModified);
+		if (storedVector != null) {
+			publish(storedVector);
+			return;
+		}
 
-			outputQueue.offer(termFreq);
-			log.trace("Published TermFrequency {}", termFreq);
-		});
+		// Sampled with the size and last modified time, before reading the contents
+		long hash = store.contentsHash(sourcePath);
+		TermCounts tokenCounts = fileTermCounter.count(sourcePath);
+		metrics.read(attrs.size(), tokenCounts.total());
+		DocumentTermVector termVector = computeFrequencies(sourcePath, tokenCounts);
+		try {
+			store.store(termVector, attrs.size(), lastModified, hash);
+		} catch (IOException e) {
+			log.warn("Error storing the term vector of file {}", sourcePath, e);
+		}
+		publish(termVector);
 	}
 
-	/**
-	 * If some tokens are configured to be inform, any other will be grouped below a
-	 * special token name to minimize the data produced by the processor.
-	 * 
-	 * @param token
-	 * @return
-	 */
-	private String tokenGroupName(String token) {
-		if (normalizedTokensToInform.isEmpty() || normalizedTokensToInform.contains(token)) {
-			return normalizeToken(token);
-		} else {
-			return OTHER_TOKENS_GROUP;
-		}
+	private DocumentTermVector computeFrequencies(Path sourcePath, TermCounts tokenCounts) {
+		final float tokenTotal = tokenCounts.total();
+		final DocumentTermVector termVector = new DocumentTermVector(tokenCounts.size()).path(sourcePath)
+				.totalTokens(tokenCounts.total());
+
+		// Set as "no rankable" the special OTHER_TOKENS_GROUP
+		tokenCounts.forEach((term, count) -> termVector.add(term, count / tokenTotal,
+				!OTHER_TOKENS_GROUP.equals(term)));
+
+		return termVector;
 	}
 
 	/**
-	 * Normalize tokens to allow equals comparison between them.
-	 * 
-	 * @param token
-	 * @return
+	 * Publish a vector, the time spent waiting for room in the output transport
+	 * is not taken as processing time
 	 */
-	private String normalizeToken(String token) {
-		if (token.isEmpty()) {
-			return OTHER_TOKENS_GROUP;
-		} else {
-			return termNormPattern.matcher(token.toLowerCase()).replaceAll("");
-		}
+	private void publish(DocumentTermVector termVector) throws InterruptedException {
+		long tokenizedAt = System.nanoTime();
+		metrics.processed(tokenizedAt - processingStart);
+		termVector.discoveredAt(discoveredAt).tokenizedAt(tokenizedAt);
+		outputQueue.put(termVector);
+		metrics.published(1);
+		log.trace("Published DocumentTermVector {}", termVector);
 	}
 }
@@ -0,0 +1,479 @@
+package com.example.techtest.termfrequency.algorithm;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.IntConsumer;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.example.techtest.termfrequency.algorithm.TfidfProcessorConfig.IDF_MODE;
+import com.example.techtest.termfrequency.util.Dictionary;
+
+/**
+ * Incremental TF-IDF scoring state used by the TfidfProcessor sink.
+ *
+ * Paths are interned as dense int ids, and the terms state is partitioned by
+ * term hash across a number of shards @see TfidfTermShard, each one owning the
+ * document frequency of its terms and the frequencies and partial scores of
+ * those terms in every path. Every DocumentTermVector replaces the whole
+ * frequency information of its path, only updating the affected terms, and the
+ * scores are only recomputed for the paths affected by the applied changes.
+ *
+ * When an executor is provided, the shards apply the changes and compute their
+ * partial scores concurrently, and this index only keeps the path ids and the
+ * total number of paths, merging the partial scores of the rescored paths into
+ * the global score used by the ranking.
+ *
+ * The ranking is maintained in place as the scores of the rescored paths
+ * change @see TopScoredPaths, so recovering it only depends on the ranking
+ * size and not on the number of paths. A change in the number of paths only
+ * rescores the top paths and the candidates that could reach them
+ * @see #updateScores().
+ *
+ * A term is considered rankable once a rankable term frequency was applied for
+ * it.
+ *
+ * This class is not thread safe, it is expected to be owned by a single
+ * consumer thread.
+ *
+ */
+public class TfidfIndex {
+
+	private static final Logger log = LogManager.getLogger(TfidfIndex.class);
+
+	private static final int INITIAL_CAPACITY = 64;
+	private static final double APPROXIMATION_ERROR = 1e-6;
+
+	private final IDF_MODE mode;
+	private final Dictionary<Path> pathDictionary = new Dictionary<>();
+	private final TfidfTermShard[] shards;
+	private final ExecutorService executor;
+
+	// Columns indexed by path id
+	private double[] scoreByPath = new double[INITIAL_CAPACITY];
+	private int[] scoredNumberOfPathsByPath = new int[INITIAL_CAPACITY];
+	private final BitSet rankablePaths = new BitSet();
+	private final TopScoredPaths topPaths;
+	private final CandidatePaths candidatePaths = new CandidatePaths();
+	private double maxFreqSum = 0d;
+
+	// Documents pending to be applied by the shards
+	private final List<PendingDocument> pendingDocuments = new ArrayList<>();
+	private final BitSet changedPaths = new BitSet();
+	private final BitSet rescoredPaths = new BitSet();
+	private final BitSet outsidePaths = new BitSet();
+	private boolean totalNumberOfPathsChanged = false;
+	private int scoredNumberOfPaths = 0;
+
+	/**
+	 * New single shard instance
+	 *
+	 * @param mode IDF computation mode
+	 */
+	public TfidfIndex(IDF_MODE mode) {
+		this(mode, Integer.MAX_VALUE, 1, null);
+	}
+
+	/**
+	 * New instance
+	 *
+	 * @param mode        IDF computation mode
+	 * @param rankingSize max number of paths kept in the ranking
+	 * @param shards      number of partitions of the terms state
+	 * @param executor    executor used to update the shards concurrently, or null
+	 *                    to update them in the caller thread
+	 */
+	public TfidfIndex(IDF_MODE mode, int rankingSize, int shards, ExecutorService executor) {
+		if (shards <= 0) {
+			throw new IllegalArgumentException("Invalid number of shards " + shards);
+		}
+
+		this.mode = (mode != null ? mode : IDF_MODE.NORMAL);
+		this.shards = new TfidfTermShard[shards];
+		for (int i = 0; i < shards; i++) {
+			this.shards[i] = new TfidfTermShard(this.mode);
+		}
+		this.executor = executor;
+		this.topPaths = new TopScoredPaths(Math.max(0, rankingSize),
+				(pathId, otherPathId) -> pathDictionary.valueOf(pathId).compareTo(pathDictionary.valueOf(otherPathId)));
+	}
+
+	/**
+	 * Applies a collection of DocumentTermVector items. If frequency data already
+	 * exists for the same path, all of it is replaced by the new one, terms
+	 * missing in the new vector are removed from the path.
+	 *
+	 * @param termVectors
+	 */
+	public void apply(Collection<DocumentTermVector> termVectors) {
+		termVectors.forEach(this::prepare);
+		if (pendingDocuments.isEmpty()) {
+			return;
+		}
+
+		runInShards(shard -> {
+			TfidfTermShard termShard = shards[shard];
+			for (PendingDocument document : pendingDocuments) {
+				termShard.apply(document.pathId, document.termVector, document.termIndexes,
+						document.shardOffsets[shard], document.shardOffsets[shard + 1]);
+			}
+		});
+
+		pendingDocuments.clear();
+	}
+
+	/**
+	 * Applies a new DocumentTermVector item @see #apply(Collection)
+	 *
+	 * @param termVector
+	 */
+	public void apply(DocumentTermVector termVector) {
+		apply(Collections.singletonList(termVector));
+	}
+
+	/**
+	 * Interns the path of a document and groups its terms by shard
+	 */
+	private void prepare(DocumentTermVector termVector) {
+		int pathId = pathDictionary.idOf(termVector.path());
+		if (pathId == Dictionary.NO_ID) {
+			if (termVector.size() == 0) {
+				return;
+			}
+			pathId = pathDictionary.intern(termVector.path());
+			ensurePathCapacity(pathId);
+			for (TfidfTermShard shard : shards) {
+				shard.ensurePathCapacity(pathId);
+			}
+			totalNumberOfPathsChanged = true;
+		}
+
+		// Counting sort of the term indexes by shard
+		int size = termVector.size();
+		int[] termShards = new int[size];
+		int[] shardOffsets = new int[shards.length + 1];
+		for (int i = 0; i < size; i++) {
+			termShards[i] = shardOf(termVector.term(i));
+			shardOffsets[termShards[i] + 1]++;
+		}
+		for (int shard = 0; shard < shards.length; shard++) {
+			shardOffsets[shard + 1] += shardOffsets[shard];
+		}
+
+		int[] next = Arrays.copyOf(shardOffsets, shards.length);
+		int[] termIndexes = new int[size];
+		for (int i = 0; i < size; i++) {
+			termIndexes[next[termShards[i]]++] = i;
+		}
+
+		pendingDocuments.add(new PendingDocument(pathId, termVector, termIndexes, shardOffsets));
+	}
+
+	private int shardOf(String term) {
+		int h = term.hashCode();
+		return Math.floorMod(h ^ (h >>> 16), shards.length);
+	}
+
+	/**
+	 * Recomputes the scores of the paths affected by the changes applied since the
+	 * last update.
+	 *
+	 * When the total number of paths changes, the IDF of every term changes too,
+	 * but only the top paths are rescored: the rest are kept as candidates
+	 * ordered by a bound of their score, valid for any greater number of paths,
+	 * and only the candidates which bound reaches the worst top path are
+	 * rescored, best bound first @see #refill().
+	 *
+	 * @return the number of paths rescored
+	 */
+	public int updateScores() {
+		int totalNumberOfPaths = pathDictionary.size();
+		scoredNumberOfPaths = totalNumberOfPaths;
+
+		runInShards(shard -> shards[shard].updateScores(totalNumberOfPaths));
+
+		changedPaths.clear();
+		for (TfidfTermShard shard : shards) {
+			changedPaths.or(shard.rescoredPaths());
+			shard.clearRescoredPaths();
+		}
+
+		// Rankable paths don't depend on the number of paths
+		for (int pathId = changedPaths.nextSetBit(0); pathId >= 0; pathId = changedPaths.nextSetBit(pathId + 1)) {
+			boolean rankable = false;
+			for (TfidfTermShard shard : shards) {
+				rankable |= shard.isRankable(pathId);
+			}
+			rankablePaths.set(pathId, rankable);
+			if (!rankable) {
+				scoreByPath[pathId] = 0d;
+				scoredNumberOfPathsByPath[pathId] = totalNumberOfPaths;
+				candidatePaths.remove(pathId);
+				topPaths.update(pathId, 0d, false);
+			}
+		}
+		changedPaths.and(rankablePaths);
+
+		// Every top path was scored for a different number of paths
+		if (totalNumberOfPathsChanged) {
+			for (int pathId : topPaths.members()) {
+				changedPaths.set(pathId);
+			}
+		}
+
+		// Changed top paths with partials of other numbers of paths are fully
+		// rescored, the rest are kept as candidates by their new bound
+		rescoredPaths.clear();
+		for (int pathId = changedPaths.nextSetBit(0); pathId >= 0; pathId = changedPaths.nextSetBit(pathId + 1)) {
+			if (scoredNumberOfPathsByPath[pathId] == totalNumberOfPaths) {
+				continue;
+			}
+			if (topPaths.contains(pathId)) {
+				rescoredPaths.set(pathId);
+			} else {
+				changedPaths.clear(pathId);
+				leftOutside(pathId);
+			}
+		}
+		if (!rescoredPaths.isEmpty()) {
+			runInShards(shard -> shards[shard].rescore(rescoredPaths, totalNumberOfPaths));
+		}
+
+		for (int pathId = changedPaths.nextSetBit(0); pathId >= 0; pathId = changedPaths.nextSetBit(pathId + 1)) {
+			candidatePaths.remove(pathId);
+			mergeScore(pathId);
+			scoredNumberOfPathsByPath[pathId] = totalNumberOfPaths;
+			leftOutside(topPaths.update(pathId, scoreByPath[pathId], true));
+		}
+		int rescored = changedPaths.cardinality();
+
+		// Fallen or removed top paths may leave room to some candidate
+		rescored += refill();
+
+		totalNumberOfPathsChanged = false;
+		return rescored;
+	}
+
+	/**
+	 * Offers the candidates to the top paths, best bound first, while their bound
+	 * reaches the worst top path. The candidates not scored for the current number
+	 * of paths are only rescored, in batches of up to ranking size paths, when
+	 * their bound for the current number of paths still reaches it. The paths
+	 * left outside are kept as candidates.
+	 *
+	 * @return the number of paths rescored
+	 */
+	private int refill() {
+		int totalNumberOfPaths = scoredNumberOfPaths;
+		double logN = logNumberOfPaths();
+		int rescored = 0;
+
+		outsidePaths.clear();
+		while (true) {
+			rescoredPaths.clear();
+			int batchSize = 0;
+			while (!candidatePaths.isEmpty() && batchSize < topPaths.capacity() && (!topPaths.isFull()
+					|| candidatePaths.peekKey() + maxFreqSum * logN >= topPaths.worstScore())) {
+				int pathId = candidatePaths.poll();
+				if (scoredNumberOfPathsByPath[pathId] == totalNumberOfPaths) {
+					keepOutside(topPaths.update(pathId, scoreByPath[pathId], true));
+				} else if (topPaths.isFull() && scoreUpperBound(pathId) < topPaths.worstScore()) {
+					outsidePaths.set(pathId);
+				} else {
+					rescoredPaths.set(pathId);
+					batchSize++;
+				}
+			}
+			if (batchSize == 0) {
+				break;
+			}
+
+			runInShards(shard -> shards[shard].rescore(rescoredPaths, totalNumberOfPaths));
+			for (int pathId = rescoredPaths.nextSetBit(0); pathId >= 0; pathId = rescoredPaths.nextSetBit(pathId + 1)) {
+				mergeScore(pathId);
+				scoredNumberOfPathsByPath[pathId] = totalNumberOfPaths;
+				keepOutside(topPaths.update(pathId, scoreByPath[pathId], true));
+			}
+			rescored += batchSize;
+		}
+
+		// Not offered again in this refill, as they can't beat the worst top path
+		for (int pathId = outsidePaths.nextSetBit(0); pathId >= 0; pathId = outsidePaths.nextSetBit(pathId + 1)) {
+			leftOutside(pathId);
+		}
+
+		log.trace("Top paths refilled. Rescored paths: {} Candidate paths: {}", rescored, candidatePaths.size());
+
+		return rescored;
+	}
+
+	private void keepOutside(int pathId) {
+		if (pathId != TopScoredPaths.NO_PATH) {
+			outsidePaths.set(pathId);
+		}
+	}
+
+	/**
+	 * Keeps a path left outside the top paths as a candidate, keyed by its score
+	 * upper bound minus the greatest sum of frequencies for the current number of
+	 * paths. As the number of paths only grows, adding that greatest sum for a
+	 * later number of paths to the key still bounds the score of the path
+	 */
+	private void leftOutside(int pathId) {
+		if (pathId == TopScoredPaths.NO_PATH || topPaths.capacity() == 0) {
+			return;
+		}
+		maxFreqSum = Math.max(maxFreqSum, freqSum(pathId));
+		candidatePaths.add(pathId, scoreUpperBound(pathId) - maxFreqSum * logNumberOfPaths());
+	}
+
+	/**
+	 * Approximated score of a path for the number of paths of the last
+	 * update, from the sums of its terms frequencies
+	 */
+	private double approximatedScore(int pathId) {
+		double freqLogDfSum = 0d;
+		for (TfidfTermShard shard : shards) {
+			freqLogDfSum += shard.freqLogDfSum(pathId);
+		}
+		return freqSum(pathId) * logNumberOfPaths() - freqLogDfSum;
+	}
+
+	/**
+	 * Margin of the approximated score, covering the float division of the IDF
+	 * formula
+	 */
+	private double approximationMargin(int pathId) {
+		return APPROXIMATION_ERROR * (1d + freqSum(pathId));
+	}
+
+	private double scoreUpperBound(int pathId) {
+		return approximatedScore(pathId) + approximationMargin(pathId);
+	}
+
+	private double freqSum(int pathId) {
+		double freqSum = 0d;
+		for (TfidfTermShard shard : shards) {
+			freqSum += shard.freqSum(pathId);
+		}
+		return freqSum;
+	}
+
+	/**
+	 * Logarithm of the number of paths of the last update, plus the smoothing
+	 * term, common to the IDF of every term
+	 */
+	private double logNumberOfPaths() {
+		return Math.log10(scoredNumberOfPaths) + (IDF_MODE.SMOOTH.equals(mode) ? 1d : 0d);
+	}
+
+	/**
+	 * Global score of a path from the partial scores of every shard
+	 */
+	private void mergeScore(int pathId) {
+		double score = 0d;
+		for (TfidfTermShard shard : shards) {
+			if (shard.isRankable(pathId)) {
+				score += shard.partialScore(pathId);
+			}
+		}
+		scoreByPath[pathId] = score;
+	}
+
+	/**
+	 * Runs a task for every shard, concurrently when an executor is available.
+	 * Every shard is only touched by the task running for it
+	 */
+	private void runInShards(IntConsumer shardTask) {
+		if (executor == null || shards.length == 1) {
+			for (int shard = 0; shard < shards.length; shard++) {
+				shardTask.accept(shard);
+			}
+			return;
+		}
+
+		List<Callable<Void>> tasks = new ArrayList<>(shards.length);
+		for (int shard = 0; shard < shards.length; shard++) {
+			final int taskShard = shard;
+			tasks.add(() -> {
+				shardTask.accept(taskShard);
+				return null;
+			});
+		}
+
+		try {
+			for (Future<Void> result : executor.invokeAll(tasks)) {
+				result.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted updating the TF-IDF shards", e);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Error updating the TF-IDF shards", e.getCause());
+		}
+	}
+
+	/**
+	 * Top N rankable paths by score, as computed in the last update. Paths with
+	 * the same score are ordered by path.
+	 *
+	 * @param limit number of paths to recover, up to the ranking size of this
+	 *              index
+	 * @return descendant ordered list of paths and scores
+	 */
+	public List<Entry<Path, Double>> ranking(int limit) {
+		int[] ordered = topPaths.ordered(limit);
+		List<Entry<Path, Double>> ranking = new ArrayList<>(ordered.length);
+		for (int pathId : ordered) {
+			ranking.add(Map.entry(pathDictionary.valueOf(pathId), scoreByPath[pathId]));
+		}
+		return ranking;
+	}
+
+	/**
+	 * Number of distinct paths observed
+	 *
+	 */
+	public long totalNumberOfPaths() {
+		return pathDictionary.size();
+	}
+
+	private void ensurePathCapacity(int pathId) {
+		if (pathId >= scoreByPath.length) {
+			int capacity = Math.max(scoreByPath.length * 2, pathId + 1);
+			scoreByPath = Arrays.copyOf(scoreByPath, capacity);
+			scoredNumberOfPathsByPath = Arrays.copyOf(scoredNumberOfPathsByPath, capacity);
+		}
+	}
+
+	/**
+	 * Document waiting to be applied by the shards, with its term indexes
+	 * grouped by shard
+	 */
+	private static class PendingDocument {
+
+		private final int pathId;
+		private final DocumentTermVector termVector;
+		private final int[] termIndexes;
+		private final int[] shardOffsets;
+
+		private PendingDocument(int pathId, DocumentTermVector termVector, int[] termIndexes, int[] shardOffsets) {
+			this.pathId = pathId;
+			this.termVector = termVector;
+			this.termIndexes = termIndexes;
+			this.shardOffsets = shardOffsets;
+		}
+	}
+}
@@ -4,52 +4,78 @@ import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.LinkedList;
 import java.util.List;
-import java.util.Map;
 import java.util.Map.Entry;
-import java.util.Set;
-import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
-import java.util.stream.Collectors;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import com.example.techtest.termfrequency.algorithm.TfidfProcessorConfig.IDF_MODE;
+import com.example.techtest.termfrequency.stream.DiscoveryTimes;
+import com.example.techtest.termfrequency.stream.LatencyHistogram;
 import com.example.techtest.termfrequency.stream.Sink;
+import com.example.techtest.termfrequency.stream.StageMetrics;
+import com.example.techtest.termfrequency.stream.Transport;
 import com.example.techtest.termfrequency.util.ImmutablePair;
-import com.example.techtest.termfrequency.util.Utils;
 
 /**
- * Processor capable of computing the Tf-idf of a stream of TermFrequency
- * items @see TermFrenquency.
+ * Processor capable of computing the Tf-idf of a stream of DocumentTermVector
+ * items @see DocumentTermVector, each one with the term frequencies of a whole
+ * file.
  * 
  * Using the config class @see TfidfProcessorConfig, a list of terms can be
  * indicated, the processor will compute a ranking of the different paths
- * observed in the TermFrequency stream as a result of adding the Tf-idf value
+ * observed in the DocumentTermVector stream as a result of adding the Tf-idf value
  * computed for every term in them.
  * 
+ * The ranking is refreshed by a dedicated thread, so the source queue keeps
+ * being drained while the ranking is computed. The refreshes are scheduled from
+ * their observed cost and the arrival rate of the vectors @see
+ * RefreshScheduler, bounded by a max staleness, and nothing is done while no
+ * vectors arrive.
+ * 
+ * The vectors received and the time spent on every ranking update are
+ * recorded in the processor metrics @see StageMetrics.
+ * 
+ * The freshness of the ranking is measured from the time every file was
+ * discovered, carried by its vector: until the vector was computed, until it
+ * was applied to the scores, and until the ranking including it was
+ * published. Vectors without a discovery time are not measured.
+ * 
  * @author dmacia
  *
  */
-public class TfidfProcessor implements Callable<Integer>, Sink<TermFrequency> {
+public class TfidfProcessor implements Callable<Integer>, Sink<DocumentTermVector> {
 
 	private static final Logger log = LogManager.getLogger(TfidfProcessor.class);
 
+	private static final long MIN_REFRESH_WAIT_MS = 5;
+
 	public static final int RESULT_OK = 0;
 	public static final int RESULT_ERROR = -1;
 
 	private final TfidfProcessorConfig config;
-	private BlockingQueue<TermFrequency> sourceQueue = null;
-	private Collection<Entry<Path, Double>> ranking = Collections.emptyList();
-	private long totalNumberOfPaths = 0l;
-	private long rankingLastUpdated = 0l;
-
-	private final List<TermFrequency> termFrequencyBuffer = new LinkedList<>();
-	private final Map<String, Set<TermFrequency>> frequenciesByTerm = new HashMap<>();
+	private Transport<DocumentTermVector> sourceQueue = null;
+	private volatile TfidfProcessorStats stats;
+
+	private List<DocumentTermVector> termVectorBuffer = new ArrayList<>();
+	private List<DocumentTermVector> refreshBatch = new ArrayList<>();
+	private int bufferedTermFrequencies = 0;
+	private final TfidfIndex tfidfIndex;
+	private final ExecutorService shardsExecutor;
+	private final ExecutorService refreshExecutor;
+	private final RefreshScheduler scheduler;
+	private Future<Long> runningRefresh = null;
+	private long refreshStartedAt = 0l;
+	private StageMetrics metrics = new StageMetrics("tfidf");
+	private final LatencyHistogram discoveryToTokenized = new LatencyHistogram();
+	private final LatencyHistogram discoveryToApplied = new LatencyHistogram();
+	private final LatencyHistogram discoveryToVisible = new LatencyHistogram();
 
 	public TfidfProcessor(TfidfProcessorConfig config) {
 		if (config != null) {
@@ -57,29 +83,63 @@ public class TfidfProcessor implements Callable<Integer>, Sink<TermFrequency> {
 		} else {
 			this.config = new TfidfProcessorConfig();
 		}
+
+		int shards = Math.max(1, this.config.shards());
+		if (shards > 1) {
+			this.shardsExecutor = Executors.newFixedThreadPool(shards, r -> {
+				Thread thread = new Thread(r, "tfidf-shard");
+				thread.setDaemon(true);
+				return thread;
+			});
+		} else {
+			this.shardsExecutor = null;
+		}
+		this.tfidfIndex = new TfidfIndex(this.config.mode(), this.config.rankingSize(), shards, shardsExecutor);
+		this.refreshExecutor = Executors.newSingleThreadExecutor(r -> {
+			Thread thread = new Thread(r, "tfidf-refresh");
+			thread.setDaemon(true);
+			return thread;
+		});
+		LatencyHistogram.Snapshot noLatencies = new LatencyHistogram().snapshot();
+		this.stats = new TfidfProcessorStats(0l, 0l, 0l, this.config.mode(), Collections.emptyList(), noLatencies,
+				noLatencies, noLatencies);
+		this.scheduler = new RefreshScheduler(this.config.maxStalenessMs(), this.config.maxTfBufferSize());
 	}
 
 	@Override
-	public void from(BlockingQueue<TermFrequency> queue) {
-		this.sourceQueue = queue;
+	public void from(Transport<DocumentTermVector> transport) {
+		this.sourceQueue = transport;
 	}
 
 	/**
-	 * Recovers the TF-IDF processing stats, including the ranking of the top paths
+	 * Define the metrics the processing is recorded to
 	 * 
-	 * @return An instance of TfidfProcessorStats with the algorithm execution info
+	 * @param metrics
 	 */
-	public TfidfProcessorStats getStats() {
-		TfidfProcessorStats stats = new TfidfProcessorStats();
-
-		stats.analyzedPaths = this.totalNumberOfPaths;
-		stats.rankingLastUpdated = this.rankingLastUpdated;
-		stats.idfMode = config.mode();
+	public void metrics(StageMetrics metrics) {
+		if (metrics != null) {
+			this.metrics = metrics;
+		}
+	}
 
-		Collection<Entry<Path, Double>> currentRanking = this.ranking;
-		currentRanking.forEach(e -> stats.ranking.add(ImmutablePair.of(e.getKey(), e.getValue())));
+	/**
+	 * Metrics of the processing
+	 * 
+	 */
+	public StageMetrics metrics() {
+		return this.metrics;
+	}
 
-		return stats;
+	/**
+	 * Recovers the TF-IDF processing stats, including the ranking of the top paths.
+	 * The stats are an immutable snapshot, published by every ranking update, so
+	 * they are returned without locking or copying, the same instance until the
+	 * next update
+	 * 
+	 * @return An instance of TfidfProcessorStats with the algorithm execution info
+	 */
+	public TfidfProcessorStats getStats() {
+		return this.stats;
 	}
 
 	@Override
@@ -90,93 +150,224 @@ public class TfidfProcessor implements Callable<Integer>, Sink<TermFrequency> {
 			return RESULT_ERROR;
 		}
 
-		while (!Thread.currentThread().isInterrupted()) {
-			try {
-				TermFrequency termFreq = sourceQueue.poll(config.pollTimeoutMs(), TimeUnit.MILLISECONDS);
-				bufferTF(termFreq);
-				checkAndUpdateRanking();
-
-			} catch (Exception e) {
-				log.error("Error computing tf-idf", e);
-				return RESULT_ERROR;
+		try {
+			while (!Thread.currentThread().isInterrupted()) {
+				try {
+					bufferTF(nextTF());
+					drainTF();
+					checkRefresh();
+					scheduleRefresh();
+
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+
+				} catch (Exception e) {
+					log.error("Error computing tf-idf", e);
+					return RESULT_ERROR;
+				}
+			}
+		} finally {
+			refreshExecutor.shutdownNow();
+			if (shardsExecutor != null) {
+				shardsExecutor.shutdownNow();
 			}
 		}
 
 		return RESULT_OK;
 	}
 
-	private void bufferTF(TermFrequency termFreq) {
-		if (termFreq != null) {
-			termFrequencyBuffer.add(termFreq);
+	/**
+	 * Wait for the next vector: while nothing is pending, until a vector arrives;
+	 * while the buffer is full, until the running refresh ends; otherwise, until
+	 * the buffered vectors are due or the running refresh is expected to end
+	 */
+	private DocumentTermVector nextTF() throws InterruptedException, ExecutionException {
+		if (runningRefresh == null && termVectorBuffer.isEmpty()) {
+			return sourceQueue.take();
+		}
+
+		if (runningRefresh != null && bufferedTermFrequencies >= config.maxTfBufferSize()) {
+			runningRefresh.get();
+			return null;
 		}
-	}
 
-	private void checkAndUpdateRanking() {
+		long now = System.currentTimeMillis();
+		long waitMs;
+		if (runningRefresh != null) {
+			// Nothing else can be refreshed until the running refresh ends
+			long expectedEnd = refreshStartedAt + (long) Math.ceil(scheduler.refreshCostMs());
+			waitMs = Math.max(MIN_REFRESH_WAIT_MS, expectedEnd - now);
+		} else {
+			waitMs = scheduler.delayMs(now);
+		}
+		return sourceQueue.poll(waitMs, TimeUnit.MILLISECONDS);
+	}
 
-		// Check ranking update criteria
-		if (termFrequencyBuffer.size() < config.maxTfBufferSize()
-				&& System.currentTimeMillis() - rankingLastUpdated < config.pollTimeoutMs()) {
+	private void bufferTF(DocumentTermVector termVector) {
+		if (termVector != null) {
+			termVectorBuffer.add(termVector);
+			bufferedTermFrequencies += termVector.size();
+			scheduler.received(Math.max(1, termVector.size()), System.currentTimeMillis());
+			metrics.received(1);
+		}
+	}
 
-			log.trace("Ranking update discarded buffer-size: {} last-upd: {}", termFrequencyBuffer.size(),
-					rankingLastUpdated);
+	/**
+	 * Buffer all the already available vectors, up to the max buffer size. The
+	 * buffer size counts term frequencies, not vectors, so they are drained one by
+	 * one until the size is reached, overshooting by at most the last vector
+	 */
+	private void drainTF() {
+		int drained = 0;
+		int drainedTermFrequencies = 0;
+		while (bufferedTermFrequencies < config.maxTfBufferSize() && sourceQueue.drainTo(termVectorBuffer, 1) > 0) {
+			DocumentTermVector termVector = termVectorBuffer.get(termVectorBuffer.size() - 1);
+			drainedTermFrequencies += Math.max(1, termVector.size());
+			bufferedTermFrequencies += termVector.size();
+			drained++;
+		}
+		if (drained == 0) {
 			return;
 		}
 
-		// Ranking update
-		termFrequencyBuffer.forEach(tf -> {
-			Set<TermFrequency> termFreqs = frequenciesByTerm.get(tf.term());
-			if (termFreqs == null) {
-				termFreqs = new HashSet<>();
-				frequenciesByTerm.put(tf.term(), termFreqs);
-			}
-			// TermFrequency equals and hashCode methods allows us to update the set if
-			// TF data already exists for the same path and term
-			termFreqs.add(tf);
-		});
+		scheduler.received(drainedTermFrequencies, System.currentTimeMillis());
+		metrics.received(drained);
+	}
 
-		// Update TF-IDF
-		long newTotalNumberOfPaths = frequenciesByTerm.values().parallelStream().flatMap(Set::parallelStream)
-				.map(TermFrequency::path).distinct().count();
+	/**
+	 * Collect the running refresh if it ended, failing if the refresh failed
+	 */
+	private void checkRefresh() throws InterruptedException, ExecutionException {
+		if (runningRefresh == null || !runningRefresh.isDone()) {
+			return;
+		}
 
-		Map<Path, Double> computedIdfByPath = frequenciesByTerm.values().parallelStream().flatMap(Set::parallelStream)
-				.filter(TermFrequency::rankable)
-				.map(tf -> ImmutablePair.of(tf.path(),
-						tf.freq() * computeIDF(frequenciesByTerm.get(tf.term()).size(), newTotalNumberOfPaths)))
-				.collect(Collectors.groupingByConcurrent(ImmutablePair::key,
-						Collectors.summingDouble(ImmutablePair::value)));
+		try {
+			scheduler.refreshed(TimeUnit.NANOSECONDS.toMillis(runningRefresh.get()));
+		} finally {
+			runningRefresh = null;
+		}
+	}
 
-		// Update ranking
-		ranking = Collections.synchronizedCollection(Utils.topNEntriesByValue(computedIdfByPath, config.rankingSize()));
-		totalNumberOfPaths = newTotalNumberOfPaths;
+	/**
+	 * Hand the buffered vectors to the refresh thread when the scheduler decides
+	 * so and no refresh is running. The vectors arriving meanwhile are buffered
+	 * for the next one
+	 */
+	private void scheduleRefresh() {
+		if (runningRefresh != null || termVectorBuffer.isEmpty() || !scheduler.shouldRefresh(
+				Math.max(bufferedTermFrequencies, termVectorBuffer.size()), System.currentTimeMillis())) {
+			return;
+		}
 
-		log.trace("Ranking updated from {} buffered TFs. Distinct paths: {}", termFrequencyBuffer.size(),
-				totalNumberOfPaths);
+		List<DocumentTermVector> batch = termVectorBuffer;
+		termVectorBuffer = refreshBatch;
+		refreshBatch = batch;
+		bufferedTermFrequencies = 0;
 
-		rankingLastUpdated = System.currentTimeMillis();
+		scheduler.refreshing();
+		refreshStartedAt = System.currentTimeMillis();
+		runningRefresh = refreshExecutor.submit(() -> refresh(batch));
 	}
 
 	/**
-	 * Apply IDF formula, NORMAL or SMOOTH 
+	 * Ranking update, every document of the batch is applied as a whole and only
+	 * the paths affected are rescored. Runs in the refresh thread
+	 *
+	 * @return the time spent, in ns
 	 */
-	private double computeIDF(float termDf, long totalNumberOfPaths) {
+	private long refresh(List<DocumentTermVector> batch) {
+		long refreshStart = System.nanoTime();
+		tfidfIndex.apply(batch);
+		int rescoredPaths = tfidfIndex.updateScores();
+		long appliedAt = System.nanoTime();
+
+		List<Entry<Path, Double>> topPaths = tfidfIndex.ranking(config.rankingSize());
+		List<ImmutablePair<Path, Double>> ranking = new ArrayList<>(topPaths.size());
+		topPaths.forEach(e -> ranking.add(ImmutablePair.of(e.getKey(), e.getValue())));
+
+		// The freshness of the batch is recorded just before publishing, so the
+		// snapshot of this version includes it. The previous histogram snapshots
+		// are kept when no file of the batch was measured
+		TfidfProcessorStats previous = stats;
+		boolean measured = recordFreshness(batch, appliedAt, System.nanoTime());
+		TfidfProcessorStats published = new TfidfProcessorStats(previous.version + 1,
+				tfidfIndex.totalNumberOfPaths(), System.currentTimeMillis(), config.mode(),
+				Collections.unmodifiableList(ranking),
+				(measured ? discoveryToTokenized.snapshot() : previous.discoveryToTokenized),
+				(measured ? discoveryToApplied.snapshot() : previous.discoveryToApplied),
+				(measured ? discoveryToVisible.snapshot() : previous.discoveryToVisible));
+
+		// Publish the new ranking, replacing the previous snapshot at once. Only this
+		// thread publishes, so the version is just the next one
+		stats = published;
+		long visibleAt = System.nanoTime();
+		metrics.refreshed(visibleAt - refreshStart);
+
+		log.trace("Ranking updated from {} buffered documents. Rescored paths: {} Distinct paths: {}",
+				batch.size(), rescoredPaths, published.analyzedPaths);
+
+		batch.clear();
+		return visibleAt - refreshStart;
+	}
 
-		if (IDF_MODE.SMOOTH.equals(config.mode())) {
-			return Math.log10(totalNumberOfPaths / (termDf + 1f)) + 1f;
-		} else {
-			return Math.log10(totalNumberOfPaths / termDf);
+	/**
+	 * Record the freshness of the files of a batch with a discovery time
+	 *
+	 * @return if any file was measured
+	 */
+	private boolean recordFreshness(List<DocumentTermVector> batch, long appliedAt, long visibleAt) {
+		boolean measured = false;
+		for (DocumentTermVector termVector : batch) {
+			long discoveredAt = termVector.discoveredAt();
+			if (discoveredAt != DiscoveryTimes.UNKNOWN) {
+				discoveryToTokenized.record(termVector.tokenizedAt() - discoveredAt);
+				discoveryToApplied.record(appliedAt - discoveredAt);
+				discoveryToVisible.record(visibleAt - discoveredAt);
+				measured = true;
+			}
 		}
+		return measured;
 	}
 
 	/**
-	 * Basic statistics of the TF-IDF algorithm execution
+	 * Basic statistics of the TF-IDF algorithm execution. Immutable snapshot of a
+	 * ranking update, identified by its version. The freshness distributions are
+	 * cumulative, snapshots taken when the update was published
 	 *
 	 */
 	public static class TfidfProcessorStats {
 
-		private long analyzedPaths = 0l;
-		private long rankingLastUpdated = 0l;
-		private IDF_MODE idfMode = null;
-		private Collection<ImmutablePair<Path, Double>> ranking = new ArrayList<>();
+		private final long version;
+		private final long analyzedPaths;
+		private final long rankingLastUpdated;
+		private final IDF_MODE idfMode;
+		private final Collection<ImmutablePair<Path, Double>> ranking;
+		private final LatencyHistogram.Snapshot discoveryToTokenized;
+		private final LatencyHistogram.Snapshot discoveryToApplied;
+		private final LatencyHistogram.Snapshot discoveryToVisible;
+
+		private TfidfProcessorStats(long version, long analyzedPaths, long rankingLastUpdated, IDF_MODE idfMode,
+				Collection<ImmutablePair<Path, Double>> ranking, LatencyHistogram.Snapshot discoveryToTokenized,
+				LatencyHistogram.Snapshot discoveryToApplied, LatencyHistogram.Snapshot discoveryToVisible) {
+			this.version = version;
+			this.analyzedPaths = analyzedPaths;
+			this.rankingLastUpdated = rankingLastUpdated;
+			this.idfMode = idfMode;
+			this.ranking = ranking;
+			this.discoveryToTokenized = discoveryToTokenized;
+			this.discoveryToApplied = discoveryToApplied;
+			this.discoveryToVisible = discoveryToVisible;
+		}
+
+		/**
+		 * Number of ranking updates published up to this one, 0 before the first
+		 * update
+		 * 
+		 */
+		public long version() {
+			return this.version;
+		}
 
 		/**
 		 * Number of files/paths analyzed by the algorithm
@@ -203,11 +394,39 @@ public class TfidfProcessor implements Callable<Integer>, Sink<TermFrequency> {
 		}
 
 		/**
-		 * Descendant ordered collection of paths/files according to their TF-IDF score
+		 * Descendant ordered collection of paths/files according to their TF-IDF
+		 * score. Unmodifiable
 		 * 
 		 */
 		public Collection<ImmutablePair<Path, Double>> ranking() {
 			return this.ranking;
 		}
+
+		/**
+		 * Distribution of the time from the discovery of every file to the
+		 * computation of its term vector
+		 * 
+		 */
+		public LatencyHistogram.Snapshot discoveryToTokenized() {
+			return this.discoveryToTokenized;
+		}
+
+		/**
+		 * Distribution of the time from the discovery of every file to its term
+		 * vector being applied to the scores
+		 * 
+		 */
+		public LatencyHistogram.Snapshot discoveryToApplied() {
+			return this.discoveryToApplied;
+		}
+
+		/**
+		 * Distribution of the time from the discovery of every file to the
+		 * publication of a ranking including it
+		 * 
+		 */
+		public LatencyHistogram.Snapshot discoveryToVisible() {
+			return this.discoveryToVisible;
+		}
 	}
 }
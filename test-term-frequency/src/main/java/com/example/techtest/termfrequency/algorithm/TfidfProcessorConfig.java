@@ -14,40 +14,86 @@ public class TfidfProcessorConfig {
 	 * 
 	 */
 	public enum IDF_MODE {
-		NORMAL, SMOOTH
+		NORMAL, SMOOTH;
+
+		/**
+		 * Apply the IDF formula of the mode
+		 *
+		 * @param termDf             number of paths with the term
+		 * @param totalNumberOfPaths number of paths
+		 * @return the IDF of the term
+		 */
+		public double idf(float termDf, long totalNumberOfPaths) {
+			if (this == SMOOTH) {
+				return Math.log10(totalNumberOfPaths / (termDf + 1f)) + 1f;
+			} else {
+				return Math.log10(totalNumberOfPaths / termDf);
+			}
+		}
 	}
 
-	public static final int DEFAULT_POLL_TIMEOUT_MS = 1000;
+	public static final int DEFAULT_MAX_STALENESS_MS = 1000;
 	public static final int DEFAULT_MAX_TF_BUFFER_SIZE = 1000;
 	public static final int DEFAULT_RANKING_SIZE = Integer.MAX_VALUE;
+	public static final int DEFAULT_SHARDS = 1;
 
-	private int pollTimeoutMs = TfidfProcessorConfig.DEFAULT_POLL_TIMEOUT_MS;
+	private int maxStalenessMs = TfidfProcessorConfig.DEFAULT_MAX_STALENESS_MS;
 	private int maxTfBufferSize = TfidfProcessorConfig.DEFAULT_MAX_TF_BUFFER_SIZE;
 	private int rankingSize = TfidfProcessorConfig.DEFAULT_RANKING_SIZE;
 	private IDF_MODE mode = IDF_MODE.NORMAL;
+	private int shards = TfidfProcessorConfig.DEFAULT_SHARDS;
+
+	/**
+	 * Max time from the arrival of a DocumentTermVector to the publication of a
+	 * ranking including it. The ranking is refreshed earlier when the refreshes
+	 * are cheap enough @see RefreshScheduler
+	 *
+	 * @return the max staleness in ms
+	 */
+	public int maxStalenessMs() {
+		return this.maxStalenessMs;
+	}
+
+	/**
+	 * Set the max time from the arrival of a DocumentTermVector to the
+	 * publication of a ranking including it, in ms
+	 *
+	 * @return this TfidfProcessorConfig instance
+	 */
+	public TfidfProcessorConfig maxStalenessMs(int maxStalenessMs) {
+		this.maxStalenessMs = maxStalenessMs;
+		return this;
+	}
 
 	/**
 	 * Poll timeout reading data from the source queue
 	 *
 	 * @return the timeout value in ms
+	 * @deprecated the source queue is not polled periodically any more, replaced
+	 *             by {@link #maxStalenessMs()}
 	 */
+	@Deprecated
 	public int pollTimeoutMs() {
-		return this.pollTimeoutMs;
+		return maxStalenessMs();
 	}
 
 	/**
 	 * Set the poll timeout reading data from the source queue in ms
 	 *
 	 * @return this TfidfProcessorConfig instance
+	 * @deprecated the source queue is not polled periodically any more, replaced
+	 *             by {@link #maxStalenessMs(int)}
 	 */
+	@Deprecated
 	public TfidfProcessorConfig pollTimeoutMs(int pollTimeoutMs) {
-		this.pollTimeoutMs = pollTimeoutMs;
-		return this;
+		return maxStalenessMs(pollTimeoutMs);
 	}
 
 	/**
-	 * Max TermFrequency events to buffer before doing the TF-IDF computation and
-	 * rank update
+	 * Max term frequencies to buffer, adding the terms of every buffered
+	 * DocumentTermVector, before doing the TF-IDF computation and rank update.
+	 * The vectors arriving while a full buffer waits for a refresh stay in the
+	 * source queue
 	 *
 	 * @return the buffer size
 	 */
@@ -56,7 +102,7 @@ public class TfidfProcessorConfig {
 	}
 
 	/**
-	 * Set the max TermFrequency events to buffer before doing the TF-IDF
+	 * Set the max term frequencies to buffer before doing the TF-IDF
 	 * computation and rank update
 	 *
 	 * @return this TfidfProcessorConfig instance
@@ -104,4 +150,25 @@ public class TfidfProcessorConfig {
 		this.mode = mode;
 		return this;
 	}
+
+	/**
+	 * Number of partitions of the TF-IDF state, by term hash. With more than one,
+	 * the partitions are updated concurrently by a dedicated thread each. By
+	 * default a single partition, updated by the processor thread.
+	 *
+	 * @return the number of shards
+	 */
+	public int shards() {
+		return this.shards;
+	}
+
+	/**
+	 * Set the number of partitions of the TF-IDF state
+	 *
+	 * @return this TfidfProcessorConfig instance
+	 */
+	public TfidfProcessorConfig shards(int shards) {
+		this.shards = shards;
+		return this;
+	}
 }
@@ -0,0 +1,263 @@
+package com.example.techtest.termfrequency.algorithm;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+import com.example.techtest.termfrequency.algorithm.TfidfProcessorConfig.IDF_MODE;
+import com.example.techtest.termfrequency.util.Dictionary;
+import com.example.techtest.termfrequency.util.IntFloatHashMap;
+
+/**
+ * Partition of the TF-IDF scoring state for a subset of the terms, owned by a
+ * TfidfIndex @see TfidfIndex.
+ *
+ * Keeps the document frequency and idf of its terms, the frequencies of its
+ * terms in every path, and the partial score of every path computed only from
+ * its terms. Path ids are the global ones assigned by the owner index.
+ *
+ * Besides the partial score, the sums needed to bound the score of a path for
+ * a different total number of paths are kept, so a change in the number of
+ * paths doesn't force rescoring every path of the shard.
+ *
+ * Different shards can be updated concurrently, but every shard is expected to
+ * be used by a single thread at a time.
+ *
+ */
+class TfidfTermShard {
+
+	private static final int INITIAL_CAPACITY = 64;
+
+	private final IDF_MODE mode;
+	private final Dictionary<String> termDictionary = new Dictionary<>();
+
+	// Columns indexed by term id
+	private int[] documentFrequency = new int[INITIAL_CAPACITY];
+	private IntFloatHashMap[] rankableFrequenciesByTerm = new IntFloatHashMap[INITIAL_CAPACITY];
+	private double[] idfByTerm = new double[INITIAL_CAPACITY];
+	private double[] logDfByTerm = new double[INITIAL_CAPACITY];
+	private int[] idfVersionByTerm = new int[INITIAL_CAPACITY];
+
+	// Columns indexed by path id, null frequencies for paths without terms in
+	// this shard
+	private IntFloatHashMap[] frequenciesByPath = new IntFloatHashMap[INITIAL_CAPACITY];
+	private double[] partialScoreByPath = new double[INITIAL_CAPACITY];
+	private double[] freqSumByPath = new double[INITIAL_CAPACITY];
+	private double[] freqLogDfSumByPath = new double[INITIAL_CAPACITY];
+	private final BitSet partialRankablePaths = new BitSet();
+
+	private final BitSet dirtyTerms = new BitSet();
+	private final BitSet dirtyPaths = new BitSet();
+	private int scoresVersion = 1;
+
+	TfidfTermShard(IDF_MODE mode) {
+		this.mode = mode;
+	}
+
+	/**
+	 * Replaces the frequencies of this shard terms for a path
+	 *
+	 * @param pathId      global path id
+	 * @param termVector  document with all the terms of the path
+	 * @param termIndexes indexes of the document terms, grouped by shard
+	 * @param from        first index of this shard terms in termIndexes
+	 * @param to          last index (exclusive) of this shard terms in
+	 *                    termIndexes
+	 */
+	void apply(int pathId, DocumentTermVector termVector, int[] termIndexes, int from, int to) {
+		IntFloatHashMap previousFreqs = frequenciesByPath[pathId];
+		if (previousFreqs == null && from == to) {
+			return;
+		}
+
+		IntFloatHashMap pathFreqs = (from == to ? null : new IntFloatHashMap());
+		for (int n = from; n < to; n++) {
+			int i = termIndexes[n];
+			int termId = termDictionary.intern(termVector.term(i));
+			ensureTermCapacity(termId);
+			float freq = termVector.freq(i);
+
+			if (pathFreqs.put(termId, freq) && (previousFreqs == null || !previousFreqs.containsKey(termId))) {
+				documentFrequency[termId]++;
+				dirtyTerms.set(termId);
+			}
+
+			if (termVector.rankable(i)) {
+				if (rankableFrequenciesByTerm[termId] == null) {
+					rankableFrequenciesByTerm[termId] = new IntFloatHashMap();
+				}
+				rankableFrequenciesByTerm[termId].put(pathId, freq);
+			} else if (rankableFrequenciesByTerm[termId] != null) {
+				rankableFrequenciesByTerm[termId].remove(pathId);
+			}
+		}
+
+		// Terms no longer present in the path
+		if (previousFreqs != null) {
+			previousFreqs.forEach((termId, freq) -> {
+				if (pathFreqs == null || !pathFreqs.containsKey(termId)) {
+					documentFrequency[termId]--;
+					dirtyTerms.set(termId);
+					if (rankableFrequenciesByTerm[termId] != null) {
+						rankableFrequenciesByTerm[termId].remove(pathId);
+					}
+				}
+			});
+		}
+
+		frequenciesByPath[pathId] = pathFreqs;
+		dirtyPaths.set(pathId);
+	}
+
+	/**
+	 * Recomputes the partial scores of the paths affected by the changes applied
+	 * since the last update. The paths rescored are kept in
+	 * {@link #rescoredPaths()} until they are cleared.
+	 *
+	 * Scores of the rest of paths are not updated when only the total number of
+	 * paths changed, see {@link #rescore(BitSet, int)}.
+	 *
+	 * @param totalNumberOfPaths current number of paths
+	 */
+	void updateScores(int totalNumberOfPaths) {
+		scoresVersion++;
+
+		for (int termId = dirtyTerms.nextSetBit(0); termId >= 0; termId = dirtyTerms.nextSetBit(termId + 1)) {
+			IntFloatHashMap termFreqs = rankableFrequenciesByTerm[termId];
+			if (termFreqs != null) {
+				termFreqs.forEach((pathId, freq) -> dirtyPaths.set(pathId));
+			}
+		}
+
+		for (int pathId = dirtyPaths.nextSetBit(0); pathId >= 0; pathId = dirtyPaths.nextSetBit(pathId + 1)) {
+			updateScore(pathId, totalNumberOfPaths);
+		}
+
+		dirtyTerms.clear();
+	}
+
+	/**
+	 * Recomputes the partial scores of a set of paths, using the number of paths
+	 * of the last update
+	 *
+	 * @param pathIds            paths to rescore, only read
+	 * @param totalNumberOfPaths number of paths of the last update
+	 */
+	void rescore(BitSet pathIds, int totalNumberOfPaths) {
+		for (int pathId = pathIds.nextSetBit(0); pathId >= 0; pathId = pathIds.nextSetBit(pathId + 1)) {
+			updateScore(pathId, totalNumberOfPaths);
+		}
+	}
+
+	private void updateScore(int pathId, int totalNumberOfPaths) {
+		IntFloatHashMap pathFreqs = frequenciesByPath[pathId];
+		double score = 0d;
+		double freqSum = 0d;
+		double freqLogDfSum = 0d;
+		boolean rankable = false;
+
+		if (pathFreqs != null) {
+			for (int slot = 0; slot < pathFreqs.slots(); slot++) {
+				int termId = pathFreqs.keyAt(slot);
+				if (termId >= 0 && rankableFrequenciesByTerm[termId] != null) {
+					float freq = pathFreqs.valueAt(slot);
+					score += freq * idf(termId, totalNumberOfPaths);
+					freqSum += freq;
+					freqLogDfSum += freq * logDfByTerm[termId];
+					rankable = true;
+				}
+			}
+		}
+
+		partialScoreByPath[pathId] = score;
+		freqSumByPath[pathId] = freqSum;
+		freqLogDfSumByPath[pathId] = freqLogDfSum;
+		partialRankablePaths.set(pathId, rankable);
+	}
+
+	/**
+	 * IDF of a term, computed at most once per scores update, together with the
+	 * log of its document frequency
+	 */
+	private double idf(int termId, int totalNumberOfPaths) {
+		if (idfVersionByTerm[termId] != scoresVersion) {
+			idfByTerm[termId] = mode.idf(documentFrequency[termId], totalNumberOfPaths);
+			logDfByTerm[termId] = Math.log10(
+					IDF_MODE.SMOOTH.equals(mode) ? documentFrequency[termId] + 1f : documentFrequency[termId]);
+			idfVersionByTerm[termId] = scoresVersion;
+		}
+		return idfByTerm[termId];
+	}
+
+	/**
+	 * Paths rescored in the last update
+	 *
+	 */
+	BitSet rescoredPaths() {
+		return dirtyPaths;
+	}
+
+	/**
+	 * Forget the paths rescored in the last update
+	 *
+	 */
+	void clearRescoredPaths() {
+		dirtyPaths.clear();
+	}
+
+	/**
+	 * Partial score of a path, from the terms of this shard
+	 *
+	 */
+	double partialScore(int pathId) {
+		return partialScoreByPath[pathId];
+	}
+
+	/**
+	 * Sum of the frequencies of this shard rankable terms in a path, as of its
+	 * last rescore
+	 *
+	 */
+	double freqSum(int pathId) {
+		return freqSumByPath[pathId];
+	}
+
+	/**
+	 * Sum of the frequencies of this shard rankable terms in a path multiplied by
+	 * the log of their document frequency (plus one in SMOOTH mode), as of its
+	 * last rescore. The partial score of the path for any total number of paths N
+	 * is close to freqSum * log10(N) - freqLogDfSum (plus freqSum in SMOOTH mode)
+	 *
+	 */
+	double freqLogDfSum(int pathId) {
+		return freqLogDfSumByPath[pathId];
+	}
+
+	/**
+	 * If a path has any rankable term of this shard
+	 *
+	 */
+	boolean isRankable(int pathId) {
+		return partialRankablePaths.get(pathId);
+	}
+
+	void ensurePathCapacity(int pathId) {
+		if (pathId >= frequenciesByPath.length) {
+			int capacity = Math.max(frequenciesByPath.length * 2, pathId + 1);
+			frequenciesByPath = Arrays.copyOf(frequenciesByPath, capacity);
+			partialScoreByPath = Arrays.copyOf(partialScoreByPath, capacity);
+			freqSumByPath = Arrays.copyOf(freqSumByPath, capacity);
+			freqLogDfSumByPath = Arrays.copyOf(freqLogDfSumByPath, capacity);
+		}
+	}
+
+	private void ensureTermCapacity(int termId) {
+		if (termId >= documentFrequency.length) {
+			int capacity = Math.max(documentFrequency.length * 2, termId + 1);
+			documentFrequency = Arrays.copyOf(documentFrequency, capacity);
+			rankableFrequenciesByTerm = Arrays.copyOf(rankableFrequenciesByTerm, capacity);
+			idfByTerm = Arrays.copyOf(idfByTerm, capacity);
+			logDfByTerm = Arrays.copyOf(logDfByTerm, capacity);
+			idfVersionByTerm = Arrays.copyOf(idfVersionByTerm, capacity);
+		}
+	}
+}
@@ -0,0 +1,285 @@
+package com.example.techtest.termfrequency.algorithm;
+
+import java.util.Arrays;
+
+/**
+ * Top K paths by score, maintained in place as the scores of individual paths
+ * change. Used by the TfidfIndex @see TfidfIndex to keep the ranking without
+ * visiting every path on each update.
+ *
+ * Members are kept in a bounded min-heap, the worst member at the root, with
+ * the heap position of every member indexed by path id, so a changed member is
+ * just moved up or down. The paths left outside the heap are returned to the
+ * owner, which keeps them as candidates to be offered again when a member
+ * falls or is removed @see CandidatePaths.
+ *
+ * Paths with the same score are ordered by path, using the given order of path
+ * ids.
+ *
+ * This class is not thread safe.
+ *
+ */
+class TopScoredPaths {
+
+	/**
+	 * Order of the path ids, used to break ties between equal scores. Lower
+	 * paths are ranked first
+	 *
+	 */
+	interface PathIdOrder {
+		int compare(int pathId, int otherPathId);
+	}
+
+	private static final int INITIAL_CAPACITY = 64;
+	static final int NO_PATH = -1;
+
+	private final int capacity;
+	private final PathIdOrder pathIdOrder;
+
+	private int[] heap = new int[INITIAL_CAPACITY];
+	private int size = 0;
+
+	// Columns indexed by path id, heap position + 1 (0 for non members)
+	private int[] positionByPath = new int[INITIAL_CAPACITY];
+	private double[] scoreByPath = new double[INITIAL_CAPACITY];
+
+	/**
+	 * New instance
+	 *
+	 * @param capacity    max number of paths kept
+	 * @param pathIdOrder order of the path ids for equal scores
+	 */
+	TopScoredPaths(int capacity, PathIdOrder pathIdOrder) {
+		if (capacity < 0) {
+			throw new IllegalArgumentException("Invalid capacity " + capacity);
+		}
+		this.capacity = capacity;
+		this.pathIdOrder = pathIdOrder;
+	}
+
+	/**
+	 * Informs about the new score of a path
+	 *
+	 * @param pathId   path id
+	 * @param score    new score of the path
+	 * @param rankable if the path can be part of the ranking
+	 * @return the rankable path left outside the heap, this one or an evicted
+	 *         member, or NO_PATH
+	 */
+	int update(int pathId, double score, boolean rankable) {
+		ensurePathCapacity(pathId);
+		int position = positionByPath[pathId] - 1;
+
+		if (position >= 0) {
+			if (!rankable) {
+				removeAt(position);
+				return NO_PATH;
+			}
+
+			double previousScore = scoreByPath[pathId];
+			scoreByPath[pathId] = score;
+			if (score > previousScore) {
+				siftDown(position);
+			} else if (score < previousScore) {
+				siftUp(position);
+			}
+			return NO_PATH;
+
+		} else if (rankable) {
+			scoreByPath[pathId] = score;
+			return offer(pathId);
+		}
+		return NO_PATH;
+	}
+
+	/**
+	 * Offer a non member path, admitted if there is room or it is better than the
+	 * worst member
+	 *
+	 * @return the path left outside, or NO_PATH
+	 */
+	private int offer(int pathId) {
+		if (size < capacity) {
+			ensureHeapCapacity(size + 1);
+			heap[size] = pathId;
+			positionByPath[pathId] = size + 1;
+			siftUp(size++);
+			return NO_PATH;
+		} else if (size > 0 && isWorse(heap[0], pathId)) {
+			int evicted = heap[0];
+			positionByPath[evicted] = 0;
+			heap[0] = pathId;
+			positionByPath[pathId] = 1;
+			siftDown(0);
+			return evicted;
+		}
+		return pathId;
+	}
+
+	/**
+	 * If a path is a member of the heap
+	 *
+	 * @param pathId path id
+	 */
+	boolean contains(int pathId) {
+		return pathId < positionByPath.length && positionByPath[pathId] > 0;
+	}
+
+	/**
+	 * If a new path must beat the worst member to enter the heap
+	 *
+	 */
+	boolean isFull() {
+		return size >= capacity;
+	}
+
+	/**
+	 * Score of the worst member, the one a new path must beat when the heap is
+	 * full
+	 *
+	 */
+	double worstScore() {
+		return scoreByPath[heap[0]];
+	}
+
+	/**
+	 * Members of the heap, in no particular order
+	 *
+	 * @return the path ids
+	 */
+	int[] members() {
+		return Arrays.copyOf(heap, size);
+	}
+
+	/**
+	 * Max number of paths kept
+	 *
+	 */
+	int capacity() {
+		return capacity;
+	}
+
+	/**
+	 * Number of paths in the heap
+	 *
+	 */
+	int size() {
+		return size;
+	}
+
+	/**
+	 * Best paths in the heap, best first
+	 *
+	 * @param limit max number of paths to recover
+	 * @return the path ids
+	 */
+	int[] ordered(int limit) {
+		int[] sorted = Arrays.copyOf(heap, size);
+
+		// Heap sort of a copy, the worst paths are moved to the end
+		for (int last = size - 1; last > 0; last--) {
+			int worst = sorted[0];
+			sorted[0] = sorted[last];
+			sorted[last] = worst;
+			siftDown(sorted, last, 0);
+		}
+
+		return Arrays.copyOf(sorted, Math.min(limit, size));
+	}
+
+	private void removeAt(int position) {
+		int pathId = heap[position];
+		positionByPath[pathId] = 0;
+		size--;
+
+		if (position < size) {
+			int moved = heap[size];
+			heap[position] = moved;
+			positionByPath[moved] = position + 1;
+			siftUp(position);
+			siftDown(positionByPath[moved] - 1);
+		}
+	}
+
+	private void siftUp(int position) {
+		int pathId = heap[position];
+		while (position > 0) {
+			int parent = (position - 1) >>> 1;
+			if (!isWorse(pathId, heap[parent])) {
+				break;
+			}
+			heap[position] = heap[parent];
+			positionByPath[heap[position]] = position + 1;
+			position = parent;
+		}
+		heap[position] = pathId;
+		positionByPath[pathId] = position + 1;
+	}
+
+	private void siftDown(int position) {
+		int pathId = heap[position];
+		int half = size >>> 1;
+		while (position < half) {
+			int child = 2 * position + 1;
+			if (child + 1 < size && isWorse(heap[child + 1], heap[child])) {
+				child++;
+			}
+			if (!isWorse(heap[child], pathId)) {
+				break;
+			}
+			heap[position] = heap[child];
+			positionByPath[heap[position]] = position + 1;
+			position = child;
+		}
+		heap[position] = pathId;
+		positionByPath[pathId] = position + 1;
+	}
+
+	/**
+	 * Sift down over a copy of the heap, no positions are tracked
+	 */
+	private void siftDown(int[] paths, int size, int position) {
+		int pathId = paths[position];
+		int half = size >>> 1;
+		while (position < half) {
+			int child = 2 * position + 1;
+			if (child + 1 < size && isWorse(paths[child + 1], paths[child])) {
+				child++;
+			}
+			if (!isWorse(paths[child], pathId)) {
+				break;
+			}
+			paths[position] = paths[child];
+			position = child;
+		}
+		if (size > 0) {
+			paths[position] = pathId;
+		}
+	}
+
+	private boolean isWorse(int pathId, int otherPathId) {
+		return isWorse(scoreByPath[pathId], pathId, scoreByPath[otherPathId], otherPathId);
+	}
+
+	private boolean isWorse(double score, int pathId, double otherScore, int otherPathId) {
+		int cmp = Double.compare(score, otherScore);
+		if (cmp == 0) {
+			cmp = pathIdOrder.compare(otherPathId, pathId);
+		}
+		return cmp < 0;
+	}
+
+	private void ensureHeapCapacity(int heapSize) {
+		if (heapSize > heap.length) {
+			heap = Arrays.copyOf(heap, Math.max(heap.length * 2, heapSize));
+		}
+	}
+
+	private void ensurePathCapacity(int pathId) {
+		if (pathId >= positionByPath.length) {
+			int newCapacity = Math.max(positionByPath.length * 2, pathId + 1);
+			positionByPath = Arrays.copyOf(positionByPath, newCapacity);
+			scoreByPath = Arrays.copyOf(scoreByPath, newCapacity);
+		}
+	}
+}
@@ -1,25 +1,45 @@
 package com.example.techtest.termfrequency.boot;
 
+import java.io.IOException;
 import java.nio.charset.Charset;
 import java.nio.file.Path;
 import java.text.DecimalFormat;
 import java.time.Instant;
 import java.util.Arrays;
-import java.util.concurrent.BlockingQueue;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import javax.management.JMException;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
-import com.example.techtest.termfrequency.algorithm.TermFrequency;
+import com.example.techtest.termfrequency.algorithm.DocumentTermVector;
 import com.example.techtest.termfrequency.algorithm.TermsFrequencyInFileConfig;
 import com.example.techtest.termfrequency.algorithm.TermsFrequencyInFileProcessor;
 import com.example.techtest.termfrequency.algorithm.TfidfProcessor;
 import com.example.techtest.termfrequency.algorithm.TfidfProcessorConfig;
 import com.example.techtest.termfrequency.algorithm.TfidfProcessorConfig.IDF_MODE;
+import com.example.techtest.termfrequency.file.FileSettleStage;
 import com.example.techtest.termfrequency.file.NewFilesWatcher;
+import com.example.techtest.termfrequency.file.PollingFilesScanner;
+import com.example.techtest.termfrequency.index.InvertedIndex;
+import com.example.techtest.termfrequency.index.InvertedIndexConfig;
+import com.example.techtest.termfrequency.index.InvertedIndexSink;
+import com.example.techtest.termfrequency.store.TermVectorStore;
+import com.example.techtest.termfrequency.stream.DiscoveryTimes;
+import com.example.techtest.termfrequency.stream.MetricsReporter;
+import com.example.techtest.termfrequency.stream.MonitoredTransport;
+import com.example.techtest.termfrequency.stream.PipelineMetrics;
+import com.example.techtest.termfrequency.stream.RingBufferTransport;
+import com.example.techtest.termfrequency.stream.Transport;
+import com.example.techtest.termfrequency.token.Tokenizer;
 
 import picocli.CommandLine;
 import picocli.CommandLine.Command;
@@ -30,6 +50,22 @@ public class TermFrequencyCalculator implements Runnable {
 
 	private static final Logger log = LogManager.getLogger(TermFrequencyCalculator.class);
 	private static final DecimalFormat decimalFormat = new DecimalFormat("#.###");
+	private static final long SHUTDOWN_TIMEOUT_SECONDS = 10;
+
+	/**
+	 * Mode used to detect the new files in the source path
+	 *
+	 */
+	public enum SOURCE_MODE {
+		/**
+		 * Filesystem events @see NewFilesWatcher
+		 */
+		WATCH,
+		/**
+		 * Periodic scans @see PollingFilesScanner
+		 */
+		POLL
+	}
 
 	@Option(names = { "-s",
 			"--source-path" }, description = "Source path to read files from", required = true, paramLabel = "FILES_FOLDER")
@@ -55,6 +91,46 @@ public class TermFrequencyCalculator implements Runnable {
 	"--charset" }, description = "Charset used to read source files. Default UTF-8", paramLabel = "CHARSET_NAME")
 	String charsetName = null;
 
+	@Option(names = { "-fq",
+	"--files-queue-capacity" }, description = "Max number of files waiting to be processed. Default 65536", defaultValue = "65536", paramLabel = "CAPACITY")
+	int filesQueueCapacity = 0;
+
+	@Option(names = { "-vq",
+	"--vectors-queue-capacity" }, description = "Max number of processed files waiting for the TF-IDF computation. Default 1024", defaultValue = "1024", paramLabel = "CAPACITY")
+	int vectorsQueueCapacity = 0;
+
+	@Option(names = { "-i",
+	"--index-path" }, description = "Folder to persist the term vectors of the processed files, so only new or changed files are processed again on restart. Default none", paramLabel = "INDEX_FOLDER")
+	Path indexFolder = null;
+
+	@Option(names = { "-hc",
+	"--hash-contents" }, description = "Compare a checksum of the files contents to detect their changes, so the files only touched are not processed again, also on restart with an index path. Default false")
+	boolean hashContents = false;
+
+	@Option(names = { "-sm",
+	"--source-mode" }, description = "Mode used to detect the new files: WATCH, using the filesystem events, or POLL, scanning the source path periodically, for the filesystems where the events are not reliable. Default WATCH", paramLabel = "SOURCE_MODE")
+	SOURCE_MODE sourceMode = SOURCE_MODE.WATCH;
+
+	@Option(names = { "-pi",
+	"--poll-max-interval" }, description = "Max interval between scans of the source path in POLL mode, in ms, reached while no files are found. Default 10000", defaultValue = "10000", paramLabel = "INTERVAL_MS")
+	long pollMaxIntervalMs = 0;
+
+	@Option(names = { "-sp",
+	"--settle-period" }, description = "Time the size and modification time of a new file must be stable before processing it, in ms. 0 to process the files as soon as they are created. Default 1000", defaultValue = "1000", paramLabel = "PERIOD_MS")
+	long settlePeriodMs = 0;
+
+	@Option(names = { "-a",
+	"--index-all-terms" }, description = "Index every term of the files, so the ranking of any terms can be queried, instead of only the given terms. Default false")
+	boolean indexAllTerms = false;
+
+	@Option(names = { "-ms",
+	"--max-staleness" }, description = "Max time from the processing of a file to the ranking including it, in ms. The ranking is refreshed earlier when the refreshes are cheap enough. Default 1000", defaultValue = "1000", paramLabel = "STALENESS_MS")
+	int maxStalenessMs = 0;
+
+	@Option(names = { "-mf",
+	"--metrics-file" }, description = "File the pipeline metrics are appended to, a JSON line per report period. The metrics are also published as a JMX MBean. Default none", paramLabel = "METRICS_FILE")
+	Path metricsFile = null;
+
 	@Option(names = {"-h", "--help"}, usageHelp = true, description = "Display the help")
 	boolean usageHelpRequested;
 	
@@ -68,51 +144,137 @@ public class TermFrequencyCalculator implements Runnable {
 
 		int cores = Runtime.getRuntime().availableProcessors();
 		ExecutorService executorService = Executors.newCachedThreadPool();
+		TermVectorStore termVectorStore = null;
+		InvertedIndex invertedIndex = null;
+		PipelineMetrics pipelineMetrics = new PipelineMetrics();
+		DiscoveryTimes discoveryTimes = new DiscoveryTimes();
 
 		try {
+			try {
+				pipelineMetrics.registerMBean(PipelineMetrics.DEFAULT_OBJECT_NAME);
+			} catch (JMException e) {
+				log.warn("Pipeline metrics not published as MBean", e);
+			}
 
-			// Define queues to be used by the stream processors
-			BlockingQueue<Path> filesToProcessQueue = new LinkedBlockingQueue<>();
-			BlockingQueue<TermFrequency> termsFrequenciesQueue = new LinkedBlockingQueue<>();
+			// Define the transports to be used by the stream processors. Both are
+			// bounded, so the producers wait when their consumers are saturated
+			MonitoredTransport<Path> filesToProcessQueue = pipelineMetrics
+					.transport(new MonitoredTransport<>("files", new RingBufferTransport<>(filesQueueCapacity)));
+			MonitoredTransport<DocumentTermVector> termsFrequenciesQueue = pipelineMetrics.transport(
+					new MonitoredTransport<>("term-vectors", new RingBufferTransport<>(vectorsQueueCapacity)));
 
 			// Configure the stream processors
 			// New files source
-			NewFilesWatcher folderWatcher = NewFilesWatcher.watcherFor(sourceFolder);
-			folderWatcher.output(filesToProcessQueue);
+			Transport<Path> newFilesQueue = filesToProcessQueue;
+
+			// Files still being written wait until complete
+			FileSettleStage settleStage = null;
+			if (settlePeriodMs > 0) {
+				MonitoredTransport<Path> watchedFilesQueue = pipelineMetrics.transport(
+						new MonitoredTransport<>("watched-files", new RingBufferTransport<>(filesQueueCapacity)));
+				newFilesQueue = watchedFilesQueue;
+
+				settleStage = new FileSettleStage().quietPeriodMs(settlePeriodMs);
+				settleStage.metrics(pipelineMetrics.stage("file-settle"));
+				settleStage.discoveryTimes(discoveryTimes);
+				settleStage.from(watchedFilesQueue);
+				settleStage.output(filesToProcessQueue);
+			}
+
+			Callable<Integer> filesSource;
+			if (sourceMode == SOURCE_MODE.POLL) {
+				PollingFilesScanner folderScanner = PollingFilesScanner.scannerFor(sourceFolder);
+				folderScanner.includeModifiedFiles(true).hashContents(hashContents);
+				folderScanner.interval(Math.min(PollingFilesScanner.DEFAULT_MIN_INTERVAL_MS, pollMaxIntervalMs),
+						pollMaxIntervalMs);
+				folderScanner.metrics(pipelineMetrics.stage("new-files"));
+				folderScanner.discoveryTimes(discoveryTimes);
+				folderScanner.output(newFilesQueue);
+				filesSource = folderScanner;
+			} else {
+				NewFilesWatcher folderWatcher = NewFilesWatcher.watcherFor(sourceFolder);
+				folderWatcher.includeModifiedFiles(true).hashContents(hashContents);
+				folderWatcher.metrics(pipelineMetrics.stage("new-files"));
+				folderWatcher.discoveryTimes(discoveryTimes);
+				folderWatcher.output(newFilesQueue);
+				filesSource = folderWatcher;
+			}
 
 			// TF calculator processor config
 			TermsFrequencyInFileConfig termsFreqConfig = new TermsFrequencyInFileConfig();
-			termsFreqConfig.addTokensToInform(Arrays.asList(terms));
+			if (!indexAllTerms) {
+				termsFreqConfig.addTokensToInform(Arrays.asList(terms));
+			}
 			if (charsetName != null) {
 				termsFreqConfig.charset(Charset.forName(charsetName));
 			}
+			if (indexFolder != null) {
+				termVectorStore = TermVectorStore.open(indexFolder, termsFreqConfig.fingerprint(), hashContents);
+				termsFreqConfig.termVectorStore(termVectorStore);
+			}
 
-			// TF-IDF processor sink
-			TfidfProcessorConfig tfidfProcessorConfig = new TfidfProcessorConfig();
-			tfidfProcessorConfig.rankingSize(numResults);
-			tfidfProcessorConfig.mode(idfMode);
+			// TF-IDF sink: the processor ranking the given terms, or the inverted index
+			// of every term queried by the report loop
+			TfidfProcessor tfidfProcessor = null;
+			InvertedIndexSink invertedIndexSink = null;
+			List<String> queryTerms = null;
+			if (indexAllTerms) {
+				invertedIndex = new InvertedIndex(new InvertedIndexConfig().mode(idfMode));
+				invertedIndexSink = new InvertedIndexSink(invertedIndex);
+				invertedIndexSink.from(termsFrequenciesQueue);
+				invertedIndexSink.metrics(pipelineMetrics.stage("inverted-index"));
 
-			TfidfProcessor tfidfProcessor = new TfidfProcessor(tfidfProcessorConfig);
-			tfidfProcessor.from(termsFrequenciesQueue);
+				Tokenizer tokenizer = termsFreqConfig.newTokenizer();
+				queryTerms = Arrays.stream(terms).map(tokenizer::normalize).collect(Collectors.toList());
+			} else {
+				TfidfProcessorConfig tfidfProcessorConfig = new TfidfProcessorConfig();
+				tfidfProcessorConfig.rankingSize(numResults);
+				tfidfProcessorConfig.mode(idfMode);
+				tfidfProcessorConfig.shards(Math.max(1, cores / 4));
+				tfidfProcessorConfig.maxStalenessMs(maxStalenessMs);
+
+				tfidfProcessor = new TfidfProcessor(tfidfProcessorConfig);
+				tfidfProcessor.from(termsFrequenciesQueue);
+				tfidfProcessor.metrics(pipelineMetrics.stage("tfidf"));
+			}
 
 			// Begin the computation
 			int numberOfTFProcessors = (cores > 1 ? cores - 1 : 1);
-			// N TF processors
+			// N TF processors, sharing their metrics
 			for (int i = 0; i < numberOfTFProcessors; i++) {
 				TermsFrequencyInFileProcessor tfProcessor = new TermsFrequencyInFileProcessor(termsFreqConfig);
 				tfProcessor.from(filesToProcessQueue);
 				tfProcessor.output(termsFrequenciesQueue);
+				tfProcessor.metrics(pipelineMetrics.stage("term-frequencies"));
+				tfProcessor.discoveryTimes(discoveryTimes);
 
 				executorService.submit(tfProcessor);
 			}
 
 			// 1 source and 1 sink
-			executorService.submit(folderWatcher);
-			executorService.submit(tfidfProcessor);
+			executorService.submit(filesSource);
+			if (settleStage != null) {
+				executorService.submit(settleStage);
+			}
+			if (tfidfProcessor != null) {
+				executorService.submit(tfidfProcessor);
+			} else {
+				executorService.submit(invertedIndexSink);
+			}
+			if (metricsFile != null) {
+				executorService.submit(
+						new MetricsReporter(pipelineMetrics, metricsFile).periodMs(reportPeriod * 1000l));
+			}
 
 			// Very basic and dumb loop only to print the algorithm results
 			while (!Thread.currentThread().isInterrupted()) {
-				printStats(tfidfProcessor.getStats());
+				if (tfidfProcessor != null) {
+					printStats(tfidfProcessor.getStats());
+				} else {
+					printRanking(invertedIndex.totalNumberOfPaths(), System.currentTimeMillis(),
+							invertedIndex.search(queryTerms, numResults));
+				}
+				log.info("Queues: {} {}", filesToProcessQueue.getStats(), termsFrequenciesQueue.getStats());
 				Thread.sleep(reportPeriod * 1000l);
 			}
 
@@ -121,6 +283,45 @@ public class TermFrequencyCalculator implements Runnable {
 			Thread.currentThread().interrupt();
 		} finally {
 			executorService.shutdownNow();
+			awaitTermination(executorService);
+			closeQuietly(termVectorStore);
+			try {
+				pipelineMetrics.unregisterMBean(PipelineMetrics.DEFAULT_OBJECT_NAME);
+			} catch (JMException e) {
+				log.warn("Error unregistering the pipeline metrics MBean", e);
+			}
+			if (invertedIndex != null) {
+				invertedIndex.close();
+			}
+		}
+	}
+
+	/**
+	 * Wait for the components to stop, so the store and the index are not closed
+	 * while they are still used. The interrupted status is kept
+	 */
+	private void awaitTermination(ExecutorService executorService) {
+		boolean interrupted = Thread.interrupted();
+		try {
+			if (!executorService.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+				log.warn("Components not stopped after {} seconds", SHUTDOWN_TIMEOUT_SECONDS);
+			}
+		} catch (InterruptedException e) {
+			interrupted = true;
+		} finally {
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	private void closeQuietly(TermVectorStore termVectorStore) {
+		if (termVectorStore != null) {
+			try {
+				termVectorStore.close();
+			} catch (IOException e) {
+				log.warn("Error closing the term vector store", e);
+			}
 		}
 	}
 
@@ -129,13 +330,19 @@ public class TermFrequencyCalculator implements Runnable {
 			return;
 		}
 
-		long statsLastUpd = stats.rankingLastUpdated();
+		printRanking(stats.analyzedPaths(), stats.rankingLastUpdated(), stats.ranking().stream()
+				.map(r -> Map.entry(r.key(), r.value())).collect(Collectors.toList()));
+		log.info("Freshness from discovery: tokenized {} applied {} visible {}", stats.discoveryToTokenized(),
+				stats.discoveryToApplied(), stats.discoveryToVisible());
+	}
+
+	private void printRanking(long analyzedPaths, long rankingLastUpdated, List<Entry<Path, Double>> ranking) {
 		StringBuilder rankingSB = new StringBuilder();
-		stats.ranking().forEach(r -> rankingSB.append(this.sourceFolder.relativize(r.key()).toString())
-				.append(" - ").append(decimalFormat.format(r.value())).append("\n"));
+		ranking.forEach(r -> rankingSB.append(this.sourceFolder.relativize(r.getKey()).toString()).append(" - ")
+				.append(decimalFormat.format(r.getValue())).append("\n"));
 
-		log.info("Analyzed files: {}, ranking updated at: {}, idf-mode: {}, ranking: \n{}", stats.analyzedPaths(),
-				(statsLastUpd > 0 ? Instant.ofEpochMilli(statsLastUpd) : "-"), stats.idfMode(), rankingSB);
+		log.info("Analyzed files: {}, ranking updated at: {}, idf-mode: {}, ranking: \n{}", analyzedPaths,
+				(rankingLastUpdated > 0 ? Instant.ofEpochMilli(rankingLastUpdated) : "-"), idfMode, rankingSB);
 	}
 
 	public static void main(String[] args) {
@@ -0,0 +1,288 @@
+package com.example.techtest.termfrequency.file;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.example.techtest.termfrequency.stream.DiscoveryTimes;
+import com.example.techtest.termfrequency.stream.Processor;
+import com.example.techtest.termfrequency.stream.StageMetrics;
+import com.example.techtest.termfrequency.stream.Transport;
+import com.example.techtest.termfrequency.util.TimerWheel;
+
+/**
+ * Stage holding the files informed by a watcher until they are complete, so
+ * the files still being written are not processed from a truncated prefix.
+ *
+ * A file is complete when its size and last modified time don't change for a
+ * quiet period. Files already quiet when received, as those moved into place
+ * by a rename, which keeps their last modified time, are published at once.
+ * The pending files are checked again when their quiet period ends, using a
+ * timer wheel @see TimerWheel, so every pending file only costs a check per
+ * quiet period whatever the number of them.
+ *
+ * A file informed again while pending just extends its quiet period, and a
+ * pending file removed is discarded.
+ *
+ * The files received and published, and the time every file is held until it
+ * is complete, are recorded in the stage metrics @see StageMetrics.
+ *
+ */
+public class FileSettleStage implements Callable<Integer>, Processor<Path, Path> {
+
+	private static final Logger log = LogManager.getLogger(FileSettleStage.class);
+
+	public static final int RESULT_OK = 0;
+	public static final int RESULT_ERROR = -1;
+
+	public static final long DEFAULT_QUIET_PERIOD_MS = 1000;
+	public static final long DEFAULT_TICK_MS = 50;
+
+	private static final int WHEEL_SLOTS = 512;
+	private static final int MAX_BATCH_SIZE = 1024;
+
+	private long quietPeriodMs = DEFAULT_QUIET_PERIOD_MS;
+	private long tickMs = DEFAULT_TICK_MS;
+	private Transport<Path> sourceQueue = null;
+	private Transport<Path> outputQueue = null;
+	private DiscoveryTimes discoveryTimes = null;
+	private StageMetrics metrics = new StageMetrics("file-settle");
+
+	private final Map<Path, PendingFile> pendingFiles = new HashMap<>();
+	private volatile int pendingCount = 0;
+
+	/**
+	 * Time the size and last modified time of a file must not change to be
+	 * complete
+	 *
+	 * @param quietPeriodMs the quiet period, in ms
+	 * @return This instance
+	 */
+	public FileSettleStage quietPeriodMs(long quietPeriodMs) {
+		this.quietPeriodMs = quietPeriodMs;
+		return this;
+	}
+
+	/**
+	 * Resolution of the quiet periods
+	 *
+	 * @param tickMs the resolution, in ms
+	 * @return This instance
+	 */
+	public FileSettleStage tickMs(long tickMs) {
+		this.tickMs = tickMs;
+		return this;
+	}
+
+	/**
+	 * Define the discovery times of the files, the time of the files discarded
+	 * while pending is removed
+	 *
+	 * @param discoveryTimes
+	 * @return This instance
+	 */
+	public FileSettleStage discoveryTimes(DiscoveryTimes discoveryTimes) {
+		this.discoveryTimes = discoveryTimes;
+		return this;
+	}
+
+	/**
+	 * Define the metrics the held files are recorded to
+	 *
+	 * @param metrics
+	 * @return This instance
+	 */
+	public FileSettleStage metrics(StageMetrics metrics) {
+		if (metrics != null) {
+			this.metrics = metrics;
+		}
+		return this;
+	}
+
+	/**
+	 * Metrics of the held files
+	 *
+	 */
+	public StageMetrics metrics() {
+		return this.metrics;
+	}
+
+	@Override
+	public void from(Transport<Path> transport) {
+		if (transport != null) {
+			this.sourceQueue = transport;
+		}
+	}
+
+	@Override
+	public void output(Transport<Path> transport) {
+		this.outputQueue = transport;
+	}
+
+	/**
+	 * Number of files waiting to be complete
+	 *
+	 */
+	public int pendingFiles() {
+		return pendingCount;
+	}
+
+	@Override
+	public Integer call() throws Exception {
+
+		if (this.sourceQueue == null || this.outputQueue == null) {
+			log.error("No source or output queue provided");
+			return RESULT_ERROR;
+		}
+
+		TimerWheel<PendingFile> wheel = new TimerWheel<>(WHEEL_SLOTS, Math.max(1, tickMs),
+				System.currentTimeMillis());
+		List<Path> batch = new ArrayList<>();
+		List<PendingFile> expired = new ArrayList<>();
+
+		try {
+			while (!Thread.currentThread().isInterrupted()) {
+				long waitMs = Math.max(1, wheel.nextTickMs() - System.currentTimeMillis());
+				Path path = sourceQueue.poll(waitMs, TimeUnit.MILLISECONDS);
+				if (path != null) {
+					batch.add(path);
+					sourceQueue.drainTo(batch, MAX_BATCH_SIZE);
+					metrics.received(batch.size());
+					for (Path received : batch) {
+						receive(received, wheel);
+					}
+					batch.clear();
+				}
+
+				wheel.advance(System.currentTimeMillis(), expired::add);
+				for (PendingFile pendingFile : expired) {
+					check(pendingFile, wheel);
+				}
+				expired.clear();
+				pendingCount = pendingFiles.size();
+			}
+
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (Exception e) {
+			log.error("Error waiting for files to be complete", e);
+			return RESULT_ERROR;
+		}
+
+		return RESULT_OK;
+	}
+
+	private void receive(Path path, TimerWheel<PendingFile> wheel) throws IOException, InterruptedException {
+		BasicFileAttributes attrs = readAttributes(path);
+		if (attrs == null) {
+			pendingFiles.remove(path);
+			forget(path);
+			return;
+		}
+
+		long now = System.currentTimeMillis();
+		long lastModified = attrs.lastModifiedTime().toMillis();
+		PendingFile pendingFile = pendingFiles.get(path);
+
+		if (pendingFile == null) {
+			if (now - lastModified >= quietPeriodMs) {
+				// Already quiet, as when moved into place
+				outputQueue.put(path);
+				metrics.published(1);
+				metrics.processed(0l);
+				return;
+			}
+			pendingFile = new PendingFile(path, now);
+			pendingFiles.put(path, pendingFile);
+			pendingFile.update(attrs.size(), lastModified, now + quietPeriodMs);
+			wheel.schedule(pendingFile, pendingFile.deadline);
+		} else {
+			// Still being written, the scheduled check is moved when it expires
+			pendingFile.update(attrs.size(), lastModified, now + quietPeriodMs);
+		}
+	}
+
+	private void check(PendingFile pendingFile, TimerWheel<PendingFile> wheel)
+			throws IOException, InterruptedException {
+		if (pendingFiles.get(pendingFile.path) != pendingFile) {
+			// Stale check of a file removed
+			return;
+		}
+
+		long now = System.currentTimeMillis();
+		if (now < pendingFile.deadline) {
+			wheel.schedule(pendingFile, pendingFile.deadline);
+			return;
+		}
+
+		BasicFileAttributes attrs = readAttributes(pendingFile.path);
+		if (attrs == null) {
+			log.debug("Pending file {} removed", pendingFile.path);
+			pendingFiles.remove(pendingFile.path);
+			forget(pendingFile.path);
+			return;
+		}
+
+		long lastModified = attrs.lastModifiedTime().toMillis();
+		if (attrs.size() != pendingFile.size || lastModified != pendingFile.lastModified) {
+			pendingFile.update(attrs.size(), lastModified, now + quietPeriodMs);
+			wheel.schedule(pendingFile, pendingFile.deadline);
+			return;
+		}
+
+		pendingFiles.remove(pendingFile.path);
+		outputQueue.put(pendingFile.path);
+		metrics.published(1);
+		metrics.processed(TimeUnit.MILLISECONDS.toNanos(now - pendingFile.receivedAt));
+		log.debug("File {} complete", pendingFile.path);
+	}
+
+	private void forget(Path path) {
+		if (discoveryTimes != null) {
+			discoveryTimes.remove(path);
+		}
+	}
+
+	private static BasicFileAttributes readAttributes(Path path) throws IOException {
+		try {
+			return Files.readAttributes(path, BasicFileAttributes.class);
+		} catch (NoSuchFileException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Last observed state of a file waiting to be complete
+	 *
+	 */
+	private static class PendingFile {
+
+		private final Path path;
+		private final long receivedAt;
+		private long size;
+		private long lastModified;
+		private long deadline;
+
+		private PendingFile(Path path, long receivedAt) {
+			this.path = path;
+			this.receivedAt = receivedAt;
+		}
+
+		private void update(long size, long lastModified, long deadline) {
+			this.size = size;
+			this.lastModified = lastModified;
+			this.deadline = deadline;
+		}
+	}
+}
@@ -0,0 +1,149 @@
+package com.example.techtest.termfrequency.file;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32C;
+
+/**
+ * Cache of the last known state of the files informed by a watcher, so the
+ * files already informed and not changed since then are not informed again.
+ *
+ * The state of a file is its size and last modified time and, optionally, a
+ * CRC32C checksum of its contents, so files only touched, with a new last
+ * modified time but the same contents, are not informed again either. The files
+ * greater than a max size are not hashed, and are only compared by size and
+ * last modified time, so the owner of the cache, as the watcher thread, never
+ * reads more than that size to compare a file.
+ *
+ * This class is thread safe.
+ *
+ */
+public class FileStateCache {
+
+	public static final long DEFAULT_MAX_HASHED_SIZE = 1024 * 1024;
+
+	private static final int HASH_BUFFER_SIZE = 64 * 1024;
+
+	private final Map<Path, FileState> states = new ConcurrentHashMap<>();
+	private final boolean hashContents;
+	private final long maxHashedSize;
+
+	/**
+	 * New empty cache, hashing the files up to the default max size
+	 *
+	 * @param hashContents compare the checksum of the files contents when their
+	 *                     size is the same but their last modified time is not
+	 */
+	public FileStateCache(boolean hashContents) {
+		this(hashContents, DEFAULT_MAX_HASHED_SIZE);
+	}
+
+	/**
+	 * New empty cache
+	 *
+	 * @param hashContents  compare the checksum of the files contents when their
+	 *                      size is the same but their last modified time is not
+	 * @param maxHashedSize max size of the files hashed, in bytes
+	 */
+	public FileStateCache(boolean hashContents, long maxHashedSize) {
+		this.hashContents = hashContents;
+		this.maxHashedSize = maxHashedSize;
+	}
+
+	/**
+	 * Record the current state of a file
+	 *
+	 * @param file  file path
+	 * @param attrs current attributes of the file
+	 * @return true if the file is new or changed since its last recorded state
+	 * @throws IOException if the contents checksum can't be computed
+	 */
+	public boolean update(Path file, BasicFileAttributes attrs) throws IOException {
+		long size = attrs.size();
+		long lastModified = attrs.lastModifiedTime().toMillis();
+
+		FileState previous = states.get(file);
+		if (previous != null && previous.size == size && previous.lastModified == lastModified) {
+			return false;
+		}
+
+		long hash = 0l;
+		if (hashContents && size <= maxHashedSize) {
+			hash = checksum(file);
+			if (previous != null && previous.size == size && previous.hash == hash) {
+				states.put(file, new FileState(size, lastModified, hash));
+				return false;
+			}
+		}
+
+		states.put(file, new FileState(size, lastModified, hash));
+		return true;
+	}
+
+	/**
+	 * Whether a file has a recorded state, so it was already seen
+	 *
+	 * @param file file path
+	 */
+	public boolean contains(Path file) {
+		return states.containsKey(file);
+	}
+
+	/**
+	 * Forget the state of a file, so it is informed again when seen
+	 *
+	 * @param file file path
+	 */
+	public void remove(Path file) {
+		states.remove(file);
+	}
+
+	/**
+	 * Number of files with a recorded state
+	 *
+	 */
+	public int size() {
+		return states.size();
+	}
+
+	/**
+	 * CRC32C checksum of the contents of a file
+	 *
+	 * @param file file path
+	 * @return the checksum
+	 * @throws IOException if the file can't be read
+	 */
+	public static long checksum(Path file) throws IOException {
+		CRC32C crc = new CRC32C();
+		byte[] buffer = new byte[HASH_BUFFER_SIZE];
+		try (InputStream input = Files.newInputStream(file)) {
+			int read;
+			while ((read = input.read(buffer)) > 0) {
+				crc.update(buffer, 0, read);
+			}
+		}
+		return crc.getValue();
+	}
+
+	/**
+	 * Last recorded state of a file
+	 *
+	 */
+	private static class FileState {
+
+		private final long size;
+		private final long lastModified;
+		private final long hash;
+
+		private FileState(long size, long lastModified, long hash) {
+			this.size = size;
+			this.lastModified = lastModified;
+			this.hash = hash;
+		}
+	}
+}
@@ -1,24 +1,29 @@
 package com.example.techtest.termfrequency.file;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.nio.file.FileSystems;
-import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.nio.file.SimpleFileVisitor;
 import java.nio.file.StandardWatchEventKinds;
 import java.nio.file.WatchEvent;
 import java.nio.file.WatchKey;
 import java.nio.file.WatchService;
 import java.nio.file.attribute.BasicFileAttributes;
-import java.util.Queue;
-import java.util.concurrent.BlockingQueue;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
 
 import org.apache.logging.log4j.Logger;
 
+import com.example.techtest.termfrequency.stream.DiscoveryTimes;
 import com.example.techtest.termfrequency.stream.Source;
+import com.example.techtest.termfrequency.stream.StageMetrics;
+import com.example.techtest.termfrequency.stream.Transport;
 
 import org.apache.logging.log4j.LogManager;
 
@@ -30,6 +35,21 @@ import org.apache.logging.log4j.LogManager;
  * the selected path when the watcher was created. This behavior can be altered
  * using the {@link #includeExistingFiles(boolean) includeExistingFiles} method
  * 
+ * The folders are listed in parallel @see ParallelTreeWalker, registered
+ * before being listed, and the files found are published in batches while the
+ * rest of the tree is still being listed. When the events of a folder are
+ * lost, only that folder is visited again.
+ * 
+ * The last known state of every informed file is cached @see FileStateCache,
+ * so the files not changed since they were informed are not informed again
+ * when a folder is visited again after an overflow. Modified files can be
+ * informed again, enabling {@link #includeModifiedFiles(boolean)
+ * includeModifiedFiles}, so their new contents replace the previous ones.
+ * 
+ * The files published and the time spent visiting every folder tree are
+ * recorded in the watcher metrics @see StageMetrics, and the time every file
+ * is discovered can be tracked @see DiscoveryTimes.
+ * 
  * @author dmacia
  */
 public class NewFilesWatcher implements Callable<Integer>, Source<Path> {
@@ -42,10 +62,17 @@ public class NewFilesWatcher implements Callable<Integer>, Source<Path> {
 	private WatchService watchService;
 	private Path sourcePath;
 	private boolean includeExistingFiles = true;
-	private Queue<Path> outputQueue = null;
+	private boolean includeModifiedFiles = false;
+	private boolean hashContents = false;
+	private int walkerParallelism = Runtime.getRuntime().availableProcessors();
+	private FileStateCache fileStates = null;
+	private ParallelTreeWalker treeWalker = null;
+	private final Map<Path, WatchKey> watchedFolders = new ConcurrentHashMap<>();
+	private Transport<Path> outputQueue = null;
+	private DiscoveryTimes discoveryTimes = null;
+	private StageMetrics metrics = new StageMetrics("new-files");
 
 	private NewFilesWatcher(Path sourcePath) throws IOException {
-		watchService = FileSystems.getDefault().newWatchService();
 		this.sourcePath = sourcePath;
 	}
 
@@ -88,10 +115,80 @@ public class NewFilesWatcher implements Callable<Integer>, Source<Path> {
 		return this;
 	}
 
+	/**
+	 * Inform again about the files modified after being informed. If false, only
+	 * new files are informed
+	 * 
+	 * @param include include or filter modified files
+	 * @return This instance
+	 */
+	public NewFilesWatcher includeModifiedFiles(boolean include) {
+		this.includeModifiedFiles = include;
+		return this;
+	}
+
+	/**
+	 * Compare the checksum of the files contents to detect their changes, so the
+	 * files only touched are not informed again. Only the files up to
+	 * {@link FileStateCache#DEFAULT_MAX_HASHED_SIZE} are hashed, so a modified
+	 * file doesn't hold the watcher thread longer than reading that size. If
+	 * false, only their size and last modified time are compared
+	 * 
+	 * @param hash compare the files contents
+	 * @return This instance
+	 */
+	public NewFilesWatcher hashContents(boolean hash) {
+		this.hashContents = hash;
+		return this;
+	}
+
+	/**
+	 * Number of threads used to list the folders of the tree
+	 * 
+	 * @param parallelism number of threads
+	 * @return This instance
+	 */
+	public NewFilesWatcher walkerParallelism(int parallelism) {
+		this.walkerParallelism = parallelism;
+		return this;
+	}
+
+	/**
+	 * Define the discovery times the published files are recorded to
+	 * 
+	 * @param discoveryTimes
+	 * @return This instance
+	 */
+	public NewFilesWatcher discoveryTimes(DiscoveryTimes discoveryTimes) {
+		this.discoveryTimes = discoveryTimes;
+		return this;
+	}
+
+	/**
+	 * Define the metrics the published files are recorded to
+	 * 
+	 * @param metrics
+	 * @return This instance
+	 */
+	public NewFilesWatcher metrics(StageMetrics metrics) {
+		if (metrics != null) {
+			this.metrics = metrics;
+		}
+		return this;
+	}
+
+	/**
+	 * Metrics of the published files
+	 * 
+	 */
+	public StageMetrics metrics() {
+		return this.metrics;
+	}
+
 	@Override
-	public void output(BlockingQueue<Path> queue) {
-		if (queue != null) {
-			this.outputQueue = queue;
+	public void output(Transport<Path> transport) {
+		if (transport != null) {
+			this.outputQueue = transport;
 		}
 	}
 
@@ -103,18 +200,25 @@ public class NewFilesWatcher implements Callable<Integer>, Source<Path> {
 			return RESULT_ERROR;
 		}
 
+		ForkJoinPool walkerPool = ParallelTreeWalker.newPool(walkerParallelism);
 		try {
 			// Start with the folder current contents and/or register for new files
 			watchService = FileSystems.getDefault().newWatchService();
-			if (this.includeExistingFiles) {
-				visitFolder(this.sourcePath);
-			} else {
-				watchFolder(this.sourcePath);
-			}
+			fileStates = new FileStateCache(hashContents);
+			watchedFolders.clear();
+			ParallelTreeWalker.FileFilter fileFilter = (this.includeExistingFiles ? this::acceptFile
+					: this::recordFile);
+			treeWalker = new ParallelTreeWalker(walkerPool, this::watchFolder, fileFilter,
+					ParallelTreeWalker.DEFAULT_BATCH_SIZE);
+			visitFolder(this.sourcePath);
+			treeWalker = new ParallelTreeWalker(walkerPool, this::watchFolder, this::acceptFile,
+					ParallelTreeWalker.DEFAULT_BATCH_SIZE);
+			log.info("Watching {} folders in {}", watchedFolders.size(), this.sourcePath);
 
 			WatchKey key;
 			while (!Thread.currentThread().isInterrupted() && (key = watchService.take()) != null) {
 				Path path = (Path) key.watchable();
+				boolean overflow = false;
 
 				for (WatchEvent<?> event : key.pollEvents()) {
 					WatchEvent.Kind<?> eventKind = event.kind();
@@ -122,85 +226,178 @@ public class NewFilesWatcher implements Callable<Integer>, Source<Path> {
 					if (eventKind == StandardWatchEventKinds.ENTRY_CREATE) {
 						processNewFile(path.resolve((Path) event.context()));
 
+					} else if (eventKind == StandardWatchEventKinds.ENTRY_MODIFY) {
+						processModifiedFile(path.resolve((Path) event.context()));
+
+					} else if (eventKind == StandardWatchEventKinds.ENTRY_DELETE) {
+						fileStates.remove(path.resolve((Path) event.context()));
+
 					} else if (eventKind == StandardWatchEventKinds.OVERFLOW) {
-						log.warn("Overflow detected. File watch service should be reset");
-						watchService.close();
-						// Restart consumption from the beginning, visiting the already (maybe pending)
-						// existing files
-						watchService = FileSystems.getDefault().newWatchService();
-						visitFolder(this.sourcePath);
+						overflow = true;
 					}
 				}
 
-				key.reset();
+				// Events of this folder lost, visit it again. Its subfolders are recovered
+				// by their own overflow events, or walked if not registered yet. Only the
+				// new or changed files are informed
+				if (overflow) {
+					log.warn("Overflow detected in {}, visiting it again", path);
+					visitFolder(path);
+				}
+
+				if (!key.reset()) {
+					watchedFolders.remove(path, key);
+					log.debug("Folder {} no longer watched", path);
+				}
 			}
 
+		} catch (InterruptedIOException | InterruptedException e) {
+			log.warn("Filesystem monitoring interrupted");
+			Thread.currentThread().interrupt();
 		} catch (IOException e) {
 			log.error("Error monitoring filesystem for new files", e);
 			return RESULT_ERROR;
-		} catch (InterruptedException e) {
-			log.warn("Filesystem monitoring interrupted");
-			Thread.currentThread().interrupt();
+		} finally {
+			walkerPool.shutdownNow();
+			if (watchService != null) {
+				watchService.close();
+			}
 		}
 
 		return RESULT_OK;
 	}
 
 	/**
-	 * Visit a path processing all the existing files on it and registering all the
-	 * existing subfolders
+	 * Visit a path publishing the new or changed files on it, and registering all
+	 * the subfolders not registered yet. The folders are listed in parallel, and
+	 * the files published in batches as they are found
 	 * 
 	 * @param folderPath
-	 * @throws IOException
+	 * @throws IOException          if any folder couldn't be listed
+	 * @throws InterruptedException
 	 */
-	private void visitFolder(Path folderPath) throws IOException {
-		Files.walkFileTree(folderPath, new SimpleFileVisitor<Path>() {
-
-			@Override
-			public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
-				processNewFile(file);
-				return FileVisitResult.CONTINUE;
-			}
-
-			@Override
-			public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
-				if (exc == null) {
-					watchFolder(dir);
-				} else {
-					throw exc;
+	private void visitFolder(Path folderPath) throws IOException, InterruptedException {
+		long visitStart = System.nanoTime();
+		ParallelTreeWalker.Walk walk = treeWalker.walk(folderPath);
+		try {
+			List<Path> batch;
+			while ((batch = walk.next()) != null) {
+				if (discoveryTimes != null) {
+					discoveryTimes.discovered(batch);
 				}
-
-				return FileVisitResult.CONTINUE;
+				this.outputQueue.putAll(batch);
+				metrics.published(batch.size());
 			}
-		});
+		} finally {
+			walk.cancel();
+			metrics.refreshed(System.nanoTime() - visitStart);
+		}
 	}
 
 	/**
-	 * Register a folder to be watched
+	 * Register a folder to be watched, if not registered yet
 	 * 
 	 * @param folderPath
+	 * @return false if the folder was already registered
 	 * @throws IOException
 	 */
-	private void watchFolder(Path folderPath) throws IOException {
-		folderPath.register(watchService, StandardWatchEventKinds.ENTRY_CREATE);
+	private boolean watchFolder(Path folderPath) throws IOException {
+		if (watchedFolders.containsKey(folderPath)) {
+			return false;
+		}
+
+		WatchKey key;
+		if (includeModifiedFiles) {
+			key = folderPath.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+					StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+		} else {
+			key = folderPath.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+					StandardWatchEventKinds.ENTRY_DELETE);
+		}
 		log.debug("New folder {} registered to watch", folderPath);
+		return watchedFolders.putIfAbsent(folderPath, key) == null;
 	}
 
 	/**
-	 * Process any new file in the paths registered for watching
+	 * Process any new file in the paths registered for watching. Waits for room
+	 * in the output transport if it is full
 	 * 
 	 * @param newFilePath
 	 * @throws IOException
+	 * @throws InterruptedException if interrupted while waiting for room
 	 */
-	private void processNewFile(Path newFilePath) throws IOException {
+	private void processNewFile(Path newFilePath) throws IOException, InterruptedException {
 
 		log.debug("New file observed {} isDirectory: {} isReadable: {} isHidden: {}", newFilePath,
 				Files.isDirectory(newFilePath), Files.isReadable(newFilePath), Files.isHidden(newFilePath));
 
 		if (Files.isDirectory(newFilePath)) {
 			visitFolder(newFilePath);
-		} else if (Files.isReadable(newFilePath) && !Files.isHidden(newFilePath)) {
-			this.outputQueue.offer(newFilePath);
+		} else {
+			processFile(newFilePath);
+		}
+	}
+
+	/**
+	 * Process any modified file in the paths registered for watching. Changes of
+	 * the folders are ignored, their new files are informed by their own events
+	 * 
+	 * @param modifiedFilePath
+	 * @throws IOException
+	 * @throws InterruptedException if interrupted while waiting for room
+	 */
+	private void processModifiedFile(Path modifiedFilePath) throws IOException, InterruptedException {
+		log.debug("Modified file observed {}", modifiedFilePath);
+
+		if (!Files.isDirectory(modifiedFilePath)) {
+			processFile(modifiedFilePath);
+		}
+	}
+
+	/**
+	 * Publish a file, if accepted. Waits for room in the output transport if it is
+	 * full
+	 */
+	private void processFile(Path filePath) throws IOException, InterruptedException {
+		BasicFileAttributes attrs;
+		try {
+			attrs = Files.readAttributes(filePath, BasicFileAttributes.class);
+		} catch (NoSuchFileException e) {
+			log.debug("File {} removed before being processed", filePath);
+			return;
+		}
+
+		if (acceptFile(filePath, attrs)) {
+			if (discoveryTimes != null) {
+				discoveryTimes.discovered(filePath);
+			}
+			this.outputQueue.put(filePath);
+			metrics.published(1);
+		}
+	}
+
+	/**
+	 * Record the state of an existing file not to be published, so a later visit
+	 * of its folder, after an overflow, doesn't take it as new
+	 */
+	private boolean recordFile(Path filePath, BasicFileAttributes attrs) throws IOException {
+		acceptFile(filePath, attrs);
+		return false;
+	}
+
+	/**
+	 * Whether a file must be published: readable, and new or changed since it was
+	 * informed
+	 */
+	private boolean acceptFile(Path filePath, BasicFileAttributes attrs) throws IOException {
+		if (!attrs.isRegularFile() || !Files.isReadable(filePath) || Files.isHidden(filePath)) {
+			return false;
+		}
+
+		if (!fileStates.update(filePath, attrs)) {
+			log.debug("File {} not changed since informed", filePath);
+			return false;
 		}
+		return true;
 	}
 }
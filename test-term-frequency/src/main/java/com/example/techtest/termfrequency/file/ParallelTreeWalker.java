@@ -0,0 +1,291 @@
+package com.example.techtest.termfrequency.file;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Walker of a folder tree using a fork-join pool, every folder listed by its
+ * own task. The files found are handed over in batches to a single consumer
+ * while the walk goes on @see Walk, so the consumer can publish them while the
+ * rest of the tree is still being listed. Only a few batches are kept pending:
+ * the tasks block while the consumer is behind @see #put(BlockingQueue, Object,
+ * BooleanSupplier). The pools are created with a max size @see #newPool(int),
+ * so the blocked tasks don't make the pool add threads without limit.
+ *
+ * Every folder is passed to the folder visitor before being listed, so it can
+ * be registered for watching without missing any file created meanwhile. The
+ * subfolders already visited, as told by the visitor, are not walked again.
+ *
+ */
+class ParallelTreeWalker {
+
+	/**
+	 * Receiver of the folders found
+	 *
+	 */
+	interface FolderVisitor {
+
+		/**
+		 * Visit a folder before listing it
+		 *
+		 * @param folder
+		 * @return false if the folder was already visited and its contents must be
+		 *         skipped
+		 * @throws IOException
+		 */
+		boolean visit(Path folder) throws IOException;
+	}
+
+	/**
+	 * Filter of the files found
+	 *
+	 */
+	interface FileFilter {
+
+		/**
+		 * @param file
+		 * @param attrs attributes of the file, following links
+		 * @return true to hand over the file to the consumer
+		 * @throws IOException
+		 */
+		boolean accept(Path file, BasicFileAttributes attrs) throws IOException;
+	}
+
+	static final int DEFAULT_BATCH_SIZE = 256;
+	static final int MAX_PENDING_BATCHES = 64;
+
+	private static final long POLL_INTERVAL_MS = 100;
+	private static final long KEEP_ALIVE_SECONDS = 60;
+
+	private final ForkJoinPool pool;
+	private final FolderVisitor folderVisitor;
+	private final FileFilter fileFilter;
+	private final int batchSize;
+
+	ParallelTreeWalker(ForkJoinPool pool, FolderVisitor folderVisitor, FileFilter fileFilter, int batchSize) {
+		this.pool = pool;
+		this.folderVisitor = folderVisitor;
+		this.fileFilter = fileFilter;
+		this.batchSize = Math.max(1, batchSize);
+	}
+
+	/**
+	 * New pool for the walks. Blocked workers are compensated with new threads
+	 * only up to the parallelism, beyond it the blocked tasks just wait, as the
+	 * consumer of the batches is not run by the pool
+	 *
+	 * @param parallelism number of threads
+	 * @return the pool
+	 */
+	static ForkJoinPool newPool(int parallelism) {
+		int threads = Math.max(1, parallelism);
+		return new ForkJoinPool(threads, ForkJoinPool.defaultForkJoinWorkerThreadFactory, null, false, 0, threads, 1,
+				pool -> true, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS);
+	}
+
+	/**
+	 * Start the walk of a folder tree
+	 *
+	 * @param folder root of the tree. Listed even if already visited
+	 * @return the walk in progress
+	 */
+	Walk walk(Path folder) {
+		Walk walk = new Walk();
+		walk.task = pool.submit(new FolderTask(folder, walk, true));
+		return walk;
+	}
+
+	/**
+	 * Hand over an entity to a bounded queue from a fork-join task, blocking
+	 * while the queue is full. The pool is told the worker is blocked, so it can
+	 * keep its parallelism with other threads while below its max size
+	 *
+	 * @param queue     the queue
+	 * @param e         the entity
+	 * @param cancelled check to stop waiting, as cancelled tasks are not
+	 *                  interrupted
+	 * @return false if the entity was not queued, as cancelled
+	 * @throws InterruptedException
+	 */
+	static <E> boolean put(BlockingQueue<E> queue, E e, BooleanSupplier cancelled) throws InterruptedException {
+		if (queue.offer(e)) {
+			return true;
+		}
+
+		QueuePut<E> put = new QueuePut<>(queue, e, cancelled);
+		ForkJoinPool.managedBlock(put);
+		return put.queued;
+	}
+
+	/**
+	 * Walk in progress, with the batches of files found not consumed yet
+	 *
+	 */
+	static class Walk {
+
+		private final BlockingQueue<List<Path>> batches = new ArrayBlockingQueue<>(MAX_PENDING_BATCHES);
+		private ForkJoinTask<?> task;
+		private volatile boolean cancelled = false;
+
+		/**
+		 * Next batch of files, waiting for it if the walk is still in progress
+		 *
+		 * @return the batch, or null when the walk is finished
+		 * @throws IOException          if any folder couldn't be listed
+		 * @throws InterruptedException
+		 */
+		List<Path> next() throws IOException, InterruptedException {
+			while (true) {
+				boolean done = task.isDone();
+				List<Path> batch = batches.poll(done ? 0 : POLL_INTERVAL_MS, TimeUnit.MILLISECONDS);
+				if (batch != null) {
+					return batch;
+				}
+				if (done) {
+					Throwable error = task.getException();
+					for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+						if (cause instanceof UncheckedIOException) {
+							throw ((UncheckedIOException) cause).getCause();
+						}
+					}
+					if (error != null && !task.isCancelled()) {
+						throw new IOException("Error walking folders", error);
+					}
+					return null;
+				}
+			}
+		}
+
+		/**
+		 * Stop the walk, discarding the pending batches
+		 */
+		void cancel() {
+			cancelled = true;
+			task.cancel(true);
+			batches.clear();
+		}
+	}
+
+	/**
+	 * Listing of a folder, forking a new task for every subfolder
+	 *
+	 */
+	private class FolderTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final Path folder;
+		private final Walk walk;
+		private final boolean root;
+
+		private FolderTask(Path folder, Walk walk, boolean root) {
+			this.folder = folder;
+			this.walk = walk;
+			this.root = root;
+		}
+
+		@Override
+		protected void compute() {
+			List<FolderTask> subfolders = new ArrayList<>();
+			try {
+				if (!folderVisitor.visit(folder) && !root) {
+					return;
+				}
+
+				List<Path> batch = new ArrayList<>();
+				try (DirectoryStream<Path> entries = Files.newDirectoryStream(folder)) {
+					for (Path entry : entries) {
+						BasicFileAttributes attrs;
+						try {
+							attrs = Files.readAttributes(entry, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+							if (attrs.isSymbolicLink()) {
+								attrs = Files.readAttributes(entry, BasicFileAttributes.class);
+								if (attrs.isDirectory()) {
+									// Links to folders are not followed
+									continue;
+								}
+							}
+						} catch (NoSuchFileException e) {
+							continue;
+						}
+
+						if (attrs.isDirectory()) {
+							subfolders.add(new FolderTask(entry, walk, false));
+						} else if (fileFilter.accept(entry, attrs)) {
+							batch.add(entry);
+							if (batch.size() == batchSize) {
+								if (!put(walk.batches, batch, () -> walk.cancelled)) {
+									return;
+								}
+								batch = new ArrayList<>();
+							}
+						}
+					}
+				}
+				if (!batch.isEmpty() && !put(walk.batches, batch, () -> walk.cancelled)) {
+					return;
+				}
+
+			} catch (NoSuchFileException e) {
+				// Removed while walking
+				return;
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+
+			invokeAll(subfolders);
+		}
+	}
+
+	/**
+	 * Wait for room in a bounded queue, managed by the fork-join pool
+	 *
+	 */
+	private static class QueuePut<E> implements ForkJoinPool.ManagedBlocker {
+
+		private final BlockingQueue<E> queue;
+		private final E e;
+		private final BooleanSupplier cancelled;
+		private boolean queued = false;
+
+		private QueuePut(BlockingQueue<E> queue, E e, BooleanSupplier cancelled) {
+			this.queue = queue;
+			this.e = e;
+			this.cancelled = cancelled;
+		}
+
+		@Override
+		public boolean block() throws InterruptedException {
+			if (!queued) {
+				queued = queue.offer(e, POLL_INTERVAL_MS, TimeUnit.MILLISECONDS);
+			}
+			return queued || cancelled.getAsBoolean();
+		}
+
+		@Override
+		public boolean isReleasable() {
+			if (!queued) {
+				queued = queue.offer(e);
+			}
+			return queued || cancelled.getAsBoolean();
+		}
+	}
+}
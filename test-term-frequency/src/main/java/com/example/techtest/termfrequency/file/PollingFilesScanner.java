@@ -0,0 +1,570 @@
+package com.example.techtest.termfrequency.file;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.example.techtest.termfrequency.stream.DiscoveryTimes;
+import com.example.techtest.termfrequency.stream.Source;
+import com.example.techtest.termfrequency.stream.StageMetrics;
+import com.example.techtest.termfrequency.stream.Transport;
+
+/**
+ * Scanner to generate events as new files are created in a specific path,
+ * including all the possible subfolders, polling the filesystem instead of
+ * watching it, for the filesystems where the watch events are lost or not
+ * supported at all, as network or overlay mounts.
+ *
+ * Every scan walks the tree in parallel, a fork-join task per folder, keeping
+ * only a few batches of files found pending to be published. The
+ * modification time of every folder is kept, and the folders not changed since
+ * the previous scan, so without files added, removed or renamed, are not listed
+ * again: only their known subfolders are visited. The folders changed too
+ * recently, within the timestamps granularity of the filesystem, are always
+ * listed, as a new change could keep the same modification time.
+ *
+ * The last known state of every informed file is cached @see FileStateCache,
+ * so only the new or changed files are informed. Modified files can be informed
+ * again, enabling {@link #includeModifiedFiles(boolean) includeModifiedFiles},
+ * then the known files of unchanged folders are checked too.
+ *
+ * The interval between scans adapts to the activity: it is reset to the min
+ * interval after a scan finding files, and doubled up to the max interval after
+ * a scan finding nothing. It is never shorter than the last scan.
+ *
+ * The files published and the time spent on every scan are recorded in the
+ * scanner metrics @see StageMetrics, and the time every file is discovered can
+ * be tracked @see DiscoveryTimes.
+ *
+ */
+public class PollingFilesScanner implements Callable<Integer>, Source<Path> {
+
+	private static final Logger log = LogManager.getLogger(PollingFilesScanner.class);
+
+	public static final int RESULT_OK = 0;
+	public static final int RESULT_ERROR = -1;
+
+	public static final long DEFAULT_MIN_INTERVAL_MS = 500;
+	public static final long DEFAULT_MAX_INTERVAL_MS = 10000;
+	public static final long DEFAULT_TIMESTAMP_GRANULARITY_MS = 2000;
+
+	private static final int BATCH_SIZE = 256;
+	private static final long POLL_INTERVAL_MS = 100;
+
+	private Path sourcePath;
+	private boolean includeExistingFiles = true;
+	private boolean includeModifiedFiles = false;
+	private boolean hashContents = false;
+	private int scannerParallelism = Runtime.getRuntime().availableProcessors();
+	private long minIntervalMs = DEFAULT_MIN_INTERVAL_MS;
+	private long maxIntervalMs = DEFAULT_MAX_INTERVAL_MS;
+	private long timestampGranularityMs = DEFAULT_TIMESTAMP_GRANULARITY_MS;
+	private FileStateCache fileStates = null;
+	private final Map<Path, FolderSnapshot> folders = new ConcurrentHashMap<>();
+	private Transport<Path> outputQueue = null;
+	private DiscoveryTimes discoveryTimes = null;
+	private StageMetrics metrics = new StageMetrics("new-files");
+
+	private volatile long completedScans = 0;
+	private volatile int lastListedFolders = 0;
+	private volatile long currentIntervalMs = 0;
+
+	private PollingFilesScanner(Path sourcePath) {
+		this.sourcePath = sourcePath;
+	}
+
+	/**
+	 * Scan for new files in the specific path
+	 *
+	 * @param path folder to scan
+	 * @return
+	 */
+	public static PollingFilesScanner scannerFor(Path path) {
+		if (path == null || Files.notExists(path)) {
+			throw new IllegalArgumentException("Invalid path");
+		}
+
+		return new PollingFilesScanner(path);
+	}
+
+	/**
+	 * Scan for new files in the specific path
+	 *
+	 * @param path folder to scan
+	 * @return
+	 */
+	public static PollingFilesScanner scannerFor(String path) {
+		return scannerFor(Paths.get(path));
+	}
+
+	/**
+	 * Inform about already existing files in the source path when the scanner
+	 * starts. If false, any existing file in the source path are ignored and only
+	 * new ones are computed
+	 *
+	 * @param include include or filter existing files
+	 * @return This instance
+	 */
+	public PollingFilesScanner includeExistingFiles(boolean include) {
+		this.includeExistingFiles = include;
+		return this;
+	}
+
+	/**
+	 * Inform again about the files modified after being informed. If false, only
+	 * new files are informed
+	 *
+	 * @param include include or filter modified files
+	 * @return This instance
+	 */
+	public PollingFilesScanner includeModifiedFiles(boolean include) {
+		this.includeModifiedFiles = include;
+		return this;
+	}
+
+	/**
+	 * Compare the checksum of the files contents to detect their changes, so the
+	 * files only touched are not informed again. If false, only their size and
+	 * last modified time are compared
+	 *
+	 * @param hash compare the files contents
+	 * @return This instance
+	 */
+	public PollingFilesScanner hashContents(boolean hash) {
+		this.hashContents = hash;
+		return this;
+	}
+
+	/**
+	 * Number of threads used to scan the folders of the tree
+	 *
+	 * @param parallelism number of threads
+	 * @return This instance
+	 */
+	public PollingFilesScanner scannerParallelism(int parallelism) {
+		this.scannerParallelism = parallelism;
+		return this;
+	}
+
+	/**
+	 * Bounds of the interval between scans
+	 *
+	 * @param minIntervalMs interval after a scan finding files, in ms
+	 * @param maxIntervalMs interval reached while nothing is found, in ms
+	 * @return This instance
+	 */
+	public PollingFilesScanner interval(long minIntervalMs, long maxIntervalMs) {
+		if (minIntervalMs <= 0 || maxIntervalMs < minIntervalMs) {
+			throw new IllegalArgumentException("Invalid interval " + minIntervalMs + "-" + maxIntervalMs);
+		}
+		this.minIntervalMs = minIntervalMs;
+		this.maxIntervalMs = maxIntervalMs;
+		return this;
+	}
+
+	/**
+	 * Resolution of the folders modification time in the filesystem. Folders
+	 * changed within this time before being listed are listed again in the next
+	 * scan
+	 *
+	 * @param granularityMs the resolution, in ms
+	 * @return This instance
+	 */
+	public PollingFilesScanner timestampGranularityMs(long granularityMs) {
+		this.timestampGranularityMs = granularityMs;
+		return this;
+	}
+
+	/**
+	 * Number of scans completed
+	 *
+	 */
+	public long completedScans() {
+		return completedScans;
+	}
+
+	/**
+	 * Number of folders listed by the last scan, the rest were unchanged
+	 *
+	 */
+	public int lastListedFolders() {
+		return lastListedFolders;
+	}
+
+	/**
+	 * Current interval between scans, in ms
+	 *
+	 */
+	public long currentIntervalMs() {
+		return currentIntervalMs;
+	}
+
+	/**
+	 * Define the discovery times the published files are recorded to
+	 *
+	 * @param discoveryTimes
+	 * @return This instance
+	 */
+	public PollingFilesScanner discoveryTimes(DiscoveryTimes discoveryTimes) {
+		this.discoveryTimes = discoveryTimes;
+		return this;
+	}
+
+	/**
+	 * Define the metrics the published files are recorded to
+	 *
+	 * @param metrics
+	 * @return This instance
+	 */
+	public PollingFilesScanner metrics(StageMetrics metrics) {
+		if (metrics != null) {
+			this.metrics = metrics;
+		}
+		return this;
+	}
+
+	/**
+	 * Metrics of the published files
+	 *
+	 */
+	public StageMetrics metrics() {
+		return this.metrics;
+	}
+
+	@Override
+	public void output(Transport<Path> transport) {
+		if (transport != null) {
+			this.outputQueue = transport;
+		}
+	}
+
+	@Override
+	public Integer call() throws Exception {
+
+		if (this.outputQueue == null) {
+			log.error("No output queue was provided");
+			return RESULT_ERROR;
+		}
+
+		ForkJoinPool scannerPool = ParallelTreeWalker.newPool(scannerParallelism);
+		try {
+			fileStates = new FileStateCache(hashContents);
+			folders.clear();
+
+			// The existing files are recorded anyway, so they are not taken as new later
+			scan(scannerPool, includeExistingFiles);
+			log.info("Scanning {} folders in {}", folders.size(), this.sourcePath);
+
+			long intervalMs = minIntervalMs;
+			while (!Thread.currentThread().isInterrupted()) {
+				currentIntervalMs = intervalMs;
+				Thread.sleep(intervalMs);
+
+				long start = System.currentTimeMillis();
+				int found = scan(scannerPool, true);
+				long elapsed = System.currentTimeMillis() - start;
+
+				intervalMs = (found > 0 ? minIntervalMs : Math.min(maxIntervalMs, intervalMs * 2));
+				intervalMs = Math.max(intervalMs, elapsed);
+				log.debug("Scan found {} files listing {} of {} folders in {} ms", found, lastListedFolders,
+						folders.size(), elapsed);
+			}
+
+		} catch (InterruptedIOException | InterruptedException e) {
+			log.warn("Filesystem scanning interrupted");
+			Thread.currentThread().interrupt();
+		} catch (IOException e) {
+			log.error("Error scanning filesystem for new files", e);
+			return RESULT_ERROR;
+		} finally {
+			scannerPool.shutdownNow();
+		}
+
+		return RESULT_OK;
+	}
+
+	/**
+	 * Scan the whole tree, publishing the new or changed files in batches as they
+	 * are found
+	 *
+	 * @param pool
+	 * @param publish publish the files found or just record them
+	 * @return number of files found
+	 * @throws IOException          if any folder couldn't be scanned
+	 * @throws InterruptedException
+	 */
+	private int scan(ForkJoinPool pool, boolean publish) throws IOException, InterruptedException {
+		long scanStart = System.nanoTime();
+		Scan scan = new Scan(System.currentTimeMillis());
+		ForkJoinTask<?> task = pool.submit(new FolderTask(sourcePath, scan));
+		int found = 0;
+		try {
+			while (true) {
+				boolean done = task.isDone();
+				List<Path> batch = scan.batches.poll(done ? 0 : POLL_INTERVAL_MS, TimeUnit.MILLISECONDS);
+				if (batch != null) {
+					found += batch.size();
+					if (publish) {
+						if (discoveryTimes != null) {
+							discoveryTimes.discovered(batch);
+						}
+						this.outputQueue.putAll(batch);
+						metrics.published(batch.size());
+					}
+				} else if (done) {
+					break;
+				}
+			}
+		} finally {
+			scan.cancelled = true;
+			task.cancel(true);
+			metrics.refreshed(System.nanoTime() - scanStart);
+		}
+
+		Throwable error = task.getException();
+		for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+			if (cause instanceof UncheckedIOException) {
+				throw ((UncheckedIOException) cause).getCause();
+			}
+		}
+		if (error != null) {
+			throw new IOException("Error scanning folders", error);
+		}
+
+		lastListedFolders = scan.listedFolders.size();
+		completedScans++;
+		return found;
+	}
+
+	/**
+	 * Forget a removed folder and everything below it
+	 */
+	private void removeFolder(Path folderPath) {
+		FolderSnapshot snapshot = folders.remove(folderPath);
+		if (snapshot != null) {
+			snapshot.files.forEach(fileStates::remove);
+			snapshot.subfolders.forEach(this::removeFolder);
+			log.debug("Folder {} removed", folderPath);
+		}
+	}
+
+	/**
+	 * Whether a file must be published: readable, and new, or changed since it was
+	 * informed if the modified files are included. The state of a known file is
+	 * recorded anyway, so it is not taken as changed later
+	 */
+	private boolean acceptFile(Path filePath, BasicFileAttributes attrs) throws IOException {
+		if (!attrs.isRegularFile() || !Files.isReadable(filePath) || Files.isHidden(filePath)) {
+			return false;
+		}
+
+		boolean known = fileStates.contains(filePath);
+		return fileStates.update(filePath, attrs) && (includeModifiedFiles || !known);
+	}
+
+	/**
+	 * Contents of a folder when it was last listed
+	 *
+	 */
+	private static class FolderSnapshot {
+
+		private final long lastModified;
+		private final long listedAt;
+		private final List<Path> subfolders;
+		private final List<Path> files;
+
+		private FolderSnapshot(long lastModified, long listedAt, List<Path> subfolders, List<Path> files) {
+			this.lastModified = lastModified;
+			this.listedAt = listedAt;
+			this.subfolders = subfolders;
+			this.files = files;
+		}
+	}
+
+	/**
+	 * Scan in progress, with the batches of files found not published yet
+	 *
+	 */
+	private static class Scan {
+
+		private final long startedAt;
+		private final BlockingQueue<List<Path>> batches = new ArrayBlockingQueue<>(
+				ParallelTreeWalker.MAX_PENDING_BATCHES);
+		private final Set<Path> listedFolders = ConcurrentHashMap.newKeySet();
+		private volatile boolean cancelled = false;
+
+		private Scan(long startedAt) {
+			this.startedAt = startedAt;
+		}
+	}
+
+	/**
+	 * Scan of a folder, listing it only if changed, forking a new task for every
+	 * subfolder
+	 *
+	 */
+	private class FolderTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final Path folder;
+		private final Scan scan;
+
+		private FolderTask(Path folder, Scan scan) {
+			this.folder = folder;
+			this.scan = scan;
+		}
+
+		@Override
+		protected void compute() {
+			List<FolderTask> subfolderTasks = new ArrayList<>();
+			try {
+				BasicFileAttributes folderAttrs;
+				try {
+					folderAttrs = Files.readAttributes(folder, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+				} catch (NoSuchFileException e) {
+					removeFolder(folder);
+					return;
+				}
+				if (!folderAttrs.isDirectory()) {
+					removeFolder(folder);
+					return;
+				}
+
+				long lastModified = folderAttrs.lastModifiedTime().toMillis();
+				FolderSnapshot snapshot = folders.get(folder);
+				List<Path> batch = new ArrayList<>();
+				if (snapshot != null && snapshot.lastModified == lastModified
+						&& lastModified < snapshot.listedAt - timestampGranularityMs) {
+					// No entries added or removed, only the known files could be modified
+					if (includeModifiedFiles) {
+						for (Path file : snapshot.files) {
+							checkFile(file, batch);
+						}
+					}
+				} else {
+					snapshot = list(lastModified, snapshot, batch);
+				}
+				if (!batch.isEmpty() && !ParallelTreeWalker.put(scan.batches, batch, () -> scan.cancelled)) {
+					return;
+				}
+
+				for (Path subfolder : snapshot.subfolders) {
+					subfolderTasks.add(new FolderTask(subfolder, scan));
+				}
+
+			} catch (NoSuchFileException e) {
+				// Removed while scanning
+				removeFolder(folder);
+				return;
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+
+			invokeAll(subfolderTasks);
+		}
+
+		/**
+		 * List the folder, recording its new snapshot and forgetting the entries
+		 * removed since the previous one
+		 */
+		private FolderSnapshot list(long lastModified, FolderSnapshot previous, List<Path> batch)
+				throws IOException, InterruptedException {
+			List<Path> subfolders = new ArrayList<>();
+			List<Path> files = new ArrayList<>();
+			try (DirectoryStream<Path> entries = Files.newDirectoryStream(folder)) {
+				for (Path entry : entries) {
+					BasicFileAttributes attrs;
+					try {
+						attrs = Files.readAttributes(entry, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+						if (attrs.isSymbolicLink()) {
+							attrs = Files.readAttributes(entry, BasicFileAttributes.class);
+							if (attrs.isDirectory()) {
+								// Links to folders are not followed
+								continue;
+							}
+						}
+					} catch (NoSuchFileException e) {
+						continue;
+					}
+
+					if (attrs.isDirectory()) {
+						subfolders.add(entry);
+					} else {
+						files.add(entry);
+						if (acceptFile(entry, attrs)) {
+							addToBatch(entry, batch);
+						}
+					}
+				}
+			}
+
+			if (previous != null) {
+				Set<Path> currentFiles = new HashSet<>(files);
+				previous.files.stream().filter(f -> !currentFiles.contains(f)).forEach(fileStates::remove);
+				Set<Path> currentSubfolders = new HashSet<>(subfolders);
+				previous.subfolders.stream().filter(f -> !currentSubfolders.contains(f))
+						.forEach(PollingFilesScanner.this::removeFolder);
+			}
+
+			FolderSnapshot snapshot = new FolderSnapshot(lastModified, scan.startedAt,
+					Collections.unmodifiableList(subfolders), Collections.unmodifiableList(files));
+			folders.put(folder, snapshot);
+			scan.listedFolders.add(folder);
+			return snapshot;
+		}
+
+		/**
+		 * Check a known file of an unchanged folder
+		 */
+		private void checkFile(Path file, List<Path> batch) throws IOException, InterruptedException {
+			BasicFileAttributes attrs;
+			try {
+				attrs = Files.readAttributes(file, BasicFileAttributes.class);
+			} catch (NoSuchFileException e) {
+				return;
+			}
+			if (acceptFile(file, attrs)) {
+				addToBatch(file, batch);
+			}
+		}
+
+		private void addToBatch(Path file, List<Path> batch) throws InterruptedException {
+			batch.add(file);
+			if (batch.size() == BATCH_SIZE) {
+				if (!ParallelTreeWalker.put(scan.batches, new ArrayList<>(batch), () -> scan.cancelled)) {
+					throw new CancellationException("Scan cancelled");
+				}
+				batch.clear();
+			}
+		}
+	}
+}
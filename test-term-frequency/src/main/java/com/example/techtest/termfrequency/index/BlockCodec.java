@@ -0,0 +1,164 @@
+package com.example.techtest.termfrequency.index;
+
+/**
+ * Frame of reference codec of the postings blocks of a segment @see
+ * IndexSegment.
+ *
+ * Every block packs up to BLOCK_SIZE values with the same number of bits per
+ * value, the bits needed by the greatest one, in consecutive int words. The
+ * doc ids are packed as the gap from the previous doc id, and the term
+ * frequencies as the term counts, the frequency being the count divided by the
+ * total tokens of the doc, or as the difference of their float bits from the
+ * lowest ones of the block when they are not such a ratio. Either way the
+ * frequencies are restored exactly.
+ *
+ * Decoding works on whole blocks with straight loops without branches nor
+ * calls, so the JIT can unroll and vectorize them.
+ *
+ */
+final class BlockCodec {
+
+	static final int BLOCK_SIZE = 128;
+
+	private BlockCodec() {
+	}
+
+	/**
+	 * Number of bits needed to pack every value
+	 *
+	 * @param values non negative values
+	 * @param count  number of values
+	 */
+	static int bitsRequired(int[] values, int count) {
+		int or = 0;
+		for (int i = 0; i < count; i++) {
+			or |= values[i];
+		}
+		return 32 - Integer.numberOfLeadingZeros(or);
+	}
+
+	/**
+	 * Number of words used to pack a number of values, including a padding word
+	 * so every value can be read from two consecutive words
+	 *
+	 * @param count number of values
+	 * @param bits  bits per value
+	 */
+	static int packedWords(int count, int bits) {
+		return (bits == 0 ? 0 : (count * bits + 31) / 32 + 1);
+	}
+
+	/**
+	 * Pack some values in the given words
+	 *
+	 * @param values non negative values, every one fitting in the given bits
+	 * @param count  number of values
+	 * @param bits   bits per value
+	 * @param words  destination words, with room for packedWords(count, bits)
+	 * @param offset position of the first destination word
+	 */
+	static void pack(int[] values, int count, int bits, int[] words, int offset) {
+		if (bits == 0) {
+			return;
+		}
+
+		for (int i = 0; i < count; i++) {
+			int bitPosition = i * bits;
+			int word = offset + (bitPosition >>> 5);
+			int shift = bitPosition & 31;
+			long packed = ((long) values[i] & 0xFFFFFFFFL) << shift;
+			words[word] |= (int) packed;
+			words[word + 1] |= (int) (packed >>> 32);
+		}
+	}
+
+	/**
+	 * Unpack some values from the given words
+	 *
+	 * @param words  source words
+	 * @param offset position of the first source word
+	 * @param count  number of values
+	 * @param bits   bits per value
+	 * @param values destination values
+	 */
+	static void unpack(int[] words, int offset, int count, int bits, int[] values) {
+		if (bits == 0) {
+			for (int i = 0; i < count; i++) {
+				values[i] = 0;
+			}
+			return;
+		}
+
+		long mask = (1L << bits) - 1;
+		for (int i = 0; i < count; i++) {
+			int bitPosition = i * bits;
+			int word = offset + (bitPosition >>> 5);
+			long pair = ((long) words[word] & 0xFFFFFFFFL) | ((long) words[word + 1] << 32);
+			values[i] = (int) ((pair >>> (bitPosition & 31)) & mask);
+		}
+	}
+
+	/**
+	 * Unpack a single value from the given words
+	 *
+	 * @param words  source words
+	 * @param offset position of the first source word
+	 * @param index  position of the value
+	 * @param bits   bits per value
+	 */
+	static int unpack(int[] words, int offset, int index, int bits) {
+		if (bits == 0) {
+			return 0;
+		}
+
+		int bitPosition = index * bits;
+		int word = offset + (bitPosition >>> 5);
+		long pair = ((long) words[word] & 0xFFFFFFFFL) | ((long) words[word + 1] << 32);
+		return (int) ((pair >>> (bitPosition & 31)) & ((1L << bits) - 1));
+	}
+
+	/**
+	 * Turn doc id gaps into doc ids
+	 *
+	 * @param values gaps, replaced by the doc ids
+	 * @param count  number of values
+	 * @param base   doc id the first gap is relative to
+	 */
+	static void prefixSum(int[] values, int count, int base) {
+		int doc = base;
+		for (int i = 0; i < count; i++) {
+			doc += values[i];
+			values[i] = doc;
+		}
+	}
+
+	/**
+	 * Turn the differences of the frequencies bits into frequencies
+	 *
+	 * @param values differences from the base bits
+	 * @param count  number of values
+	 * @param base   lowest float bits of the block
+	 * @param freqs  destination frequencies
+	 */
+	static void toFreqs(int[] values, int count, int base, float[] freqs) {
+		for (int i = 0; i < count; i++) {
+			freqs[i] = Float.intBitsToFloat(base + values[i]);
+		}
+	}
+
+	/**
+	 * Turn the term counts into frequencies, divided by the total tokens of their
+	 * docs as the frequencies were computed
+	 *
+	 * @param values differences of the counts from the base count
+	 * @param count  number of values
+	 * @param base   lowest count of the block
+	 * @param totals total tokens of the doc of every value
+	 * @param freqs  destination frequencies
+	 */
+	static void toFreqs(int[] values, int count, int base, int[] totals, float[] freqs) {
+		for (int i = 0; i < count; i++) {
+			freqs[i] = (float) (base + values[i]) / (float) totals[i];
+		}
+	}
+}
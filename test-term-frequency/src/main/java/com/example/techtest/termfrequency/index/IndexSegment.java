@@ -0,0 +1,414 @@
+package com.example.techtest.termfrequency.index;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * Immutable part of an InvertedIndex @see InvertedIndex, with the postings of
+ * a set of documents.
+ *
+ * Terms are kept sorted, and the postings of every term (doc id and term
+ * frequency, ordered by doc id) are split in blocks of BlockCodec.BLOCK_SIZE
+ * postings, compressed with frame of reference @see BlockCodec: the doc id
+ * gaps and the frequencies of every block are packed with the bits needed by
+ * its greatest value. The frequencies are stored as the term counts, and the
+ * total tokens of every doc once in the segment @see DocTotals, so a block of
+ * small counts takes a few bits per posting. The blocks with any frequency
+ * not rebuilt exactly from a count, as the docs without total tokens, keep the
+ * frequency bits instead. The skip data of every block, its last doc id and
+ * position, lets the cursors skip the blocks without a target doc without
+ * decoding them. Doc ids are the global ones assigned by the index, so
+ * segments can be merged without remapping them.
+ *
+ */
+class IndexSegment {
+
+	// Block header: doc and freq bits and freqs mode, and the freq base
+	static final int BLOCK_HEADER_WORDS = 2;
+
+	// Freqs of a block packed as float bits, or as term counts
+	static final int FLOAT_FREQS = 0;
+	static final int TERM_COUNTS = 1;
+
+	private final String[] terms;
+	private final int[] firstBlocks;
+	private final int[] docFreqs;
+	private final float[] maxFreqs;
+	private final int[] blockOffsets;
+	private final int[] blockLastDocs;
+	private final int[] data;
+	private final DocTotals docTotals;
+	private final int docCount;
+	private final int minDoc;
+	private final int maxDoc;
+
+	private IndexSegment(String[] terms, int[] firstBlocks, int[] docFreqs, float[] maxFreqs, int[] blockOffsets,
+			int[] blockLastDocs, int[] data, DocTotals docTotals, BitSet docs) {
+		this.terms = terms;
+		this.firstBlocks = firstBlocks;
+		this.docFreqs = docFreqs;
+		this.maxFreqs = maxFreqs;
+		this.blockOffsets = blockOffsets;
+		this.blockLastDocs = blockLastDocs;
+		this.data = data;
+		this.docTotals = docTotals;
+		this.docCount = docs.cardinality();
+		this.minDoc = Math.max(0, docs.nextSetBit(0));
+		this.maxDoc = docs.length() - 1;
+	}
+
+	/**
+	 * Position of a term in the segment
+	 *
+	 * @param term
+	 * @return the term index, or a negative value if the term is not in the
+	 *         segment
+	 */
+	int termIndex(String term) {
+		return Arrays.binarySearch(terms, term);
+	}
+
+	/**
+	 * Number of postings of a term, including those of deleted documents
+	 *
+	 * @param termIndex
+	 */
+	int docFreq(int termIndex) {
+		return docFreqs[termIndex];
+	}
+
+	/**
+	 * Greatest frequency in the postings of a term, bounding its contribution to
+	 * the score of any document
+	 *
+	 * @param termIndex
+	 */
+	float maxFreq(int termIndex) {
+		return maxFreqs[termIndex];
+	}
+
+	/**
+	 * New cursor over the postings of a term
+	 *
+	 * @param termIndex
+	 */
+	PostingsCursor postings(int termIndex) {
+		return new PostingsCursor(data, blockOffsets, blockLastDocs, docTotals, firstBlocks[termIndex],
+				docFreqs[termIndex]);
+	}
+
+	/**
+	 * Number of documents in the segment, including the deleted ones
+	 *
+	 */
+	int docCount() {
+		return docCount;
+	}
+
+	/**
+	 * Lowest doc id in the segment
+	 *
+	 */
+	int minDoc() {
+		return minDoc;
+	}
+
+	/**
+	 * Greatest doc id in the segment, or -1 if it is empty
+	 *
+	 */
+	int maxDoc() {
+		return maxDoc;
+	}
+
+	/**
+	 * Number of distinct terms in the segment
+	 *
+	 */
+	int termCount() {
+		return terms.length;
+	}
+
+	/**
+	 * Size of the encoded postings and their skip data, in bytes
+	 *
+	 */
+	long postingsBytes() {
+		return 4l * (data.length + blockOffsets.length + blockLastDocs.length + firstBlocks.length + docFreqs.length
+				+ maxFreqs.length + docTotals.words.length);
+	}
+
+	/**
+	 * Merge adjacent segments, ordered by doc id, into a new one without the
+	 * postings of the deleted documents
+	 *
+	 * @param segments    segments to merge, in doc id order
+	 * @param deletedDocs ids of the deleted documents
+	 * @return the merged segment
+	 */
+	static IndexSegment merge(List<IndexSegment> segments, BitSet deletedDocs) {
+		TreeSet<String> mergedTerms = new TreeSet<>();
+		segments.forEach(segment -> mergedTerms.addAll(Arrays.asList(segment.terms)));
+
+		Writer writer = new Writer();
+		for (IndexSegment segment : segments) {
+			DocTotals totals = segment.docTotals;
+			for (int doc = totals.firstDoc; doc < totals.firstDoc + totals.count; doc++) {
+				if (!deletedDocs.get(doc)) {
+					writer.totalTokens(doc, totals.get(doc));
+				}
+			}
+		}
+		for (String term : mergedTerms) {
+			writer.startTerm(term);
+			for (IndexSegment segment : segments) {
+				int termIndex = segment.termIndex(term);
+				if (termIndex >= 0) {
+					PostingsCursor cursor = segment.postings(termIndex);
+					for (int doc = cursor.nextDoc(); doc != PostingsCursor.NO_MORE_DOCS; doc = cursor.nextDoc()) {
+						if (!deletedDocs.get(doc)) {
+							writer.addPosting(doc, cursor.freq());
+						}
+					}
+				}
+			}
+			writer.endTerm();
+		}
+		return writer.finish();
+	}
+
+	/**
+	 * Total tokens of the docs of a segment, packed with the bits needed by the
+	 * greatest one, 0 for the unknown ones
+	 *
+	 */
+	static class DocTotals {
+
+		private final int firstDoc;
+		private final int count;
+		private final int bits;
+		private final int[] words;
+
+		private DocTotals(int firstDoc, int count, int bits, int[] words) {
+			this.firstDoc = firstDoc;
+			this.count = count;
+			this.bits = bits;
+			this.words = words;
+		}
+
+		/**
+		 * Total tokens of a doc
+		 *
+		 * @param doc
+		 * @return the total tokens, or 0 if unknown
+		 */
+		int get(int doc) {
+			int index = doc - firstDoc;
+			return (index < 0 || index >= count ? 0 : BlockCodec.unpack(words, 0, index, bits));
+		}
+
+		/**
+		 * Total tokens of some docs
+		 *
+		 * @param docs   doc ids
+		 * @param count  number of docs
+		 * @param totals destination total tokens
+		 */
+		void get(int[] docs, int count, int[] totals) {
+			for (int i = 0; i < count; i++) {
+				totals[i] = get(docs[i]);
+			}
+		}
+	}
+
+	/**
+	 * Writer of new segments. The total tokens of the docs are expected first, by
+	 * doc id, then the terms in order, and the postings of every term by doc id
+	 *
+	 */
+	static class Writer {
+
+		private final List<String> terms = new ArrayList<>();
+		private int[] firstBlocks = new int[64];
+		private int[] docFreqs = new int[64];
+		private float[] maxFreqs = new float[64];
+		private int[] blockOffsets = new int[64];
+		private int[] blockLastDocs = new int[64];
+		private int blocks = 0;
+		private int[] data = new int[1024];
+		private int dataSize = 0;
+		private final BitSet docs = new BitSet();
+		private int totalsFirstDoc = -1;
+		private int[] totals = new int[64];
+		private int totalsCount = 0;
+
+		private String term = null;
+		private int termFirstBlock = 0;
+		private int termDocFreq = 0;
+		private float termMaxFreq = 0f;
+		private int lastDoc = 0;
+
+		private final int[] blockDocs = new int[BlockCodec.BLOCK_SIZE];
+		private final float[] blockFreqs = new float[BlockCodec.BLOCK_SIZE];
+		private final int[] values = new int[BlockCodec.BLOCK_SIZE];
+		private final int[] freqValues = new int[BlockCodec.BLOCK_SIZE];
+		private final int[] countValues = new int[BlockCodec.BLOCK_SIZE];
+		private int blockSize = 0;
+
+		/**
+		 * Record the total tokens of a doc, so the frequencies of its postings can be
+		 * stored as term counts
+		 *
+		 * @param doc         doc id, greater than the previous ones
+		 * @param totalTokens total tokens of the doc, 0 if unknown
+		 */
+		void totalTokens(int doc, long totalTokens) {
+			if (totalsFirstDoc < 0) {
+				totalsFirstDoc = doc;
+			}
+			int index = doc - totalsFirstDoc;
+			if (index >= totals.length) {
+				totals = Arrays.copyOf(totals, Math.max(totals.length * 2, index + 1));
+			}
+			totals[index] = (totalTokens > 0 && totalTokens <= Integer.MAX_VALUE ? (int) totalTokens : 0);
+			totalsCount = index + 1;
+		}
+
+		void startTerm(String term) {
+			this.term = term;
+			this.termFirstBlock = blocks;
+			this.termDocFreq = 0;
+			this.termMaxFreq = 0f;
+			this.lastDoc = 0;
+			this.blockSize = 0;
+		}
+
+		void addPosting(int doc, float freq) {
+			docs.set(doc);
+			termDocFreq++;
+			termMaxFreq = Math.max(termMaxFreq, freq);
+			blockDocs[blockSize] = doc;
+			blockFreqs[blockSize++] = freq;
+			if (blockSize == BlockCodec.BLOCK_SIZE) {
+				flushBlock();
+			}
+		}
+
+		void endTerm() {
+			if (blockSize > 0) {
+				flushBlock();
+			}
+			if (termDocFreq == 0) {
+				return;
+			}
+			int index = terms.size();
+			if (index == docFreqs.length) {
+				firstBlocks = Arrays.copyOf(firstBlocks, index * 2);
+				docFreqs = Arrays.copyOf(docFreqs, index * 2);
+				maxFreqs = Arrays.copyOf(maxFreqs, index * 2);
+			}
+			terms.add(term);
+			firstBlocks[index] = termFirstBlock;
+			docFreqs[index] = termDocFreq;
+			maxFreqs[index] = termMaxFreq;
+		}
+
+		IndexSegment finish() {
+			int size = terms.size();
+			int totalsBits = BlockCodec.bitsRequired(totals, totalsCount);
+			int[] totalsWords = new int[BlockCodec.packedWords(totalsCount, totalsBits)];
+			BlockCodec.pack(totals, totalsCount, totalsBits, totalsWords, 0);
+			DocTotals docTotals = new DocTotals(Math.max(0, totalsFirstDoc), totalsCount, totalsBits, totalsWords);
+
+			return new IndexSegment(terms.toArray(new String[size]), Arrays.copyOf(firstBlocks, size),
+					Arrays.copyOf(docFreqs, size), Arrays.copyOf(maxFreqs, size), Arrays.copyOf(blockOffsets, blocks),
+					Arrays.copyOf(blockLastDocs, blocks), Arrays.copyOf(data, dataSize), docTotals, docs);
+		}
+
+		/**
+		 * Encode the buffered postings of the current term as a new block
+		 */
+		private void flushBlock() {
+			// Doc id gaps, the first one from the last doc of the previous block
+			int previousDoc = lastDoc;
+			for (int i = 0; i < blockSize; i++) {
+				values[i] = blockDocs[i] - previousDoc;
+				previousDoc = blockDocs[i];
+			}
+			int docBits = BlockCodec.bitsRequired(values, blockSize);
+			int docWords = BlockCodec.packedWords(blockSize, docBits);
+
+			// Term counts from the lowest one, or frequencies bits from the lowest ones
+			int freqsMode = TERM_COUNTS;
+			int freqBase = Integer.MAX_VALUE;
+			for (int i = 0; i < blockSize && freqsMode == TERM_COUNTS; i++) {
+				countValues[i] = termCount(blockDocs[i], blockFreqs[i]);
+				freqBase = Math.min(freqBase, countValues[i]);
+				freqsMode = (countValues[i] >= 0 ? TERM_COUNTS : FLOAT_FREQS);
+			}
+			if (freqsMode == TERM_COUNTS) {
+				for (int i = 0; i < blockSize; i++) {
+					freqValues[i] = countValues[i] - freqBase;
+				}
+			} else {
+				freqBase = Float.floatToRawIntBits(blockFreqs[0]);
+				for (int i = 1; i < blockSize; i++) {
+					freqBase = Math.min(freqBase, Float.floatToRawIntBits(blockFreqs[i]));
+				}
+				for (int i = 0; i < blockSize; i++) {
+					freqValues[i] = Float.floatToRawIntBits(blockFreqs[i]) - freqBase;
+				}
+			}
+			int freqBits = BlockCodec.bitsRequired(freqValues, blockSize);
+			int freqWords = BlockCodec.packedWords(blockSize, freqBits);
+
+			int offset = dataSize;
+			ensureData(BLOCK_HEADER_WORDS + docWords + freqWords);
+			data[offset] = docBits | (freqBits << 8) | (freqsMode << 16);
+			data[offset + 1] = freqBase;
+			BlockCodec.pack(values, blockSize, docBits, data, offset + BLOCK_HEADER_WORDS);
+			BlockCodec.pack(freqValues, blockSize, freqBits, data, offset + BLOCK_HEADER_WORDS + docWords);
+			dataSize += BLOCK_HEADER_WORDS + docWords + freqWords;
+
+			if (blocks == blockOffsets.length) {
+				blockOffsets = Arrays.copyOf(blockOffsets, blocks * 2);
+				blockLastDocs = Arrays.copyOf(blockLastDocs, blocks * 2);
+			}
+			blockOffsets[blocks] = offset;
+			blockLastDocs[blocks++] = previousDoc;
+
+			lastDoc = previousDoc;
+			blockSize = 0;
+		}
+
+		/**
+		 * Term count a frequency was computed from, as the count divided by the total
+		 * tokens of the doc
+		 *
+		 * @return the count, or -1 if the frequency is not rebuilt exactly from any
+		 */
+		private int termCount(int doc, float freq) {
+			int index = doc - totalsFirstDoc;
+			int total = (totalsFirstDoc < 0 || index < 0 || index >= totalsCount ? 0 : totals[index]);
+			if (total == 0 || !(freq >= 0f)) {
+				return -1;
+			}
+
+			long count = Math.round((double) freq * total);
+			if (count > Integer.MAX_VALUE
+					|| Float.floatToRawIntBits((float) count / (float) total) != Float.floatToRawIntBits(freq)) {
+				return -1;
+			}
+			return (int) count;
+		}
+
+		private void ensureData(int words) {
+			if (dataSize + words > data.length) {
+				data = Arrays.copyOf(data, Math.max(data.length * 2, dataSize + words));
+			}
+		}
+	}
+}
@@ -0,0 +1,707 @@
+package com.example.techtest.termfrequency.index;
+
+import java.io.Closeable;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.PriorityQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.example.techtest.termfrequency.algorithm.DocumentTermVector;
+import com.example.techtest.termfrequency.algorithm.TfidfProcessorConfig.IDF_MODE;
+import com.example.techtest.termfrequency.index.InvertedIndexConfig.RANKING_STRATEGY;
+import com.example.techtest.termfrequency.util.Dictionary;
+
+/**
+ * Inverted index of every term of the processed files, to rank the files by
+ * the TF-IDF of any set of terms without reading them again.
+ *
+ * Every DocumentTermVector added gets a new doc id, replacing the previous doc
+ * of the same path, which is marked as deleted. Added documents are buffered
+ * and flushed as immutable segments @see IndexSegment, with the postings (doc
+ * id and term frequency) of every term. Adjacent segments of similar size are
+ * merged in background, dropping the deleted documents.
+ *
+ * Queries see the state of the last commit: the segments, deleted documents
+ * and number of paths are published together as an immutable snapshot, so
+ * queries don't block the writer nor the merges. The terms of every document
+ * are kept until it is dropped by a merge, so the deleted documents still in
+ * the segments are counted by term when deleted, and the document frequency of
+ * a term is the one of its segments minus that count, without reading its
+ * postings.
+ *
+ * Documents are expected to be added and committed by a single thread, while
+ * any number of threads can query the index.
+ *
+ */
+public class InvertedIndex implements Closeable {
+
+	private static final Logger log = LogManager.getLogger(InvertedIndex.class);
+
+	private static final int INITIAL_CAPACITY = 64;
+	private static final int NO_DOC = -1;
+	private static final double APPROXIMATION_ERROR = 1e-9;
+
+	// Higher scores first, paths with the same score ordered by path
+	private static final Comparator<Entry<Path, Double>> RANKING_ORDER = Comparator
+			.comparing((Entry<Path, Double> e) -> e.getValue()).reversed().thenComparing(Entry::getKey);
+
+	private final InvertedIndexConfig config;
+	private final IDF_MODE mode;
+
+	// Writer state
+	private final Dictionary<Path> pathDictionary = new Dictionary<>();
+	private int[] docByPath = new int[INITIAL_CAPACITY];
+	private Path[] pathByDoc = new Path[INITIAL_CAPACITY];
+	private int nextDoc = 0;
+	private Map<String, BufferedPostings> buffer = new HashMap<>();
+	private final Dictionary<String> termDictionary = new Dictionary<>();
+	private long[] bufferedTotals = new long[INITIAL_CAPACITY];
+	private int bufferedDocs = 0;
+
+	// Shared with the merges, guarded by this. Terms of the documents not dropped
+	// yet, and number of deleted documents still in the segments by term
+	private final BitSet deletedDocs = new BitSet();
+	private final List<IndexSegment> segments = new ArrayList<>();
+	private String[][] termsByDoc = new String[INITIAL_CAPACITY][];
+	private final Map<String, Integer> deletedDocFreqs = new HashMap<>();
+	private Map<String, Integer> publishedDeletedDocFreqs = Collections.emptyMap();
+	private boolean merging = false;
+	private boolean closed = false;
+
+	private final ExecutorService mergeExecutor;
+	private volatile Snapshot snapshot = new Snapshot(Collections.emptyList(), new BitSet(),
+			Collections.emptyMap(), pathByDoc, 0);
+
+	/**
+	 * New instance
+	 *
+	 * @param config index config, or null for the default one
+	 */
+	public InvertedIndex(InvertedIndexConfig config) {
+		this.config = (config != null ? config : new InvertedIndexConfig());
+		this.mode = (this.config.mode() != null ? this.config.mode() : IDF_MODE.NORMAL);
+		this.mergeExecutor = Executors.newSingleThreadExecutor(r -> {
+			Thread thread = new Thread(r, "index-merge");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/**
+	 * Config of the index
+	 *
+	 */
+	public InvertedIndexConfig config() {
+		return config;
+	}
+
+	/**
+	 * Adds the document of a path, replacing any previous one. Visible to the
+	 * queries after the next commit
+	 *
+	 * @param termVector
+	 */
+	public void add(DocumentTermVector termVector) {
+		int pathId = pathDictionary.idOf(termVector.path());
+		if (pathId == Dictionary.NO_ID) {
+			if (termVector.size() == 0) {
+				return;
+			}
+			pathId = pathDictionary.intern(termVector.path());
+			if (pathId >= docByPath.length) {
+				docByPath = Arrays.copyOf(docByPath, Math.max(docByPath.length * 2, pathId + 1));
+			}
+			docByPath[pathId] = NO_DOC;
+		}
+
+		int previousDoc = docByPath[pathId];
+		if (previousDoc != NO_DOC) {
+			synchronized (this) {
+				delete(previousDoc);
+			}
+			docByPath[pathId] = NO_DOC;
+		}
+		if (termVector.size() == 0) {
+			return;
+		}
+
+		int doc = nextDoc++;
+		if (doc >= pathByDoc.length) {
+			pathByDoc = Arrays.copyOf(pathByDoc, pathByDoc.length * 2);
+		}
+		pathByDoc[doc] = termVector.path();
+		docByPath[pathId] = doc;
+
+		String[] docTerms = new String[termVector.size()];
+		int rankableTerms = 0;
+		for (int i = 0; i < termVector.size(); i++) {
+			if (!termVector.rankable(i)) {
+				continue;
+			}
+			// The same instance for every document of a term
+			String term = termDictionary.valueOf(termDictionary.intern(termVector.term(i)));
+			docTerms[rankableTerms++] = term;
+			buffer.computeIfAbsent(term, t -> new BufferedPostings()).add(doc, termVector.freq(i));
+		}
+		synchronized (this) {
+			if (doc >= termsByDoc.length) {
+				termsByDoc = Arrays.copyOf(termsByDoc, Math.max(termsByDoc.length * 2, doc + 1));
+			}
+			termsByDoc[doc] = Arrays.copyOf(docTerms, rankableTerms);
+		}
+		if (bufferedDocs == bufferedTotals.length) {
+			bufferedTotals = Arrays.copyOf(bufferedTotals, bufferedDocs * 2);
+		}
+		bufferedTotals[bufferedDocs++] = termVector.totalTokens();
+
+		if (bufferedDocs >= config.flushDocuments()) {
+			commit();
+		}
+	}
+
+	/**
+	 * Marks a document as deleted. A committed document is counted by term until
+	 * a merge drops it, a buffered one is just not flushed. Expected to be called
+	 * holding the lock
+	 */
+	private void delete(int doc) {
+		deletedDocs.set(doc);
+		if (doc >= nextDoc - bufferedDocs) {
+			termsByDoc[doc] = null;
+			return;
+		}
+		for (String term : termsByDoc[doc]) {
+			deletedDocFreqs.merge(term, 1, Integer::sum);
+		}
+		publishedDeletedDocFreqs = null;
+	}
+
+	/**
+	 * Forgets the deleted documents of some segments dropped by a merge, they are
+	 * no longer counted by term. Expected to be called holding the lock
+	 */
+	private void dropped(List<IndexSegment> merged, BitSet mergedDeletedDocs) {
+		for (IndexSegment segment : merged) {
+			for (int doc = mergedDeletedDocs.nextSetBit(segment.minDoc()); doc >= 0
+					&& doc <= segment.maxDoc(); doc = mergedDeletedDocs.nextSetBit(doc + 1)) {
+				String[] terms = termsByDoc[doc];
+				if (terms == null) {
+					continue;
+				}
+				for (String term : terms) {
+					deletedDocFreqs.computeIfPresent(term, (t, count) -> (count > 1 ? count - 1 : null));
+				}
+				termsByDoc[doc] = null;
+				publishedDeletedDocFreqs = null;
+			}
+		}
+	}
+
+	/**
+	 * Flushes the buffered documents as a new segment and makes every change
+	 * visible to the queries
+	 *
+	 */
+	public void commit() {
+		IndexSegment segment = null;
+		if (bufferedDocs > 0) {
+			IndexSegment.Writer writer = new IndexSegment.Writer();
+			int firstDoc = nextDoc - bufferedDocs;
+			for (int i = 0; i < bufferedDocs; i++) {
+				if (!deletedDocs.get(firstDoc + i)) {
+					writer.totalTokens(firstDoc + i, bufferedTotals[i]);
+				}
+			}
+			String[] terms = buffer.keySet().toArray(new String[buffer.size()]);
+			Arrays.sort(terms);
+			for (String term : terms) {
+				BufferedPostings postings = buffer.get(term);
+				writer.startTerm(term);
+				for (int i = 0; i < postings.size; i++) {
+					if (!deletedDocs.get(postings.docs[i])) {
+						writer.addPosting(postings.docs[i], postings.freqs[i]);
+					}
+				}
+				writer.endTerm();
+			}
+			segment = writer.finish();
+
+			buffer = new HashMap<>();
+			bufferedDocs = 0;
+		}
+
+		synchronized (this) {
+			if (segment != null && segment.docCount() > 0) {
+				segments.add(segment);
+			}
+			publish();
+		}
+		maybeMerge();
+	}
+
+	/**
+	 * Publish a new snapshot for the queries. Expected to be called holding the
+	 * lock
+	 */
+	private void publish() {
+		if (publishedDeletedDocFreqs == null) {
+			publishedDeletedDocFreqs = new HashMap<>(deletedDocFreqs);
+		}
+		snapshot = new Snapshot(new ArrayList<>(segments), (BitSet) deletedDocs.clone(), publishedDeletedDocFreqs,
+				pathByDoc, pathDictionary.size());
+	}
+
+	/**
+	 * Schedule the merge of the newest adjacent segments of the same level, if
+	 * there are merge-factor of them and no other merge is running
+	 */
+	private void maybeMerge() {
+		synchronized (this) {
+			if (merging || closed) {
+				return;
+			}
+			List<IndexSegment> toMerge = selectMerge();
+			if (toMerge == null) {
+				return;
+			}
+			merging = true;
+			mergeExecutor.execute(() -> merge(toMerge));
+		}
+	}
+
+	private List<IndexSegment> selectMerge() {
+		int mergeFactor = config.mergeFactor();
+		if (mergeFactor < 2) {
+			return null;
+		}
+
+		for (int end = segments.size(); end >= mergeFactor; end--) {
+			int level = level(segments.get(end - 1));
+			boolean sameLevel = true;
+			for (int i = end - mergeFactor; i < end - 1 && sameLevel; i++) {
+				sameLevel = (level(segments.get(i)) == level);
+			}
+			if (sameLevel) {
+				return new ArrayList<>(segments.subList(end - mergeFactor, end));
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Size level of a segment: 0 below flush-documents * merge-factor docs, 1
+	 * below flush-documents * merge-factor^2 docs...
+	 */
+	private int level(IndexSegment segment) {
+		int level = 0;
+		long levelSize = (long) Math.max(1, config.flushDocuments()) * config.mergeFactor();
+		while (segment.docCount() >= levelSize) {
+			level++;
+			levelSize *= config.mergeFactor();
+		}
+		return level;
+	}
+
+	private void merge(List<IndexSegment> toMerge) {
+		try {
+			BitSet mergedDeletedDocs = snapshot.deletedDocs;
+			IndexSegment merged = IndexSegment.merge(toMerge, mergedDeletedDocs);
+			replace(toMerge, merged, mergedDeletedDocs);
+			log.debug("Merged {} segments into a segment of {} documents", toMerge.size(), merged.docCount());
+		} catch (RuntimeException e) {
+			log.error("Error merging index segments", e);
+		} finally {
+			synchronized (this) {
+				merging = false;
+				notifyAll();
+			}
+		}
+		maybeMerge();
+	}
+
+	/**
+	 * Replace a run of adjacent segments by the segment merged from them, without
+	 * the given deleted documents
+	 */
+	private synchronized void replace(List<IndexSegment> merged, IndexSegment segment,
+			BitSet mergedDeletedDocs) {
+		dropped(merged, mergedDeletedDocs);
+		int from = segments.indexOf(merged.get(0));
+		segments.subList(from, from + merged.size()).clear();
+		if (segment.docCount() > 0) {
+			segments.add(from, segment);
+		}
+		publish();
+	}
+
+	/**
+	 * Commit and merge every segment into a single one, waiting for it
+	 *
+	 * @throws InterruptedException
+	 */
+	public void forceMerge() throws InterruptedException {
+		commit();
+
+		List<IndexSegment> toMerge;
+		synchronized (this) {
+			while (merging) {
+				wait();
+			}
+			if (segments.size() < 2) {
+				return;
+			}
+			merging = true;
+			toMerge = new ArrayList<>(segments);
+		}
+
+		try {
+			BitSet mergedDeletedDocs = snapshot.deletedDocs;
+			replace(toMerge, IndexSegment.merge(toMerge, mergedDeletedDocs), mergedDeletedDocs);
+		} finally {
+			synchronized (this) {
+				merging = false;
+				notifyAll();
+			}
+		}
+	}
+
+	/**
+	 * Top paths by the TF-IDF of a set of terms, adding the TF-IDF of every term
+	 * in the path. Only the paths with any of the terms are ranked, and paths with
+	 * the same score are ordered by path. The documents are evaluated with the
+	 * configured ranking strategy, every one returns the same ranking.
+	 *
+	 * @param terms normalized terms
+	 * @param limit number of paths to recover
+	 * @return descendant ordered list of paths and scores
+	 */
+	public List<Entry<Path, Double>> search(Collection<String> terms, int limit) {
+		Snapshot current = snapshot;
+		String[] queryTerms = new LinkedHashSet<>(terms).toArray(new String[0]);
+
+		// Document frequency of every term, only counting live documents
+		double[] idfs = new double[queryTerms.length];
+		for (int t = 0; t < queryTerms.length; t++) {
+			int docFreq = -current.deletedDocFreqs.getOrDefault(queryTerms[t], 0);
+			for (IndexSegment segment : current.segments) {
+				int termIndex = segment.termIndex(queryTerms[t]);
+				if (termIndex >= 0) {
+					docFreq += segment.docFreq(termIndex);
+				}
+			}
+			idfs[t] = (docFreq > 0 ? mode.idf(docFreq, current.numberOfPaths) : Double.NaN);
+		}
+
+		TopDocs topDocs = new TopDocs(limit, current.pathByDoc);
+		for (IndexSegment segment : current.segments) {
+			if (RANKING_STRATEGY.EXHAUSTIVE.equals(config.rankingStrategy())) {
+				searchExhaustive(segment, current.deletedDocs, queryTerms, idfs, topDocs);
+			} else {
+				searchMaxScore(segment, current.deletedDocs, queryTerms, idfs, topDocs);
+			}
+		}
+
+		return topDocs.ranking();
+	}
+
+	/**
+	 * Score, document at a time, every document of a segment with any of the
+	 * terms
+	 */
+	private void searchExhaustive(IndexSegment segment, BitSet deletedDocs, String[] queryTerms, double[] idfs,
+			TopDocs topDocs) {
+
+		PostingsCursor[] cursors = new PostingsCursor[queryTerms.length];
+		for (int t = 0; t < queryTerms.length; t++) {
+			int termIndex = (Double.isNaN(idfs[t]) ? -1 : segment.termIndex(queryTerms[t]));
+			cursors[t] = (termIndex >= 0 ? segment.postings(termIndex) : null);
+			if (cursors[t] != null) {
+				cursors[t].nextDoc();
+			}
+		}
+
+		while (true) {
+			int doc = PostingsCursor.NO_MORE_DOCS;
+			for (PostingsCursor cursor : cursors) {
+				if (cursor != null && cursor.doc() < doc) {
+					doc = cursor.doc();
+				}
+			}
+			if (doc == PostingsCursor.NO_MORE_DOCS) {
+				break;
+			}
+
+			double score = 0d;
+			for (int t = 0; t < cursors.length; t++) {
+				if (cursors[t] != null && cursors[t].doc() == doc) {
+					score += cursors[t].freq() * idfs[t];
+					cursors[t].nextDoc();
+				}
+			}
+			if (!deletedDocs.get(doc)) {
+				topDocs.offer(doc, score);
+			}
+		}
+	}
+
+	/**
+	 * Score the documents of a segment with MaxScore dynamic pruning: terms are
+	 * sorted by their greatest contribution, and the terms which contributions
+	 * added can't reach the current top results threshold are non essential.
+	 * Only the documents with any essential term are candidates, and the non
+	 * essential terms are only looked up, skipping blocks, while the candidate
+	 * can still reach the threshold. The scores are added in query terms order,
+	 * so they are the same ones of the exhaustive evaluation.
+	 */
+	private void searchMaxScore(IndexSegment segment, BitSet deletedDocs, String[] queryTerms, double[] idfs,
+			TopDocs topDocs) {
+
+		// Terms in the segment, sorted by their greatest contribution
+		int[] order = new int[queryTerms.length];
+		PostingsCursor[] cursors = new PostingsCursor[queryTerms.length];
+		double[] upperBounds = new double[queryTerms.length];
+		int active = 0;
+		for (int t = 0; t < queryTerms.length; t++) {
+			int termIndex = (Double.isNaN(idfs[t]) ? -1 : segment.termIndex(queryTerms[t]));
+			if (termIndex >= 0) {
+				cursors[t] = segment.postings(termIndex);
+				upperBounds[t] = segment.maxFreq(termIndex) * idfs[t];
+				order[active++] = t;
+			}
+		}
+		if (active == 0) {
+			return;
+		}
+		int[] sortedTerms = Arrays.stream(Arrays.copyOf(order, active)).boxed()
+				.sorted(Comparator.comparingDouble(t -> upperBounds[t])).mapToInt(Integer::intValue).toArray();
+
+		// Greatest score of a document with only the first i+1 terms
+		double[] cumulativeBounds = new double[active];
+		double cumulative = 0d;
+		for (int i = 0; i < active; i++) {
+			cumulative += upperBounds[sortedTerms[i]];
+			cumulativeBounds[i] = cumulative;
+		}
+
+		for (int i = 0; i < active; i++) {
+			cursors[sortedTerms[i]].nextDoc();
+		}
+
+		double[] contributions = new double[queryTerms.length];
+		boolean[] matched = new boolean[queryTerms.length];
+		double threshold = topDocs.threshold();
+		int firstEssential = firstEssential(cumulativeBounds, threshold);
+
+		while (firstEssential < active) {
+			int doc = PostingsCursor.NO_MORE_DOCS;
+			for (int i = firstEssential; i < active; i++) {
+				doc = Math.min(doc, cursors[sortedTerms[i]].doc());
+			}
+			if (doc == PostingsCursor.NO_MORE_DOCS) {
+				break;
+			}
+
+			Arrays.fill(matched, false);
+			double partialScore = 0d;
+			for (int i = firstEssential; i < active; i++) {
+				int t = sortedTerms[i];
+				if (cursors[t].doc() == doc) {
+					contributions[t] = cursors[t].freq() * idfs[t];
+					matched[t] = true;
+					partialScore += contributions[t];
+					cursors[t].nextDoc();
+				}
+			}
+			if (deletedDocs.get(doc)) {
+				continue;
+			}
+
+			// Non essential terms, from the greatest contribution, while the doc can
+			// still reach the top results
+			boolean pruned = false;
+			for (int i = firstEssential - 1; i >= 0 && !pruned; i--) {
+				if (!canReach(partialScore + cumulativeBounds[i], threshold)) {
+					pruned = true;
+				} else {
+					int t = sortedTerms[i];
+					if (cursors[t].advance(doc) == doc) {
+						contributions[t] = cursors[t].freq() * idfs[t];
+						matched[t] = true;
+						partialScore += contributions[t];
+					}
+				}
+			}
+			if (pruned) {
+				continue;
+			}
+
+			double score = 0d;
+			for (int t = 0; t < queryTerms.length; t++) {
+				if (matched[t]) {
+					score += contributions[t];
+				}
+			}
+			topDocs.offer(doc, score);
+
+			if (topDocs.threshold() != threshold) {
+				threshold = topDocs.threshold();
+				firstEssential = firstEssential(cumulativeBounds, threshold);
+			}
+		}
+	}
+
+	/**
+	 * Number of terms, by ascending greatest contribution, that added can't reach
+	 * the threshold
+	 */
+	private static int firstEssential(double[] cumulativeBounds, double threshold) {
+		int firstEssential = 0;
+		while (firstEssential < cumulativeBounds.length && !canReach(cumulativeBounds[firstEssential], threshold)) {
+			firstEssential++;
+		}
+		return firstEssential;
+	}
+
+	/**
+	 * Whether a score bound reaches a threshold, allowing for the rounding
+	 * errors of adding the contributions in another order
+	 */
+	private static boolean canReach(double scoreBound, double threshold) {
+		return scoreBound + APPROXIMATION_ERROR * (1 + Math.abs(scoreBound)) >= threshold;
+	}
+
+	/**
+	 * Number of distinct paths observed, as of the last commit
+	 *
+	 */
+	public long totalNumberOfPaths() {
+		return snapshot.numberOfPaths;
+	}
+
+	/**
+	 * Number of segments, as of the last commit
+	 *
+	 */
+	public int segments() {
+		return snapshot.segments.size();
+	}
+
+	/**
+	 * Size of the compressed postings of every segment, as of the last commit
+	 *
+	 * @return the size in bytes
+	 */
+	public long postingsBytes() {
+		return snapshot.segments.stream().mapToLong(IndexSegment::postingsBytes).sum();
+	}
+
+	@Override
+	public void close() {
+		synchronized (this) {
+			closed = true;
+		}
+		mergeExecutor.shutdownNow();
+	}
+
+	/**
+	 * Postings of a term buffered before the next flush
+	 *
+	 */
+	private static class BufferedPostings {
+
+		private int[] docs = new int[4];
+		private float[] freqs = new float[4];
+		private int size = 0;
+
+		private void add(int doc, float freq) {
+			if (size == docs.length) {
+				docs = Arrays.copyOf(docs, size * 2);
+				freqs = Arrays.copyOf(freqs, size * 2);
+			}
+			docs[size] = doc;
+			freqs[size++] = freq;
+		}
+	}
+
+	/**
+	 * State of the index visible to the queries
+	 *
+	 */
+	private static class Snapshot {
+
+		private final List<IndexSegment> segments;
+		private final BitSet deletedDocs;
+		private final Map<String, Integer> deletedDocFreqs;
+		private final Path[] pathByDoc;
+		private final long numberOfPaths;
+
+		private Snapshot(List<IndexSegment> segments, BitSet deletedDocs, Map<String, Integer> deletedDocFreqs,
+				Path[] pathByDoc, long numberOfPaths) {
+			this.segments = segments;
+			this.deletedDocs = deletedDocs;
+			this.deletedDocFreqs = deletedDocFreqs;
+			this.pathByDoc = pathByDoc;
+			this.numberOfPaths = numberOfPaths;
+		}
+	}
+
+	/**
+	 * Bounded heap of the best scored docs, the worst one at the root
+	 *
+	 */
+	private static class TopDocs {
+
+		private final Path[] pathByDoc;
+		private final int limit;
+		private final PriorityQueue<Entry<Path, Double>> heap;
+
+		private TopDocs(int limit, Path[] pathByDoc) {
+			this.pathByDoc = pathByDoc;
+			this.limit = Math.max(0, limit);
+			this.heap = new PriorityQueue<>(Math.max(1, Math.min(this.limit, 1024)), RANKING_ORDER.reversed());
+		}
+
+		private void offer(int doc, double score) {
+			if (limit == 0) {
+				return;
+			}
+			Entry<Path, Double> entry = Map.entry(pathByDoc[doc], score);
+			if (heap.size() < limit) {
+				heap.add(entry);
+			} else if (RANKING_ORDER.compare(entry, heap.peek()) < 0) {
+				heap.poll();
+				heap.add(entry);
+			}
+		}
+
+		/**
+		 * Score a doc must reach to enter the top docs
+		 */
+		private double threshold() {
+			if (limit == 0) {
+				return Double.POSITIVE_INFINITY;
+			}
+			return (heap.size() < limit ? Double.NEGATIVE_INFINITY : heap.peek().getValue());
+		}
+
+		private List<Entry<Path, Double>> ranking() {
+			List<Entry<Path, Double>> ranking = new ArrayList<>(heap);
+			ranking.sort(RANKING_ORDER);
+			return ranking;
+		}
+	}
+}
@@ -0,0 +1,136 @@
+package com.example.techtest.termfrequency.index;
+
+import com.example.techtest.termfrequency.algorithm.TfidfProcessorConfig.IDF_MODE;
+
+/**
+ * Auxiliary class to define configuration parameters used by the InvertedIndex
+ * and its sink
+ *
+ */
+public class InvertedIndexConfig {
+
+	/**
+	 * Strategy used to rank the documents of a query
+	 *
+	 */
+	public enum RANKING_STRATEGY {
+		/**
+		 * Score every document with any of the query terms
+		 */
+		EXHAUSTIVE,
+		/**
+		 * Only score the documents that can still reach the top results, given the
+		 * greatest contribution of every term
+		 */
+		MAX_SCORE
+	}
+
+	public static final int DEFAULT_FLUSH_DOCUMENTS = 1000;
+	public static final int DEFAULT_MERGE_FACTOR = 10;
+	public static final int DEFAULT_COMMIT_INTERVAL_MS = 1000;
+
+	private int flushDocuments = InvertedIndexConfig.DEFAULT_FLUSH_DOCUMENTS;
+	private int mergeFactor = InvertedIndexConfig.DEFAULT_MERGE_FACTOR;
+	private int commitIntervalMs = InvertedIndexConfig.DEFAULT_COMMIT_INTERVAL_MS;
+	private IDF_MODE mode = IDF_MODE.NORMAL;
+	private RANKING_STRATEGY rankingStrategy = RANKING_STRATEGY.MAX_SCORE;
+
+	/**
+	 * Number of buffered documents that triggers the flush of a new segment
+	 *
+	 * @return the number of documents
+	 */
+	public int flushDocuments() {
+		return this.flushDocuments;
+	}
+
+	/**
+	 * Set the number of buffered documents that triggers the flush of a new
+	 * segment
+	 *
+	 * @return this InvertedIndexConfig instance
+	 */
+	public InvertedIndexConfig flushDocuments(int flushDocuments) {
+		this.flushDocuments = flushDocuments;
+		return this;
+	}
+
+	/**
+	 * Number of adjacent segments of similar size merged together in background
+	 *
+	 * @return the merge factor
+	 */
+	public int mergeFactor() {
+		return this.mergeFactor;
+	}
+
+	/**
+	 * Set the number of adjacent segments of similar size merged together in
+	 * background
+	 *
+	 * @return this InvertedIndexConfig instance
+	 */
+	public InvertedIndexConfig mergeFactor(int mergeFactor) {
+		this.mergeFactor = mergeFactor;
+		return this;
+	}
+
+	/**
+	 * Max time the documents received by the sink wait before being visible to
+	 * the queries
+	 *
+	 * @return the interval in ms
+	 */
+	public int commitIntervalMs() {
+		return this.commitIntervalMs;
+	}
+
+	/**
+	 * Set the max time the documents received by the sink wait before being
+	 * visible to the queries
+	 *
+	 * @return this InvertedIndexConfig instance
+	 */
+	public InvertedIndexConfig commitIntervalMs(int commitIntervalMs) {
+		this.commitIntervalMs = commitIntervalMs;
+		return this;
+	}
+
+	/**
+	 * Mode to be used when computing the terms IDF
+	 *
+	 * @return the IDF computation mode
+	 */
+	public IDF_MODE mode() {
+		return this.mode;
+	}
+
+	/**
+	 * Set the mode to be used when computing the terms IDF
+	 *
+	 * @return this InvertedIndexConfig instance
+	 */
+	public InvertedIndexConfig mode(IDF_MODE mode) {
+		this.mode = mode;
+		return this;
+	}
+
+	/**
+	 * Strategy used to rank the documents of a query
+	 *
+	 * @return the ranking strategy
+	 */
+	public RANKING_STRATEGY rankingStrategy() {
+		return this.rankingStrategy;
+	}
+
+	/**
+	 * Set the strategy used to rank the documents of a query
+	 *
+	 * @return this InvertedIndexConfig instance
+	 */
+	public InvertedIndexConfig rankingStrategy(RANKING_STRATEGY rankingStrategy) {
+		this.rankingStrategy = rankingStrategy;
+		return this;
+	}
+}
@@ -0,0 +1,121 @@
+package com.example.techtest.termfrequency.index;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.example.techtest.termfrequency.algorithm.DocumentTermVector;
+import com.example.techtest.termfrequency.stream.Sink;
+import com.example.techtest.termfrequency.stream.StageMetrics;
+import com.example.techtest.termfrequency.stream.Transport;
+
+/**
+ * Sink adding a stream of DocumentTermVector items @see DocumentTermVector to
+ * an InvertedIndex @see InvertedIndex. The received documents are committed,
+ * becoming visible to the queries, as soon as no more documents are waiting or
+ * at least once per commit interval.
+ *
+ * The documents received, the time spent adding every one and the time spent
+ * on every commit are recorded in the sink metrics @see StageMetrics.
+ *
+ */
+public class InvertedIndexSink implements Callable<Integer>, Sink<DocumentTermVector> {
+
+	private static final Logger log = LogManager.getLogger(InvertedIndexSink.class);
+
+	public static final int RESULT_OK = 0;
+	public static final int RESULT_ERROR = -1;
+
+	private static final int MAX_BATCH_SIZE = 1024;
+
+	private final InvertedIndex index;
+	private Transport<DocumentTermVector> sourceQueue = null;
+
+	private final List<DocumentTermVector> batch = new ArrayList<>();
+	private int uncommittedDocuments = 0;
+	private long lastCommit = 0l;
+	private StageMetrics metrics = new StageMetrics("inverted-index");
+
+	public InvertedIndexSink(InvertedIndex index) {
+		this.index = index;
+	}
+
+	/**
+	 * Define the metrics the indexing is recorded to
+	 * 
+	 * @param metrics
+	 */
+	public void metrics(StageMetrics metrics) {
+		if (metrics != null) {
+			this.metrics = metrics;
+		}
+	}
+
+	/**
+	 * Metrics of the indexing
+	 * 
+	 */
+	public StageMetrics metrics() {
+		return this.metrics;
+	}
+
+	@Override
+	public void from(Transport<DocumentTermVector> transport) {
+		this.sourceQueue = transport;
+	}
+
+	@Override
+	public Integer call() throws Exception {
+
+		if (this.sourceQueue == null || this.index == null) {
+			log.error("No source queue or index provided");
+			return RESULT_ERROR;
+		}
+
+		int commitIntervalMs = Math.max(1, index.config().commitIntervalMs());
+		lastCommit = System.currentTimeMillis();
+
+		while (!Thread.currentThread().isInterrupted()) {
+			try {
+				DocumentTermVector termVector = sourceQueue.poll(commitIntervalMs, TimeUnit.MILLISECONDS);
+				if (termVector != null) {
+					batch.add(termVector);
+					sourceQueue.drainTo(batch, MAX_BATCH_SIZE);
+					metrics.received(batch.size());
+					for (DocumentTermVector document : batch) {
+						long start = System.nanoTime();
+						index.add(document);
+						metrics.processed(System.nanoTime() - start);
+					}
+					uncommittedDocuments += batch.size();
+					batch.clear();
+				}
+
+				// Commit when idle or when the commit interval is exceeded
+				if (uncommittedDocuments > 0 && (termVector == null
+						|| System.currentTimeMillis() - lastCommit >= commitIntervalMs)) {
+					long commitStart = System.nanoTime();
+					index.commit();
+					metrics.refreshed(System.nanoTime() - commitStart);
+					log.trace("Index committed with {} new documents, distinct paths: {}", uncommittedDocuments,
+							index.totalNumberOfPaths());
+					uncommittedDocuments = 0;
+					lastCommit = System.currentTimeMillis();
+				}
+
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+
+			} catch (Exception e) {
+				log.error("Error indexing term vectors", e);
+				return RESULT_ERROR;
+			}
+		}
+
+		return RESULT_OK;
+	}
+}
@@ -0,0 +1,142 @@
+package com.example.techtest.termfrequency.index;
+
+/**
+ * Forward only cursor over the postings of a term in a segment @see
+ * IndexSegment. The postings are decoded a whole block at a time @see
+ * BlockCodec, and the blocks without the target doc of an advance are skipped
+ * using their last doc id, without decoding them.
+ *
+ * This class is not thread safe, every query uses its own cursors.
+ *
+ */
+class PostingsCursor {
+
+	static final int NO_MORE_DOCS = Integer.MAX_VALUE;
+
+	private final int[] data;
+	private final int[] blockOffsets;
+	private final int[] blockLastDocs;
+	private final IndexSegment.DocTotals docTotals;
+	private final int firstBlock;
+	private final int endBlock;
+	private final int docFreq;
+
+	private final int[] docs = new int[BlockCodec.BLOCK_SIZE];
+	private final float[] freqs = new float[BlockCodec.BLOCK_SIZE];
+	private final int[] values = new int[BlockCodec.BLOCK_SIZE];
+	private final int[] totals = new int[BlockCodec.BLOCK_SIZE];
+	private int block;
+	private int blockSize = 0;
+	private int position = 0;
+	private int doc = -1;
+
+	PostingsCursor(int[] data, int[] blockOffsets, int[] blockLastDocs, IndexSegment.DocTotals docTotals,
+			int firstBlock, int docFreq) {
+		this.data = data;
+		this.blockOffsets = blockOffsets;
+		this.blockLastDocs = blockLastDocs;
+		this.docTotals = docTotals;
+		this.firstBlock = firstBlock;
+		this.endBlock = firstBlock + (docFreq + BlockCodec.BLOCK_SIZE - 1) / BlockCodec.BLOCK_SIZE;
+		this.docFreq = docFreq;
+		this.block = firstBlock - 1;
+	}
+
+	/**
+	 * Moves to the next posting
+	 *
+	 * @return the doc id of the posting, or NO_MORE_DOCS
+	 */
+	int nextDoc() {
+		if (++position >= blockSize) {
+			if (block + 1 >= endBlock) {
+				doc = NO_MORE_DOCS;
+				return doc;
+			}
+			decodeBlock(block + 1);
+		}
+		doc = docs[position];
+		return doc;
+	}
+
+	/**
+	 * Moves to the first posting with a doc id equal or greater than the target
+	 *
+	 * @param target doc id
+	 * @return the doc id of the posting, or NO_MORE_DOCS
+	 */
+	int advance(int target) {
+		if (doc >= target) {
+			return doc;
+		}
+
+		// Skip the blocks ending before the target
+		int nextBlock = Math.max(block, firstBlock);
+		while (nextBlock < endBlock && blockLastDocs[nextBlock] < target) {
+			nextBlock++;
+		}
+		if (nextBlock >= endBlock) {
+			block = endBlock;
+			blockSize = 0;
+			doc = NO_MORE_DOCS;
+			return doc;
+		}
+		if (nextBlock != block) {
+			decodeBlock(nextBlock);
+		}
+
+		while (docs[position] < target) {
+			position++;
+		}
+		doc = docs[position];
+		return doc;
+	}
+
+	/**
+	 * Doc id of the current posting, -1 before the first move
+	 *
+	 */
+	int doc() {
+		return doc;
+	}
+
+	/**
+	 * Term frequency of the current posting
+	 *
+	 */
+	float freq() {
+		return freqs[position];
+	}
+
+	/**
+	 * Number of postings of the term
+	 *
+	 */
+	int docFreq() {
+		return docFreq;
+	}
+
+	private void decodeBlock(int newBlock) {
+		block = newBlock;
+		blockSize = Math.min(BlockCodec.BLOCK_SIZE, docFreq - (block - firstBlock) * BlockCodec.BLOCK_SIZE);
+		position = 0;
+
+		int offset = blockOffsets[block];
+		int docBits = data[offset] & 0xFF;
+		int freqBits = (data[offset] >>> 8) & 0xFF;
+		int freqsMode = data[offset] >>> 16;
+		int freqBase = data[offset + 1];
+		int docWords = BlockCodec.packedWords(blockSize, docBits);
+
+		BlockCodec.unpack(data, offset + IndexSegment.BLOCK_HEADER_WORDS, blockSize, docBits, docs);
+		BlockCodec.prefixSum(docs, blockSize, (block > firstBlock ? blockLastDocs[block - 1] : 0));
+
+		BlockCodec.unpack(data, offset + IndexSegment.BLOCK_HEADER_WORDS + docWords, blockSize, freqBits, values);
+		if (freqsMode == IndexSegment.TERM_COUNTS) {
+			docTotals.get(docs, blockSize, totals);
+			BlockCodec.toFreqs(values, blockSize, freqBase, totals, freqs);
+		} else {
+			BlockCodec.toFreqs(values, blockSize, freqBase, freqs);
+		}
+	}
+}
@@ -0,0 +1,403 @@
+package com.example.techtest.termfrequency.store;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.example.techtest.termfrequency.algorithm.DocumentTermVector;
+import com.example.techtest.termfrequency.file.FileStateCache;
+
+/**
+ * Persistent store of the term vectors computed for the processed files, so
+ * the files not changed since they were processed don't need to be read again
+ * after a restart.
+ *
+ * The vectors are appended to a single segment file in the store folder, each
+ * one as a record with the file path, size, last modified time and contents
+ * checksum, and a CRC32 checksum of the record. A newer record of a path
+ * replaces the previous ones. On open, the
+ * existing segment is memory-mapped and scanned once to index the last record
+ * of every path, and any torn record at the end, left by an interrupted write,
+ * is truncated. When the replaced records take more room than the live ones,
+ * the segment is compacted.
+ *
+ * Every segment is tied to a fingerprint of the config used to compute its
+ * vectors @see
+ * com.example.techtest.termfrequency.algorithm.TermsFrequencyInFileConfig#fingerprint(),
+ * a segment with a different fingerprint is discarded.
+ *
+ * The contents checksum is only computed when hashing the contents is enabled,
+ * then a file only touched, with the same size and checksum but a new last
+ * modified time, is still recovered @see FileStateCache#checksum(Path), and its
+ * record is appended again with the new last modified time, so the file is not
+ * hashed again on the next restart.
+ *
+ * This class is thread safe.
+ *
+ */
+public class TermVectorStore implements Closeable {
+
+	private static final Logger log = LogManager.getLogger(TermVectorStore.class);
+
+	public static final String SEGMENT_FILE_NAME = "term-vectors.seg";
+
+	private static final int MAGIC = 0x54465653;
+	private static final int FORMAT_VERSION = 2;
+	private static final int HEADER_SIZE = 16;
+	private static final int RECORD_OVERHEAD = 8;
+
+	private final Path segmentPath;
+	private final FileChannel channel;
+	private final MappedByteBuffer mapped;
+	private final boolean hashContents;
+	private final Map<String, StoredVector> storedVectors = new ConcurrentHashMap<>();
+	private long end;
+
+	private TermVectorStore(Path segmentPath, FileChannel channel, MappedByteBuffer mapped, boolean hashContents) {
+		this.segmentPath = segmentPath;
+		this.channel = channel;
+		this.mapped = mapped;
+		this.hashContents = hashContents;
+	}
+
+	/**
+	 * Open the store in a folder, creating it if needed, comparing only the size
+	 * and last modified time of the files
+	 *
+	 * @param folder      store folder
+	 * @param fingerprint fingerprint of the config used to compute the vectors
+	 * @return the store
+	 * @throws IOException
+	 */
+	public static TermVectorStore open(Path folder, long fingerprint) throws IOException {
+		return open(folder, fingerprint, false);
+	}
+
+	/**
+	 * Open the store in a folder, creating it if needed
+	 *
+	 * @param folder       store folder
+	 * @param fingerprint  fingerprint of the config used to compute the vectors
+	 * @param hashContents record the checksum of the files contents, and compare
+	 *                     it when their last modified time changed
+	 * @return the store
+	 * @throws IOException
+	 */
+	public static TermVectorStore open(Path folder, long fingerprint, boolean hashContents) throws IOException {
+		if (folder == null) {
+			throw new IllegalArgumentException("Invalid folder");
+		}
+		Files.createDirectories(folder);
+		Path segmentPath = folder.resolve(SEGMENT_FILE_NAME);
+
+		TermVectorStore store = openSegment(segmentPath, fingerprint, hashContents);
+		if (store.deadBytes() > store.liveBytes()) {
+			store.compactTo(folder.resolve(SEGMENT_FILE_NAME + ".tmp"), fingerprint);
+			store.close();
+			store = openSegment(segmentPath, fingerprint, hashContents);
+		}
+
+		log.info("Term vector store {} opened with {} stored files", segmentPath, store.size());
+		return store;
+	}
+
+	private static TermVectorStore openSegment(Path segmentPath, long fingerprint, boolean hashContents)
+			throws IOException {
+		FileChannel channel = FileChannel.open(segmentPath, StandardOpenOption.CREATE, StandardOpenOption.READ,
+				StandardOpenOption.WRITE);
+		try {
+			if (!hasValidHeader(channel, fingerprint)) {
+				if (channel.size() > 0) {
+					log.info("Term vector store {} computed with a different config, discarded", segmentPath);
+				}
+				channel.truncate(0);
+				ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).putInt(FORMAT_VERSION)
+						.putLong(fingerprint).flip();
+				writeFully(channel, header, 0);
+			}
+
+			long size = channel.size();
+			MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+					Math.min(size, Integer.MAX_VALUE));
+			TermVectorStore store = new TermVectorStore(segmentPath, channel, mapped, hashContents);
+			store.scan(size);
+			return store;
+
+		} catch (IOException | RuntimeException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	private static boolean hasValidHeader(FileChannel channel, long fingerprint) throws IOException {
+		if (channel.size() < HEADER_SIZE) {
+			return false;
+		}
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+		readFully(channel, header, 0);
+		header.flip();
+		return header.getInt() == MAGIC && header.getInt() == FORMAT_VERSION && header.getLong() == fingerprint;
+	}
+
+	/**
+	 * Index the last record of every path, truncating any torn record at the end
+	 */
+	private void scan(long size) throws IOException {
+		long position = HEADER_SIZE;
+
+		while (position + RECORD_OVERHEAD <= size) {
+			int length = read(position, 4).getInt();
+			if (length <= 0 || position + RECORD_OVERHEAD + length > size) {
+				break;
+			}
+
+			ByteBuffer record = read(position + 4, length + 4);
+			ByteBuffer body = record.duplicate().limit(length);
+			CRC32 crc = new CRC32();
+			crc.update(body.duplicate());
+			if ((int) crc.getValue() != record.getInt(length)) {
+				break;
+			}
+
+			byte[] pathBytes = new byte[body.getInt()];
+			body.get(pathBytes);
+			storedVectors.put(new String(pathBytes, StandardCharsets.UTF_8),
+					new StoredVector(position, length, body.getLong(), body.getLong(), body.getLong()));
+			position += RECORD_OVERHEAD + length;
+		}
+
+		if (position < size) {
+			log.warn("Torn record found in term vector store {} at {}, truncated", segmentPath, position);
+			channel.truncate(position);
+		}
+		end = position;
+	}
+
+	/**
+	 * Recovers the stored vector of a file, if it was stored with the same size
+	 * and last modified time, or the same contents checksum when hashing the
+	 * contents is enabled
+	 *
+	 * @param file         file path
+	 * @param size         current size of the file
+	 * @param lastModified current last modified time of the file, in ms
+	 * @return the stored vector, with the given path, or null if there is no
+	 *         vector for the current version of the file
+	 * @throws IOException
+	 */
+	public DocumentTermVector lookup(Path file, long size, long lastModified) throws IOException {
+		StoredVector stored = storedVectors.get(key(file));
+		if (stored == null || stored.size != size) {
+			return null;
+		}
+		if (stored.lastModified != lastModified) {
+			if (!hashContents || stored.hash != FileStateCache.checksum(file)) {
+				return null;
+			}
+			stored = touch(key(file), stored, lastModified);
+		}
+
+		ByteBuffer body = read(stored.position + 4, stored.length);
+		body.position(body.getInt() + 4 + 8 + 8 + 8);
+
+		long totalTokens = body.getLong();
+		int terms = body.getInt();
+		DocumentTermVector termVector = new DocumentTermVector(terms).path(file).totalTokens(totalTokens);
+		for (int i = 0; i < terms; i++) {
+			byte[] termBytes = new byte[body.getInt()];
+			body.get(termBytes);
+			termVector.add(new String(termBytes, StandardCharsets.UTF_8), body.getFloat(), body.get() != 0);
+		}
+		return termVector;
+	}
+
+	/**
+	 * Appends again the record of a file matched by its contents checksum, with
+	 * its new last modified time
+	 */
+	private StoredVector touch(String key, StoredVector stored, long lastModified) throws IOException {
+		ByteBuffer record = ByteBuffer.allocate(RECORD_OVERHEAD + stored.length);
+		record.put(read(stored.position, 4 + stored.length));
+		record.putLong(4 + 4 + record.getInt(4) + 8, lastModified);
+		CRC32 crc = new CRC32();
+		crc.update(record.array(), 4, stored.length);
+		record.putInt((int) crc.getValue()).flip();
+
+		return append(key, record, stored.length, stored.size, lastModified, stored.hash);
+	}
+
+	/**
+	 * Checksum of the contents of a file to be stored, taken before reading the
+	 * file to compute its vector, or 0 when hashing the contents is disabled
+	 *
+	 * @param file file path
+	 * @return the checksum
+	 * @throws IOException if the file can't be read
+	 */
+	public long contentsHash(Path file) throws IOException {
+		return (hashContents ? FileStateCache.checksum(file) : 0l);
+	}
+
+	/**
+	 * Stores the vector of a file, replacing any previous one
+	 *
+	 * @param termVector   vector computed for the file
+	 * @param size         size of the file when the vector was computed
+	 * @param lastModified last modified time of the file when the vector was
+	 *                     computed, in ms
+	 * @param hash         checksum of the file contents when the vector was
+	 *                     computed @see #contentsHash(Path)
+	 * @throws IOException if the record can't be written
+	 */
+	public void store(DocumentTermVector termVector, long size, long lastModified, long hash) throws IOException {
+		String key = key(termVector.path());
+		byte[] pathBytes = key.getBytes(StandardCharsets.UTF_8);
+
+		List<byte[]> termsBytes = new ArrayList<>(termVector.size());
+		int length = 4 + pathBytes.length + 8 + 8 + 8 + 8 + 4;
+		for (int i = 0; i < termVector.size(); i++) {
+			byte[] termBytes = termVector.term(i).getBytes(StandardCharsets.UTF_8);
+			termsBytes.add(termBytes);
+			length += 4 + termBytes.length + 4 + 1;
+		}
+
+		ByteBuffer record = ByteBuffer.allocate(RECORD_OVERHEAD + length);
+		record.putInt(length).putInt(pathBytes.length).put(pathBytes).putLong(size).putLong(lastModified)
+				.putLong(hash).putLong(termVector.totalTokens()).putInt(termVector.size());
+		for (int i = 0; i < termVector.size(); i++) {
+			record.putInt(termsBytes.get(i).length).put(termsBytes.get(i)).putFloat(termVector.freq(i))
+					.put((byte) (termVector.rankable(i) ? 1 : 0));
+		}
+		CRC32 crc = new CRC32();
+		crc.update(record.array(), 4, length);
+		record.putInt((int) crc.getValue()).flip();
+
+		append(key, record, length, size, lastModified, hash);
+	}
+
+	private synchronized StoredVector append(String key, ByteBuffer record, int length, long size,
+			long lastModified, long hash) throws IOException {
+		long position = end;
+		writeFully(channel, record, position);
+		end = position + record.capacity();
+		StoredVector stored = new StoredVector(position, length, size, lastModified, hash);
+		storedVectors.put(key, stored);
+		return stored;
+	}
+
+	/**
+	 * Number of files with a stored vector
+	 *
+	 */
+	public int size() {
+		return storedVectors.size();
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (channel.isOpen()) {
+			channel.force(false);
+			channel.close();
+		}
+	}
+
+	/**
+	 * Rewrites the live records to a new segment, replacing the current one
+	 */
+	private void compactTo(Path compactedPath, long fingerprint) throws IOException {
+		try (FileChannel compacted = FileChannel.open(compactedPath, StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).putInt(FORMAT_VERSION)
+					.putLong(fingerprint).flip();
+			long position = writeFully(compacted, header, 0);
+			for (StoredVector stored : storedVectors.values()) {
+				position += writeFully(compacted, read(stored.position, RECORD_OVERHEAD + stored.length), position);
+			}
+			compacted.force(false);
+		}
+
+		Files.move(compactedPath, segmentPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		log.info("Term vector store {} compacted", segmentPath);
+	}
+
+	private long liveBytes() {
+		return storedVectors.values().stream().mapToLong(s -> RECORD_OVERHEAD + s.length).sum();
+	}
+
+	private long deadBytes() {
+		return end - HEADER_SIZE - liveBytes();
+	}
+
+	/**
+	 * Read a region of the segment, from the mapped buffer when it was already
+	 * there on open
+	 */
+	private ByteBuffer read(long position, int length) throws IOException {
+		if (position + length <= mapped.capacity()) {
+			ByteBuffer region = mapped.duplicate();
+			region.position((int) position).limit((int) position + length);
+			return region.slice();
+		}
+
+		ByteBuffer region = ByteBuffer.allocate(length);
+		readFully(channel, region, position);
+		return region.flip();
+	}
+
+	private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer, position + buffer.position()) < 0) {
+				throw new IOException("Unexpected end of the term vector store");
+			}
+		}
+	}
+
+	private static long writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+		long written = 0;
+		while (buffer.hasRemaining()) {
+			written += channel.write(buffer, position + written);
+		}
+		return written;
+	}
+
+	private static String key(Path file) {
+		return file.toAbsolutePath().normalize().toString();
+	}
+
+	/**
+	 * Location and file version of the last record of a path
+	 *
+	 */
+	private static class StoredVector {
+
+		private final long position;
+		private final int length;
+		private final long size;
+		private final long lastModified;
+		private final long hash;
+
+		private StoredVector(long position, int length, long size, long lastModified, long hash) {
+			this.position = position;
+			this.length = length;
+			this.size = size;
+			this.lastModified = lastModified;
+			this.hash = hash;
+		}
+	}
+}
@@ -0,0 +1,76 @@
+package com.example.techtest.termfrequency.stream;
+
+import java.util.Collection;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Transport backed by a BlockingQueue @see Transport
+ * 
+ * @param <E> the type of entities transported
+ */
+public class BlockingQueueTransport<E> implements Transport<E> {
+
+	private final BlockingQueue<E> queue;
+
+	/**
+	 * New instance over an existing queue
+	 * 
+	 * @param queue
+	 */
+	public BlockingQueueTransport(BlockingQueue<E> queue) {
+		if (queue == null) {
+			throw new IllegalArgumentException("Invalid queue");
+		}
+		this.queue = queue;
+	}
+
+	@Override
+	public boolean offer(E e) {
+		return queue.offer(e);
+	}
+
+	@Override
+	public void put(E e) throws InterruptedException {
+		queue.put(e);
+	}
+
+	@Override
+	public E take() throws InterruptedException {
+		return queue.take();
+	}
+
+	@Override
+	public E poll(long timeout, TimeUnit unit) throws InterruptedException {
+		return queue.poll(timeout, unit);
+	}
+
+	@Override
+	public int drainTo(Collection<? super E> collection, int maxElements) {
+		return queue.drainTo(collection, maxElements);
+	}
+
+	@Override
+	public int size() {
+		return queue.size();
+	}
+
+	@Override
+	public int capacity() {
+		long capacity = (long) queue.size() + queue.remainingCapacity();
+		return (int) Math.min(capacity, Integer.MAX_VALUE);
+	}
+
+	@Override
+	public void clear() {
+		queue.clear();
+	}
+
+	/**
+	 * The underlying queue
+	 * 
+	 */
+	public BlockingQueue<E> queue() {
+		return queue;
+	}
+}
@@ -0,0 +1,68 @@
+package com.example.techtest.termfrequency.stream;
+
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Time every file was discovered by the source of a pipeline, kept until the
+ * file is taken by its processor, so the latency from the discovery of a file
+ * to its results being visible can be measured without changing the entities
+ * of the transports.
+ *
+ * A file discovered again before being taken keeps its first discovery time,
+ * as the results are not visible until the file is processed. Times are taken
+ * from {@link System#nanoTime()}.
+ *
+ */
+public class DiscoveryTimes {
+
+	/**
+	 * Time of the files not discovered by a tracked source
+	 */
+	public static final long UNKNOWN = 0l;
+
+	private final Map<Path, Long> discoveredAt = new ConcurrentHashMap<>();
+
+	/**
+	 * Record the discovery of a file
+	 *
+	 * @param path
+	 */
+	public void discovered(Path path) {
+		discoveredAt.putIfAbsent(path, System.nanoTime());
+	}
+
+	/**
+	 * Record the discovery of several files at once
+	 *
+	 * @param paths
+	 */
+	public void discovered(Collection<Path> paths) {
+		Long now = System.nanoTime();
+		for (Path path : paths) {
+			discoveredAt.putIfAbsent(path, now);
+		}
+	}
+
+	/**
+	 * Remove the discovery time of a file, when taken to be processed or
+	 * discarded
+	 *
+	 * @param path
+	 * @return the discovery time, in ns, or {@link #UNKNOWN}
+	 */
+	public long remove(Path path) {
+		Long time = discoveredAt.remove(path);
+		return (time != null ? time : UNKNOWN);
+	}
+
+	/**
+	 * Number of files discovered and not taken yet
+	 *
+	 */
+	public int size() {
+		return discoveredAt.size();
+	}
+}
@@ -0,0 +1,167 @@
+package com.example.techtest.termfrequency.stream;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histogram of durations with buckets of logarithmic size, as HDR histograms:
+ * every power of 2 is split in 32 linear sub-buckets, so every recorded value
+ * is kept with a relative error under 3.2%, from 1 ns up to about 73 minutes,
+ * in a fixed set of counters.
+ *
+ * Recording a value is lock-free and doesn't allocate, so it can be used in
+ * the hot path of the stream components by several threads.
+ *
+ */
+public class LatencyHistogram {
+
+	private static final int SUB_BUCKET_BITS = 5;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	private static final int MAX_VALUE_BITS = 42;
+	private static final long MAX_VALUE = (1l << MAX_VALUE_BITS) - 1;
+	private static final int BUCKETS = (MAX_VALUE_BITS - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+	private final LongAdder count = new LongAdder();
+	private final LongAdder sum = new LongAdder();
+	private final LongAccumulator max = new LongAccumulator(Long::max, 0l);
+
+	/**
+	 * Record a duration
+	 *
+	 * @param nanos the duration, in ns. Negative values are taken as 0, and
+	 *              values out of range as the max one
+	 */
+	public void record(long nanos) {
+		long value = Math.min(Math.max(0l, nanos), MAX_VALUE);
+		counts.incrementAndGet(bucketOf(value));
+		count.increment();
+		sum.add(value);
+		max.accumulate(value);
+	}
+
+	static int bucketOf(long value) {
+		if (value < 2 * SUB_BUCKETS) {
+			return (int) value;
+		}
+		int shift = (63 - Long.numberOfLeadingZeros(value)) - SUB_BUCKET_BITS;
+		return (shift + 1) * SUB_BUCKETS + (int) (value >>> shift) - SUB_BUCKETS;
+	}
+
+	static long lowestValueOf(int bucket) {
+		if (bucket < 2 * SUB_BUCKETS) {
+			return bucket;
+		}
+		int shift = bucket / SUB_BUCKETS - 1;
+		return ((long) (bucket % SUB_BUCKETS + SUB_BUCKETS)) << shift;
+	}
+
+	static long highestValueOf(int bucket) {
+		return (bucket + 1 < BUCKETS ? lowestValueOf(bucket + 1) - 1 : MAX_VALUE);
+	}
+
+	/**
+	 * Copy of the current counts. Values recorded while copying may be partially
+	 * included
+	 *
+	 * @return the snapshot
+	 */
+	public Snapshot snapshot() {
+		long[] snapshotCounts = new long[BUCKETS];
+		long total = 0l;
+		for (int i = 0; i < BUCKETS; i++) {
+			snapshotCounts[i] = counts.get(i);
+			total += snapshotCounts[i];
+		}
+		return new Snapshot(snapshotCounts, total, sum.sum(), max.get());
+	}
+
+	/**
+	 * Number of values recorded
+	 *
+	 */
+	public long count() {
+		return count.sum();
+	}
+
+	/**
+	 * Immutable copy of the counts of a histogram
+	 *
+	 */
+	public static class Snapshot {
+
+		private final long[] counts;
+		private final long count;
+		private final long sum;
+		private final long max;
+
+		private Snapshot(long[] counts, long count, long sum, long max) {
+			this.counts = counts;
+			this.count = count;
+			this.sum = sum;
+			this.max = max;
+		}
+
+		/**
+		 * Number of values recorded
+		 *
+		 */
+		public long count() {
+			return count;
+		}
+
+		/**
+		 * Mean of the values recorded, in ns
+		 *
+		 */
+		public double mean() {
+			return (count > 0 ? sum / (double) count : 0d);
+		}
+
+		/**
+		 * Greatest value recorded, in ns
+		 *
+		 */
+		public long max() {
+			return max;
+		}
+
+		/**
+		 * Value under which a percentage of the recorded values are, in ns. The
+		 * highest value of the bucket, bounded by the max
+		 *
+		 * @param percentile percentage, from 0 to 100
+		 * @return the value, 0 if there are no values
+		 */
+		public long percentile(double percentile) {
+			if (count == 0) {
+				return 0l;
+			}
+
+			long rank = Math.max(1l, (long) Math.ceil(count * Math.min(100d, Math.max(0d, percentile)) / 100d));
+			long seen = 0l;
+			for (int i = 0; i < counts.length; i++) {
+				seen += counts[i];
+				if (seen >= rank) {
+					return Math.min(highestValueOf(i), max);
+				}
+			}
+			return max;
+		}
+
+		@Override
+		public String toString() {
+			StringBuilder sb = new StringBuilder();
+			sb.append("[count=").append(count).append(", mean-us=").append(toMicros((long) mean()))
+					.append(", p50-us=").append(toMicros(percentile(50))).append(", p99-us=")
+					.append(toMicros(percentile(99))).append(", max-us=").append(toMicros(max)).append("]");
+			return sb.toString();
+		}
+
+		private static long toMicros(long nanos) {
+			return TimeUnit.NANOSECONDS.toMicros(nanos);
+		}
+	}
+}
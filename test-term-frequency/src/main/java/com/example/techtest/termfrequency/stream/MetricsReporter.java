@@ -0,0 +1,85 @@
+package com.example.techtest.termfrequency.stream;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.Callable;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Periodic dump of the metrics of a pipeline @see PipelineMetrics to a file, a
+ * JSON object per line, appended to the file contents. A last line is written
+ * when stopped.
+ *
+ */
+public class MetricsReporter implements Callable<Integer> {
+
+	private static final Logger log = LogManager.getLogger(MetricsReporter.class);
+
+	public static final int RESULT_OK = 0;
+	public static final int RESULT_ERROR = -1;
+
+	public static final long DEFAULT_PERIOD_MS = 5000;
+
+	private final PipelineMetrics metrics;
+	private final Path file;
+	private long periodMs = DEFAULT_PERIOD_MS;
+
+	/**
+	 * New instance
+	 *
+	 * @param metrics metrics to dump
+	 * @param file    file the lines are appended to, created if needed
+	 */
+	public MetricsReporter(PipelineMetrics metrics, Path file) {
+		if (metrics == null || file == null) {
+			throw new IllegalArgumentException("Invalid metrics or file");
+		}
+		this.metrics = metrics;
+		this.file = file;
+	}
+
+	/**
+	 * Time between dumps
+	 *
+	 * @param periodMs the period, in ms
+	 * @return This instance
+	 */
+	public MetricsReporter periodMs(long periodMs) {
+		this.periodMs = periodMs;
+		return this;
+	}
+
+	@Override
+	public Integer call() throws Exception {
+		try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8, StandardOpenOption.CREATE,
+				StandardOpenOption.APPEND)) {
+			try {
+				while (!Thread.currentThread().isInterrupted()) {
+					Thread.sleep(Math.max(1l, periodMs));
+					dump(writer);
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			dump(writer);
+
+		} catch (IOException e) {
+			log.error("Error writing metrics to {}", file, e);
+			return RESULT_ERROR;
+		}
+
+		return RESULT_OK;
+	}
+
+	private void dump(BufferedWriter writer) throws IOException {
+		writer.write(metrics.toJson(System.currentTimeMillis()));
+		writer.newLine();
+		writer.flush();
+	}
+}
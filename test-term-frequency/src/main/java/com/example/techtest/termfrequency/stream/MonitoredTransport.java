@@ -0,0 +1,289 @@
+package com.example.techtest.termfrequency.stream;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Transport decorator that keeps track of the backpressure applied to the
+ * producers @see Transport: number of entities published, puts that had to
+ * wait for room and the time spent waiting, and the current and peak number of
+ * entities waiting in the transport. The time the consumers spent waiting for
+ * entities is kept too, so a starved stage can be told from a saturated one.
+ *
+ * Only the operations that have to wait are timed, as the non blocking ones
+ * are tried first.
+ *
+ * @param <E> the type of entities transported
+ */
+public class MonitoredTransport<E> implements Transport<E> {
+
+	private final String name;
+	private final Transport<E> transport;
+
+	private final LongAdder published = new LongAdder();
+	private final LongAdder stalledPuts = new LongAdder();
+	private final LongAdder stallNanos = new LongAdder();
+	private final LongAccumulator peakDepth = new LongAccumulator(Long::max, 0l);
+	private final LatencyHistogram stallTime = new LatencyHistogram();
+	private final LongAdder starvedTakes = new LongAdder();
+	private final LongAdder starvationNanos = new LongAdder();
+
+	/**
+	 * New instance
+	 *
+	 * @param name      name of the transport, used in the stats
+	 * @param transport transport to monitor
+	 */
+	public MonitoredTransport(String name, Transport<E> transport) {
+		if (transport == null) {
+			throw new IllegalArgumentException("Invalid transport");
+		}
+		this.name = name;
+		this.transport = transport;
+	}
+
+	@Override
+	public boolean offer(E e) {
+		if (transport.offer(e)) {
+			published();
+			return true;
+		}
+		return false;
+	}
+
+	@Override
+	public void put(E e) throws InterruptedException {
+		if (!transport.offer(e)) {
+			long start = System.nanoTime();
+			stalledPuts.increment();
+			try {
+				transport.put(e);
+			} finally {
+				long elapsed = System.nanoTime() - start;
+				stallNanos.add(elapsed);
+				stallTime.record(elapsed);
+			}
+		}
+		published();
+	}
+
+	@Override
+	public int offerAll(List<? extends E> entities, int from) {
+		int offered = transport.offerAll(entities, from);
+		if (offered > 0) {
+			published(offered);
+		}
+		return offered;
+	}
+
+	@Override
+	public void putAll(Collection<? extends E> entities) throws InterruptedException {
+		List<? extends E> batch = (entities instanceof List ? (List<? extends E>) entities
+				: List.copyOf(entities));
+		int offered = transport.offerAll(batch, 0);
+		if (offered < batch.size()) {
+			long start = System.nanoTime();
+			stalledPuts.increment();
+			try {
+				transport.putAll(batch.subList(offered, batch.size()));
+			} finally {
+				long elapsed = System.nanoTime() - start;
+				stallNanos.add(elapsed);
+				stallTime.record(elapsed);
+			}
+		}
+		published(batch.size());
+	}
+
+	private void published() {
+		published(1);
+	}
+
+	private void published(int count) {
+		published.add(count);
+		peakDepth.accumulate(transport.size());
+	}
+
+	@Override
+	public E take() throws InterruptedException {
+		E e = transport.poll(0l, TimeUnit.NANOSECONDS);
+		if (e == null) {
+			long start = System.nanoTime();
+			starvedTakes.increment();
+			try {
+				e = transport.take();
+			} finally {
+				starvationNanos.add(System.nanoTime() - start);
+			}
+		}
+		return e;
+	}
+
+	@Override
+	public E poll(long timeout, TimeUnit unit) throws InterruptedException {
+		E e = transport.poll(0l, TimeUnit.NANOSECONDS);
+		if (e == null && timeout > 0) {
+			long start = System.nanoTime();
+			starvedTakes.increment();
+			try {
+				e = transport.poll(timeout, unit);
+			} finally {
+				starvationNanos.add(System.nanoTime() - start);
+			}
+		}
+		return e;
+	}
+
+	@Override
+	public int drainTo(Collection<? super E> collection, int maxElements) {
+		return transport.drainTo(collection, maxElements);
+	}
+
+	@Override
+	public int size() {
+		return transport.size();
+	}
+
+	@Override
+	public int capacity() {
+		return transport.capacity();
+	}
+
+	@Override
+	public void clear() {
+		transport.clear();
+	}
+
+	/**
+	 * Recovers the current stats of the transport
+	 *
+	 * @return An instance of TransportStats
+	 */
+	public TransportStats getStats() {
+		TransportStats stats = new TransportStats();
+
+		stats.name = this.name;
+		stats.depth = transport.size();
+		stats.capacity = transport.capacity();
+		stats.peakDepth = peakDepth.get();
+		stats.published = published.sum();
+		stats.stalledPuts = stalledPuts.sum();
+		stats.stallTimeMs = TimeUnit.NANOSECONDS.toMillis(stallNanos.sum());
+		stats.stallTimes = stallTime.snapshot();
+		stats.starvedTakes = starvedTakes.sum();
+		stats.starvationTimeMs = TimeUnit.NANOSECONDS.toMillis(starvationNanos.sum());
+
+		return stats;
+	}
+
+	/**
+	 * Basic statistics of a transport
+	 *
+	 */
+	public static class TransportStats {
+
+		private String name = null;
+		private int depth = 0;
+		private int capacity = 0;
+		private long peakDepth = 0l;
+		private long published = 0l;
+		private long stalledPuts = 0l;
+		private long stallTimeMs = 0l;
+		private LatencyHistogram.Snapshot stallTimes = null;
+		private long starvedTakes = 0l;
+		private long starvationTimeMs = 0l;
+
+		/**
+		 * Name of the transport
+		 *
+		 */
+		public String name() {
+			return this.name;
+		}
+
+		/**
+		 * Number of entities waiting in the transport
+		 *
+		 */
+		public int depth() {
+			return this.depth;
+		}
+
+		/**
+		 * Max number of entities waiting in the transport
+		 *
+		 */
+		public int capacity() {
+			return this.capacity;
+		}
+
+		/**
+		 * Max number of entities observed waiting in the transport
+		 *
+		 */
+		public long peakDepth() {
+			return this.peakDepth;
+		}
+
+		/**
+		 * Number of entities published
+		 *
+		 */
+		public long published() {
+			return this.published;
+		}
+
+		/**
+		 * Number of puts that had to wait for room in the transport
+		 *
+		 */
+		public long stalledPuts() {
+			return this.stalledPuts;
+		}
+
+		/**
+		 * Total time spent by the producers waiting for room, in milliseconds
+		 *
+		 */
+		public long stallTimeMs() {
+			return this.stallTimeMs;
+		}
+
+		/**
+		 * Distribution of the time spent by every stalled put waiting for room
+		 *
+		 */
+		public LatencyHistogram.Snapshot stallTimes() {
+			return this.stallTimes;
+		}
+
+		/**
+		 * Number of takes and polls that had to wait for entities
+		 *
+		 */
+		public long starvedTakes() {
+			return this.starvedTakes;
+		}
+
+		/**
+		 * Total time spent by the consumers waiting for entities, in milliseconds
+		 *
+		 */
+		public long starvationTimeMs() {
+			return this.starvationTimeMs;
+		}
+
+		@Override
+		public String toString() {
+			StringBuilder sb = new StringBuilder();
+			sb.append(name).append(" [depth=").append(depth).append("/").append(capacity).append(", peak-depth=")
+					.append(peakDepth).append(", published=").append(published).append(", stalled-puts=")
+					.append(stalledPuts).append(", stall-time-ms=").append(stallTimeMs).append(", starved-takes=")
+					.append(starvedTakes).append(", starvation-time-ms=").append(starvationTimeMs).append("]");
+			return sb.toString();
+		}
+	}
+}
@@ -0,0 +1,239 @@
+package com.example.techtest.termfrequency.stream;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanException;
+import javax.management.MBeanInfo;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.ReflectionException;
+
+import com.example.techtest.termfrequency.stream.MonitoredTransport.TransportStats;
+import com.example.techtest.termfrequency.stream.StageMetrics.StageStats;
+
+/**
+ * Registry of the metrics of a pipeline: the metrics of every component
+ * @see StageMetrics and the stats of every monitored transport @see
+ * MonitoredTransport.
+ *
+ * The metrics can be read as a single JSON line, to be dumped periodically
+ * @see MetricsReporter, or as the read only attributes of a JMX MBean, named
+ * as {@code <stage|transport>.<name>.<metric>}. Times are in microseconds,
+ * except the totals in milliseconds.
+ *
+ */
+public class PipelineMetrics implements DynamicMBean {
+
+	public static final String DEFAULT_OBJECT_NAME = "com.example.techtest.termfrequency:type=PipelineMetrics";
+
+	private static final double[] PERCENTILES = { 50d, 90d, 99d, 99.9d };
+
+	private final List<StageMetrics> stages = new CopyOnWriteArrayList<>();
+	private final List<MonitoredTransport<?>> transports = new CopyOnWriteArrayList<>();
+
+	/**
+	 * Metrics of a component, registered the first time
+	 *
+	 * @param name name of the component
+	 * @return the metrics, shared by every instance of the component
+	 */
+	public synchronized StageMetrics stage(String name) {
+		for (StageMetrics stage : stages) {
+			if (stage.name().equals(name)) {
+				return stage;
+			}
+		}
+		StageMetrics stage = new StageMetrics(name);
+		stages.add(stage);
+		return stage;
+	}
+
+	/**
+	 * Register a transport
+	 *
+	 * @param transport
+	 * @return the transport
+	 */
+	public <E> MonitoredTransport<E> transport(MonitoredTransport<E> transport) {
+		transports.add(transport);
+		return transport;
+	}
+
+	/**
+	 * Register the metrics as an MBean of the platform server
+	 *
+	 * @param objectName name of the MBean
+	 * @throws JMException if the name is not valid or already registered
+	 */
+	public void registerMBean(String objectName) throws JMException {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		server.registerMBean(this, new ObjectName(objectName));
+	}
+
+	/**
+	 * Unregister the MBean from the platform server, if registered
+	 *
+	 * @param objectName name of the MBean
+	 * @throws JMException if the name is not valid
+	 */
+	public void unregisterMBean(String objectName) throws JMException {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		ObjectName name = new ObjectName(objectName);
+		if (server.isRegistered(name)) {
+			server.unregisterMBean(name);
+		}
+	}
+
+	/**
+	 * Current value of every metric, by attribute name
+	 *
+	 * @return the metrics, in registration order
+	 */
+	public Map<String, Object> attributes() {
+		Map<String, Object> attributes = new LinkedHashMap<>();
+		toMap().forEach((section, entries) -> entries.forEach((name, metrics) -> metrics
+				.forEach((metric, value) -> attributes.put(section + "." + name + "." + metric, value))));
+		return attributes;
+	}
+
+	/**
+	 * Current metrics as a single line JSON object
+	 *
+	 * @param timestamp time of the metrics, in ms since the epoch
+	 * @return the JSON line, without line terminator
+	 */
+	public String toJson(long timestamp) {
+		StringBuilder json = new StringBuilder(1024);
+		json.append("{\"timestamp\":").append(timestamp);
+		toMap().forEach((section, entries) -> {
+			json.append(",\"").append(section).append("s\":{");
+			String entrySeparator = "";
+			for (Map.Entry<String, Map<String, Object>> entry : entries.entrySet()) {
+				json.append(entrySeparator).append('"').append(escape(entry.getKey())).append("\":{");
+				String separator = "";
+				for (Map.Entry<String, Object> metric : entry.getValue().entrySet()) {
+					json.append(separator).append('"').append(metric.getKey()).append("\":").append(metric.getValue());
+					separator = ",";
+				}
+				json.append('}');
+				entrySeparator = ",";
+			}
+			json.append('}');
+		});
+		return json.append('}').toString();
+	}
+
+	private Map<String, Map<String, Map<String, Object>>> toMap() {
+		Map<String, Map<String, Object>> stageMetrics = new LinkedHashMap<>();
+		for (StageMetrics stage : stages) {
+			StageStats stats = stage.getStats();
+			Map<String, Object> metrics = new LinkedHashMap<>();
+			metrics.put("received", stats.received());
+			metrics.put("published", stats.published());
+			metrics.put("bytes-read", stats.bytesRead());
+			metrics.put("tokens-read", stats.tokensRead());
+			metrics.put("errors", stats.errors());
+			putHistogram(metrics, "processing-time", stats.processingTime());
+			putHistogram(metrics, "refresh-time", stats.refreshTime());
+			stageMetrics.put(stats.name(), metrics);
+		}
+
+		Map<String, Map<String, Object>> transportMetrics = new LinkedHashMap<>();
+		for (MonitoredTransport<?> transport : transports) {
+			TransportStats stats = transport.getStats();
+			Map<String, Object> metrics = new LinkedHashMap<>();
+			metrics.put("depth", stats.depth());
+			metrics.put("capacity", stats.capacity());
+			metrics.put("peak-depth", stats.peakDepth());
+			metrics.put("published", stats.published());
+			metrics.put("stalled-puts", stats.stalledPuts());
+			metrics.put("stall-time-ms", stats.stallTimeMs());
+			putHistogram(metrics, "stall-time", stats.stallTimes());
+			metrics.put("starved-takes", stats.starvedTakes());
+			metrics.put("starvation-time-ms", stats.starvationTimeMs());
+			transportMetrics.put(stats.name(), metrics);
+		}
+
+		Map<String, Map<String, Map<String, Object>>> sections = new LinkedHashMap<>();
+		sections.put("stage", stageMetrics);
+		sections.put("transport", transportMetrics);
+		return sections;
+	}
+
+	private static void putHistogram(Map<String, Object> metrics, String name, LatencyHistogram.Snapshot histogram) {
+		metrics.put(name + "-count", histogram.count());
+		metrics.put(name + "-mean-us", micros((long) histogram.mean()));
+		for (double percentile : PERCENTILES) {
+			String label = (percentile == Math.rint(percentile) ? Long.toString((long) percentile)
+					: Double.toString(percentile).replace('.', '_'));
+			metrics.put(name + "-p" + label + "-us", micros(histogram.percentile(percentile)));
+		}
+		metrics.put(name + "-max-us", micros(histogram.max()));
+	}
+
+	private static long micros(long nanos) {
+		return nanos / 1000l;
+	}
+
+	private static String escape(String value) {
+		return value.replace("\\", "\\\\").replace("\"", "\\\"");
+	}
+
+	@Override
+	public Object getAttribute(String attribute) throws AttributeNotFoundException {
+		Object value = attributes().get(attribute);
+		if (value == null) {
+			throw new AttributeNotFoundException(attribute);
+		}
+		return value;
+	}
+
+	@Override
+	public AttributeList getAttributes(String[] names) {
+		Map<String, Object> attributes = attributes();
+		AttributeList list = new AttributeList();
+		for (String name : names) {
+			Object value = attributes.get(name);
+			if (value != null) {
+				list.add(new Attribute(name, value));
+			}
+		}
+		return list;
+	}
+
+	@Override
+	public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+		throw new AttributeNotFoundException("Read only attribute " + attribute.getName());
+	}
+
+	@Override
+	public AttributeList setAttributes(AttributeList attributes) {
+		return new AttributeList();
+	}
+
+	@Override
+	public Object invoke(String actionName, Object[] params, String[] signature)
+			throws MBeanException, ReflectionException {
+		throw new ReflectionException(new NoSuchMethodException(actionName), "No operations: " + actionName);
+	}
+
+	@Override
+	public MBeanInfo getMBeanInfo() {
+		List<MBeanAttributeInfo> attributeInfos = new ArrayList<>();
+		attributes().forEach((name, value) -> attributeInfos
+				.add(new MBeanAttributeInfo(name, value.getClass().getName(), name, true, false, false)));
+		return new MBeanInfo(getClass().getName(), "Metrics of the term frequency pipeline",
+				attributeInfos.toArray(new MBeanAttributeInfo[0]), null, null, null);
+	}
+}
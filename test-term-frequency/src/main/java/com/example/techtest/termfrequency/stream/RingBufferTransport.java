@@ -0,0 +1,386 @@
+package com.example.techtest.termfrequency.stream;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Bounded lock-free Transport for multiple producers and consumers @see
+ * Transport, over a ring buffer of preallocated slots.
+ *
+ * Every slot has a sequence number telling whether it is ready to be written
+ * or read for a given lap of the ring, so producers and consumers only compete
+ * with a CAS on the tail and head counters, and no node is allocated per
+ * entity. Consumers can claim a whole batch of ready slots with a single CAS
+ * @see #drainTo(Collection, int), and producers a whole batch of released ones
+ * @see #offerAll(List, int).
+ *
+ * Waiting producers and consumers spin for a while, then yield, and then block
+ * on a condition until signaled, so an idle consumer doesn't wake up until an
+ * entity is published. The lock is only taken when some thread is blocked: the
+ * publishing path just checks a counter of blocked threads.
+ *
+ * @param <E> the type of entities transported
+ */
+public class RingBufferTransport<E> implements Transport<E> {
+
+	private static final int SPIN_TRIES = 100;
+	private static final int YIELD_TRIES = 100;
+
+	private final int mask;
+	private final Object[] slots;
+	private final AtomicLongArray sequences;
+	private final AtomicLong head = new AtomicLong();
+	private final AtomicLong tail = new AtomicLong();
+
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition notEmpty = lock.newCondition();
+	private final Condition notFull = lock.newCondition();
+	private final AtomicInteger blockedConsumers = new AtomicInteger();
+	private final AtomicInteger blockedProducers = new AtomicInteger();
+
+	/**
+	 * New instance
+	 *
+	 * @param capacity min number of entities, rounded up to a power of 2. At least
+	 *                 2 slots are used, as with a single one a published slot
+	 *                 can't be told apart from a consumed one
+	 */
+	public RingBufferTransport(int capacity) {
+		if (capacity <= 0 || capacity > (1 << 30)) {
+			throw new IllegalArgumentException("Invalid capacity " + capacity);
+		}
+
+		int size = Math.max(2, Integer.highestOneBit(capacity));
+		if (size < capacity) {
+			size <<= 1;
+		}
+
+		this.mask = size - 1;
+		this.slots = new Object[size];
+		this.sequences = new AtomicLongArray(size);
+		for (int i = 0; i < size; i++) {
+			sequences.set(i, i);
+		}
+	}
+
+	@Override
+	public boolean offer(E e) {
+		if (e == null) {
+			throw new NullPointerException();
+		}
+
+		long position = tail.get();
+		while (true) {
+			int index = (int) position & mask;
+			long difference = sequences.getAcquire(index) - position;
+
+			if (difference == 0) {
+				if (tail.compareAndSet(position, position + 1)) {
+					slots[index] = e;
+					// Volatile store, ordered before the read of the blocked consumers
+					sequences.set(index, position + 1);
+					if (blockedConsumers.get() > 0) {
+						signal(notEmpty, false);
+					}
+					return true;
+				}
+				position = tail.get();
+			} else if (difference < 0) {
+				// Slot still used by the previous lap, full
+				return false;
+			} else {
+				position = tail.get();
+			}
+		}
+	}
+
+	@Override
+	public void put(E e) throws InterruptedException {
+		int tries = 0;
+		while (!offer(e)) {
+			if (tries < SPIN_TRIES + YIELD_TRIES) {
+				tries = backOff(tries);
+			} else {
+				block(blockedProducers, notFull, this::isWritable, -1l);
+			}
+		}
+	}
+
+	@Override
+	public int offerAll(List<? extends E> entities, int from) {
+		// No more than a whole lap can be claimed at once
+		int count = Math.min(entities.size() - from, mask + 1);
+		for (int i = 0; i < count; i++) {
+			if (entities.get(from + i) == null) {
+				throw new NullPointerException();
+			}
+		}
+
+		long position = tail.get();
+		while (count > 0) {
+			// Count the consecutive released slots from the tail
+			int free = 0;
+			while (free < count) {
+				int index = (int) (position + free) & mask;
+				if (sequences.getAcquire(index) != position + free) {
+					break;
+				}
+				free++;
+			}
+
+			if (free == 0) {
+				if (sequences.getAcquire((int) position & mask) < position) {
+					// Slot still used by the previous lap, full
+					return 0;
+				}
+				position = tail.get();
+
+			} else if (tail.compareAndSet(position, position + free)) {
+				// Claim all of them at once, published in order
+				for (int i = 0; i < free; i++) {
+					int index = (int) (position + i) & mask;
+					slots[index] = entities.get(from + i);
+					sequences.set(index, position + i + 1);
+				}
+				if (blockedConsumers.get() > 0) {
+					signal(notEmpty, free > 1);
+				}
+				return free;
+
+			} else {
+				position = tail.get();
+			}
+		}
+		return 0;
+	}
+
+	@Override
+	public void putAll(Collection<? extends E> entities) throws InterruptedException {
+		List<? extends E> batch = (entities instanceof List ? (List<? extends E>) entities
+				: List.copyOf(entities));
+		int published = 0;
+		int tries = 0;
+		while (published < batch.size()) {
+			int offered = offerAll(batch, published);
+			if (offered > 0) {
+				published += offered;
+				tries = 0;
+			} else if (tries < SPIN_TRIES + YIELD_TRIES) {
+				tries = backOff(tries);
+			} else {
+				block(blockedProducers, notFull, this::isWritable, -1l);
+			}
+		}
+	}
+
+	/**
+	 * Receive the next entity, if any, without waiting
+	 *
+	 * @return the entity, or null if the transport is empty
+	 */
+	@SuppressWarnings("unchecked")
+	public E poll() {
+		long position = head.get();
+		while (true) {
+			int index = (int) position & mask;
+			long difference = sequences.getAcquire(index) - (position + 1);
+
+			if (difference == 0) {
+				if (head.compareAndSet(position, position + 1)) {
+					E e = (E) consume(index, position);
+					released();
+					return e;
+				}
+				position = head.get();
+			} else if (difference < 0) {
+				// Slot not published yet, empty
+				return null;
+			} else {
+				position = head.get();
+			}
+		}
+	}
+
+	@Override
+	public E take() throws InterruptedException {
+		int tries = 0;
+		E e;
+		while ((e = poll()) == null) {
+			if (tries < SPIN_TRIES + YIELD_TRIES) {
+				tries = backOff(tries);
+			} else {
+				block(blockedConsumers, notEmpty, this::isReadable, -1l);
+			}
+		}
+		return e;
+	}
+
+	@Override
+	public E poll(long timeout, TimeUnit unit) throws InterruptedException {
+		long deadline = System.nanoTime() + unit.toNanos(timeout);
+		int tries = 0;
+		E e;
+		while ((e = poll()) == null) {
+			long remaining = deadline - System.nanoTime();
+			if (remaining <= 0) {
+				return null;
+			}
+			if (tries < SPIN_TRIES + YIELD_TRIES) {
+				tries = backOff(tries);
+			} else {
+				block(blockedConsumers, notEmpty, this::isReadable, remaining);
+			}
+		}
+		return e;
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public int drainTo(Collection<? super E> collection, int maxElements) {
+		while (maxElements > 0) {
+			long position = head.get();
+
+			// Count the consecutive published slots from the head
+			int ready = 0;
+			while (ready < maxElements && ready <= mask) {
+				int index = (int) (position + ready) & mask;
+				if (sequences.getAcquire(index) != position + ready + 1) {
+					break;
+				}
+				ready++;
+			}
+
+			if (ready == 0) {
+				return 0;
+			}
+
+			// Claim all of them at once, or retry if another consumer moved the head
+			if (head.compareAndSet(position, position + ready)) {
+				for (int i = 0; i < ready; i++) {
+					collection.add((E) consume((int) (position + i) & mask, position + i));
+				}
+				released();
+				return ready;
+			}
+		}
+		return 0;
+	}
+
+	@Override
+	public int size() {
+		long size = tail.get() - head.get();
+		return (int) Math.max(0, Math.min(size, capacity()));
+	}
+
+	@Override
+	public int capacity() {
+		return mask + 1;
+	}
+
+	@Override
+	public void clear() {
+		while (poll() != null) {
+			// Discard
+		}
+	}
+
+	/**
+	 * Read a claimed slot and make it available for the next lap. Volatile store,
+	 * ordered before the read of the blocked producers @see #released()
+	 */
+	private Object consume(int index, long position) {
+		Object e = slots[index];
+		slots[index] = null;
+		sequences.set(index, position + mask + 1);
+		return e;
+	}
+
+	/**
+	 * Wake up the blocked producers, if any, after releasing slots
+	 */
+	private void released() {
+		if (blockedProducers.get() > 0) {
+			signal(notFull, true);
+		}
+	}
+
+	/**
+	 * Whether the slot at the tail is released
+	 */
+	private boolean isWritable() {
+		long position = tail.get();
+		return sequences.get((int) position & mask) == position;
+	}
+
+	/**
+	 * Whether the slot at the head is published
+	 */
+	private boolean isReadable() {
+		long position = head.get();
+		return sequences.get((int) position & mask) == position + 1;
+	}
+
+	private void signal(Condition condition, boolean all) {
+		lock.lock();
+		try {
+			if (all) {
+				condition.signalAll();
+			} else {
+				condition.signal();
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Block until signaled, unless the awaited state is already reached. The
+	 * blocked threads counter is incremented before checking the state, and the
+	 * other side reads the counter after changing it, so no signal is lost
+	 *
+	 * @param blocked   counter of the threads blocked on the condition
+	 * @param condition the condition to wait on
+	 * @param ready     check of the awaited state
+	 * @param nanos     max time to wait, negative to wait without limit
+	 */
+	private void block(AtomicInteger blocked, Condition condition, BooleanSupplier ready,
+			long nanos) throws InterruptedException {
+		lock.lockInterruptibly();
+		blocked.incrementAndGet();
+		try {
+			if (!ready.getAsBoolean()) {
+				if (nanos < 0) {
+					condition.await();
+				} else {
+					condition.awaitNanos(nanos);
+				}
+			}
+		} finally {
+			blocked.decrementAndGet();
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Spin and then yield while waiting for room or entities
+	 */
+	private static int backOff(int tries) throws InterruptedException {
+		if (Thread.interrupted()) {
+			throw new InterruptedException();
+		}
+
+		if (tries < SPIN_TRIES) {
+			Thread.onSpinWait();
+		} else {
+			Thread.yield();
+		}
+		return tries + 1;
+	}
+}
@@ -12,10 +12,19 @@ import java.util.concurrent.BlockingQueue;
  */
 public interface Sink<E> {
 
+	/**
+	 * Define the transport the source entities are received from
+	 * 
+	 * @param transport
+	 */
+	public void from(Transport<E> transport);
+
 	/**
 	 * Define the queue the source entities are received from
 	 * 
 	 * @param queue
 	 */
-	public void from(BlockingQueue<E> queue);
+	public default void from(BlockingQueue<E> queue) {
+		from(queue != null ? new BlockingQueueTransport<>(queue) : null);
+	}
 }
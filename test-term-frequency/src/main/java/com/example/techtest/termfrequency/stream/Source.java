@@ -12,10 +12,19 @@ import java.util.concurrent.BlockingQueue;
  */
 public interface Source<E> {
 
+	/**
+	 * Define the transport the entities are produced to
+	 * 
+	 * @param transport
+	 */
+	public void output(Transport<E> transport);
+
 	/**
 	 * Define the queue the entities are produced to
 	 * 
 	 * @param queue
 	 */
-	public void output(BlockingQueue<E> queue);
+	public default void output(BlockingQueue<E> queue) {
+		output(queue != null ? new BlockingQueueTransport<>(queue) : null);
+	}
 }
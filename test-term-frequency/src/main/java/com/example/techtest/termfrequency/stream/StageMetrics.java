@@ -0,0 +1,208 @@
+package com.example.techtest.termfrequency.stream;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Metrics of a stream component, or of several instances of the same one
+ * sharing them: entities received and published, bytes and tokens read, time
+ * spent processing every entity, and time spent refreshing the results of the
+ * sinks, as the ranking.
+ *
+ * Every update is lock-free @see LatencyHistogram, so the components record
+ * them in their hot path.
+ *
+ */
+public class StageMetrics {
+
+	private final String name;
+
+	private final LongAdder received = new LongAdder();
+	private final LongAdder published = new LongAdder();
+	private final LongAdder bytesRead = new LongAdder();
+	private final LongAdder tokensRead = new LongAdder();
+	private final LongAdder errors = new LongAdder();
+	private final LatencyHistogram processingTime = new LatencyHistogram();
+	private final LatencyHistogram refreshTime = new LatencyHistogram();
+
+	/**
+	 * New instance
+	 *
+	 * @param name name of the component, used in the stats
+	 */
+	public StageMetrics(String name) {
+		this.name = name;
+	}
+
+	/**
+	 * Name of the component
+	 *
+	 */
+	public String name() {
+		return name;
+	}
+
+	/**
+	 * Record entities received
+	 *
+	 * @param entities number of entities
+	 */
+	public void received(long entities) {
+		received.add(entities);
+	}
+
+	/**
+	 * Record entities published
+	 *
+	 * @param entities number of entities
+	 */
+	public void published(long entities) {
+		published.add(entities);
+	}
+
+	/**
+	 * Record the contents read for an entity
+	 *
+	 * @param bytes  bytes read
+	 * @param tokens tokens found
+	 */
+	public void read(long bytes, long tokens) {
+		bytesRead.add(bytes);
+		tokensRead.add(tokens);
+	}
+
+	/**
+	 * Record an entity discarded by an error
+	 *
+	 */
+	public void failed() {
+		errors.increment();
+	}
+
+	/**
+	 * Record the time spent processing an entity
+	 *
+	 * @param nanos the time, in ns
+	 */
+	public void processed(long nanos) {
+		processingTime.record(nanos);
+	}
+
+	/**
+	 * Record the time spent refreshing the results
+	 *
+	 * @param nanos the time, in ns
+	 */
+	public void refreshed(long nanos) {
+		refreshTime.record(nanos);
+	}
+
+	/**
+	 * Recovers the current stats of the component
+	 *
+	 * @return An instance of StageStats
+	 */
+	public StageStats getStats() {
+		StageStats stats = new StageStats();
+
+		stats.name = this.name;
+		stats.received = received.sum();
+		stats.published = published.sum();
+		stats.bytesRead = bytesRead.sum();
+		stats.tokensRead = tokensRead.sum();
+		stats.errors = errors.sum();
+		stats.processingTime = processingTime.snapshot();
+		stats.refreshTime = refreshTime.snapshot();
+
+		return stats;
+	}
+
+	/**
+	 * Basic statistics of a component
+	 *
+	 */
+	public static class StageStats {
+
+		private String name = null;
+		private long received = 0l;
+		private long published = 0l;
+		private long bytesRead = 0l;
+		private long tokensRead = 0l;
+		private long errors = 0l;
+		private LatencyHistogram.Snapshot processingTime = null;
+		private LatencyHistogram.Snapshot refreshTime = null;
+
+		/**
+		 * Name of the component
+		 *
+		 */
+		public String name() {
+			return this.name;
+		}
+
+		/**
+		 * Number of entities received
+		 *
+		 */
+		public long received() {
+			return this.received;
+		}
+
+		/**
+		 * Number of entities published
+		 *
+		 */
+		public long published() {
+			return this.published;
+		}
+
+		/**
+		 * Number of bytes read
+		 *
+		 */
+		public long bytesRead() {
+			return this.bytesRead;
+		}
+
+		/**
+		 * Number of tokens read
+		 *
+		 */
+		public long tokensRead() {
+			return this.tokensRead;
+		}
+
+		/**
+		 * Number of entities discarded by errors
+		 *
+		 */
+		public long errors() {
+			return this.errors;
+		}
+
+		/**
+		 * Distribution of the time spent processing every entity
+		 *
+		 */
+		public LatencyHistogram.Snapshot processingTime() {
+			return this.processingTime;
+		}
+
+		/**
+		 * Distribution of the time spent refreshing the results
+		 *
+		 */
+		public LatencyHistogram.Snapshot refreshTime() {
+			return this.refreshTime;
+		}
+
+		@Override
+		public String toString() {
+			StringBuilder sb = new StringBuilder();
+			sb.append(name).append(" [received=").append(received).append(", published=").append(published)
+					.append(", bytes-read=").append(bytesRead).append(", tokens-read=").append(tokensRead)
+					.append(", errors=").append(errors).append(", processing-time=").append(processingTime)
+					.append(", refresh-time=").append(refreshTime).append("]");
+			return sb.toString();
+		}
+	}
+}
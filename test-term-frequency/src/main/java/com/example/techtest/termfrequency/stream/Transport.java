@@ -0,0 +1,105 @@
+package com.example.techtest.termfrequency.stream;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Channel used to move entities between stream components, from a Source to a
+ * Sink @see Source @see Sink. Implementations are expected to be safe for
+ * multiple producer and consumer threads.
+ * 
+ * @param <E> the type of entities transported
+ */
+public interface Transport<E> {
+
+	/**
+	 * Publish an entity if there is room for it, without waiting
+	 * 
+	 * @param e
+	 * @return true if the entity was published
+	 */
+	public boolean offer(E e);
+
+	/**
+	 * Publish an entity, waiting for room if the transport is full
+	 * 
+	 * @param e
+	 * @throws InterruptedException
+	 */
+	public void put(E e) throws InterruptedException;
+
+	/**
+	 * Publish the first entities of a batch that fit in the transport, in order,
+	 * without waiting
+	 * 
+	 * @param entities
+	 * @param from     index of the first entity to publish
+	 * @return the number of entities published
+	 */
+	public default int offerAll(List<? extends E> entities, int from) {
+		int next = from;
+		while (next < entities.size() && offer(entities.get(next))) {
+			next++;
+		}
+		return next - from;
+	}
+
+	/**
+	 * Publish a batch of entities, in order, waiting for room when needed
+	 * 
+	 * @param entities
+	 * @throws InterruptedException
+	 */
+	public default void putAll(Collection<? extends E> entities) throws InterruptedException {
+		for (E e : entities) {
+			put(e);
+		}
+	}
+
+	/**
+	 * Receive the next entity, waiting for it if the transport is empty
+	 * 
+	 * @return the entity
+	 * @throws InterruptedException
+	 */
+	public E take() throws InterruptedException;
+
+	/**
+	 * Receive the next entity, waiting for it up to a timeout
+	 * 
+	 * @param timeout
+	 * @param unit
+	 * @return the entity, or null if the timeout expired
+	 * @throws InterruptedException
+	 */
+	public E poll(long timeout, TimeUnit unit) throws InterruptedException;
+
+	/**
+	 * Receive all the available entities, up to a max, without waiting
+	 * 
+	 * @param collection  collection to add the entities to
+	 * @param maxElements max number of entities to receive
+	 * @return the number of entities received
+	 */
+	public int drainTo(Collection<? super E> collection, int maxElements);
+
+	/**
+	 * Number of entities waiting in the transport
+	 * 
+	 */
+	public int size();
+
+	/**
+	 * Max number of entities waiting in the transport, Integer.MAX_VALUE if
+	 * unbounded
+	 * 
+	 */
+	public int capacity();
+
+	/**
+	 * Remove all the waiting entities
+	 * 
+	 */
+	public void clear();
+}
@@ -0,0 +1,41 @@
+package com.example.techtest.termfrequency.token;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+
+/**
+ * Tokenizer capable of working directly over the encoded bytes of a text, for
+ * some specific charsets, without decoding the bytes into Strings first.
+ *
+ */
+public interface ByteTokenizer extends Tokenizer {
+
+	/**
+	 * Check if the tokenizer can work over bytes encoded with a charset
+	 *
+	 * @param charset
+	 * @return
+	 */
+	public boolean supports(Charset charset);
+
+	/**
+	 * Split the bytes between the buffer position and limit in tokens, and publish
+	 * every normalized token to the sink. The buffer position is not modified.
+	 *
+	 * @param bytes   encoded text
+	 * @param charset charset of the encoded text, one of the supported ones
+	 * @param sink    receiver of the normalized tokens
+	 * @throws CharacterCodingException if the bytes are not valid for the charset
+	 */
+	public void tokenize(ByteBuffer bytes, Charset charset, TokenSink sink) throws CharacterCodingException;
+
+	/**
+	 * Check if a byte is a token delimiter. Delimiter bytes are never part of
+	 * multi-byte chars, so a text can be safely split just after any of them.
+	 *
+	 * @param b
+	 * @return
+	 */
+	public boolean isDelimiter(byte b);
+}
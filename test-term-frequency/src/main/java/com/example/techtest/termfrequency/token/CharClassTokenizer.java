@@ -0,0 +1,236 @@
+package com.example.techtest.termfrequency.token;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.MalformedInputException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Default Tokenizer, equivalent to splitting with the "[\s,\-_]" pattern and
+ * normalizing with lower case and the "[\p{Punct}|¿]" pattern, but done in a
+ * single scan over the chars driven by a character class table.
+ *
+ * UTF-8 and US-ASCII encoded bytes can also be tokenized directly, decoding
+ * only the non ASCII chars.
+ *
+ * Upper case conversion is done char by char using
+ * {@link Character#toLowerCase(int)}, independent of the default locale.
+ *
+ */
+public class CharClassTokenizer implements ByteTokenizer {
+
+	static final byte KEEP = 0;
+	static final byte DELIMITER = 1;
+	static final byte STRIP = 2;
+
+	static final byte[] CHAR_CLASSES = new byte[256];
+	static final char[] LOWER_CASE = new char[256];
+
+	private static final int[] MIN_CODE_POINTS = { 0, 0x80, 0x800, 0x10000 };
+
+	static {
+		for (char c = 0; c < 256; c++) {
+			LOWER_CASE[c] = Character.toLowerCase(c);
+		}
+
+		// Token delimiters, [\s,\-_]
+		for (char c : new char[] { ' ', '\t', '\n', 0x0B, '\f', '\r', ',', '-', '_' }) {
+			CHAR_CLASSES[c] = DELIMITER;
+		}
+
+		// Removed by the normalization, [\p{Punct}|¿]
+		for (char c : "!\"#$%&'()*+./:;<=>?@[\\]^`{|}~¿".toCharArray()) {
+			CHAR_CLASSES[c] = STRIP;
+		}
+	}
+
+	private char[] buffer = new char[32];
+
+	@Override
+	public void tokenize(CharSequence text, TokenSink sink) {
+		char[] chars = buffer;
+		int length = 0;
+		boolean inToken = false;
+
+		for (int i = 0, textLength = text.length(); i < textLength; i++) {
+			char c = text.charAt(i);
+
+			if (c < 256) {
+				byte charClass = CHAR_CLASSES[c];
+				if (charClass == DELIMITER) {
+					if (inToken) {
+						sink.token(chars, length);
+						length = 0;
+						inToken = false;
+					}
+					continue;
+				}
+
+				inToken = true;
+				if (charClass == STRIP) {
+					continue;
+				}
+				c = LOWER_CASE[c];
+
+			} else {
+				inToken = true;
+				if (Character.isHighSurrogate(c) && i + 1 < textLength
+						&& Character.isLowSurrogate(text.charAt(i + 1))) {
+					if (length + 2 > chars.length) {
+						chars = grow();
+					}
+					int codePoint = Character.toLowerCase(Character.toCodePoint(c, text.charAt(++i)));
+					length += Character.toChars(codePoint, chars, length);
+					continue;
+				}
+				c = Character.toLowerCase(c);
+			}
+
+			if (length == chars.length) {
+				chars = grow();
+			}
+			chars[length++] = c;
+		}
+
+		if (inToken) {
+			sink.token(chars, length);
+		}
+	}
+
+	@Override
+	public boolean supports(Charset charset) {
+		return StandardCharsets.UTF_8.equals(charset) || StandardCharsets.US_ASCII.equals(charset);
+	}
+
+	@Override
+	public boolean isDelimiter(byte b) {
+		return b >= 0 && CHAR_CLASSES[b] == DELIMITER;
+	}
+
+	@Override
+	public void tokenize(ByteBuffer bytes, Charset charset, TokenSink sink) throws CharacterCodingException {
+		boolean asciiOnly = StandardCharsets.US_ASCII.equals(charset);
+		char[] chars = buffer;
+		int length = 0;
+		boolean inToken = false;
+
+		int i = bytes.position();
+		int limit = bytes.limit();
+		while (i < limit) {
+			int b = bytes.get(i++);
+
+			if (b >= 0) {
+				byte charClass = CHAR_CLASSES[b];
+				if (charClass == DELIMITER) {
+					if (inToken) {
+						sink.token(chars, length);
+						length = 0;
+						inToken = false;
+					}
+					continue;
+				}
+
+				inToken = true;
+				if (charClass == STRIP) {
+					continue;
+				}
+				if (length == chars.length) {
+					chars = grow();
+				}
+				chars[length++] = LOWER_CASE[b];
+
+			} else {
+				// Multi-byte UTF-8 char
+				int continuationBytes = asciiOnly ? -1 : continuationBytes(b);
+				if (continuationBytes < 0) {
+					throw new MalformedInputException(1);
+				}
+				int codePoint = decode(bytes, i, limit, b, continuationBytes);
+				i += continuationBytes;
+
+				inToken = true;
+				if (codePoint < 256) {
+					if (CHAR_CLASSES[codePoint] == STRIP) {
+						continue;
+					}
+					codePoint = LOWER_CASE[codePoint];
+				} else {
+					codePoint = Character.toLowerCase(codePoint);
+				}
+
+				if (length + 2 > chars.length) {
+					chars = grow();
+				}
+				length += Character.toChars(codePoint, chars, length);
+			}
+		}
+
+		if (inToken) {
+			sink.token(chars, length);
+		}
+	}
+
+	@Override
+	public String normalize(String token) {
+		StringBuilder sb = new StringBuilder(token.length());
+		tokenize(token, (chars, length) -> sb.append(chars, 0, length));
+		return sb.toString();
+	}
+
+	/**
+	 * Number of continuation bytes following a UTF-8 leading byte
+	 *
+	 * @param b leading byte, not ASCII
+	 * @return the number of continuation bytes, or -1 if it is not a valid leading
+	 *         byte
+	 */
+	static int continuationBytes(int b) {
+		if ((b & 0xE0) == 0xC0) {
+			return 1;
+		} else if ((b & 0xF0) == 0xE0) {
+			return 2;
+		} else if ((b & 0xF8) == 0xF0) {
+			return 3;
+		}
+		return -1;
+	}
+
+	/**
+	 * Decode a multi-byte UTF-8 char, rejecting overlong forms and surrogates
+	 *
+	 * @param bytes             encoded text
+	 * @param i                 position of the first continuation byte
+	 * @param limit             limit of the encoded text
+	 * @param b                 leading byte
+	 * @param continuationBytes number of continuation bytes
+	 * @return the code point
+	 * @throws MalformedInputException if the char is not valid
+	 */
+	static int decode(ByteBuffer bytes, int i, int limit, int b, int continuationBytes)
+			throws MalformedInputException {
+		if (i + continuationBytes > limit) {
+			throw new MalformedInputException(limit - i + 1);
+		}
+
+		int codePoint = b & (0x7F >> (continuationBytes + 1));
+		for (int n = 0; n < continuationBytes; n++) {
+			int cb = bytes.get(i++);
+			if ((cb & 0xC0) != 0x80) {
+				throw new MalformedInputException(n + 1);
+			}
+			codePoint = (codePoint << 6) | (cb & 0x3F);
+		}
+		if (codePoint < MIN_CODE_POINTS[continuationBytes] || codePoint > Character.MAX_CODE_POINT
+				|| (codePoint >= Character.MIN_SURROGATE && codePoint <= Character.MAX_SURROGATE)) {
+			throw new MalformedInputException(continuationBytes + 1);
+		}
+		return codePoint;
+	}
+
+	private char[] grow() {
+		buffer = Arrays.copyOf(buffer, buffer.length * 2);
+		return buffer;
+	}
+}
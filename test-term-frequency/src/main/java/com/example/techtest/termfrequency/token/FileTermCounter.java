@@ -0,0 +1,358 @@
+package com.example.techtest.termfrequency.token;
+
+import java.io.BufferedReader;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Supplier;
+
+import com.example.techtest.termfrequency.token.Tokenizer.TokenSink;
+
+/**
+ * Counter of the tokens of a file.
+ *
+ * When the tokenizer is able to work over the encoded bytes of the file charset
+ * @see ByteTokenizer, the file is tokenized directly from its bytes: small
+ * files are read into a reused direct buffer, and bigger ones are mapped in
+ * memory. Files bigger than the chunk size are mapped and tokenized in chunks,
+ * split just after a delimiter byte so no token is broken. Files bigger than
+ * the parallel threshold are split in byte ranges, also aligned to delimiters,
+ * that are counted in parallel in a fork-join pool and merged at the end.
+ *
+ * Otherwise, the file lines are decoded and tokenized one by one.
+ *
+ * If some terms to count are configured, any other token is counted below the
+ * empty term. When a term automaton is also set @see TermAutomaton, the bytes
+ * are matched against it instead of being tokenized.
+ *
+ * This class is not thread safe.
+ *
+ */
+public class FileTermCounter {
+
+	public static final long DEFAULT_PARALLEL_THRESHOLD = 128 * 1024 * 1024;
+
+	private static final int MAX_READ_BUFFER_SIZE = 256 * 1024;
+	private static final int MIN_PARALLEL_RANGE_SIZE = 64 * 1024;
+	private static final int RANGES_PER_THREAD = 4;
+
+	private final Supplier<Tokenizer> tokenizerFactory;
+	private final Tokenizer tokenizer;
+	private final Charset charset;
+	private final Set<String> termsToCount = new LinkedHashSet<>();
+	private boolean mapped = true;
+	private int chunkSize = Integer.MAX_VALUE;
+	private long parallelThreshold = DEFAULT_PARALLEL_THRESHOLD;
+	private ForkJoinPool pool = ForkJoinPool.commonPool();
+	private TermAutomaton termAutomaton = null;
+
+	private ByteBuffer readBuffer = null;
+
+	/**
+	 * New instance
+	 *
+	 * @param tokenizerFactory factory of the tokenizers to apply to the file
+	 *                         contents, one instance is used by every thread
+	 * @param charset          charset of the files
+	 */
+	public FileTermCounter(Supplier<Tokenizer> tokenizerFactory, Charset charset) {
+		this.tokenizerFactory = tokenizerFactory;
+		this.tokenizer = tokenizerFactory.get();
+		this.charset = charset;
+	}
+
+	/**
+	 * Only count these normalized terms, any other token is counted below the
+	 * empty term
+	 *
+	 * @param terms
+	 * @return this FileTermCounter instance
+	 */
+	public FileTermCounter termsToCount(Collection<String> terms) {
+		this.termsToCount.addAll(terms);
+		return this;
+	}
+
+	/**
+	 * Read the file bytes, if allowed by the tokenizer and the charset, instead of
+	 * decoding the file lines
+	 *
+	 * @param mapped
+	 * @return this FileTermCounter instance
+	 */
+	public FileTermCounter mapped(boolean mapped) {
+		this.mapped = mapped;
+		return this;
+	}
+
+	/**
+	 * Max number of bytes tokenized at once
+	 *
+	 * @param chunkSize
+	 * @return this FileTermCounter instance
+	 */
+	public FileTermCounter chunkSize(int chunkSize) {
+		if (chunkSize <= 0) {
+			throw new IllegalArgumentException("Invalid chunk size " + chunkSize);
+		}
+		this.chunkSize = chunkSize;
+		return this;
+	}
+
+	/**
+	 * Min size of the files tokenized in parallel
+	 *
+	 * @param parallelThreshold the size in bytes
+	 * @param pool              pool used to count the file ranges
+	 * @return this FileTermCounter instance
+	 */
+	public FileTermCounter parallelThreshold(long parallelThreshold, ForkJoinPool pool) {
+		this.parallelThreshold = parallelThreshold;
+		this.pool = pool;
+		return this;
+	}
+
+	/**
+	 * Match the file bytes against an automaton of the terms to count, instead of
+	 * tokenizing them. Only used when the files are read as bytes, the automaton
+	 * must follow the same token rules as the tokenizer
+	 *
+	 * @param termAutomaton automaton of the terms to count, or null
+	 * @return this FileTermCounter instance
+	 */
+	public FileTermCounter termAutomaton(TermAutomaton termAutomaton) {
+		this.termAutomaton = termAutomaton;
+		return this;
+	}
+
+	/**
+	 * Check if the files are matched against the term automaton
+	 *
+	 */
+	public boolean isAutomaton() {
+		return termAutomaton != null && isByteLevel() && TermAutomaton.supports(charset);
+	}
+
+	/**
+	 * Check if the files are tokenized directly from their bytes
+	 *
+	 */
+	public boolean isByteLevel() {
+		return mapped && tokenizer instanceof ByteTokenizer && ((ByteTokenizer) tokenizer).supports(charset);
+	}
+
+	/**
+	 * Count the tokens of a file
+	 *
+	 * @param path file to read
+	 * @return the token counts
+	 * @throws IOException if the file can't be read or it is not valid for the
+	 *                     charset
+	 */
+	public TermCounts count(Path path) throws IOException {
+		if (!isByteLevel()) {
+			TermCounts counts = newCounts();
+			readLines(path, sinkFor(counts));
+			return counts;
+		}
+
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			long size = channel.size();
+
+			if (size <= Math.min(chunkSize, MAX_READ_BUFFER_SIZE)) {
+				TermCounts counts = newCounts();
+				ByteBuffer bytes = readBuffer((int) size);
+				while (bytes.hasRemaining()) {
+					if (channel.read(bytes) < 0) {
+						throw new EOFException("File truncated while reading " + path);
+					}
+				}
+				bytes.flip();
+				countBytes((ByteTokenizer) tokenizer, bytes, counts);
+				return counts;
+
+			} else if (size >= parallelThreshold) {
+				return countInParallel(channel, size);
+
+			} else {
+				TermCounts counts = newCounts();
+				readChunks(channel, size, counts);
+				return counts;
+			}
+		}
+	}
+
+	private TermCounts newCounts() {
+		TermCounts counts = new TermCounts();
+		termsToCount.forEach(t -> counts.add(t, 0));
+		return counts;
+	}
+
+	/**
+	 * With some terms to count, the tokens are looked up without creating any
+	 * String for the other ones
+	 */
+	private TokenSink sinkFor(TermCounts counts) {
+		if (termsToCount.isEmpty()) {
+			return counts::add;
+		} else {
+			return (chars, length) -> {
+				if (!counts.addIfPresent(chars, length)) {
+					counts.add(chars, 0);
+				}
+			};
+		}
+	}
+
+	private void countBytes(ByteTokenizer byteTokenizer, ByteBuffer bytes, TermCounts counts)
+			throws IOException {
+		if (isAutomaton()) {
+			termAutomaton.count(bytes, charset, counts);
+		} else {
+			byteTokenizer.tokenize(bytes, charset, sinkFor(counts));
+		}
+	}
+
+	private void readLines(Path path, TokenSink sink) throws IOException {
+		try (BufferedReader reader = Files.newBufferedReader(path, charset)) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				tokenizer.tokenize(line, sink);
+			}
+		}
+	}
+
+	private void readChunks(FileChannel channel, long size, TermCounts counts) throws IOException {
+		ByteTokenizer byteTokenizer = (ByteTokenizer) tokenizer;
+
+		long position = 0;
+		while (position < size) {
+			long end = nextBoundary(byteTokenizer, channel, position + chunkSize, size);
+			if (end - position > Integer.MAX_VALUE) {
+				end = position + Integer.MAX_VALUE;
+			}
+
+			MappedByteBuffer chunk = channel.map(FileChannel.MapMode.READ_ONLY, position, end - position);
+			countBytes(byteTokenizer, chunk, counts);
+			position = end;
+		}
+	}
+
+	private TermCounts countInParallel(FileChannel channel, long size) throws IOException {
+		ByteTokenizer byteTokenizer = (ByteTokenizer) tokenizer;
+
+		long rangeSize = Math.min(chunkSize,
+				Math.max(MIN_PARALLEL_RANGE_SIZE, size / (pool.getParallelism() * RANGES_PER_THREAD)));
+
+		List<long[]> ranges = new ArrayList<>();
+		long position = 0;
+		while (position < size) {
+			long end = nextBoundary(byteTokenizer, channel, position + rangeSize, size);
+			if (end - position > Integer.MAX_VALUE) {
+				end = position + Integer.MAX_VALUE;
+			}
+			ranges.add(new long[] { position, end });
+			position = end;
+		}
+
+		try {
+			return pool.invoke(new CountRangesTask(channel, ranges, 0, ranges.size()));
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+	}
+
+	/**
+	 * First position after a delimiter byte, starting from a target position
+	 */
+	private static long nextBoundary(ByteTokenizer tokenizer, FileChannel channel, long target, long size)
+			throws IOException {
+		long windowStart = target;
+		long windowSize = MIN_PARALLEL_RANGE_SIZE;
+
+		while (windowStart < size) {
+			long length = Math.min(windowSize, size - windowStart);
+			MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, windowStart, length);
+			for (int i = 0; i < length; i++) {
+				if (tokenizer.isDelimiter(window.get(i))) {
+					return windowStart + i + 1;
+				}
+			}
+			windowStart += length;
+			windowSize = Math.min(windowSize * 2, Integer.MAX_VALUE);
+		}
+		return size;
+	}
+
+	private ByteBuffer readBuffer(int size) {
+		if (readBuffer == null || readBuffer.capacity() < size) {
+			readBuffer = ByteBuffer.allocateDirect(Math.max(size, 4096));
+		}
+		readBuffer.clear().limit(size);
+		return readBuffer;
+	}
+
+	/**
+	 * Fork-join task counting a set of file ranges, every leaf task counts a
+	 * single range in its own TermCounts instance, and the partial counts are
+	 * merged while joining
+	 *
+	 */
+	private class CountRangesTask extends RecursiveTask<TermCounts> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final transient FileChannel channel;
+		private final transient List<long[]> ranges;
+		private final int from;
+		private final int to;
+
+		CountRangesTask(FileChannel channel, List<long[]> ranges, int from, int to) {
+			this.channel = channel;
+			this.ranges = ranges;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected TermCounts compute() {
+			if (to - from == 1) {
+				return countRange(ranges.get(from));
+			}
+
+			int middle = (from + to) >>> 1;
+			CountRangesTask right = new CountRangesTask(channel, ranges, middle, to);
+			right.fork();
+			TermCounts counts = new CountRangesTask(channel, ranges, from, middle).compute();
+			counts.merge(right.join());
+			return counts;
+		}
+
+		private TermCounts countRange(long[] range) {
+			TermCounts counts = newCounts();
+			ByteTokenizer rangeTokenizer = isAutomaton() ? null : (ByteTokenizer) tokenizerFactory.get();
+
+			try {
+				MappedByteBuffer bytes = channel.map(FileChannel.MapMode.READ_ONLY, range[0], range[1] - range[0]);
+				countBytes(rangeTokenizer, bytes, counts);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			return counts;
+		}
+	}
+}
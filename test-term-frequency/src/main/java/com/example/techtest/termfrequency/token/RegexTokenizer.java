@@ -0,0 +1,60 @@
+package com.example.techtest.termfrequency.token;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Tokenizer based on regular expressions: one pattern to split the tokens and
+ * another one to remove chars from the lower case tokens.
+ *
+ * Used as fallback when personalized patterns are configured.
+ *
+ */
+public class RegexTokenizer implements Tokenizer {
+
+	private final Pattern tokenSplitPattern;
+	private final Pattern termNormPattern;
+
+	private char[] buffer = new char[32];
+
+	/**
+	 * New instance from the split and normalization regular expressions
+	 *
+	 * @param tokenSplitRegex
+	 * @param tokenNormalizationRegex
+	 */
+	public RegexTokenizer(String tokenSplitRegex, String tokenNormalizationRegex) {
+		this.tokenSplitPattern = Pattern.compile(tokenSplitRegex);
+		this.termNormPattern = Pattern.compile(tokenNormalizationRegex);
+	}
+
+	@Override
+	public void tokenize(CharSequence text, TokenSink sink) {
+		Matcher splitMatcher = tokenSplitPattern.matcher(text);
+		int tokenStart = 0;
+
+		while (splitMatcher.find()) {
+			publish(text, tokenStart, splitMatcher.start(), sink);
+			tokenStart = splitMatcher.end();
+		}
+		publish(text, tokenStart, text.length(), sink);
+	}
+
+	private void publish(CharSequence text, int start, int end, TokenSink sink) {
+		if (start >= end) {
+			return;
+		}
+
+		String token = normalize(text.subSequence(start, end).toString());
+		if (token.length() > buffer.length) {
+			buffer = new char[Math.max(token.length(), buffer.length * 2)];
+		}
+		token.getChars(0, token.length(), buffer, 0);
+		sink.token(buffer, token.length());
+	}
+
+	@Override
+	public String normalize(String token) {
+		return termNormPattern.matcher(token.toLowerCase()).replaceAll("");
+	}
+}
@@ -0,0 +1,217 @@
+package com.example.techtest.termfrequency.token;
+
+import static com.example.techtest.termfrequency.token.CharClassTokenizer.CHAR_CLASSES;
+import static com.example.techtest.termfrequency.token.CharClassTokenizer.DELIMITER;
+import static com.example.techtest.termfrequency.token.CharClassTokenizer.LOWER_CASE;
+import static com.example.techtest.termfrequency.token.CharClassTokenizer.STRIP;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.MalformedInputException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Multi-term matcher over the encoded bytes of a text, with the same token
+ * rules as {@link CharClassTokenizer}.
+ *
+ * The normalized terms are compiled into a deterministic automaton (a trie
+ * with a dead state), and the bytes are scanned in a single pass: every token
+ * walks the automaton from the root, chars removed by the normalization are
+ * skipped, and at the end of the token the reached state tells which term, if
+ * any, was found. As matches must cover a whole token, the automaton is
+ * anchored at the token boundaries and no failure links are needed. No String
+ * nor char buffer is created for the tokens.
+ *
+ * Instances are immutable and can be shared between threads.
+ *
+ */
+public class TermAutomaton {
+
+	private static final int DEAD = 0;
+	private static final int ROOT = 1;
+	private static final int ASCII_SHIFT = 7;
+
+	private final String[] terms;
+	private final int[] asciiTransitions;
+	private final char[][] otherChars;
+	private final int[][] otherTransitions;
+	private final int[] termByState;
+
+	/**
+	 * New instance
+	 *
+	 * @param terms normalized terms to match
+	 */
+	public TermAutomaton(Collection<String> terms) {
+		this.terms = new LinkedHashSet<>(terms).toArray(new String[0]);
+
+		// Build the trie, state 0 is the dead state and state 1 the root
+		List<int[]> ascii = new ArrayList<>();
+		List<Map<Character, Integer>> other = new ArrayList<>();
+		List<Integer> termIds = new ArrayList<>();
+		for (int i = 0; i <= ROOT; i++) {
+			ascii.add(new int[1 << ASCII_SHIFT]);
+			other.add(new TreeMap<>());
+			termIds.add(-1);
+		}
+
+		for (int termId = 0; termId < this.terms.length; termId++) {
+			String term = this.terms[termId];
+			int state = ROOT;
+			for (int i = 0; i < term.length(); i++) {
+				char c = term.charAt(i);
+				int next = c < (1 << ASCII_SHIFT) ? ascii.get(state)[c] : other.get(state).getOrDefault(c, DEAD);
+				if (next == DEAD) {
+					next = ascii.size();
+					ascii.add(new int[1 << ASCII_SHIFT]);
+					other.add(new TreeMap<>());
+					termIds.add(-1);
+					if (c < (1 << ASCII_SHIFT)) {
+						ascii.get(state)[c] = next;
+					} else {
+						other.get(state).put(c, next);
+					}
+				}
+				state = next;
+			}
+			termIds.set(state, termId);
+		}
+
+		// Flatten into arrays
+		int states = ascii.size();
+		this.asciiTransitions = new int[states << ASCII_SHIFT];
+		this.otherChars = new char[states][];
+		this.otherTransitions = new int[states][];
+		this.termByState = new int[states];
+		for (int state = 0; state < states; state++) {
+			System.arraycopy(ascii.get(state), 0, asciiTransitions, state << ASCII_SHIFT, 1 << ASCII_SHIFT);
+
+			Map<Character, Integer> transitions = other.get(state);
+			otherChars[state] = new char[transitions.size()];
+			otherTransitions[state] = new int[transitions.size()];
+			int n = 0;
+			for (Map.Entry<Character, Integer> transition : transitions.entrySet()) {
+				otherChars[state][n] = transition.getKey();
+				otherTransitions[state][n++] = transition.getValue();
+			}
+			termByState[state] = termIds.get(state);
+		}
+	}
+
+	/**
+	 * Check if the automaton can work over bytes encoded with a charset
+	 *
+	 * @param charset
+	 * @return
+	 */
+	public static boolean supports(Charset charset) {
+		return StandardCharsets.UTF_8.equals(charset) || StandardCharsets.US_ASCII.equals(charset);
+	}
+
+	/**
+	 * Scan the bytes between the buffer position and limit, and add to the counts
+	 * the occurrences of every term, and the other tokens below the empty term.
+	 * The buffer position is not modified.
+	 *
+	 * @param bytes   encoded text
+	 * @param charset charset of the encoded text, one of the supported ones
+	 * @param counts  counts to update
+	 * @throws MalformedInputException if the bytes are not valid for the charset
+	 */
+	public void count(ByteBuffer bytes, Charset charset, TermCounts counts) throws MalformedInputException {
+		boolean asciiOnly = StandardCharsets.US_ASCII.equals(charset);
+		int[] hits = new int[terms.length];
+		long tokens = 0;
+		int state = ROOT;
+		boolean inToken = false;
+
+		int i = bytes.position();
+		int limit = bytes.limit();
+		while (i < limit) {
+			int b = bytes.get(i++);
+
+			if (b >= 0) {
+				byte charClass = CHAR_CLASSES[b];
+				if (charClass == DELIMITER) {
+					if (inToken) {
+						tokens++;
+						int termId = termByState[state];
+						if (termId >= 0) {
+							hits[termId]++;
+						}
+						state = ROOT;
+						inToken = false;
+					}
+					continue;
+				}
+
+				inToken = true;
+				if (charClass != STRIP) {
+					state = asciiTransitions[(state << ASCII_SHIFT) | LOWER_CASE[b]];
+				}
+
+			} else {
+				int continuationBytes = asciiOnly ? -1 : CharClassTokenizer.continuationBytes(b);
+				if (continuationBytes < 0) {
+					throw new MalformedInputException(1);
+				}
+				int codePoint = CharClassTokenizer.decode(bytes, i, limit, b, continuationBytes);
+				i += continuationBytes;
+
+				inToken = true;
+				if (codePoint < 256) {
+					if (CHAR_CLASSES[codePoint] == STRIP) {
+						continue;
+					}
+					state = next(state, LOWER_CASE[codePoint]);
+				} else {
+					codePoint = Character.toLowerCase(codePoint);
+					if (Character.isBmpCodePoint(codePoint)) {
+						state = next(state, (char) codePoint);
+					} else {
+						state = next(next(state, Character.highSurrogate(codePoint)),
+								Character.lowSurrogate(codePoint));
+					}
+				}
+			}
+		}
+
+		if (inToken) {
+			tokens++;
+			int termId = termByState[state];
+			if (termId >= 0) {
+				hits[termId]++;
+			}
+		}
+
+		long otherTokens = tokens;
+		for (int termId = 0; termId < terms.length; termId++) {
+			counts.add(terms[termId], hits[termId]);
+			otherTokens -= hits[termId];
+		}
+		counts.add("", (int) otherTokens);
+	}
+
+	private int next(int state, char c) {
+		if (c < (1 << ASCII_SHIFT)) {
+			return asciiTransitions[(state << ASCII_SHIFT) | c];
+		}
+		int n = Arrays.binarySearch(otherChars[state], c);
+		return n < 0 ? DEAD : otherTransitions[state][n];
+	}
+
+	/**
+	 * Number of states of the automaton, including the dead state
+	 *
+	 */
+	public int states() {
+		return termByState.length;
+	}
+}
@@ -0,0 +1,218 @@
+package com.example.techtest.termfrequency.token;
+
+import java.util.function.ObjIntConsumer;
+
+/**
+ * Counter of tokens, keyed by the token chars. Tokens are looked up directly
+ * from a char buffer, so a String is only created the first time a token is
+ * counted. Keys and counts are stored in parallel arrays using open
+ * addressing.
+ *
+ * This class is not thread safe.
+ *
+ */
+public class TermCounts {
+
+	private static final int INITIAL_CAPACITY = 64;
+
+	private String[] terms = new String[INITIAL_CAPACITY];
+	private int[] hashes = new int[INITIAL_CAPACITY];
+	private int[] counts = new int[INITIAL_CAPACITY];
+	private int mask = INITIAL_CAPACITY - 1;
+	private int size = 0;
+	private long total = 0l;
+
+	/**
+	 * Count one occurrence of a token
+	 *
+	 * @param chars  buffer with the token chars, starting at position 0
+	 * @param length length of the token
+	 */
+	public void add(char[] chars, int length) {
+		int hash = hash(chars, length);
+		int slot = slot(chars, length, hash);
+		if (terms[slot] == null) {
+			insert(slot, new String(chars, 0, length), hash, 1);
+		} else {
+			counts[slot]++;
+		}
+		total++;
+	}
+
+	/**
+	 * Count one occurrence of a token only if it is already present in the
+	 * counter, with any count
+	 *
+	 * @param chars  buffer with the token chars, starting at position 0
+	 * @param length length of the token
+	 * @return true if the token was present and counted
+	 */
+	public boolean addIfPresent(char[] chars, int length) {
+		int slot = slot(chars, length, hash(chars, length));
+		if (terms[slot] == null) {
+			return false;
+		}
+		counts[slot]++;
+		total++;
+		return true;
+	}
+
+	/**
+	 * Add a number of occurrences of a term. A count of 0 allows registering terms
+	 * to be used later with {@link #addIfPresent(char[], int) addIfPresent}
+	 *
+	 * @param term
+	 * @param count
+	 */
+	public void add(String term, int count) {
+		int hash = term.hashCode();
+		int slot = slot(term, hash);
+		if (terms[slot] == null) {
+			insert(slot, term, hash, count);
+		} else {
+			counts[slot] += count;
+		}
+		total += count;
+	}
+
+	/**
+	 * Add all the counts of another instance to this one
+	 *
+	 * @param other
+	 */
+	public void merge(TermCounts other) {
+		for (int i = 0; i < other.terms.length; i++) {
+			if (other.terms[i] != null) {
+				add(other.terms[i], other.counts[i]);
+			}
+		}
+	}
+
+	/**
+	 * Iterates over the terms with a count greater than 0
+	 *
+	 * @param consumer
+	 */
+	public void forEach(ObjIntConsumer<String> consumer) {
+		for (int i = 0; i < terms.length; i++) {
+			if (terms[i] != null && counts[i] > 0) {
+				consumer.accept(terms[i], counts[i]);
+			}
+		}
+	}
+
+	/**
+	 * Count of a term
+	 *
+	 * @param term
+	 * @return the count or 0 if not present
+	 */
+	public int count(String term) {
+		int slot = slot(term, term.hashCode());
+		return terms[slot] == null ? 0 : counts[slot];
+	}
+
+	/**
+	 * Total number of occurrences counted
+	 *
+	 */
+	public long total() {
+		return total;
+	}
+
+	private void insert(int slot, String term, int hash, int count) {
+		terms[slot] = term;
+		hashes[slot] = hash;
+		counts[slot] = count;
+
+		if (++size > terms.length / 2) {
+			rehash();
+		}
+	}
+
+	private int slot(char[] chars, int length, int hash) {
+		int slot = mix(hash) & mask;
+		String term;
+		while ((term = terms[slot]) != null && (hashes[slot] != hash || !sameChars(term, chars, length))) {
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+
+	private int slot(String value, int hash) {
+		int slot = mix(hash) & mask;
+		String term;
+		while ((term = terms[slot]) != null && (hashes[slot] != hash || !term.equals(value))) {
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+
+	private void rehash() {
+		String[] oldTerms = terms;
+		int[] oldHashes = hashes;
+		int[] oldCounts = counts;
+
+		int capacity = oldTerms.length * 2;
+		terms = new String[capacity];
+		hashes = new int[capacity];
+		counts = new int[capacity];
+		mask = capacity - 1;
+
+		for (int i = 0; i < oldTerms.length; i++) {
+			if (oldTerms[i] != null) {
+				int slot = mix(oldHashes[i]) & mask;
+				while (terms[slot] != null) {
+					slot = (slot + 1) & mask;
+				}
+				terms[slot] = oldTerms[i];
+				hashes[slot] = oldHashes[i];
+				counts[slot] = oldCounts[i];
+			}
+		}
+	}
+
+	private static boolean sameChars(String term, char[] chars, int length) {
+		if (term.length() != length) {
+			return false;
+		}
+		for (int i = 0; i < length; i++) {
+			if (term.charAt(i) != chars[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Same hash as String.hashCode, so lookups by String and by chars are
+	 * equivalent
+	 */
+	private static int hash(char[] chars, int length) {
+		int hash = 0;
+		for (int i = 0; i < length; i++) {
+			hash = 31 * hash + chars[i];
+		}
+		return hash;
+	}
+
+	private static int mix(int hash) {
+		int h = hash * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder("TermCounts [");
+		forEach((term, count) -> sb.append(term).append('=').append(count).append(", "));
+		return sb.append("total=").append(total).append("]").toString();
+	}
+
+	/**
+	 * Number of terms stored, including the ones with a count of 0
+	 *
+	 */
+	public int size() {
+		return size;
+	}
+}
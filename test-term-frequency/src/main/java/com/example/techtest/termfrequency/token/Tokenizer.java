@@ -0,0 +1,47 @@
+package com.example.techtest.termfrequency.token;
+
+/**
+ * Interface to be implemented by the components capable of splitting a text in
+ * tokens and normalizing them, to allow equals comparison between tokens.
+ *
+ * Implementations are not required to be thread safe, every processor uses its
+ * own instance.
+ *
+ */
+public interface Tokenizer {
+
+	/**
+	 * Split a text in tokens, and publish every normalized token to the sink.
+	 * Empty tokens are discarded, but tokens that become empty after the
+	 * normalization are published with length 0
+	 *
+	 * @param text text to tokenize
+	 * @param sink receiver of the normalized tokens
+	 */
+	public void tokenize(CharSequence text, TokenSink sink);
+
+	/**
+	 * Normalize a single token
+	 *
+	 * @param token
+	 * @return the normalized token
+	 */
+	public String normalize(String token);
+
+	/**
+	 * Receiver of the tokens extracted by a Tokenizer
+	 *
+	 */
+	@FunctionalInterface
+	public interface TokenSink {
+
+		/**
+		 * New normalized token. The buffer contents are only valid during the call,
+		 * as it is reused for the next tokens
+		 *
+		 * @param buffer chars of the token, starting at position 0
+		 * @param length length of the token
+		 */
+		public void token(char[] buffer, int length);
+	}
+}
@@ -0,0 +1,116 @@
+package com.example.techtest.termfrequency.util;
+
+import java.util.Arrays;
+
+/**
+ * Auxiliary class to intern values as dense int ids, starting from 0 and
+ * assigned in order of arrival. Uses an open addressing table, so no boxed
+ * integers or entry objects are allocated per value.
+ *
+ * This class is not thread safe.
+ *
+ * @param <K> Class of the interned values
+ */
+public class Dictionary<K> {
+
+	public static final int NO_ID = -1;
+
+	private static final int INITIAL_CAPACITY = 16;
+
+	private Object[] valuesById = new Object[INITIAL_CAPACITY];
+	private int[] idsTable = new int[INITIAL_CAPACITY * 2];
+	private int mask = idsTable.length - 1;
+	private int size = 0;
+
+	public Dictionary() {
+		Arrays.fill(idsTable, NO_ID);
+	}
+
+	/**
+	 * Recovers the id of a value
+	 *
+	 * @param value
+	 * @return the id of the value or NO_ID if it was not interned
+	 */
+	public int idOf(K value) {
+		int slot = slot(value);
+		return idsTable[slot];
+	}
+
+	/**
+	 * Recovers the id of a value, assigning a new one if the value was not
+	 * interned yet
+	 *
+	 * @param value
+	 * @return the id of the value
+	 */
+	public int intern(K value) {
+		int slot = slot(value);
+		int id = idsTable[slot];
+		if (id != NO_ID) {
+			return id;
+		}
+
+		id = size++;
+		if (id == valuesById.length) {
+			valuesById = Arrays.copyOf(valuesById, valuesById.length * 2);
+		}
+		valuesById[id] = value;
+		idsTable[slot] = id;
+
+		if (size * 2 > idsTable.length) {
+			rehash();
+		}
+		return id;
+	}
+
+	/**
+	 * Recovers the value interned with a specific id
+	 *
+	 * @param id
+	 * @return the value
+	 */
+	@SuppressWarnings("unchecked")
+	public K valueOf(int id) {
+		if (id < 0 || id >= size) {
+			throw new IndexOutOfBoundsException("Invalid id " + id);
+		}
+		return (K) valuesById[id];
+	}
+
+	/**
+	 * Number of interned values. Ids are always lower than this value
+	 *
+	 */
+	public int size() {
+		return size;
+	}
+
+	private int slot(Object value) {
+		int slot = hash(value) & mask;
+		int id;
+		while ((id = idsTable[slot]) != NO_ID && !valuesById[id].equals(value)) {
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+
+	private void rehash() {
+		idsTable = new int[idsTable.length * 2];
+		mask = idsTable.length - 1;
+		Arrays.fill(idsTable, NO_ID);
+
+		for (int id = 0; id < size; id++) {
+			int slot = hash(valuesById[id]) & mask;
+			while (idsTable[slot] != NO_ID) {
+				slot = (slot + 1) & mask;
+			}
+			idsTable[slot] = id;
+		}
+	}
+
+	private static int hash(Object value) {
+		int h = value.hashCode() * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+}
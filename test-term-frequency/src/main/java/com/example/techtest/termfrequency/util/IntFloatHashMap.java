@@ -0,0 +1,206 @@
+package com.example.techtest.termfrequency.util;
+
+import java.util.Arrays;
+
+/**
+ * Auxiliary map of primitive int keys to primitive float values. Keys and
+ * values are stored in two parallel arrays using open addressing, so no
+ * autoboxing or entry objects are involved. Keys must be non negative.
+ *
+ * This class is not thread safe.
+ *
+ */
+public class IntFloatHashMap {
+
+	private static final int FREE = -1;
+	private static final int MIN_CAPACITY = 4;
+
+	private int[] keys;
+	private float[] values;
+	private int mask;
+	private int size = 0;
+
+	/**
+	 * Functional interface to iterate over the map entries
+	 *
+	 */
+	@FunctionalInterface
+	public interface IntFloatConsumer {
+		void accept(int key, float value);
+	}
+
+	public IntFloatHashMap() {
+		this(MIN_CAPACITY);
+	}
+
+	/**
+	 * New instance able to hold the expected number of entries without resizing
+	 *
+	 * @param expectedSize
+	 */
+	public IntFloatHashMap(int expectedSize) {
+		int capacity = MIN_CAPACITY;
+		while (capacity * 3 / 4 < expectedSize) {
+			capacity <<= 1;
+		}
+		keys = new int[capacity];
+		values = new float[capacity];
+		mask = capacity - 1;
+		Arrays.fill(keys, FREE);
+	}
+
+	/**
+	 * Puts a value in the map
+	 *
+	 * @param key
+	 * @param value
+	 * @return true if the key was not present in the map
+	 */
+	public boolean put(int key, float value) {
+		int slot = slot(key);
+		values[slot] = value;
+		if (keys[slot] == key) {
+			return false;
+		}
+
+		keys[slot] = key;
+		if (++size > keys.length * 3 / 4) {
+			rehash(keys.length * 2);
+		}
+		return true;
+	}
+
+	/**
+	 * Recovers the value associated with a key
+	 *
+	 * @param key
+	 * @param defaultValue value returned if the key is not present
+	 * @return the value
+	 */
+	public float get(int key, float defaultValue) {
+		int slot = slot(key);
+		return keys[slot] == key ? values[slot] : defaultValue;
+	}
+
+	/**
+	 * Check if a key is present in the map
+	 *
+	 * @param key
+	 * @return
+	 */
+	public boolean containsKey(int key) {
+		return keys[slot(key)] == key;
+	}
+
+	/**
+	 * Removes a key from the map
+	 *
+	 * @param key
+	 * @return true if the key was present in the map
+	 */
+	public boolean remove(int key) {
+		int slot = slot(key);
+		if (keys[slot] != key) {
+			return false;
+		}
+
+		// Backward shift deletion, keeping the probe sequences without gaps
+		int free = slot;
+		int next = (free + 1) & mask;
+		while (keys[next] != FREE) {
+			int home = hash(keys[next]) & mask;
+			if (((next - home) & mask) >= ((next - free) & mask)) {
+				keys[free] = keys[next];
+				values[free] = values[next];
+				free = next;
+			}
+			next = (next + 1) & mask;
+		}
+		keys[free] = FREE;
+		size--;
+		return true;
+	}
+
+	/**
+	 * Iterates over the map entries
+	 *
+	 * @param consumer
+	 */
+	public void forEach(IntFloatConsumer consumer) {
+		for (int i = 0; i < keys.length; i++) {
+			if (keys[i] != FREE) {
+				consumer.accept(keys[i], values[i]);
+			}
+		}
+	}
+
+	/**
+	 * Number of slots of the underlying arrays. Together with
+	 * {@link #keyAt(int) keyAt} and {@link #valueAt(int) valueAt} allows iterating
+	 * the entries without any lambda or iterator allocation
+	 *
+	 */
+	public int slots() {
+		return keys.length;
+	}
+
+	/**
+	 * Key stored in a slot
+	 *
+	 * @param slot
+	 * @return the key, or a negative value if the slot is free
+	 */
+	public int keyAt(int slot) {
+		return keys[slot];
+	}
+
+	/**
+	 * Value stored in a slot
+	 *
+	 * @param slot
+	 * @return the value
+	 */
+	public float valueAt(int slot) {
+		return values[slot];
+	}
+
+	/**
+	 * Number of entries in the map
+	 *
+	 */
+	public int size() {
+		return size;
+	}
+
+	private int slot(int key) {
+		int slot = hash(key) & mask;
+		int current;
+		while ((current = keys[slot]) != FREE && current != key) {
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+
+	private void rehash(int capacity) {
+		int[] oldKeys = keys;
+		float[] oldValues = values;
+
+		keys = new int[capacity];
+		values = new float[capacity];
+		mask = capacity - 1;
+		Arrays.fill(keys, FREE);
+
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldKeys[i] != FREE) {
+				int slot = slot(oldKeys[i]);
+				keys[slot] = oldKeys[i];
+				values[slot] = oldValues[i];
+			}
+		}
+	}
+
+	private static int hash(int key) {
+		int h = key * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+}
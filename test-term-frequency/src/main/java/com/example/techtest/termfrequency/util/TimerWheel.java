@@ -0,0 +1,126 @@
+package com.example.techtest.termfrequency.util;
+
+import java.util.ArrayDeque;
+import java.util.function.Consumer;
+
+/**
+ * Hashed timer wheel: a ring of slots, each one with the timers expiring in
+ * the ticks mapped to it, so scheduling a timer and expiring every timer of a
+ * tick is O(1) per timer, whatever the number of timers pending. Timers more
+ * than a whole lap away stay in their slot until their tick comes.
+ *
+ * Timers can't be cancelled, their owners are expected to ignore the stale
+ * ones when they expire.
+ *
+ * This class is not thread safe.
+ *
+ * @param <E> Class of the elements scheduled
+ */
+public class TimerWheel<E> {
+
+	private final ArrayDeque<Timer<E>>[] slots;
+	private final int mask;
+	private final long tickMs;
+	private long currentTick;
+	private int size = 0;
+
+	/**
+	 * New empty wheel
+	 *
+	 * @param slots   min number of slots, rounded up to a power of 2
+	 * @param tickMs  duration of a tick, in ms
+	 * @param startMs current time, in ms
+	 */
+	public TimerWheel(int slots, long tickMs, long startMs) {
+		if (slots <= 0 || slots > (1 << 24) || tickMs <= 0) {
+			throw new IllegalArgumentException("Invalid slots " + slots + " or tick " + tickMs);
+		}
+
+		int size = Integer.highestOneBit(slots);
+		if (size < slots) {
+			size <<= 1;
+		}
+		this.slots = newSlots(size);
+		for (int i = 0; i < size; i++) {
+			this.slots[i] = new ArrayDeque<>();
+		}
+		this.mask = size - 1;
+		this.tickMs = tickMs;
+		this.currentTick = startMs / tickMs;
+	}
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private static <E> ArrayDeque<Timer<E>>[] newSlots(int size) {
+		return new ArrayDeque[size];
+	}
+
+	/**
+	 * Schedule an element to expire at a given time. Expires in the first tick
+	 * after that time, and never in the current one
+	 *
+	 * @param element
+	 * @param deadlineMs expiration time, in ms
+	 */
+	public void schedule(E element, long deadlineMs) {
+		long tick = Math.max(currentTick + 1, (deadlineMs + tickMs - 1) / tickMs);
+		slots[(int) tick & mask].add(new Timer<>(element, tick));
+		size++;
+	}
+
+	/**
+	 * Move the wheel to the current time, expiring every timer due
+	 *
+	 * @param nowMs   current time, in ms
+	 * @param expired receiver of the expired elements, in no specific order
+	 */
+	public void advance(long nowMs, Consumer<E> expired) {
+		long nowTick = nowMs / tickMs;
+		if (nowTick <= currentTick) {
+			return;
+		}
+
+		// Every slot is visited once at most, whatever the ticks elapsed
+		long fromTick = Math.max(currentTick + 1, nowTick - mask);
+		currentTick = nowTick;
+		for (long tick = fromTick; tick <= nowTick; tick++) {
+			ArrayDeque<Timer<E>> slot = slots[(int) tick & mask];
+			for (int i = slot.size(); i > 0; i--) {
+				Timer<E> timer = slot.poll();
+				if (timer.tick <= nowTick) {
+					size--;
+					expired.accept(timer.element);
+				} else {
+					slot.add(timer);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Time of the next tick, when the next timers could expire
+	 *
+	 * @return the time, in ms
+	 */
+	public long nextTickMs() {
+		return (currentTick + 1) * tickMs;
+	}
+
+	/**
+	 * Number of timers pending, including the stale ones
+	 *
+	 */
+	public int size() {
+		return size;
+	}
+
+	private static class Timer<E> {
+
+		private final E element;
+		private final long tick;
+
+		private Timer(E element, long tick) {
+			this.element = element;
+			this.tick = tick;
+		}
+	}
+}
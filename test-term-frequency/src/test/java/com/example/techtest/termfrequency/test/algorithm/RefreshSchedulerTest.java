@@ -0,0 +1,93 @@
+package com.example.techtest.termfrequency.test.algorithm;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import com.example.techtest.termfrequency.algorithm.RefreshScheduler;
+
+/**
+ * Test class for the RefreshScheduler
+ *
+ */
+public class RefreshSchedulerTest {
+
+	@Test
+	public void idleRefreshesAtOnceTest() {
+		RefreshScheduler scheduler = new RefreshScheduler(1000, 1000);
+
+		// Nothing pending, nothing to wait for
+		Assertions.assertFalse(scheduler.shouldRefresh(0, 0), "nothing pending");
+		Assertions.assertEquals(Long.MAX_VALUE, scheduler.delayMs(0), "no delay");
+
+		// Without refresh cost, the first arrival is refreshed at once
+		scheduler.received(1, 0);
+		Assertions.assertEquals(1, scheduler.targetBatchSize(), "target batch");
+		Assertions.assertTrue(scheduler.shouldRefresh(1, 0), "refresh at once");
+
+		scheduler.refreshing();
+		Assertions.assertEquals(Long.MAX_VALUE, scheduler.delayMs(0), "nothing pending after refresh");
+	}
+
+	@Test
+	public void batchGrowsWithCostAndRateTest() {
+		RefreshScheduler scheduler = new RefreshScheduler(10000, 100000);
+
+		// 10 term frequencies per ms, and refreshes costing 100 ms
+		long now = 0;
+		for (int i = 0; i < 20; i++) {
+			scheduler.received(1000, now);
+			now += 100;
+			scheduler.refreshing();
+			scheduler.refreshed(100);
+		}
+		Assertions.assertEquals(100, scheduler.refreshCostMs(), 5, "refresh cost");
+		Assertions.assertEquals(10, scheduler.arrivalRatePerMs(), 1, "arrival rate");
+
+		// Twice the cost worth of arrivals, so at most half of the time refreshing
+		int target = scheduler.targetBatchSize();
+		Assertions.assertEquals(2000, target, 300, "target batch");
+
+		scheduler.received(target / 2, now);
+		Assertions.assertFalse(scheduler.shouldRefresh(target / 2, now), "half batch waits");
+		Assertions.assertTrue(scheduler.shouldRefresh(target, now), "full batch refreshed");
+	}
+
+	@Test
+	public void maxStalenessBoundsTheWaitTest() {
+		RefreshScheduler scheduler = new RefreshScheduler(500, 100000);
+
+		// Expensive refreshes and a high rate would wait for huge batches
+		long now = 0;
+		for (int i = 0; i < 20; i++) {
+			scheduler.received(10000, now);
+			now += 100;
+			scheduler.refreshing();
+			scheduler.refreshed(200);
+		}
+
+		scheduler.received(10, now);
+		Assertions.assertFalse(scheduler.shouldRefresh(10, now), "small batch waits");
+
+		// Due before the max staleness minus the expected refresh cost
+		long delay = scheduler.delayMs(now);
+		Assertions.assertTrue(delay > 250 && delay <= 300, "delay " + delay);
+		Assertions.assertTrue(scheduler.shouldRefresh(10, now + delay), "due");
+	}
+
+	@Test
+	public void maxBatchSizeTest() {
+		RefreshScheduler scheduler = new RefreshScheduler(10000, 50);
+
+		long now = 0;
+		for (int i = 0; i < 20; i++) {
+			scheduler.received(10000, now);
+			now += 100;
+			scheduler.refreshing();
+			scheduler.refreshed(1000);
+		}
+
+		Assertions.assertEquals(50, scheduler.targetBatchSize(), "target batch bounded");
+		scheduler.received(50, now);
+		Assertions.assertTrue(scheduler.shouldRefresh(50, now), "max batch refreshed");
+	}
+}
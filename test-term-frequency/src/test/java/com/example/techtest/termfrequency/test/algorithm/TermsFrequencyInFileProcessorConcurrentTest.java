@@ -3,8 +3,10 @@ package com.example.techtest.termfrequency.test.algorithm;
 import java.io.IOException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayDeque;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Queue;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -17,6 +19,7 @@ import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import com.example.techtest.termfrequency.algorithm.DocumentTermVector;
 import com.example.techtest.termfrequency.algorithm.TermFrequency;
 import com.example.techtest.termfrequency.algorithm.TermsFrequencyInFileConfig;
 import com.example.techtest.termfrequency.algorithm.TermsFrequencyInFileProcessor;
@@ -30,7 +33,8 @@ public class TermsFrequencyInFileProcessorConcurrentTest {
 
 	private static ExecutorService executorService;
 	private static BlockingQueue<Path> source = null;
-	private static BlockingQueue<TermFrequency> output = null;
+	private static BlockingQueue<DocumentTermVector> output = null;
+	private static final Queue<TermFrequency> outputTerms = new ArrayDeque<>();
 
 	@BeforeAll
 	public static void initBeforeAll() throws IOException {
@@ -48,6 +52,7 @@ public class TermsFrequencyInFileProcessorConcurrentTest {
 
 		source.clear();
 		output.clear();
+		outputTerms.clear();
 	}
 
 	@AfterAll
@@ -81,7 +86,7 @@ public class TermsFrequencyInFileProcessorConcurrentTest {
 		Map<String, Integer> termsCount = new HashMap<>();
 		int numberOfEvents = 0;
 
-		while ((outputTerm = output.poll(2, TimeUnit.SECONDS)) != null) {
+		while ((outputTerm = pollTerm()) != null) {
 			int current = termsCount.getOrDefault(outputTerm.term(), 0);
 			termsCount.put(outputTerm.term(), current + 1);
 			numberOfEvents++;
@@ -121,7 +126,7 @@ public class TermsFrequencyInFileProcessorConcurrentTest {
 		Map<String, Integer> termsCount = new HashMap<>();
 		Map<String, Integer> eventsByPath = new HashMap<>();
 
-		while ((outputTerm = output.poll(2, TimeUnit.SECONDS)) != null) {
+		while ((outputTerm = pollTerm()) != null) {
 			termsCount.put(outputTerm.term(), termsCount.getOrDefault(outputTerm.term(), 0) + 1);
 			eventsByPath.put(outputTerm.path().toString(),
 					eventsByPath.getOrDefault(outputTerm.path().toString(), 0) + 1);
@@ -166,7 +171,7 @@ public class TermsFrequencyInFileProcessorConcurrentTest {
 		Map<String, Float> termsCount = new HashMap<>();
 		Map<String, Integer> eventsByPath = new HashMap<>();
 
-		while ((outputTerm = output.poll(2, TimeUnit.SECONDS)) != null) {
+		while ((outputTerm = pollTerm()) != null) {
 			termsCount.put(outputTerm.term(), termsCount.getOrDefault(outputTerm.term(), 0f) + outputTerm.freq());
 			eventsByPath.put(outputTerm.path().toString(),
 					eventsByPath.getOrDefault(outputTerm.path().toString(), 0) + 1);
@@ -184,4 +189,18 @@ public class TermsFrequencyInFileProcessorConcurrentTest {
 
 	}
 
+	/**
+	 * Next TermFrequency published, flattening the published DocumentTermVector
+	 * items
+	 */
+	private static TermFrequency pollTerm() throws InterruptedException {
+		while (outputTerms.isEmpty()) {
+			DocumentTermVector termVector = output.poll(2, TimeUnit.SECONDS);
+			if (termVector == null) {
+				return null;
+			}
+			outputTerms.addAll(termVector.termFrequencies());
+		}
+		return outputTerms.poll();
+	}
 }
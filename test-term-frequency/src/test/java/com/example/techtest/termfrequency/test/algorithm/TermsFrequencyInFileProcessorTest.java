@@ -1,11 +1,16 @@
 package com.example.techtest.termfrequency.test.algorithm;
 
 import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayDeque;
 import java.util.Arrays;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Queue;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -18,9 +23,12 @@ import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import com.example.techtest.termfrequency.algorithm.DocumentTermVector;
 import com.example.techtest.termfrequency.algorithm.TermFrequency;
 import com.example.techtest.termfrequency.algorithm.TermsFrequencyInFileConfig;
+import com.example.techtest.termfrequency.algorithm.TermsFrequencyInFileConfig.READ_MODE;
 import com.example.techtest.termfrequency.algorithm.TermsFrequencyInFileProcessor;
+import com.example.techtest.termfrequency.store.TermVectorStore;
 
 /**
  * Test class for the TermsFrequencyInFileProcessor component
@@ -30,7 +38,8 @@ public class TermsFrequencyInFileProcessorTest {
 
 	private static ExecutorService executorService;
 	private static BlockingQueue<Path> source = null;
-	private static BlockingQueue<TermFrequency> output = null;
+	private static BlockingQueue<DocumentTermVector> output = null;
+	private static final Queue<TermFrequency> outputTerms = new ArrayDeque<>();
 
 	@BeforeAll
 	public static void initBeforeAll() throws IOException {
@@ -48,6 +57,7 @@ public class TermsFrequencyInFileProcessorTest {
 
 		source.clear();
 		output.clear();
+		outputTerms.clear();
 	}
 
 	@AfterAll
@@ -73,7 +83,7 @@ public class TermsFrequencyInFileProcessorTest {
 		TermFrequency outputTerm;
 		Map<String, Integer> termsCount = new HashMap<>();
 
-		while ((outputTerm = output.poll(2, TimeUnit.SECONDS)) != null) {
+		while ((outputTerm = pollTerm()) != null) {
 			int current = termsCount.getOrDefault(outputTerm.term(), 0);
 			termsCount.put(outputTerm.term(), current + 1);
 		}
@@ -99,7 +109,7 @@ public class TermsFrequencyInFileProcessorTest {
 		TermFrequency outputTerm;
 		Map<String, Float> termsFreq = new HashMap<>();
 
-		while ((outputTerm = output.poll(2, TimeUnit.SECONDS)) != null) {
+		while ((outputTerm = pollTerm()) != null) {
 			float current = termsFreq.getOrDefault(outputTerm.term(), 0f);
 			termsFreq.put(outputTerm.term(), current + outputTerm.freq());
 		}
@@ -125,7 +135,7 @@ public class TermsFrequencyInFileProcessorTest {
 		TermFrequency outputTerm;
 		Map<String, Integer> termsCount = new HashMap<>();
 
-		while ((outputTerm = output.poll(2, TimeUnit.SECONDS)) != null) {
+		while ((outputTerm = pollTerm()) != null) {
 			int current = termsCount.getOrDefault(outputTerm.term(), 0);
 			termsCount.put(outputTerm.term(), current + 1);
 		}
@@ -151,7 +161,7 @@ public class TermsFrequencyInFileProcessorTest {
 		TermFrequency outputTerm;
 		Map<String, Float> termsFreq = new HashMap<>();
 
-		while ((outputTerm = output.poll(2, TimeUnit.SECONDS)) != null) {
+		while ((outputTerm = pollTerm()) != null) {
 			float current = termsFreq.getOrDefault(outputTerm.term(), 0f);
 			termsFreq.put(outputTerm.term(), current + outputTerm.freq());
 		}
@@ -161,6 +171,161 @@ public class TermsFrequencyInFileProcessorTest {
 		Assertions.assertEquals(3 / 7f, termsFreq.get("three"), "one");
 	}
 
+	@Test
+	public void oneTermVectorPerFileTest() throws Exception {
+		Path testFile = Paths.get("src", "test", "resources", "scenarios", "test-patterns",
+				"split-new-lines-spaces-and-commas.txt");
+
+		TermsFrequencyInFileConfig config = new TermsFrequencyInFileConfig();
+		TermsFrequencyInFileProcessor processor = new TermsFrequencyInFileProcessor(config);
+		processor.from(source);
+		processor.output(output);
+
+		source.offer(testFile);
+
+		executorService.submit(processor);
+		DocumentTermVector termVector = output.poll(2, TimeUnit.SECONDS);
+
+		Assertions.assertNotNull(termVector, "vector");
+		Assertions.assertEquals(testFile, termVector.path(), "path");
+		Assertions.assertEquals(3, termVector.size(), "terms");
+		Assertions.assertEquals(7, termVector.totalTokens(), "total-tokens");
+		Assertions.assertNull(output.poll(1, TimeUnit.SECONDS), "single-vector");
+	}
+
+	@Test
+	public void reuseStoredTermVectorTest() throws Exception {
+		Path storeFolder = Files.createTempDirectory("TermVectorStore-" + System.currentTimeMillis());
+		Path testFile = storeFolder.resolve("document.txt");
+		Files.writeString(testFile, "one two two");
+		FileTime lastModified = Files.getLastModifiedTime(testFile);
+
+		TermsFrequencyInFileConfig config = new TermsFrequencyInFileConfig();
+		try (TermVectorStore store = TermVectorStore.open(storeFolder.resolve("index"), config.fingerprint())) {
+			config.termVectorStore(store);
+
+			TermsFrequencyInFileProcessor processor = new TermsFrequencyInFileProcessor(config);
+			processor.from(source);
+			processor.output(output);
+			executorService.submit(processor);
+
+			source.offer(testFile);
+			DocumentTermVector termVector = output.poll(2, TimeUnit.SECONDS);
+			Assertions.assertNotNull(termVector, "computed");
+			Assertions.assertEquals(1, store.size(), "stored");
+
+			// Same size and modification time, the stored vector is published without
+			// reading the file
+			Files.writeString(testFile, "six six six");
+			Files.setLastModifiedTime(testFile, lastModified);
+			source.offer(testFile);
+			termVector = output.poll(2, TimeUnit.SECONDS);
+			Assertions.assertNotNull(termVector, "stored");
+			Assertions.assertEquals(testFile, termVector.path(), "path");
+			Assertions.assertEquals(2, termVector.size(), "stored-terms");
+
+			// A modified file is processed again
+			Files.setLastModifiedTime(testFile, FileTime.fromMillis(lastModified.toMillis() + 1000));
+			source.offer(testFile);
+			termVector = output.poll(2, TimeUnit.SECONDS);
+			Assertions.assertNotNull(termVector, "recomputed");
+			Assertions.assertEquals(1, termVector.size(), "recomputed-terms");
+			Assertions.assertEquals("six", termVector.term(0), "recomputed-term");
+		} finally {
+			executorService.shutdownNow();
+			executorService.awaitTermination(10, TimeUnit.SECONDS);
+			Files.walk(storeFolder).sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+		}
+	}
+
+	@Test
+	public void splitTermsInChunksFrequencyTest() throws Exception {
+		Path testFile = Paths.get("src", "test", "resources", "scenarios", "test-patterns",
+				"split-new-lines-spaces-and-commas.txt");
+
+		// Chunks smaller than the file and than some tokens
+		TermsFrequencyInFileConfig config = new TermsFrequencyInFileConfig();
+		config.chunkSize(4);
+
+		TermsFrequencyInFileProcessor processor = new TermsFrequencyInFileProcessor(config);
+		processor.from(source);
+		processor.output(output);
+
+		source.offer(testFile);
+
+		executorService.submit(processor);
+		TermFrequency outputTerm;
+		Map<String, Float> termsFreq = new HashMap<>();
+
+		while ((outputTerm = pollTerm()) != null) {
+			float current = termsFreq.getOrDefault(outputTerm.term(), 0f);
+			termsFreq.put(outputTerm.term(), current + outputTerm.freq());
+		}
+
+		Assertions.assertEquals(3, termsFreq.size(), "terms");
+		Assertions.assertEquals(2 / 7f, termsFreq.get("one"), "one");
+		Assertions.assertEquals(2 / 7f, termsFreq.get("two"), "two");
+		Assertions.assertEquals(3 / 7f, termsFreq.get("three"), "three");
+	}
+
+	@Test
+	public void splitTermsInParallelRangesFrequencyTest() throws Exception {
+		Path testFile = Paths.get("src", "test", "resources", "scenarios", "test-patterns",
+				"split-new-lines-spaces-and-commas.txt");
+
+		// Every file is split in ranges counted in parallel
+		TermsFrequencyInFileConfig config = new TermsFrequencyInFileConfig();
+		config.chunkSize(4).parallelThreshold(0);
+
+		TermsFrequencyInFileProcessor processor = new TermsFrequencyInFileProcessor(config);
+		processor.from(source);
+		processor.output(output);
+
+		source.offer(testFile);
+
+		executorService.submit(processor);
+		TermFrequency outputTerm;
+		Map<String, Float> termsFreq = new HashMap<>();
+
+		while ((outputTerm = pollTerm()) != null) {
+			float current = termsFreq.getOrDefault(outputTerm.term(), 0f);
+			termsFreq.put(outputTerm.term(), current + outputTerm.freq());
+		}
+
+		Assertions.assertEquals(3, termsFreq.size(), "terms");
+		Assertions.assertEquals(2 / 7f, termsFreq.get("one"), "one");
+		Assertions.assertEquals(2 / 7f, termsFreq.get("two"), "two");
+		Assertions.assertEquals(3 / 7f, termsFreq.get("three"), "three");
+	}
+
+	@Test
+	public void splitTermsReadingLinesFrequencyTest() throws Exception {
+		Path testFile = Paths.get("src", "test", "resources", "scenarios", "test-patterns",
+				"split-new-lines-spaces-and-commas.txt");
+
+		TermsFrequencyInFileConfig config = new TermsFrequencyInFileConfig();
+		config.readMode(READ_MODE.LINES);
+
+		TermsFrequencyInFileProcessor processor = new TermsFrequencyInFileProcessor(config);
+		processor.from(source);
+		processor.output(output);
+
+		source.offer(testFile);
+
+		executorService.submit(processor);
+		TermFrequency outputTerm;
+		Map<String, Float> termsFreq = new HashMap<>();
+
+		while ((outputTerm = pollTerm()) != null) {
+			float current = termsFreq.getOrDefault(outputTerm.term(), 0f);
+			termsFreq.put(outputTerm.term(), current + outputTerm.freq());
+		}
+
+		Assertions.assertEquals(2 / 7f, termsFreq.get("one"), "one");
+		Assertions.assertEquals(2 / 7f, termsFreq.get("two"), "two");
+		Assertions.assertEquals(3 / 7f, termsFreq.get("three"), "three");
+	}
+
 	@Test
 	public void splitTermsBySpecialCharTest() throws Exception {
 		Path testFile = Paths.get("src", "test", "resources", "scenarios", "test-patterns", "split-special-char.txt");
@@ -178,7 +343,7 @@ public class TermsFrequencyInFileProcessorTest {
 		TermFrequency outputTerm;
 		Map<String, Integer> termsCount = new HashMap<>();
 
-		while ((outputTerm = output.poll(2, TimeUnit.SECONDS)) != null) {
+		while ((outputTerm = pollTerm()) != null) {
 			int current = termsCount.getOrDefault(outputTerm.term(), 0);
 			termsCount.put(outputTerm.term(), current + 1);
 		}
@@ -205,7 +370,7 @@ public class TermsFrequencyInFileProcessorTest {
 		TermFrequency outputTerm;
 		Map<String, Float> termsFreq = new HashMap<>();
 
-		while ((outputTerm = output.poll(2, TimeUnit.SECONDS)) != null) {
+		while ((outputTerm = pollTerm()) != null) {
 			float current = termsFreq.getOrDefault(outputTerm.term(), 0f);
 			termsFreq.put(outputTerm.term(), current + outputTerm.freq());
 		}
@@ -231,7 +396,7 @@ public class TermsFrequencyInFileProcessorTest {
 		TermFrequency outputTerm;
 		Map<String, Float> termsFreq = new HashMap<>();
 
-		while ((outputTerm = output.poll(2, TimeUnit.SECONDS)) != null) {
+		while ((outputTerm = pollTerm()) != null) {
 			float current = termsFreq.getOrDefault(outputTerm.term(), 0f);
 			termsFreq.put(outputTerm.term(), current + outputTerm.freq());
 		}
@@ -259,7 +424,7 @@ public class TermsFrequencyInFileProcessorTest {
 		TermFrequency outputTerm;
 		Map<String, Float> termsFreq = new HashMap<>();
 
-		while ((outputTerm = output.poll(2, TimeUnit.SECONDS)) != null) {
+		while ((outputTerm = pollTerm()) != null) {
 			float current = termsFreq.getOrDefault(outputTerm.term(), 0f);
 			termsFreq.put(outputTerm.term(), current + outputTerm.freq());
 		}
@@ -288,7 +453,7 @@ public class TermsFrequencyInFileProcessorTest {
 		TermFrequency outputTerm;
 		Map<String, Integer> termsCount = new HashMap<>();
 
-		while ((outputTerm = output.poll(2, TimeUnit.SECONDS)) != null) {
+		while ((outputTerm = pollTerm()) != null) {
 			int current = termsCount.getOrDefault(outputTerm.term(), 0);
 			termsCount.put(outputTerm.term(), current + 1);
 		}
@@ -318,7 +483,7 @@ public class TermsFrequencyInFileProcessorTest {
 		TermFrequency outputTerm;
 		Map<String, Float> termsFreq = new HashMap<>();
 
-		while ((outputTerm = output.poll(2, TimeUnit.SECONDS)) != null) {
+		while ((outputTerm = pollTerm()) != null) {
 			float current = termsFreq.getOrDefault(outputTerm.term(), 0f);
 			termsFreq.put(outputTerm.term(), current + outputTerm.freq());
 		}
@@ -344,7 +509,7 @@ public class TermsFrequencyInFileProcessorTest {
 		executorService.submit(processor);
 		TermFrequency outputTerm;
 
-		while ((outputTerm = output.poll(2, TimeUnit.SECONDS)) != null) {
+		while ((outputTerm = pollTerm()) != null) {
 			Assertions.assertTrue(outputTerm.rankable(), "rankable term");
 		}
 	}
@@ -367,7 +532,7 @@ public class TermsFrequencyInFileProcessorTest {
 		executorService.submit(processor);
 		TermFrequency outputTerm;
 
-		while ((outputTerm = output.poll(2, TimeUnit.SECONDS)) != null) {
+		while ((outputTerm = pollTerm()) != null) {
 
 			if (config.tokensToInform().contains(outputTerm.term())) {
 				Assertions.assertTrue(outputTerm.rankable(), "rankable term");
@@ -376,4 +541,19 @@ public class TermsFrequencyInFileProcessorTest {
 			}
 		}
 	}
+
+	/**
+	 * Next TermFrequency published, flattening the published DocumentTermVector
+	 * items
+	 */
+	private static TermFrequency pollTerm() throws InterruptedException {
+		while (outputTerms.isEmpty()) {
+			DocumentTermVector termVector = output.poll(2, TimeUnit.SECONDS);
+			if (termVector == null) {
+				return null;
+			}
+			outputTerms.addAll(termVector.termFrequencies());
+		}
+		return outputTerms.poll();
+	}
 }
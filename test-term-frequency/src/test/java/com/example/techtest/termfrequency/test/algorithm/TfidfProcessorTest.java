@@ -3,12 +3,18 @@ package com.example.techtest.termfrequency.test.algorithm;
 import java.io.IOException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.Random;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.Assertions;
@@ -16,7 +22,8 @@ import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
-import com.example.techtest.termfrequency.algorithm.TermFrequency;
+import com.example.techtest.termfrequency.algorithm.DocumentTermVector;
+import com.example.techtest.termfrequency.algorithm.TfidfIndex;
 import com.example.techtest.termfrequency.algorithm.TermsFrequencyInFileConfig;
 import com.example.techtest.termfrequency.algorithm.TermsFrequencyInFileProcessor;
 import com.example.techtest.termfrequency.algorithm.TfidfProcessor;
@@ -24,6 +31,8 @@ import com.example.techtest.termfrequency.algorithm.TfidfProcessorConfig;
 import com.example.techtest.termfrequency.algorithm.TfidfProcessor.TfidfProcessorStats;
 import com.example.techtest.termfrequency.algorithm.TfidfProcessorConfig.IDF_MODE;
 import com.example.techtest.termfrequency.file.NewFilesWatcher;
+import com.example.techtest.termfrequency.stream.DiscoveryTimes;
+import com.example.techtest.termfrequency.stream.RingBufferTransport;
 import com.example.techtest.termfrequency.util.ImmutablePair;
 
 /**
@@ -34,12 +43,12 @@ public class TfidfProcessorTest {
 
 	private static ExecutorService executorService;
 	private static BlockingQueue<Path> pathQueue = null;
-	private static BlockingQueue<TermFrequency> termFreqQueue = null;
+	private static BlockingQueue<DocumentTermVector> termVectorQueue = null;
 
 	@BeforeAll
 	public static void initBeforeAll() throws IOException {
 		pathQueue = new LinkedBlockingQueue<>();
-		termFreqQueue = new LinkedBlockingQueue<>();
+		termVectorQueue = new LinkedBlockingQueue<>();
 	}
 
 	@BeforeEach
@@ -51,7 +60,7 @@ public class TfidfProcessorTest {
 		executorService = Executors.newCachedThreadPool();
 
 		pathQueue.clear();
-		termFreqQueue.clear();
+		termVectorQueue.clear();
 	}
 
 	@AfterAll
@@ -66,18 +75,17 @@ public class TfidfProcessorTest {
 
 		TfidfProcessorConfig config = new TfidfProcessorConfig();
 		TfidfProcessor processor = new TfidfProcessor(config);
-		processor.from(termFreqQueue);
+		processor.from(termVectorQueue);
 
 		executorService.submit(processor);
 
 		// Simulated computed terms frequency
-		TermFrequency tf1 = new TermFrequency().path(Path.of("path1")).term("term1").freq(0.2f);
-		TermFrequency tf2 = new TermFrequency().path(Path.of("path1")).term("term2").freq(0.4f);
-		TermFrequency tf3 = new TermFrequency().path(Path.of("path2")).term("term1").freq(0.6f);
+		DocumentTermVector tv1 = new DocumentTermVector().path(Path.of("path1")).add("term1", 0.2f, true)
+				.add("term2", 0.4f, true);
+		DocumentTermVector tv2 = new DocumentTermVector().path(Path.of("path2")).add("term1", 0.6f, true);
 
-		termFreqQueue.offer(tf1);
-		termFreqQueue.offer(tf2);
-		termFreqQueue.offer(tf3);
+		termVectorQueue.offer(tv1);
+		termVectorQueue.offer(tv2);
 
 		long maxTimeoutMs = 5000;
 		long start = System.currentTimeMillis();
@@ -111,18 +119,17 @@ public class TfidfProcessorTest {
 		TfidfProcessorConfig config = new TfidfProcessorConfig();
 		config.mode(IDF_MODE.SMOOTH);
 		TfidfProcessor processor = new TfidfProcessor(config);
-		processor.from(termFreqQueue);
+		processor.from(termVectorQueue);
 
 		executorService.submit(processor);
 
 		// Simulated computed terms frequency
-		TermFrequency tf1 = new TermFrequency().path(Path.of("path1")).term("term1").freq(0.2f);
-		TermFrequency tf2 = new TermFrequency().path(Path.of("path1")).term("term2").freq(0.4f);
-		TermFrequency tf3 = new TermFrequency().path(Path.of("path2")).term("term1").freq(0.6f);
+		DocumentTermVector tv1 = new DocumentTermVector().path(Path.of("path1")).add("term1", 0.2f, true)
+				.add("term2", 0.4f, true);
+		DocumentTermVector tv2 = new DocumentTermVector().path(Path.of("path2")).add("term1", 0.6f, true);
 
-		termFreqQueue.offer(tf1);
-		termFreqQueue.offer(tf2);
-		termFreqQueue.offer(tf3);
+		termVectorQueue.offer(tv1);
+		termVectorQueue.offer(tv2);
 
 		long maxTimeoutMs = 5000;
 		long start = System.currentTimeMillis();
@@ -150,6 +157,406 @@ public class TfidfProcessorTest {
 		});
 	}
 
+	@Test
+	public void incrementalUpdateTest() throws Exception {
+
+		TfidfProcessorConfig config = new TfidfProcessorConfig();
+		config.maxStalenessMs(100);
+		TfidfProcessor processor = new TfidfProcessor(config);
+		processor.from(termVectorQueue);
+
+		executorService.submit(processor);
+
+		termVectorQueue.offer(new DocumentTermVector().path(Path.of("path1")).add("term1", 0.2f, true)
+				.add("term2", 0.4f, true));
+		termVectorQueue.offer(new DocumentTermVector().path(Path.of("path2")).add("term1", 0.6f, true));
+
+		TfidfProcessorStats stats = waitForAnalyzedPaths(processor, 2);
+		Assertions.assertEquals(2, stats.analyzedPaths(), "analyzed-paths");
+
+		// A new path changes the IDF of every term, and the previous paths are
+		// rescored. An updated document replaces the previous one
+		termVectorQueue.offer(new DocumentTermVector().path(Path.of("path2")).add("term1", 0.8f, true));
+		termVectorQueue.offer(new DocumentTermVector().path(Path.of("path3")).add("term2", 0.5f, true));
+
+		stats = waitForAnalyzedPaths(processor, 3);
+		Assertions.assertEquals(3, stats.analyzedPaths(), "analyzed-paths");
+
+		double path1TFIDF = 0.2f * Math.log10(3 / 2f) + 0.4f * Math.log10(3 / 2f);
+		double path2TFIDF = 0.8f * Math.log10(3 / 2f);
+		double path3TFIDF = 0.5f * Math.log10(3 / 2f);
+
+		Collection<ImmutablePair<Path, Double>> ranking = stats.ranking();
+		Assertions.assertEquals(3, ranking.size(), "ranking-size");
+		ranking.forEach(p -> {
+			if (Path.of("path1").equals(p.key())) {
+				Assertions.assertEquals(path1TFIDF, p.value(), 1e-9, "path1-value");
+			} else if (Path.of("path2").equals(p.key())) {
+				Assertions.assertEquals(path2TFIDF, p.value(), 1e-9, "path2-value");
+			} else {
+				Assertions.assertEquals(path3TFIDF, p.value(), 1e-9, "path3-value");
+			}
+		});
+	}
+
+	@Test
+	public void documentReplacementTest() throws Exception {
+
+		TfidfProcessorConfig config = new TfidfProcessorConfig();
+		config.maxStalenessMs(100);
+		TfidfProcessor processor = new TfidfProcessor(config);
+		processor.from(termVectorQueue);
+
+		executorService.submit(processor);
+
+		termVectorQueue.offer(new DocumentTermVector().path(Path.of("path1")).add("term1", 0.5f, true)
+				.add("term2", 0.5f, true));
+		termVectorQueue.offer(new DocumentTermVector().path(Path.of("path2")).add("term1", 1f, true));
+		termVectorQueue.offer(new DocumentTermVector().path(Path.of("path3")).add("term3", 1f, true));
+
+		TfidfProcessorStats stats = waitForAnalyzedPaths(processor, 3);
+		Assertions.assertEquals(3, stats.analyzedPaths(), "analyzed-paths");
+
+		// The new document of path3 replaces the previous one as a whole, term3 is
+		// no longer part of it and term2 is now in two documents
+		termVectorQueue.offer(new DocumentTermVector().path(Path.of("path3")).add("term2", 1f, true));
+
+		double path1TFIDF = 0.5f * Math.log10(3 / 2f) + 0.5f * Math.log10(3 / 2f);
+		double path2TFIDF = 1f * Math.log10(3 / 2f);
+		double path3TFIDF = 1f * Math.log10(3 / 2f);
+
+		long maxTimeoutMs = 5000;
+		long start = System.currentTimeMillis();
+		while (rankingValue(stats, "path1") != path1TFIDF && (System.currentTimeMillis() - start < maxTimeoutMs)) {
+			stats = processor.getStats();
+		}
+
+		Assertions.assertEquals(3, stats.analyzedPaths(), "analyzed-paths");
+		Assertions.assertEquals(path1TFIDF, rankingValue(stats, "path1"), 1e-9, "path1-value");
+		Assertions.assertEquals(path2TFIDF, rankingValue(stats, "path2"), 1e-9, "path2-value");
+		Assertions.assertEquals(path3TFIDF, rankingValue(stats, "path3"), 1e-9, "path3-value");
+	}
+
+	@Test
+	public void drainWithinBufferSizeTest() throws Exception {
+		TfidfProcessorConfig config = new TfidfProcessorConfig();
+		config.maxTfBufferSize(100);
+
+		// Records the term frequencies handed over by every drain
+		AtomicInteger maxDrainedTermFrequencies = new AtomicInteger();
+		RingBufferTransport<DocumentTermVector> transport = new RingBufferTransport<>(1024) {
+			@Override
+			public int drainTo(Collection<? super DocumentTermVector> collection, int maxElements) {
+				List<DocumentTermVector> drained = new ArrayList<>();
+				int count = super.drainTo(drained, maxElements);
+				maxDrainedTermFrequencies.accumulateAndGet(drained.stream().mapToInt(DocumentTermVector::size).sum(),
+						Math::max);
+				collection.addAll(drained);
+				return count;
+			}
+		};
+
+		// Already available when the processor starts, so they are drained at once
+		int documents = 400;
+		int termsPerDocument = 5;
+		for (int i = 0; i < documents; i++) {
+			DocumentTermVector termVector = new DocumentTermVector().path(Path.of("path" + i));
+			for (int t = 0; t < termsPerDocument; t++) {
+				termVector.add("term" + ((i + t) % 50), 0.2f, true);
+			}
+			transport.put(termVector);
+		}
+
+		TfidfProcessor processor = new TfidfProcessor(config);
+		processor.from(transport);
+		executorService.submit(processor);
+
+		TfidfProcessorStats stats = waitForAnalyzedPaths(processor, documents);
+		Assertions.assertEquals(documents, stats.analyzedPaths(), "analyzed-paths");
+		Assertions.assertTrue(maxDrainedTermFrequencies.get() <= config.maxTfBufferSize(),
+				"drained " + maxDrainedTermFrequencies.get());
+	}
+
+	@Test
+	public void shardedUpdateTest() throws Exception {
+
+		TfidfProcessorConfig config = new TfidfProcessorConfig();
+		config.maxStalenessMs(100).shards(4);
+		TfidfProcessor processor = new TfidfProcessor(config);
+		processor.from(termVectorQueue);
+
+		executorService.submit(processor);
+
+		termVectorQueue.offer(new DocumentTermVector().path(Path.of("path1")).add("term1", 0.2f, true)
+				.add("term2", 0.4f, true));
+		termVectorQueue.offer(new DocumentTermVector().path(Path.of("path2")).add("term1", 0.6f, true));
+
+		TfidfProcessorStats stats = waitForAnalyzedPaths(processor, 2);
+		Assertions.assertEquals(2, stats.analyzedPaths(), "analyzed-paths");
+		Assertions.assertEquals(computeNormaTfIDF(0.2f, 2, 2) + computeNormaTfIDF(0.4f, 1, 2),
+				rankingValue(stats, "path1"), 1e-9, "path1-value");
+
+		termVectorQueue.offer(new DocumentTermVector().path(Path.of("path2")).add("term1", 0.8f, true));
+		termVectorQueue.offer(new DocumentTermVector().path(Path.of("path3")).add("term2", 0.5f, true));
+
+		stats = waitForAnalyzedPaths(processor, 3);
+		Assertions.assertEquals(3, stats.analyzedPaths(), "analyzed-paths");
+		Assertions.assertEquals(0.2f * Math.log10(3 / 2f) + 0.4f * Math.log10(3 / 2f), rankingValue(stats, "path1"),
+				1e-9, "path1-value");
+		Assertions.assertEquals(0.8f * Math.log10(3 / 2f), rankingValue(stats, "path2"), 1e-9, "path2-value");
+		Assertions.assertEquals(0.5f * Math.log10(3 / 2f), rankingValue(stats, "path3"), 1e-9, "path3-value");
+	}
+
+	@Test
+	public void shardedIndexMatchesSingleShardTest() throws Exception {
+
+		ExecutorService shardsExecutor = Executors.newFixedThreadPool(3);
+		try {
+			TfidfIndex singleIndex = new TfidfIndex(IDF_MODE.SMOOTH);
+			TfidfIndex shardedIndex = new TfidfIndex(IDF_MODE.SMOOTH, Integer.MAX_VALUE, 3, shardsExecutor);
+
+			Random random = new Random(42);
+			for (int round = 0; round < 5; round++) {
+				List<DocumentTermVector> termVectors = new ArrayList<>();
+				for (int i = 0; i < 200; i++) {
+					DocumentTermVector termVector = new DocumentTermVector()
+							.path(Path.of("path" + random.nextInt(300)));
+					for (int t = random.nextInt(6); t > 0; t--) {
+						termVector.add("term" + random.nextInt(50), random.nextFloat(), random.nextInt(10) > 0);
+					}
+					termVectors.add(termVector);
+				}
+
+				singleIndex.apply(termVectors);
+				shardedIndex.apply(termVectors);
+				Assertions.assertEquals(singleIndex.updateScores(), shardedIndex.updateScores(), "rescored-" + round);
+				Assertions.assertEquals(singleIndex.totalNumberOfPaths(), shardedIndex.totalNumberOfPaths(),
+						"paths-" + round);
+
+				List<Entry<Path, Double>> expected = singleIndex.ranking(Integer.MAX_VALUE);
+				List<Entry<Path, Double>> ranking = shardedIndex.ranking(Integer.MAX_VALUE);
+				Assertions.assertEquals(expected.size(), ranking.size(), "ranking-size-" + round);
+				for (int i = 0; i < expected.size(); i++) {
+					Assertions.assertEquals(expected.get(i).getValue(), ranking.get(i).getValue(), 1e-9,
+							"value-" + round + "-" + i);
+				}
+			}
+		} finally {
+			shardsExecutor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void boundedRankingMatchesFullRankingTest() throws Exception {
+
+		TfidfIndex fullIndex = new TfidfIndex(IDF_MODE.NORMAL);
+		TfidfIndex boundedIndex = new TfidfIndex(IDF_MODE.NORMAL, 5, 1, null);
+
+		// Updated documents move paths in and out of the top 5, also lowering the
+		// score of its members
+		Random random = new Random(7);
+		for (int round = 0; round < 20; round++) {
+			List<DocumentTermVector> termVectors = new ArrayList<>();
+			for (int i = 0; i < 20; i++) {
+				DocumentTermVector termVector = new DocumentTermVector().path(Path.of("path" + random.nextInt(40)));
+				for (int t = random.nextInt(4); t > 0; t--) {
+					termVector.add("term" + random.nextInt(8), random.nextInt(4) / 4f, random.nextInt(5) > 0);
+				}
+				termVectors.add(termVector);
+			}
+
+			fullIndex.apply(termVectors);
+			boundedIndex.apply(termVectors);
+			fullIndex.updateScores();
+			boundedIndex.updateScores();
+
+			List<Entry<Path, Double>> expected = fullIndex.ranking(5);
+			List<Entry<Path, Double>> ranking = boundedIndex.ranking(Integer.MAX_VALUE);
+			Assertions.assertEquals(expected, ranking, "ranking-" + round);
+		}
+	}
+
+	@Test
+	public void lazyRescoringTest() throws Exception {
+
+		TfidfIndex fullIndex = new TfidfIndex(IDF_MODE.SMOOTH);
+		TfidfIndex boundedIndex = new TfidfIndex(IDF_MODE.SMOOTH, 3, 2, null);
+
+		// Every round adds new paths, so the IDF of every term changes
+		Random random = new Random(11);
+		int fullRescored = 0;
+		int boundedRescored = 0;
+		for (int round = 0; round < 30; round++) {
+			List<DocumentTermVector> termVectors = new ArrayList<>();
+			for (int i = 0; i < 10; i++) {
+				DocumentTermVector termVector = new DocumentTermVector().path(Path.of("path" + round + "-" + i));
+				for (int t = 1 + random.nextInt(3); t > 0; t--) {
+					termVector.add("term" + random.nextInt(20), random.nextFloat(), true);
+				}
+				termVectors.add(termVector);
+			}
+
+			fullIndex.apply(termVectors);
+			boundedIndex.apply(termVectors);
+			fullRescored += fullIndex.updateScores();
+			boundedRescored += boundedIndex.updateScores();
+
+			List<Entry<Path, Double>> expected = fullIndex.ranking(3);
+			List<Entry<Path, Double>> ranking = boundedIndex.ranking(3);
+			Assertions.assertEquals(expected.size(), ranking.size(), "ranking-size-" + round);
+			for (int i = 0; i < expected.size(); i++) {
+				Assertions.assertEquals(expected.get(i).getKey(), ranking.get(i).getKey(), "path-" + round + "-" + i);
+				Assertions.assertEquals(expected.get(i).getValue(), ranking.get(i).getValue(), 1e-9,
+						"value-" + round + "-" + i);
+			}
+		}
+
+		Assertions.assertTrue(boundedRescored < fullRescored / 2,
+				"rescored " + boundedRescored + " of " + fullRescored);
+	}
+
+	@Test
+	public void newPathRescoresOnlyCandidatesTest() throws Exception {
+
+		TfidfIndex fullIndex = new TfidfIndex(IDF_MODE.NORMAL);
+		TfidfIndex boundedIndex = new TfidfIndex(IDF_MODE.NORMAL, 5, 2, null);
+
+		Random random = new Random(5);
+		List<DocumentTermVector> termVectors = new ArrayList<>();
+		for (int i = 0; i < 2000; i++) {
+			termVectors.add(new DocumentTermVector().path(Path.of("path" + i)).add("term" + random.nextInt(50),
+					random.nextFloat(), true));
+		}
+		fullIndex.apply(termVectors);
+		boundedIndex.apply(termVectors);
+		fullIndex.updateScores();
+		boundedIndex.updateScores();
+
+		// Every new path changes the IDF of every term, but not the df of the rest
+		for (int round = 0; round < 20; round++) {
+			DocumentTermVector termVector = new DocumentTermVector().path(Path.of("new-path" + round)).add("new-term",
+					random.nextFloat(), true);
+			fullIndex.apply(termVector);
+			boundedIndex.apply(termVector);
+			fullIndex.updateScores();
+			int rescored = boundedIndex.updateScores();
+
+			Assertions.assertTrue(rescored < 20, "rescored " + rescored + " in round " + round);
+			List<Entry<Path, Double>> expected = fullIndex.ranking(5);
+			List<Entry<Path, Double>> ranking = boundedIndex.ranking(5);
+			Assertions.assertEquals(expected.size(), ranking.size(), "ranking-size-" + round);
+			for (int i = 0; i < expected.size(); i++) {
+				Assertions.assertEquals(expected.get(i).getKey(), ranking.get(i).getKey(), "path-" + round + "-" + i);
+				Assertions.assertEquals(expected.get(i).getValue(), ranking.get(i).getValue(), 1e-9,
+						"value-" + round + "-" + i);
+			}
+		}
+	}
+
+	@Test
+	public void idleProcessorDoesNotRefreshTest() throws Exception {
+		TfidfProcessorConfig config = new TfidfProcessorConfig();
+		config.maxStalenessMs(50);
+		TfidfProcessor processor = new TfidfProcessor(config);
+		processor.from(termVectorQueue);
+		executorService.submit(processor);
+
+		// No refresh while nothing arrives
+		Thread.sleep(200);
+		Assertions.assertEquals(0, processor.getStats().rankingLastUpdated(), "not refreshed");
+		Assertions.assertEquals(0, processor.metrics().getStats().refreshTime().count(), "no refreshes");
+
+		termVectorQueue.offer(new DocumentTermVector().path(Path.of("path1")).add("term1", 0.2f, true));
+		TfidfProcessorStats stats = waitForAnalyzedPaths(processor, 1);
+		Assertions.assertEquals(1, stats.analyzedPaths(), "analyzed-paths");
+		Assertions.assertTrue(stats.rankingLastUpdated() > 0, "refreshed");
+	}
+
+	@Test
+	public void burstRefreshedInBatchesTest() throws Exception {
+		TfidfProcessorConfig config = new TfidfProcessorConfig();
+		config.maxStalenessMs(200).maxTfBufferSize(100000);
+		TfidfProcessor processor = new TfidfProcessor(config);
+		processor.from(termVectorQueue);
+		executorService.submit(processor);
+
+		// Every vector is taken, and refreshed in fewer refreshes than vectors
+		int documents = 20000;
+		for (int i = 0; i < documents; i++) {
+			termVectorQueue.offer(new DocumentTermVector().path(Path.of("path" + i)).add("term" + (i % 100), 0.5f, true)
+					.add("common", 0.5f, true));
+		}
+
+		TfidfProcessorStats stats = waitForAnalyzedPaths(processor, documents);
+		Assertions.assertEquals(documents, stats.analyzedPaths(), "analyzed-paths");
+		long refreshes = processor.metrics().getStats().refreshTime().count();
+		Assertions.assertTrue(refreshes < documents / 10, "refreshes " + refreshes);
+	}
+
+	@Test
+	public void statsSnapshotTest() throws Exception {
+		TfidfProcessorConfig config = new TfidfProcessorConfig();
+		config.rankingSize(5);
+		TfidfProcessor processor = new TfidfProcessor(config);
+		processor.from(termVectorQueue);
+
+		TfidfProcessorStats initial = processor.getStats();
+		Assertions.assertEquals(0, initial.version(), "initial version");
+		Assertions.assertEquals(0, initial.analyzedPaths(), "initial analyzed-paths");
+		Assertions.assertTrue(initial.ranking().isEmpty(), "initial ranking");
+
+		executorService.submit(processor);
+		termVectorQueue.offer(new DocumentTermVector().path(Path.of("path1")).add("term1", 0.2f, true));
+		termVectorQueue.offer(new DocumentTermVector().path(Path.of("path2")).add("term2", 0.6f, true));
+		TfidfProcessorStats stats = waitForAnalyzedPaths(processor, 2);
+
+		// The same snapshot until the next update, and not modifiable
+		Assertions.assertTrue(stats.version() > 0, "version");
+		Assertions.assertSame(stats, processor.getStats(), "same snapshot");
+		Assertions.assertThrows(UnsupportedOperationException.class, () -> stats.ranking().clear(), "unmodifiable");
+		Assertions.assertEquals(0, initial.analyzedPaths(), "previous snapshot unchanged");
+	}
+
+	@Test
+	public void concurrentStatsReadersTest() throws Exception {
+		TfidfProcessorConfig config = new TfidfProcessorConfig();
+		config.rankingSize(10).maxStalenessMs(10);
+		TfidfProcessor processor = new TfidfProcessor(config);
+		processor.from(termVectorQueue);
+		executorService.submit(processor);
+
+		int documents = 5000;
+		int readers = 4;
+		List<Future<Long>> readerResults = new ArrayList<>();
+		for (int r = 0; r < readers; r++) {
+			readerResults.add(executorService.submit(() -> {
+				// Every snapshot is consistent and the versions never go back
+				long lastVersion = -1;
+				long reads = 0;
+				TfidfProcessorStats stats = processor.getStats();
+				while (stats.analyzedPaths() < documents) {
+					Assertions.assertTrue(stats.version() >= lastVersion, "version order");
+					Assertions.assertEquals(Math.min(10, stats.analyzedPaths()), stats.ranking().size(),
+							"ranking size of version " + stats.version());
+					lastVersion = stats.version();
+					reads++;
+					stats = processor.getStats();
+				}
+				return reads;
+			}));
+		}
+
+		for (int i = 0; i < documents; i++) {
+			termVectorQueue.offer(new DocumentTermVector().path(Path.of("path" + i)).add("term" + (i % 50), 0.5f, true)
+					.add("common", 0.5f, true));
+		}
+
+		for (Future<Long> readerResult : readerResults) {
+			Assertions.assertTrue(readerResult.get(30, TimeUnit.SECONDS) > 0, "reads");
+		}
+		Assertions.assertEquals(documents, processor.getStats().analyzedPaths(), "analyzed-paths");
+	}
+
 	@Test
 	public void end2endNormalTest() throws Exception {
 		String path = Paths.get("src", "test", "resources", "scenarios", "basic").toString();
@@ -164,11 +571,11 @@ public class TfidfProcessorTest {
 		tfProcessorConfig.addTokenToInform("this").addTokenToInform("example");
 		TermsFrequencyInFileProcessor tfProcessor = new TermsFrequencyInFileProcessor(tfProcessorConfig);
 		tfProcessor.from(pathQueue);
-		tfProcessor.output(termFreqQueue);
+		tfProcessor.output(termVectorQueue);
 
 		// TF-IDF processor
 		TfidfProcessor tfIdfProcessor = new TfidfProcessor(null);
-		tfIdfProcessor.from(termFreqQueue);
+		tfIdfProcessor.from(termVectorQueue);
 
 		executorService.submit(watcher);
 		executorService.submit(tfProcessor);
@@ -200,6 +607,102 @@ public class TfidfProcessorTest {
 		});
 	}
 
+	@Test
+	public void end2endFreshnessTest() throws Exception {
+		String path = Paths.get("src", "test", "resources", "scenarios", "basic").toString();
+		DiscoveryTimes discoveryTimes = new DiscoveryTimes();
+
+		// file watcher
+		NewFilesWatcher watcher = NewFilesWatcher.watcherFor(path);
+		watcher.output(pathQueue);
+		watcher.discoveryTimes(discoveryTimes);
+
+		// TF processor
+		TermsFrequencyInFileConfig tfProcessorConfig = new TermsFrequencyInFileConfig();
+		tfProcessorConfig.addTokenToInform("this").addTokenToInform("example");
+		TermsFrequencyInFileProcessor tfProcessor = new TermsFrequencyInFileProcessor(tfProcessorConfig);
+		tfProcessor.from(pathQueue);
+		tfProcessor.output(termVectorQueue);
+		tfProcessor.discoveryTimes(discoveryTimes);
+
+		// TF-IDF processor
+		TfidfProcessor tfIdfProcessor = new TfidfProcessor(null);
+		tfIdfProcessor.from(termVectorQueue);
+
+		executorService.submit(watcher);
+		executorService.submit(tfProcessor);
+		executorService.submit(tfIdfProcessor);
+
+		TfidfProcessorStats stats = waitForVisibleFiles(tfIdfProcessor, 2);
+		Assertions.assertEquals(2, stats.analyzedPaths(), "analyzed-paths");
+
+		// Every file measured, and every step after the previous one
+		Assertions.assertEquals(2, stats.discoveryToTokenized().count(), "tokenized-count");
+		Assertions.assertEquals(2, stats.discoveryToApplied().count(), "applied-count");
+		Assertions.assertEquals(2, stats.discoveryToVisible().count(), "visible-count");
+		Assertions.assertTrue(stats.discoveryToTokenized().max() <= stats.discoveryToApplied().max(),
+				"tokenized before applied");
+		Assertions.assertTrue(stats.discoveryToApplied().max() <= stats.discoveryToVisible().max(),
+				"applied before visible");
+		Assertions.assertTrue(stats.discoveryToVisible().percentile(99) < TimeUnit.SECONDS.toNanos(5),
+				"visible within the timeout");
+		Assertions.assertEquals(0, discoveryTimes.size(), "discovery times taken");
+	}
+
+	@Test
+	public void untrackedVectorsFreshnessTest() throws Exception {
+		TfidfProcessor processor = new TfidfProcessor(null);
+		processor.from(termVectorQueue);
+		executorService.submit(processor);
+
+		// Vectors without discovery time are not measured
+		termVectorQueue.offer(new DocumentTermVector().path(Path.of("path1")).add("term1", 0.2f, true));
+		long now = System.nanoTime();
+		termVectorQueue.offer(new DocumentTermVector().path(Path.of("path2")).add("term1", 0.6f, true)
+				.discoveredAt(now - TimeUnit.MILLISECONDS.toNanos(200)).tokenizedAt(now));
+
+		TfidfProcessorStats stats = waitForVisibleFiles(processor, 1);
+		Assertions.assertEquals(2, stats.analyzedPaths(), "analyzed-paths");
+		Assertions.assertEquals(1, stats.discoveryToVisible().count(), "visible-count");
+		Assertions.assertTrue(stats.discoveryToTokenized().max() >= TimeUnit.MILLISECONDS.toNanos(200),
+				"tokenized latency");
+		Assertions.assertTrue(stats.discoveryToVisible().max() >= TimeUnit.MILLISECONDS.toNanos(200),
+				"visible latency");
+
+		// The distributions of a version don't change once published
+		Assertions.assertSame(stats.discoveryToVisible(), stats.discoveryToVisible(), "visible snapshot");
+	}
+
+	private TfidfProcessorStats waitForAnalyzedPaths(TfidfProcessor processor, long paths) {
+		long maxTimeoutMs = 5000;
+		long start = System.currentTimeMillis();
+		TfidfProcessorStats stats = processor.getStats();
+
+		// Wait maxTimeoutMs at most
+		while (stats.analyzedPaths() < paths && (System.currentTimeMillis() - start < maxTimeoutMs)) {
+			stats = processor.getStats();
+		}
+		return stats;
+	}
+
+	private TfidfProcessorStats waitForVisibleFiles(TfidfProcessor processor, long files) throws InterruptedException {
+		long maxTimeoutMs = 5000;
+		long start = System.currentTimeMillis();
+		TfidfProcessorStats stats = processor.getStats();
+
+		// The freshness is recorded once the ranking is published
+		while (stats.discoveryToVisible().count() < files && (System.currentTimeMillis() - start < maxTimeoutMs)) {
+			Thread.sleep(10);
+			stats = processor.getStats();
+		}
+		return stats;
+	}
+
+	private static double rankingValue(TfidfProcessorStats stats, String path) {
+		return stats.ranking().stream().filter(p -> Path.of(path).equals(p.key())).mapToDouble(ImmutablePair::value)
+				.findFirst().orElse(Double.NaN);
+	}
+
 	private double computeNormaTfIDF(double freq, int termInDocs, int totalDocs) {
 		return freq * Math.log10(totalDocs / termInDocs);
 	}
@@ -0,0 +1,155 @@
+package com.example.techtest.termfrequency.test.file;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.example.techtest.termfrequency.file.FileSettleStage;
+import com.example.techtest.termfrequency.stream.BlockingQueueTransport;
+import com.example.techtest.termfrequency.stream.Transport;
+
+/**
+ * Test class for the FileSettleStage component
+ *
+ */
+public class FileSettleStageTest {
+
+	private static final long QUIET_PERIOD_MS = 300;
+	private static final long TICK_MS = 10;
+
+	private static Path tempFolderPath = null;
+
+	private ExecutorService executorService;
+	private Transport<Path> input;
+	private Transport<Path> output;
+	private FileSettleStage stage;
+	private Future<Integer> result;
+
+	@BeforeAll
+	public static void initBeforeAll() throws IOException {
+		tempFolderPath = Files.createTempDirectory("FileSettleStageTest-" + System.currentTimeMillis());
+	}
+
+	@AfterAll
+	public static void cleanAfterAll() throws IOException {
+		if (tempFolderPath != null) {
+			for (Path file : Files.list(tempFolderPath).toArray(Path[]::new)) {
+				Files.delete(file);
+			}
+			Files.delete(tempFolderPath);
+		}
+	}
+
+	@BeforeEach
+	public void initBeforeEach() {
+		executorService = Executors.newSingleThreadExecutor();
+		input = new BlockingQueueTransport<>(new LinkedBlockingQueue<>());
+		output = new BlockingQueueTransport<>(new LinkedBlockingQueue<>());
+
+		stage = new FileSettleStage().quietPeriodMs(QUIET_PERIOD_MS).tickMs(TICK_MS);
+		stage.from(input);
+		stage.output(output);
+		result = executorService.submit(stage);
+	}
+
+	@AfterEach
+	public void cleanAfterEach() throws Exception {
+		executorService.shutdownNow();
+		Assertions.assertTrue(executorService.awaitTermination(5, TimeUnit.SECONDS));
+		Assertions.assertEquals(FileSettleStage.RESULT_OK, result.get());
+	}
+
+	@Test
+	public void quietFileTest() throws Exception {
+		Path file = Files.writeString(tempFolderPath.resolve("quiet.txt"), "contents");
+		// As a file moved into place, already written long ago
+		Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis() - 10 * QUIET_PERIOD_MS));
+
+		long start = System.currentTimeMillis();
+		input.put(file);
+
+		Assertions.assertEquals(file, output.poll(5, TimeUnit.SECONDS));
+		Assertions.assertTrue(System.currentTimeMillis() - start < QUIET_PERIOD_MS, "Published at once");
+		Assertions.assertEquals(0, stage.pendingFiles());
+	}
+
+	@Test
+	public void fileBeingWrittenTest() throws Exception {
+		Path file = tempFolderPath.resolve("written.txt");
+		long lastWrite;
+		try (Writer writer = Files.newBufferedWriter(file)) {
+			input.put(file);
+
+			// Keeps growing for more than a quiet period
+			long start = System.currentTimeMillis();
+			while (System.currentTimeMillis() - start < 2 * QUIET_PERIOD_MS) {
+				writer.write("some contents ");
+				writer.flush();
+				Assertions.assertNull(output.poll(QUIET_PERIOD_MS / 5, TimeUnit.MILLISECONDS), "Published while written");
+			}
+			lastWrite = System.currentTimeMillis();
+		}
+
+		Assertions.assertEquals(file, output.poll(5, TimeUnit.SECONDS));
+		Assertions.assertTrue(System.currentTimeMillis() - lastWrite >= QUIET_PERIOD_MS - TICK_MS,
+				"Published after the quiet period");
+		Assertions.assertNull(output.poll(2 * QUIET_PERIOD_MS, TimeUnit.MILLISECONDS), "Published once");
+	}
+
+	@Test
+	public void removedFileTest() throws Exception {
+		Path file = Files.writeString(tempFolderPath.resolve("removed.txt"), "contents");
+		input.put(file);
+		Files.delete(file);
+
+		Assertions.assertNull(output.poll(3 * QUIET_PERIOD_MS, TimeUnit.MILLISECONDS));
+		Assertions.assertEquals(0, stage.pendingFiles());
+
+		// Informed again once created again
+		Files.writeString(file, "new contents");
+		input.put(file);
+		Assertions.assertEquals(file, output.poll(5, TimeUnit.SECONDS));
+	}
+
+	@Test
+	public void manyFilesTest() throws Exception {
+		int numFiles = 2000;
+		Set<Path> expected = new HashSet<>();
+		for (int i = 0; i < numFiles; i++) {
+			Path file = Files.writeString(tempFolderPath.resolve("many-" + i + ".txt"), "contents " + i);
+			expected.add(file);
+			input.put(file);
+		}
+
+		Set<Path> published = new HashSet<>();
+		while (published.size() < numFiles) {
+			Path file = output.poll(5, TimeUnit.SECONDS);
+			Assertions.assertNotNull(file, "Files missing: " + (numFiles - published.size()));
+			Assertions.assertTrue(published.add(file), "Published twice: " + file);
+		}
+		Assertions.assertEquals(expected, published);
+
+		// The count is updated once the expired files of a tick are published
+		long deadline = System.currentTimeMillis() + 5000;
+		while (stage.pendingFiles() > 0) {
+			Assertions.assertTrue(System.currentTimeMillis() < deadline, "Timeout");
+			Thread.sleep(10);
+		}
+	}
+}
@@ -0,0 +1,98 @@
+package com.example.techtest.termfrequency.test.file;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import com.example.techtest.termfrequency.file.FileStateCache;
+
+/**
+ * Test class for the FileStateCache component
+ *
+ */
+public class FileStateCacheTest {
+
+	private static Path tempFolderPath = null;
+
+	@BeforeAll
+	public static void initBeforeAll() throws IOException {
+		tempFolderPath = Files.createTempDirectory("FileStateCacheTest-" + System.currentTimeMillis());
+	}
+
+	@AfterAll
+	public static void cleanAfterAll() throws IOException {
+		if (tempFolderPath != null) {
+			for (Path file : Files.list(tempFolderPath).toArray(Path[]::new)) {
+				Files.delete(file);
+			}
+			Files.delete(tempFolderPath);
+		}
+	}
+
+	@Test
+	public void changedFilesTest() throws Exception {
+		FileStateCache cache = new FileStateCache(false);
+		Path file = Files.writeString(tempFolderPath.resolve("changed.txt"), "contents");
+
+		Assertions.assertTrue(cache.update(file, attributes(file)), "new");
+		Assertions.assertFalse(cache.update(file, attributes(file)), "unchanged");
+		Assertions.assertEquals(1, cache.size());
+
+		// Same size, new modification time
+		touch(file);
+		Assertions.assertTrue(cache.update(file, attributes(file)), "touched");
+
+		// New size
+		Files.writeString(file, "new contents");
+		Assertions.assertTrue(cache.update(file, attributes(file)), "modified");
+
+		// Forgotten files are new again
+		cache.remove(file);
+		Assertions.assertEquals(0, cache.size());
+		Assertions.assertTrue(cache.update(file, attributes(file)), "removed");
+	}
+
+	@Test
+	public void hashedContentsTest() throws Exception {
+		FileStateCache cache = new FileStateCache(true);
+		Path file = Files.writeString(tempFolderPath.resolve("hashed.txt"), "contents");
+
+		Assertions.assertTrue(cache.update(file, attributes(file)), "new");
+
+		// Same contents, new modification time
+		touch(file);
+		Assertions.assertFalse(cache.update(file, attributes(file)), "touched");
+
+		// Same size, new contents
+		Files.writeString(file, "CONTENTS");
+		touch(file);
+		Assertions.assertTrue(cache.update(file, attributes(file)), "modified");
+	}
+
+	@Test
+	public void largeFilesNotHashedTest() throws Exception {
+		FileStateCache cache = new FileStateCache(true, 4);
+		Path file = Files.writeString(tempFolderPath.resolve("large.txt"), "contents");
+
+		Assertions.assertTrue(cache.update(file, attributes(file)), "new");
+
+		// Same contents, new modification time, greater than the max hashed size
+		touch(file);
+		Assertions.assertTrue(cache.update(file, attributes(file)), "touched");
+	}
+
+	private static BasicFileAttributes attributes(Path file) throws IOException {
+		return Files.readAttributes(file, BasicFileAttributes.class);
+	}
+
+	private static void touch(Path file) throws IOException {
+		Files.setLastModifiedTime(file, FileTime.fromMillis(Files.getLastModifiedTime(file).toMillis() + 10000));
+	}
+}
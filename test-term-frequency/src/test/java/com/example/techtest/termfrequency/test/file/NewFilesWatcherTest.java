@@ -9,6 +9,9 @@ import java.nio.file.Paths;
 import java.nio.file.SimpleFileVisitor;
 import java.nio.file.StandardOpenOption;
 import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.HashSet;
+import java.util.Set;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -22,6 +25,8 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import com.example.techtest.termfrequency.file.NewFilesWatcher;
+import com.example.techtest.termfrequency.stream.MonitoredTransport;
+import com.example.techtest.termfrequency.stream.RingBufferTransport;
 
 /**
  * Test class for the NewFilesWatcher component
@@ -130,6 +135,30 @@ public class NewFilesWatcherTest {
 		}
 	}
 
+	@Test
+	public void saturatedOutputTest() throws Exception {
+		String path = "src/test/resources/scenarios/basic-subfolders";
+
+		// Room for two files, the watcher waits for the consumer
+		MonitoredTransport<Path> boundedOutput = new MonitoredTransport<>("files", new RingBufferTransport<>(2));
+		NewFilesWatcher watcher = NewFilesWatcher.watcherFor(path);
+		watcher.output(boundedOutput);
+		watcher.includeExistingFiles(true);
+
+		executorService.submit(watcher);
+		Path outputPath;
+		Set<Path> outputPaths = new HashSet<>();
+
+		while ((outputPath = boundedOutput.poll(2, TimeUnit.SECONDS)) != null) {
+			outputPaths.add(outputPath);
+			Thread.sleep(100);
+		}
+
+		Assertions.assertEquals(4, outputPaths.size(), "files");
+		Assertions.assertTrue(boundedOutput.getStats().stalledPuts() > 0, "stalled-puts");
+		Assertions.assertEquals(2, boundedOutput.getStats().peakDepth(), "peak-depth");
+	}
+
 	@Test
 	public void noWatchExistingFilesTest() throws Exception {
 		String path = Paths.get("src", "test", "resources", "scenarios", "basic-subfolders").toString();
@@ -202,6 +231,102 @@ public class NewFilesWatcherTest {
 		}
 	}
 
+	@Test
+	public void modifiedFilesTest() throws Exception {
+		NewFilesWatcher watcher = initFileWatcher(tempFolderPath);
+		watcher.includeExistingFiles(false);
+		watcher.includeModifiedFiles(true);
+
+		executorService.submit(watcher);
+		// Let the watcher register the folder
+		Thread.sleep(500);
+		Path newFile = tempFolderPath.resolve("test.txt");
+		Files.writeString(newFile, "File contents");
+
+		Path outputPath;
+		int published = 0;
+		while ((outputPath = output.poll(2, TimeUnit.SECONDS)) != null) {
+			Assertions.assertEquals(newFile, outputPath);
+			published++;
+		}
+		Assertions.assertTrue(published > 0, "created");
+
+		// The modified file is informed again
+		Files.writeString(newFile, " updated", StandardOpenOption.APPEND);
+		outputPath = output.poll(5, TimeUnit.SECONDS);
+		Assertions.assertEquals(newFile, outputPath, "modified");
+		while ((outputPath = output.poll(2, TimeUnit.SECONDS)) != null) {
+			Assertions.assertEquals(newFile, outputPath);
+		}
+	}
+
+	@Test
+	public void touchedFilesTest() throws Exception {
+		Path existingFile = tempFolderPath.resolve("existing.txt");
+		Files.writeString(existingFile, "File contents");
+
+		NewFilesWatcher watcher = initFileWatcher(tempFolderPath);
+		watcher.includeExistingFiles(true);
+		watcher.includeModifiedFiles(true);
+		watcher.hashContents(true);
+
+		executorService.submit(watcher);
+		Assertions.assertEquals(existingFile, output.poll(5, TimeUnit.SECONDS), "existing");
+
+		// Same contents with a new modification time, not informed again
+		Files.setLastModifiedTime(existingFile,
+				FileTime.fromMillis(Files.getLastModifiedTime(existingFile).toMillis() + 10000));
+		Assertions.assertNull(output.poll(2, TimeUnit.SECONDS), "touched");
+	}
+
+	@Test
+	public void parallelWalkTest() throws Exception {
+
+		// Tree of 3 levels, with files in every folder
+		Set<Path> existingFiles = new HashSet<>();
+		for (int i = 0; i < 10; i++) {
+			for (int j = 0; j < 10; j++) {
+				Path folder = Files.createDirectories(tempFolderPath.resolve("folder-" + i).resolve("folder-" + j));
+				for (int k = 0; k < 3; k++) {
+					existingFiles.add(Files.writeString(folder.resolve("file-" + k + ".txt"), "contents"));
+				}
+			}
+			existingFiles.add(Files.writeString(tempFolderPath.resolve("folder-" + i).resolve("file.txt"), "contents"));
+		}
+
+		NewFilesWatcher watcher = initFileWatcher(tempFolderPath);
+		watcher.includeExistingFiles(true);
+		watcher.walkerParallelism(4);
+
+		executorService.submit(watcher);
+		Set<Path> outputPaths = new HashSet<>();
+		Path outputPath;
+		while ((outputPath = output.poll(2, TimeUnit.SECONDS)) != null) {
+			Assertions.assertTrue(outputPaths.add(outputPath), "duplicated " + outputPath);
+		}
+		Assertions.assertEquals(existingFiles, outputPaths, "existing");
+
+		// Every subfolder was registered
+		Path newFile = Files.writeString(tempFolderPath.resolve("folder-9").resolve("folder-9").resolve("new.txt"),
+				"contents");
+		Assertions.assertEquals(newFile, output.poll(5, TimeUnit.SECONDS), "new");
+	}
+
+	@Test
+	public void newFileInExistingSubfolderTest() throws Exception {
+		Path subfolder = Files.createDirectories(tempFolderPath.resolve("subfolder"));
+
+		NewFilesWatcher watcher = initFileWatcher(tempFolderPath);
+		watcher.includeExistingFiles(false);
+
+		executorService.submit(watcher);
+		// Let the watcher register the folders
+		Thread.sleep(500);
+
+		Path newFile = Files.writeString(subfolder.resolve("new.txt"), "contents");
+		Assertions.assertEquals(newFile, output.poll(5, TimeUnit.SECONDS), "new");
+	}
+
 	private NewFilesWatcher initFileWatcher(String path) throws IOException {
 		NewFilesWatcher watcher = NewFilesWatcher.watcherFor(path);
 		watcher.output(output);
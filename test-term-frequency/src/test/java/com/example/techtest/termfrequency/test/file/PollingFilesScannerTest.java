@@ -0,0 +1,253 @@
+package com.example.techtest.termfrequency.test.file;
+
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.example.techtest.termfrequency.file.PollingFilesScanner;
+
+/**
+ * Test class for the PollingFilesScanner component
+ *
+ */
+public class PollingFilesScannerTest {
+
+	private static final long MIN_INTERVAL_MS = 20;
+	private static final long MAX_INTERVAL_MS = 160;
+	private static final long GRANULARITY_MS = 50;
+
+	private static ExecutorService executorService;
+	private static BlockingQueue<Path> output;
+	private static Path tempFolderPath = null;
+
+	@BeforeAll
+	public static void initBeforeAll() throws IOException {
+		tempFolderPath = Files.createTempDirectory("PollingFilesScannerTest-" + System.currentTimeMillis());
+		output = new LinkedBlockingQueue<>();
+	}
+
+	@BeforeEach
+	public void cleanBefore() throws IOException, InterruptedException {
+		purgeFolder(tempFolderPath);
+
+		if (executorService != null) {
+			executorService.shutdownNow();
+			executorService.awaitTermination(10, TimeUnit.SECONDS);
+		}
+		executorService = Executors.newCachedThreadPool();
+
+		output.clear();
+	}
+
+	@AfterAll
+	public static void cleanAfterAll() throws IOException {
+		if (executorService != null) {
+			executorService.shutdownNow();
+		}
+
+		if (tempFolderPath != null) {
+			purgeFolder(tempFolderPath);
+			tempFolderPath.toFile().delete();
+		}
+	}
+
+	private static void purgeFolder(Path folderPath) throws IOException {
+
+		Files.walkFileTree(folderPath, new SimpleFileVisitor<Path>() {
+
+			@Override
+			public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+				file.toFile().delete();
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+				if (exc == null && !dir.equals(folderPath)) {
+					dir.toFile().delete();
+				}
+				return FileVisitResult.CONTINUE;
+			}
+		});
+	}
+
+	@Test
+	public void invalidPathTest() {
+		Assertions.assertThrows(IllegalArgumentException.class, () -> PollingFilesScanner.scannerFor("bad pad"));
+		Assertions.assertThrows(IllegalArgumentException.class,
+				() -> PollingFilesScanner.scannerFor(Paths.get("bad pad")));
+	}
+
+	@Test
+	public void existingAndNewFilesTest() throws Exception {
+		Set<Path> existingFiles = createTree(tempFolderPath, 3, 4);
+
+		PollingFilesScanner scanner = initScanner();
+		executorService.submit(scanner);
+
+		Assertions.assertEquals(existingFiles, take(existingFiles.size()));
+
+		// New file in an existing folder, and a new folder with files
+		Path newFile = Files.writeString(tempFolderPath.resolve("folder-1").resolve("new.txt"), "new");
+		Assertions.assertEquals(Set.of(newFile), take(1));
+
+		Path newFolder = Files.createDirectories(tempFolderPath.resolve("folder-2").resolve("new-folder"));
+		Path newFolderFile = Files.writeString(newFolder.resolve("new.txt"), "new");
+		Assertions.assertEquals(Set.of(newFolderFile), take(1));
+
+		Assertions.assertNull(output.poll(5 * MAX_INTERVAL_MS, TimeUnit.MILLISECONDS), "Informed once");
+	}
+
+	@Test
+	public void unchangedFoldersTest() throws Exception {
+		createTree(tempFolderPath, 4, 5);
+		setOld(tempFolderPath);
+
+		PollingFilesScanner scanner = initScanner();
+		scanner.includeExistingFiles(false);
+		executorService.submit(scanner);
+
+		waitFor(() -> scanner.completedScans() >= 2);
+		Assertions.assertEquals(0, scanner.lastListedFolders(), "Unchanged folders not listed");
+		Assertions.assertTrue(output.isEmpty(), "Existing files not informed");
+
+		// Only the changed folder is listed
+		Path changedFolder = tempFolderPath.resolve("folder-3");
+		Path newFile = Files.writeString(changedFolder.resolve("new.txt"), "new");
+		Assertions.assertEquals(Set.of(newFile), take(1));
+		long scans = scanner.completedScans();
+		waitFor(() -> scanner.completedScans() > scans);
+		Assertions.assertTrue(scanner.lastListedFolders() <= 1, "Listed: " + scanner.lastListedFolders());
+	}
+
+	@Test
+	public void modifiedAndRemovedFilesTest() throws Exception {
+		Set<Path> existingFiles = createTree(tempFolderPath, 2, 3);
+		setOld(tempFolderPath);
+
+		PollingFilesScanner scanner = initScanner();
+		scanner.includeModifiedFiles(true);
+		executorService.submit(scanner);
+		Assertions.assertEquals(existingFiles, take(existingFiles.size()));
+
+		// Modified in place, its folder unchanged
+		Path modifiedFile = existingFiles.iterator().next();
+		Files.writeString(modifiedFile, "modified contents");
+		Assertions.assertEquals(Set.of(modifiedFile), take(1));
+
+		// Removed and created again
+		Path removedFile = tempFolderPath.resolve("folder-1").resolve("file-0.txt");
+		Files.delete(removedFile);
+		long scans = scanner.completedScans();
+		waitFor(() -> scanner.completedScans() > scans + 1);
+		Files.writeString(removedFile, "contents 0");
+		Assertions.assertEquals(Set.of(removedFile), take(1));
+	}
+
+	@Test
+	public void modifiedFilesExcludedTest() throws Exception {
+		Set<Path> existingFiles = createTree(tempFolderPath, 2, 3);
+
+		PollingFilesScanner scanner = initScanner();
+		executorService.submit(scanner);
+		Assertions.assertEquals(existingFiles, take(existingFiles.size()));
+
+		// Modified in a folder listed again, only the new file is informed
+		Path folder = tempFolderPath.resolve("folder-1");
+		Files.writeString(folder.resolve("file-0.txt"), "modified contents");
+		Path newFile = Files.writeString(folder.resolve("new.txt"), "new");
+		Assertions.assertEquals(Set.of(newFile), take(1));
+		Assertions.assertNull(output.poll(5 * MAX_INTERVAL_MS, TimeUnit.MILLISECONDS), "Modified not informed");
+	}
+
+	@Test
+	public void adaptiveIntervalTest() throws Exception {
+		PollingFilesScanner scanner = initScanner();
+		executorService.submit(scanner);
+
+		// Idle, backs off up to the max interval
+		waitFor(() -> scanner.currentIntervalMs() == MAX_INTERVAL_MS);
+
+		// Files found, back to the min interval
+		Path newFile = Files.writeString(tempFolderPath.resolve("new.txt"), "new");
+		Assertions.assertEquals(Set.of(newFile), take(1));
+		waitFor(() -> scanner.currentIntervalMs() < MAX_INTERVAL_MS);
+	}
+
+	private PollingFilesScanner initScanner() {
+		PollingFilesScanner scanner = PollingFilesScanner.scannerFor(tempFolderPath);
+		scanner.interval(MIN_INTERVAL_MS, MAX_INTERVAL_MS).timestampGranularityMs(GRANULARITY_MS)
+				.scannerParallelism(4);
+		scanner.output(output);
+		return scanner;
+	}
+
+	/**
+	 * Tree of folders, each one with some files
+	 */
+	private static Set<Path> createTree(Path root, int numFolders, int filesPerFolder) throws IOException {
+		Set<Path> files = new HashSet<>();
+		for (int i = 0; i < numFolders; i++) {
+			Path folder = Files.createDirectories(root.resolve("folder-" + i).resolve("subfolder-" + i));
+			for (int j = 0; j < filesPerFolder; j++) {
+				files.add(Files.writeString(folder.getParent().resolve("file-" + j + ".txt"), "contents " + j));
+				files.add(Files.writeString(folder.resolve("file-" + j + ".txt"), "contents " + j));
+			}
+		}
+		return files;
+	}
+
+	/**
+	 * Move the last change of the folders of a tree beyond the timestamps granularity
+	 */
+	private static void setOld(Path root) throws IOException {
+		List<Path> folders = new ArrayList<>();
+		try (Stream<Path> paths = Files.walk(root)) {
+			paths.filter(Files::isDirectory).forEach(folders::add);
+		}
+		FileTime old = FileTime.fromMillis(System.currentTimeMillis() - 60000);
+		for (Path folder : folders) {
+			Files.setLastModifiedTime(folder, old);
+		}
+	}
+
+	private static Set<Path> take(int numFiles) throws InterruptedException {
+		Set<Path> files = new HashSet<>();
+		for (int i = 0; i < numFiles; i++) {
+			Path file = output.poll(5, TimeUnit.SECONDS);
+			Assertions.assertNotNull(file, "Files missing: " + (numFiles - i));
+			Assertions.assertTrue(files.add(file), "Informed twice: " + file);
+		}
+		return files;
+	}
+
+	private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 5000;
+		while (!condition.getAsBoolean()) {
+			Assertions.assertTrue(System.currentTimeMillis() < deadline, "Timeout");
+			Thread.sleep(10);
+		}
+	}
+}
@@ -0,0 +1,366 @@
+package com.example.techtest.termfrequency.test.index;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import com.example.techtest.termfrequency.algorithm.DocumentTermVector;
+import com.example.techtest.termfrequency.algorithm.TfidfIndex;
+import com.example.techtest.termfrequency.algorithm.TfidfProcessorConfig.IDF_MODE;
+import com.example.techtest.termfrequency.index.InvertedIndex;
+import com.example.techtest.termfrequency.index.InvertedIndexConfig;
+import com.example.techtest.termfrequency.index.InvertedIndexConfig.RANKING_STRATEGY;
+import com.example.techtest.termfrequency.index.InvertedIndexSink;
+
+/**
+ * Test class for the InvertedIndex component
+ *
+ */
+public class InvertedIndexTest {
+
+	private static final List<String> ALL_TERMS = Arrays.asList("term0", "term1", "term2", "term3", "term4", "term5",
+			"term6", "term7");
+
+	@Test
+	public void searchMatchesTfidfIndexTest() throws Exception {
+
+		for (IDF_MODE mode : IDF_MODE.values()) {
+			for (RANKING_STRATEGY strategy : RANKING_STRATEGY.values()) {
+				searchMatchesTfidfIndex(new InvertedIndexConfig().mode(mode).rankingStrategy(strategy)
+						.flushDocuments(7).mergeFactor(3), mode + "-" + strategy);
+			}
+		}
+	}
+
+	@Test
+	public void maxScoreAlgorithmTest() throws Exception {
+
+		for (IDF_MODE mode : IDF_MODE.values()) {
+			try (InvertedIndex index = new InvertedIndex(
+					new InvertedIndexConfig().mode(mode).rankingStrategy(RANKING_STRATEGY.MAX_SCORE))) {
+
+				// Same scenario of the TfidfProcessor algorithm tests
+				index.add(new DocumentTermVector().path(Path.of("path1")).add("term1", 0.2f, true).add("term2", 0.4f,
+						true));
+				index.add(new DocumentTermVector().path(Path.of("path2")).add("term1", 0.6f, true));
+				index.commit();
+
+				double path1TFIDF = 0d + 0.2f * mode.idf(2, 2) + 0.4f * mode.idf(1, 2);
+				double path2TFIDF = 0d + 0.6f * mode.idf(2, 2);
+
+				List<Entry<Path, Double>> ranking = index.search(Arrays.asList("term1", "term2"), 10);
+				Assertions.assertEquals(2, ranking.size(), "ranking-size-" + mode);
+				for (Entry<Path, Double> entry : ranking) {
+					if (Path.of("path1").equals(entry.getKey())) {
+						Assertions.assertEquals(path1TFIDF, entry.getValue(), "path1-value-" + mode);
+					} else {
+						Assertions.assertEquals(path2TFIDF, entry.getValue(), "path2-value-" + mode);
+					}
+				}
+
+				// The pruned top 1 is the head of the full ranking
+				Assertions.assertEquals(ranking.subList(0, 1), index.search(Arrays.asList("term1", "term2"), 1),
+						"top-1-" + mode);
+			}
+		}
+	}
+
+	@Test
+	public void maxScoreMatchesExhaustiveTest() throws Exception {
+
+		InvertedIndexConfig exhaustiveConfig = new InvertedIndexConfig().flushDocuments(400).mergeFactor(4)
+				.rankingStrategy(RANKING_STRATEGY.EXHAUSTIVE);
+		InvertedIndexConfig maxScoreConfig = new InvertedIndexConfig().flushDocuments(400).mergeFactor(4)
+				.rankingStrategy(RANKING_STRATEGY.MAX_SCORE);
+
+		try (InvertedIndex exhaustive = new InvertedIndex(exhaustiveConfig);
+				InvertedIndex maxScore = new InvertedIndex(maxScoreConfig)) {
+
+			// Frequent terms with low frequencies, and rare terms with high ones, with
+			// replaced documents and ties
+			Random random = new Random(17);
+			List<String> queryTerms = Arrays.asList("common", "frequent", "rare", "unique", "unknown");
+			for (int round = 0; round < 5; round++) {
+				for (int i = 0; i < 1000; i++) {
+					DocumentTermVector termVector = new DocumentTermVector()
+							.path(Path.of("path" + random.nextInt(3000)));
+					termVector.add("common", random.nextInt(20) / 100f, true);
+					if (random.nextInt(3) == 0) {
+						termVector.add("frequent", random.nextInt(30) / 100f, true);
+					}
+					if (random.nextInt(100) == 0) {
+						termVector.add("rare", 0.5f + random.nextInt(50) / 100f, true);
+					}
+					if (random.nextInt(1000) == 0) {
+						termVector.add("unique", 1f, true);
+					}
+					exhaustive.add(termVector);
+					maxScore.add(termVector);
+				}
+				exhaustive.commit();
+				maxScore.commit();
+
+				for (int limit : new int[] { 0, 1, 5, 50, 5000 }) {
+					for (int terms = 1; terms <= queryTerms.size(); terms++) {
+						Assertions.assertEquals(exhaustive.search(queryTerms.subList(0, terms), limit),
+								maxScore.search(queryTerms.subList(0, terms), limit),
+								"ranking-" + round + "-" + limit + "-" + terms);
+					}
+				}
+			}
+		}
+	}
+
+	@Test
+	public void searchSubsetOfTermsTest() throws Exception {
+
+		try (InvertedIndex index = new InvertedIndex(new InvertedIndexConfig())) {
+			index.add(new DocumentTermVector().path(Path.of("path1")).add("a", 0.5f, true).add("b", 0.5f, true));
+			index.add(new DocumentTermVector().path(Path.of("path2")).add("b", 0.25f, true).add("c", 0.75f, true));
+			index.add(new DocumentTermVector().path(Path.of("path3")).add("c", 1f, true).add("", 1f, false));
+			index.commit();
+
+			// Only the paths with any of the terms are ranked
+			List<Entry<Path, Double>> ranking = index.search(Arrays.asList("a"), 10);
+			Assertions.assertEquals(1, ranking.size());
+			Assertions.assertEquals(Path.of("path1"), ranking.get(0).getKey());
+			Assertions.assertEquals(0.5f * Math.log10(3 / 1f), ranking.get(0).getValue());
+
+			ranking = index.search(Arrays.asList("b", "c"), 10);
+			Assertions.assertEquals(3, ranking.size());
+			double idfB = Math.log10(3 / 2f);
+			double idfC = Math.log10(3 / 2f);
+			Assertions.assertEquals(Path.of("path2"), ranking.get(0).getKey());
+			Assertions.assertEquals(0d + 0.25f * idfB + 0.75f * idfC, ranking.get(0).getValue());
+			Assertions.assertEquals(Path.of("path3"), ranking.get(1).getKey());
+			Assertions.assertEquals(Path.of("path1"), ranking.get(2).getKey());
+
+			// Unknown and non rankable terms
+			Assertions.assertTrue(index.search(Arrays.asList("unknown", ""), 10).isEmpty());
+			Assertions.assertTrue(index.search(Arrays.asList("a"), 0).isEmpty());
+		}
+	}
+
+	@Test
+	public void documentReplacementTest() throws Exception {
+
+		try (InvertedIndex index = new InvertedIndex(new InvertedIndexConfig())) {
+			index.add(new DocumentTermVector().path(Path.of("path1")).add("a", 1f, true));
+			index.add(new DocumentTermVector().path(Path.of("path2")).add("b", 1f, true));
+			index.add(new DocumentTermVector().path(Path.of("path3")).add("c", 1f, true));
+			index.commit();
+			Assertions.assertEquals(1, index.search(Arrays.asList("a"), 10).size());
+
+			// The new document of a path replaces the previous one
+			index.add(new DocumentTermVector().path(Path.of("path1")).add("b", 0.5f, true));
+			index.commit();
+			Assertions.assertTrue(index.search(Arrays.asList("a"), 10).isEmpty());
+			List<Entry<Path, Double>> ranking = index.search(Arrays.asList("b"), 10);
+			Assertions.assertEquals(2, ranking.size());
+			Assertions.assertEquals(Path.of("path2"), ranking.get(0).getKey());
+			Assertions.assertEquals(Path.of("path1"), ranking.get(1).getKey());
+			Assertions.assertEquals(3, index.totalNumberOfPaths());
+
+			// An empty document removes the terms of a known path, still counted, and
+			// is ignored for an unknown path
+			index.add(new DocumentTermVector().path(Path.of("path2")));
+			index.add(new DocumentTermVector().path(Path.of("path4")));
+			index.commit();
+			ranking = index.search(Arrays.asList("b"), 10);
+			Assertions.assertEquals(1, ranking.size());
+			Assertions.assertEquals(Path.of("path1"), ranking.get(0).getKey());
+			Assertions.assertEquals(0.5f * Math.log10(3 / 1f), ranking.get(0).getValue());
+			Assertions.assertEquals(3, index.totalNumberOfPaths());
+		}
+	}
+
+	@Test
+	public void visibleAfterCommitTest() throws Exception {
+
+		try (InvertedIndex index = new InvertedIndex(new InvertedIndexConfig())) {
+			index.add(new DocumentTermVector().path(Path.of("path1")).add("a", 1f, true));
+			Assertions.assertTrue(index.search(Arrays.asList("a"), 10).isEmpty());
+			Assertions.assertEquals(0, index.totalNumberOfPaths());
+
+			index.commit();
+			Assertions.assertEquals(1, index.search(Arrays.asList("a"), 10).size());
+			Assertions.assertEquals(1, index.totalNumberOfPaths());
+		}
+	}
+
+	@Test
+	public void forceMergeTest() throws Exception {
+
+		try (InvertedIndex index = new InvertedIndex(
+				new InvertedIndexConfig().flushDocuments(5).mergeFactor(1000))) {
+
+			TfidfIndex tfidfIndex = new TfidfIndex(IDF_MODE.NORMAL);
+			Random random = new Random(5);
+			for (int round = 0; round < 10; round++) {
+				List<DocumentTermVector> termVectors = randomTermVectors(random, 10, 30);
+				termVectors.forEach(index::add);
+				index.commit();
+				tfidfIndex.apply(termVectors);
+			}
+			tfidfIndex.updateScores();
+			Assertions.assertTrue(index.segments() > 1, "segments " + index.segments());
+
+			List<Entry<Path, Double>> beforeMerge = index.search(ALL_TERMS, 20);
+			index.forceMerge();
+
+			// Merged segments drop the deleted documents without changing the results
+			Assertions.assertEquals(1, index.segments());
+			Assertions.assertEquals(beforeMerge, index.search(ALL_TERMS, 20));
+			assertSameRanking(tfidfIndex.ranking(20), index.search(ALL_TERMS, 20), "merged");
+		}
+	}
+
+	@Test
+	public void compressedBlocksTest() throws Exception {
+
+		try (InvertedIndex index = new InvertedIndex(new InvertedIndexConfig().flushDocuments(1000))) {
+
+			// Long postings, split in several blocks, with sparse and dense doc ids and
+			// the frequencies computed as the files processor does, term counts divided
+			// by the total tokens of the file
+			TfidfIndex tfidfIndex = new TfidfIndex(IDF_MODE.NORMAL);
+			Random random = new Random(13);
+			List<DocumentTermVector> termVectors = new ArrayList<>();
+			int postings = 0;
+			for (int i = 0; i < 3000; i++) {
+				float totalTokens = 100 + random.nextInt(5000);
+				DocumentTermVector termVector = new DocumentTermVector().path(Path.of("path" + i))
+						.totalTokens((long) totalTokens);
+				for (int t = 0; t < 10; t++) {
+					termVector.add("dense" + t, (1 + random.nextInt(1 << t)) / totalTokens, true);
+					postings++;
+				}
+				if (random.nextInt(50) == 0) {
+					termVector.add("sparse", (1 + random.nextInt(50)) / totalTokens, true);
+					postings++;
+				}
+				if (i % 700 < 300) {
+					termVector.add("runs", (1 + random.nextInt(3)) / totalTokens, true);
+					postings++;
+				}
+				termVectors.add(termVector);
+			}
+			termVectors.forEach(index::add);
+			index.commit();
+			tfidfIndex.apply(termVectors);
+			tfidfIndex.updateScores();
+
+			assertSameRanking(tfidfIndex.ranking(50), index.search(Arrays.asList("dense0", "sparse", "runs"), 50),
+					"blocks");
+			Assertions.assertEquals(tfidfIndex.ranking(3000).size(),
+					index.search(Arrays.asList("dense0", "sparse", "runs"), 3000).size());
+
+			// The total tokens of the files are kept by the merges
+			index.forceMerge();
+			assertSameRanking(tfidfIndex.ranking(50), index.search(Arrays.asList("dense0", "sparse", "runs"), 50),
+					"merged");
+
+			// Below a quarter of the 5 bytes per posting of a varint doc id and a raw
+			// frequency
+			Assertions.assertTrue(index.postingsBytes() < postings * 5 / 4,
+					index.postingsBytes() + " bytes for " + postings + " postings");
+
+			// Below a third of the frequency bits of the same postings, without the
+			// total tokens of the files
+			try (InvertedIndex bitsIndex = new InvertedIndex(new InvertedIndexConfig().flushDocuments(10000))) {
+				termVectors.forEach(termVector -> bitsIndex.add(termVector.totalTokens(0)));
+				bitsIndex.commit();
+				assertSameRanking(tfidfIndex.ranking(50),
+						bitsIndex.search(Arrays.asList("dense0", "sparse", "runs"), 50), "frequency bits");
+				Assertions.assertTrue(index.postingsBytes() * 3 < bitsIndex.postingsBytes(),
+						index.postingsBytes() + " bytes, " + bitsIndex.postingsBytes() + " with frequency bits");
+			}
+		}
+	}
+
+	@Test
+	public void sinkTest() throws Exception {
+
+		LinkedBlockingQueue<DocumentTermVector> termVectorQueue = new LinkedBlockingQueue<>();
+		ExecutorService executorService = Executors.newSingleThreadExecutor();
+
+		try (InvertedIndex index = new InvertedIndex(new InvertedIndexConfig().commitIntervalMs(50))) {
+			InvertedIndexSink sink = new InvertedIndexSink(index);
+			sink.from(termVectorQueue);
+			executorService.submit(sink);
+
+			termVectorQueue.add(new DocumentTermVector().path(Path.of("path1")).add("a", 1f, true));
+			termVectorQueue.add(new DocumentTermVector().path(Path.of("path2")).add("b", 1f, true));
+
+			// The sink commits the received documents when idle
+			long deadline = System.currentTimeMillis() + 5000;
+			while (index.totalNumberOfPaths() < 2 && System.currentTimeMillis() < deadline) {
+				Thread.sleep(20);
+			}
+			Assertions.assertEquals(2, index.totalNumberOfPaths());
+			Assertions.assertEquals(1, index.search(Arrays.asList("a"), 10).size());
+
+		} finally {
+			executorService.shutdownNow();
+			executorService.awaitTermination(10, TimeUnit.SECONDS);
+		}
+	}
+
+	private static void searchMatchesTfidfIndex(InvertedIndexConfig config, String message) throws Exception {
+		try (InvertedIndex index = new InvertedIndex(config)) {
+
+			TfidfIndex tfidfIndex = new TfidfIndex(config.mode());
+			Random random = new Random(3);
+			for (int round = 0; round < 15; round++) {
+				List<DocumentTermVector> termVectors = randomTermVectors(random, 20, 50);
+				termVectors.forEach(index::add);
+				index.commit();
+				tfidfIndex.apply(termVectors);
+				tfidfIndex.updateScores();
+
+				// Querying every term gives the same ranking than the TF-IDF processor
+				assertSameRanking(tfidfIndex.ranking(10), index.search(ALL_TERMS, 10), message + "-" + round);
+				Assertions.assertEquals(tfidfIndex.totalNumberOfPaths(), index.totalNumberOfPaths(),
+						"paths-" + message + "-" + round);
+			}
+		}
+	}
+
+	private static List<DocumentTermVector> randomTermVectors(Random random, int size, int paths) {
+		List<DocumentTermVector> termVectors = new ArrayList<>();
+		for (int i = 0; i < size; i++) {
+			DocumentTermVector termVector = new DocumentTermVector().path(Path.of("path" + random.nextInt(paths)));
+			Set<String> terms = new HashSet<>();
+			for (int t = random.nextInt(4); t > 0; t--) {
+				String term = ALL_TERMS.get(random.nextInt(ALL_TERMS.size()));
+				if (terms.add(term)) {
+					termVector.add(term, random.nextFloat(), true);
+				}
+			}
+			termVectors.add(termVector);
+		}
+		return termVectors;
+	}
+
+	private static void assertSameRanking(List<Entry<Path, Double>> expected, List<Entry<Path, Double>> ranking,
+			String message) {
+		Assertions.assertEquals(expected.size(), ranking.size(), "ranking-size-" + message);
+		for (int i = 0; i < expected.size(); i++) {
+			Assertions.assertEquals(expected.get(i).getKey(), ranking.get(i).getKey(), "path-" + message + "-" + i);
+			Assertions.assertEquals(expected.get(i).getValue(), ranking.get(i).getValue(), 1e-9,
+					"value-" + message + "-" + i);
+		}
+	}
+}
@@ -0,0 +1,169 @@
+package com.example.techtest.termfrequency.test.store;
+
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.example.techtest.termfrequency.algorithm.DocumentTermVector;
+import com.example.techtest.termfrequency.store.TermVectorStore;
+
+/**
+ * Test class for the TermVectorStore
+ *
+ */
+public class TermVectorStoreTest {
+
+	private Path storeFolder = null;
+
+	@BeforeEach
+	public void initBefore() throws IOException {
+		storeFolder = Files.createTempDirectory("TermVectorStoreTest-" + System.currentTimeMillis());
+	}
+
+	@AfterEach
+	public void cleanAfter() throws IOException {
+		Files.walkFileTree(storeFolder, new SimpleFileVisitor<Path>() {
+
+			@Override
+			public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+				Files.delete(file);
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+				Files.delete(dir);
+				return FileVisitResult.CONTINUE;
+			}
+		});
+	}
+
+	@Test
+	public void storeAndReopenTest() throws Exception {
+		Path path1 = Path.of("path1");
+		Path path2 = Path.of("path2");
+
+		try (TermVectorStore store = TermVectorStore.open(storeFolder, 1l)) {
+			store.store(new DocumentTermVector().path(path1).totalTokens(5).add("term1", 0.2f, true).add("", 0.8f,
+					false), 100l, 1000l, 0l);
+			store.store(new DocumentTermVector().path(path2).totalTokens(2).add("term2", 1f, true), 200l, 2000l, 0l);
+			Assertions.assertEquals(2, store.size(), "size");
+		}
+
+		try (TermVectorStore store = TermVectorStore.open(storeFolder, 1l)) {
+			Assertions.assertEquals(2, store.size(), "size");
+
+			DocumentTermVector termVector = store.lookup(path1, 100l, 1000l);
+			Assertions.assertNotNull(termVector, "stored");
+			Assertions.assertEquals(path1, termVector.path(), "path");
+			Assertions.assertEquals(5, termVector.totalTokens(), "total-tokens");
+			Assertions.assertEquals(2, termVector.size(), "terms");
+			Assertions.assertEquals("term1", termVector.term(0), "term");
+			Assertions.assertEquals(0.2f, termVector.freq(0), "freq");
+			Assertions.assertTrue(termVector.rankable(0), "rankable");
+			Assertions.assertEquals("", termVector.term(1), "other-term");
+			Assertions.assertFalse(termVector.rankable(1), "other-rankable");
+
+			// Files changed since they were stored
+			Assertions.assertNull(store.lookup(path2, 201l, 2000l), "size-changed");
+			Assertions.assertNull(store.lookup(path2, 200l, 2001l), "modified");
+			Assertions.assertNull(store.lookup(Path.of("path3"), 200l, 2000l), "unknown");
+		}
+	}
+
+	@Test
+	public void differentFingerprintTest() throws Exception {
+		try (TermVectorStore store = TermVectorStore.open(storeFolder, 1l)) {
+			store.store(new DocumentTermVector().path(Path.of("path1")).add("term1", 1f, true), 100l, 1000l, 0l);
+		}
+
+		try (TermVectorStore store = TermVectorStore.open(storeFolder, 2l)) {
+			Assertions.assertEquals(0, store.size(), "discarded");
+			Assertions.assertNull(store.lookup(Path.of("path1"), 100l, 1000l), "lookup");
+		}
+	}
+
+	@Test
+	public void tornRecordTest() throws Exception {
+		try (TermVectorStore store = TermVectorStore.open(storeFolder, 1l)) {
+			store.store(new DocumentTermVector().path(Path.of("path1")).add("term1", 1f, true), 100l, 1000l, 0l);
+		}
+
+		// Interrupted write of a second record
+		Files.write(storeFolder.resolve(TermVectorStore.SEGMENT_FILE_NAME), new byte[] { 0, 0, 0, 40, 1, 2 },
+				StandardOpenOption.APPEND);
+
+		try (TermVectorStore store = TermVectorStore.open(storeFolder, 1l)) {
+			Assertions.assertEquals(1, store.size(), "size");
+			store.store(new DocumentTermVector().path(Path.of("path2")).add("term2", 1f, true), 200l, 2000l, 0l);
+		}
+
+		try (TermVectorStore store = TermVectorStore.open(storeFolder, 1l)) {
+			Assertions.assertEquals(2, store.size(), "size");
+			Assertions.assertNotNull(store.lookup(Path.of("path1"), 100l, 1000l), "path1");
+			Assertions.assertNotNull(store.lookup(Path.of("path2"), 200l, 2000l), "path2");
+		}
+	}
+
+	@Test
+	public void compactionTest() throws Exception {
+		Path segment = storeFolder.resolve(TermVectorStore.SEGMENT_FILE_NAME);
+
+		try (TermVectorStore store = TermVectorStore.open(storeFolder, 1l)) {
+			store.store(new DocumentTermVector().path(Path.of("path1")).add("term1", 1f, true), 100l, 1000l, 0l);
+		}
+		long singleRecordSize = Files.size(segment);
+
+		try (TermVectorStore store = TermVectorStore.open(storeFolder, 1l)) {
+			for (int i = 1; i <= 5; i++) {
+				store.store(new DocumentTermVector().path(Path.of("path1")).add("term1", 1f, true), 100l, 1000l + i,
+						0l);
+			}
+		}
+
+		try (TermVectorStore store = TermVectorStore.open(storeFolder, 1l)) {
+			Assertions.assertEquals(singleRecordSize, Files.size(segment), "compacted");
+			Assertions.assertNull(store.lookup(Path.of("path1"), 100l, 1000l), "replaced");
+			Assertions.assertNotNull(store.lookup(Path.of("path1"), 100l, 1005l), "last");
+		}
+	}
+
+	@Test
+	public void hashedContentsTest() throws Exception {
+		Path file = Files.writeString(storeFolder.resolve("file.txt"), "term1 term2");
+		long size = Files.size(file);
+
+		try (TermVectorStore store = TermVectorStore.open(storeFolder, 1l, true)) {
+			store.store(new DocumentTermVector().path(file).totalTokens(2).add("term1", 0.5f, true), size, 1000l,
+					store.contentsHash(file));
+		}
+
+		try (TermVectorStore store = TermVectorStore.open(storeFolder, 1l, true)) {
+			// Touched, the same contents
+			Assertions.assertNotNull(store.lookup(file, size, 2000l), "touched");
+		}
+
+		try (TermVectorStore store = TermVectorStore.open(storeFolder, 1l, true)) {
+			// The new last modified time was recorded, the contents are not hashed
+			Files.writeString(file, "term3 term4");
+			Assertions.assertNotNull(store.lookup(file, size, 2000l), "same last modified");
+
+			// Changed contents, the same size
+			Assertions.assertNull(store.lookup(file, size, 3000l), "changed");
+		}
+
+		try (TermVectorStore store = TermVectorStore.open(storeFolder, 1l, false)) {
+			Assertions.assertEquals(0l, store.contentsHash(file), "no hash");
+			Assertions.assertNull(store.lookup(file, size, 1000l), "not hashed");
+		}
+	}
+}
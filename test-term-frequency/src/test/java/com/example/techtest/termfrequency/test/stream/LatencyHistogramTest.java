@@ -0,0 +1,98 @@
+package com.example.techtest.termfrequency.test.stream;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import com.example.techtest.termfrequency.stream.LatencyHistogram;
+
+/**
+ * Test class for the LatencyHistogram
+ *
+ */
+public class LatencyHistogramTest {
+
+	@Test
+	public void percentilesTest() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		for (long value = 1; value <= 100000; value++) {
+			histogram.record(value * 1000);
+		}
+
+		LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+		Assertions.assertEquals(100000, snapshot.count(), "count");
+		Assertions.assertEquals(100000000, snapshot.max(), "max");
+		Assertions.assertEquals(50000500, snapshot.mean(), 1, "mean");
+
+		// Every percentile within the relative error of the buckets
+		double[] percentiles = { 10, 50, 90, 99, 99.9 };
+		for (double percentile : percentiles) {
+			double expected = percentile * 1000000;
+			double actual = snapshot.percentile(percentile);
+			Assertions.assertTrue(actual >= expected, "p" + percentile + " lower bound " + actual);
+			Assertions.assertTrue(actual <= expected * 1.032, "p" + percentile + " upper bound " + actual);
+		}
+		Assertions.assertEquals(100000000, snapshot.percentile(100), "p100");
+	}
+
+	@Test
+	public void smallAndOutOfRangeValuesTest() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		for (long value = 0; value < 64; value++) {
+			histogram.record(value);
+		}
+		histogram.record(-10);
+
+		// Small values are kept exactly
+		LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+		Assertions.assertEquals(65, snapshot.count(), "count");
+		Assertions.assertEquals(0, snapshot.percentile(0), "p0");
+		Assertions.assertEquals(31, snapshot.percentile(50), "p50");
+		Assertions.assertEquals(63, snapshot.max(), "max");
+
+		// Values out of range are kept as the max one
+		histogram.record(Long.MAX_VALUE);
+		snapshot = histogram.snapshot();
+		Assertions.assertTrue(snapshot.max() > TimeUnit.HOURS.toNanos(1), "max out of range");
+		Assertions.assertEquals(snapshot.max(), snapshot.percentile(100), "p100 out of range");
+
+		Assertions.assertEquals(0, new LatencyHistogram().snapshot().percentile(99), "empty");
+	}
+
+	@Test
+	public void concurrentRecordTest() throws Exception {
+		LatencyHistogram histogram = new LatencyHistogram();
+		int threads = 4;
+		int valuesPerThread = 100000;
+		ExecutorService executorService = Executors.newFixedThreadPool(threads);
+
+		try {
+			List<Future<?>> futures = new ArrayList<>();
+			for (int i = 0; i < threads; i++) {
+				int seed = i;
+				futures.add(executorService.submit(() -> {
+					Random random = new Random(seed);
+					for (int j = 0; j < valuesPerThread; j++) {
+						histogram.record(random.nextInt(1000000));
+					}
+				}));
+			}
+			for (Future<?> future : futures) {
+				future.get(30, TimeUnit.SECONDS);
+			}
+		} finally {
+			executorService.shutdownNow();
+		}
+
+		// No value lost
+		Assertions.assertEquals(threads * valuesPerThread, histogram.count(), "count");
+		Assertions.assertEquals(threads * valuesPerThread, histogram.snapshot().count(), "snapshot count");
+	}
+}
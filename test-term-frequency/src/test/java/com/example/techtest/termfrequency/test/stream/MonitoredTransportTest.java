@@ -0,0 +1,124 @@
+package com.example.techtest.termfrequency.test.stream;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import com.example.techtest.termfrequency.stream.MonitoredTransport;
+import com.example.techtest.termfrequency.stream.MonitoredTransport.TransportStats;
+import com.example.techtest.termfrequency.stream.RingBufferTransport;
+
+/**
+ * Test class for the MonitoredTransport
+ *
+ */
+public class MonitoredTransportTest {
+
+	@Test
+	public void stalledPutTest() throws Exception {
+		MonitoredTransport<Integer> transport = new MonitoredTransport<>("test", new RingBufferTransport<>(2));
+		ExecutorService executorService = Executors.newSingleThreadExecutor();
+
+		try {
+			transport.put(1);
+			transport.put(2);
+
+			// The third put waits until the first entity is consumed
+			Future<?> stalledPut = executorService.submit(() -> {
+				transport.put(3);
+				return null;
+			});
+			Thread.sleep(200);
+			Assertions.assertFalse(stalledPut.isDone(), "stalled");
+
+			Assertions.assertEquals(1, transport.take(), "first");
+			stalledPut.get(5, TimeUnit.SECONDS);
+			Assertions.assertEquals(2, transport.take(), "second");
+			Assertions.assertEquals(3, transport.take(), "third");
+
+			TransportStats stats = transport.getStats();
+			Assertions.assertEquals("test", stats.name(), "name");
+			Assertions.assertEquals(2, stats.capacity(), "capacity");
+			Assertions.assertEquals(0, stats.depth(), "depth");
+			Assertions.assertEquals(2, stats.peakDepth(), "peak-depth");
+			Assertions.assertEquals(3, stats.published(), "published");
+			Assertions.assertEquals(1, stats.stalledPuts(), "stalled-puts");
+			Assertions.assertTrue(stats.stallTimeMs() >= 100, "stall-time");
+		} finally {
+			executorService.shutdownNow();
+		}
+	}
+
+	@Test
+	public void stalledPutAllTest() throws Exception {
+		MonitoredTransport<Integer> transport = new MonitoredTransport<>("test", new RingBufferTransport<>(2));
+		ExecutorService executorService = Executors.newSingleThreadExecutor();
+
+		try {
+			// The batch doesn't fit, its last entity waits until the first one is consumed
+			Future<?> stalledPut = executorService.submit(() -> {
+				transport.putAll(List.of(1, 2, 3));
+				return null;
+			});
+			Thread.sleep(200);
+			Assertions.assertFalse(stalledPut.isDone(), "stalled");
+
+			Assertions.assertEquals(1, transport.take(), "first");
+			stalledPut.get(5, TimeUnit.SECONDS);
+			Assertions.assertEquals(2, transport.take(), "second");
+			Assertions.assertEquals(3, transport.take(), "third");
+
+			TransportStats stats = transport.getStats();
+			Assertions.assertEquals(3, stats.published(), "published");
+			Assertions.assertEquals(1, stats.stalledPuts(), "stalled-puts");
+			Assertions.assertTrue(stats.stallTimeMs() >= 100, "stall-time");
+		} finally {
+			executorService.shutdownNow();
+		}
+	}
+
+	@Test
+	public void failedOfferTest() {
+		MonitoredTransport<Integer> transport = new MonitoredTransport<>("test", new RingBufferTransport<>(2));
+
+		Assertions.assertTrue(transport.offer(1), "first");
+		Assertions.assertTrue(transport.offer(2), "second");
+		Assertions.assertFalse(transport.offer(3), "full");
+
+		TransportStats stats = transport.getStats();
+		Assertions.assertEquals(2, stats.published(), "published");
+		Assertions.assertEquals(0, stats.stalledPuts(), "stalled-puts");
+	}
+
+	@Test
+	public void starvedTakeTest() throws Exception {
+		MonitoredTransport<Integer> transport = new MonitoredTransport<>("test", new RingBufferTransport<>(2));
+		ExecutorService executorService = Executors.newSingleThreadExecutor();
+
+		try {
+			// Available entities are taken without waiting
+			transport.put(1);
+			Assertions.assertEquals(1, transport.take(), "available");
+			Assertions.assertNull(transport.poll(0, TimeUnit.MILLISECONDS), "empty");
+			Assertions.assertEquals(0, transport.getStats().starvedTakes(), "not starved");
+
+			// The take waits until an entity is published
+			Future<Integer> starvedTake = executorService.submit(() -> transport.take());
+			Thread.sleep(200);
+			Assertions.assertFalse(starvedTake.isDone(), "starved");
+			transport.put(2);
+			Assertions.assertEquals(2, starvedTake.get(5, TimeUnit.SECONDS), "taken");
+
+			TransportStats stats = transport.getStats();
+			Assertions.assertEquals(1, stats.starvedTakes(), "starved-takes");
+			Assertions.assertTrue(stats.starvationTimeMs() >= 100, "starvation-time");
+		} finally {
+			executorService.shutdownNow();
+		}
+	}
+}
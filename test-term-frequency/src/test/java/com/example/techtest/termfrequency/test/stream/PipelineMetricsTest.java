@@ -0,0 +1,122 @@
+package com.example.techtest.termfrequency.test.stream;
+
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.ReflectionException;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import com.example.techtest.termfrequency.stream.MetricsReporter;
+import com.example.techtest.termfrequency.stream.MonitoredTransport;
+import com.example.techtest.termfrequency.stream.PipelineMetrics;
+import com.example.techtest.termfrequency.stream.RingBufferTransport;
+import com.example.techtest.termfrequency.stream.StageMetrics;
+
+/**
+ * Test class for the PipelineMetrics
+ *
+ */
+public class PipelineMetricsTest {
+
+	@Test
+	public void attributesTest() throws Exception {
+		PipelineMetrics metrics = new PipelineMetrics();
+		StageMetrics stage = metrics.stage("test-stage");
+		Assertions.assertSame(stage, metrics.stage("test-stage"), "shared stage");
+
+		stage.received(3);
+		stage.published(2);
+		stage.read(1024, 100);
+		stage.failed();
+		stage.processed(TimeUnit.MILLISECONDS.toNanos(2));
+		stage.refreshed(TimeUnit.MILLISECONDS.toNanos(10));
+
+		MonitoredTransport<Integer> transport = metrics
+				.transport(new MonitoredTransport<>("test-transport", new RingBufferTransport<>(4)));
+		transport.put(1);
+		transport.put(2);
+		transport.take();
+
+		Map<String, Object> attributes = metrics.attributes();
+		Assertions.assertEquals(3l, attributes.get("stage.test-stage.received"), "received");
+		Assertions.assertEquals(2l, attributes.get("stage.test-stage.published"), "published");
+		Assertions.assertEquals(1024l, attributes.get("stage.test-stage.bytes-read"), "bytes-read");
+		Assertions.assertEquals(100l, attributes.get("stage.test-stage.tokens-read"), "tokens-read");
+		Assertions.assertEquals(1l, attributes.get("stage.test-stage.errors"), "errors");
+		Assertions.assertEquals(1l, attributes.get("stage.test-stage.processing-time-count"), "processing count");
+		Assertions.assertEquals(2000, (long) attributes.get("stage.test-stage.processing-time-p99-us"), 2000 * 0.032,
+				"processing p99");
+		Assertions.assertEquals(10000l, attributes.get("stage.test-stage.refresh-time-max-us"), "refresh max");
+		Assertions.assertEquals(1, attributes.get("transport.test-transport.depth"), "depth");
+		Assertions.assertEquals(2l, attributes.get("transport.test-transport.published"), "transport published");
+		Assertions.assertEquals(0l, attributes.get("transport.test-transport.starved-takes"), "starved-takes");
+
+		String json = metrics.toJson(1234l);
+		Assertions.assertTrue(json.startsWith("{\"timestamp\":1234,\"stages\":{\"test-stage\":{\"received\":3,"),
+				"json stages " + json);
+		Assertions.assertTrue(json.contains(",\"transports\":{\"test-transport\":{\"depth\":1,"),
+				"json transports " + json);
+		Assertions.assertTrue(json.endsWith("}}}"), "json end " + json);
+		Assertions.assertFalse(json.contains("\n"), "single line");
+	}
+
+	@Test
+	public void mbeanTest() throws Exception {
+		PipelineMetrics metrics = new PipelineMetrics();
+		metrics.stage("test-stage").received(5);
+		String objectName = "com.example.techtest.termfrequency:type=PipelineMetricsTest";
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+
+		metrics.registerMBean(objectName);
+		try {
+			Assertions.assertEquals(5l, server.getAttribute(new ObjectName(objectName), "stage.test-stage.received"),
+					"received");
+			Assertions.assertTrue(server.getMBeanInfo(new ObjectName(objectName)).getAttributes().length > 0,
+					"attributes info");
+			Assertions.assertThrows(ReflectionException.class,
+					() -> server.invoke(new ObjectName(objectName), "reset", new Object[0], new String[0]), "no operations");
+		} finally {
+			metrics.unregisterMBean(objectName);
+		}
+		Assertions.assertFalse(server.isRegistered(new ObjectName(objectName)), "unregistered");
+	}
+
+	@Test
+	public void reporterTest() throws Exception {
+		PipelineMetrics metrics = new PipelineMetrics();
+		metrics.stage("test-stage").received(1);
+		Path folder = Files.createTempDirectory("metrics");
+		Path file = folder.resolve("metrics.jsonl");
+		ExecutorService executorService = Executors.newSingleThreadExecutor();
+
+		try {
+			Future<Integer> reporter = executorService.submit(new MetricsReporter(metrics, file).periodMs(50));
+			Thread.sleep(300);
+			executorService.shutdownNow();
+			Assertions.assertEquals(MetricsReporter.RESULT_OK, reporter.get(5, TimeUnit.SECONDS), "result");
+
+			// A line per period plus the last one
+			List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+			Assertions.assertTrue(lines.size() >= 2, "lines " + lines.size());
+			for (String line : lines) {
+				Assertions.assertTrue(line.startsWith("{\"timestamp\":") && line.endsWith("}"), "line " + line);
+			}
+		} finally {
+			executorService.shutdownNow();
+			Files.deleteIfExists(file);
+			Files.deleteIfExists(folder);
+		}
+	}
+}
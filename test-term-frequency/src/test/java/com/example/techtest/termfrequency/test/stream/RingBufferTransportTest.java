@@ -0,0 +1,180 @@
+package com.example.techtest.termfrequency.test.stream;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import com.example.techtest.termfrequency.stream.RingBufferTransport;
+
+/**
+ * Test class for the RingBufferTransport
+ *
+ */
+public class RingBufferTransportTest {
+
+	@Test
+	public void capacityTest() {
+		Assertions.assertEquals(8, new RingBufferTransport<Integer>(5).capacity(), "rounded");
+		Assertions.assertEquals(8, new RingBufferTransport<Integer>(8).capacity(), "exact");
+		Assertions.assertEquals(2, new RingBufferTransport<Integer>(1).capacity(), "min");
+		Assertions.assertThrows(IllegalArgumentException.class, () -> new RingBufferTransport<Integer>(0));
+	}
+
+	@Test
+	public void boundedFifoTest() throws Exception {
+		RingBufferTransport<Integer> transport = new RingBufferTransport<>(4);
+
+		for (int i = 0; i < 4; i++) {
+			Assertions.assertTrue(transport.offer(i), "offer-" + i);
+		}
+		Assertions.assertFalse(transport.offer(4), "full");
+		Assertions.assertEquals(4, transport.size(), "size");
+
+		Assertions.assertEquals(0, transport.poll(), "first");
+		Assertions.assertTrue(transport.offer(4), "room");
+
+		for (int i = 1; i <= 4; i++) {
+			Assertions.assertEquals(i, transport.take(), "take-" + i);
+		}
+		Assertions.assertNull(transport.poll(10, TimeUnit.MILLISECONDS), "empty");
+		Assertions.assertEquals(0, transport.size(), "size");
+	}
+
+	@Test
+	public void batchedDrainTest() {
+		RingBufferTransport<Integer> transport = new RingBufferTransport<>(8);
+		for (int i = 0; i < 6; i++) {
+			transport.offer(i);
+		}
+
+		List<Integer> drained = new ArrayList<>();
+		Assertions.assertEquals(4, transport.drainTo(drained, 4), "first-batch");
+		Assertions.assertEquals(2, transport.drainTo(drained, 4), "second-batch");
+		Assertions.assertEquals(0, transport.drainTo(drained, 4), "empty");
+		Assertions.assertEquals(List.of(0, 1, 2, 3, 4, 5), drained, "order");
+	}
+
+	@Test
+	public void batchedPutTest() throws Exception {
+		RingBufferTransport<Integer> transport = new RingBufferTransport<>(4);
+		ExecutorService executorService = Executors.newSingleThreadExecutor();
+
+		try {
+			Assertions.assertEquals(3, transport.offerAll(List.of(0, 1, 2), 0), "first-batch");
+			Assertions.assertEquals(1, transport.offerAll(List.of(2, 3, 4), 1), "room");
+			Assertions.assertEquals(0, transport.offerAll(List.of(4), 0), "full");
+
+			// The rest of the batch waits until there is room
+			Future<?> stalledPut = executorService.submit(() -> {
+				transport.putAll(List.of(4, 5, 6, 7, 8, 9));
+				return null;
+			});
+			Thread.sleep(200);
+			Assertions.assertFalse(stalledPut.isDone(), "stalled");
+
+			List<Integer> drained = new ArrayList<>();
+			long deadline = System.currentTimeMillis() + 5000;
+			while (drained.size() < 10) {
+				Assertions.assertTrue(System.currentTimeMillis() < deadline, "Timeout");
+				Integer item = transport.poll(100, TimeUnit.MILLISECONDS);
+				if (item != null) {
+					drained.add(item);
+				}
+			}
+			stalledPut.get(5, TimeUnit.SECONDS);
+			Assertions.assertEquals(List.of(0, 1, 2, 3, 4, 5, 6, 7, 8, 9), drained, "order");
+			Assertions.assertEquals(0, transport.size(), "size");
+		} finally {
+			executorService.shutdownNow();
+		}
+	}
+
+	@Test
+	public void concurrentProducersAndConsumersTest() throws Exception {
+		int producers = 4;
+		int consumers = 4;
+		int itemsPerProducer = 100_000;
+		RingBufferTransport<Integer> transport = new RingBufferTransport<>(64);
+		ExecutorService executorService = Executors.newFixedThreadPool(producers + consumers);
+
+		try {
+			List<Future<Long>> consumed = new ArrayList<>();
+			for (int c = 0; c < consumers; c++) {
+				consumed.add(executorService.submit(() -> {
+					long sum = 0;
+					List<Integer> batch = new ArrayList<>();
+					Integer item;
+					while ((item = transport.poll(1, TimeUnit.SECONDS)) != null) {
+						sum += item;
+						batch.clear();
+						transport.drainTo(batch, 16);
+						for (Integer i : batch) {
+							sum += i;
+						}
+					}
+					return sum;
+				}));
+			}
+
+			for (int p = 0; p < producers; p++) {
+				executorService.submit(() -> {
+					List<Integer> batch = new ArrayList<>();
+					for (int i = 1; i <= itemsPerProducer; i++) {
+						if (i % 2 == 0) {
+							transport.put(i);
+						} else if (batch.add(i) && batch.size() == 8) {
+							transport.putAll(batch);
+							batch.clear();
+						}
+					}
+					transport.putAll(batch);
+					return null;
+				});
+			}
+
+			long total = 0;
+			for (Future<Long> sum : consumed) {
+				total += sum.get(30, TimeUnit.SECONDS);
+			}
+
+			long expected = producers * ((long) itemsPerProducer * (itemsPerProducer + 1) / 2);
+			Assertions.assertEquals(expected, total, "sum");
+			Assertions.assertEquals(0, transport.size(), "size");
+		} finally {
+			executorService.shutdownNow();
+		}
+	}
+
+	@Test
+	public void blockedConsumerSignaledTest() throws Exception {
+		RingBufferTransport<Integer> transport = new RingBufferTransport<>(4);
+		ExecutorService executorService = Executors.newSingleThreadExecutor();
+		AtomicReference<Thread> consumer = new AtomicReference<>();
+
+		try {
+			Future<Integer> taken = executorService.submit(() -> {
+				consumer.set(Thread.currentThread());
+				return transport.take();
+			});
+
+			// Idle, blocked without timeout until signaled
+			long deadline = System.currentTimeMillis() + 5000;
+			while (consumer.get() == null || consumer.get().getState() != Thread.State.WAITING) {
+				Assertions.assertTrue(System.currentTimeMillis() < deadline, "Timeout");
+				Thread.sleep(10);
+			}
+
+			transport.put(1);
+			Assertions.assertEquals(1, taken.get(5, TimeUnit.SECONDS), "woken up");
+		} finally {
+			executorService.shutdownNow();
+		}
+	}
+}
@@ -0,0 +1,91 @@
+package com.example.techtest.termfrequency.test.token;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import com.example.techtest.termfrequency.token.CharClassTokenizer;
+import com.example.techtest.termfrequency.token.TermAutomaton;
+import com.example.techtest.termfrequency.token.TermCounts;
+
+/**
+ * Test class for the TermAutomaton
+ *
+ */
+public class TermAutomatonTest {
+
+	private static final String[] SAMPLES = { "", "   ", "one, two three,   one two,  three three",
+			"¿one? $two&,^three!", "Hello-World_foo\tbar\r\nBAZ", "?? ! ,, --", "Ñandú ÁRBOL über", "a|b|c",
+			"on one onee ONE o.n.e", "𝐀bc 𝐀b" };
+
+	private static final List<String> TERMS = Arrays.asList("one", "two", "three", "ñandú", "árbol", "abc", "on",
+			"𝐀b", "");
+
+	@Test
+	public void automatonEqualsTokenizerSamplesTest() throws Exception {
+		for (String sample : SAMPLES) {
+			Assertions.assertEquals(tokenizerCounts(sample).toString(), automatonCounts(sample).toString(), sample);
+		}
+	}
+
+	@Test
+	public void automatonEqualsTokenizerScenariosTest() throws Exception {
+		try (Stream<Path> files = Files.list(Paths.get("src", "test", "resources", "scenarios", "test-patterns"))) {
+			for (Path file : (Iterable<Path>) files::iterator) {
+				String text = new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+				Assertions.assertEquals(tokenizerCounts(text).toString(), automatonCounts(text).toString(),
+						file.toString());
+			}
+		}
+	}
+
+	@Test
+	public void automatonCountsTest() throws Exception {
+		TermCounts counts = automatonCounts("on one onee ONE o.n.e");
+
+		Assertions.assertEquals(3, counts.count("one"), "one");
+		Assertions.assertEquals(1, counts.count("on"), "on");
+		Assertions.assertEquals(1, counts.count(""), "other");
+		Assertions.assertEquals(5, counts.total(), "total");
+	}
+
+	@Test
+	public void malformedBytesTest() {
+		TermAutomaton automaton = new TermAutomaton(TERMS);
+		ByteBuffer truncated = ByteBuffer.wrap(new byte[] { 'a', ' ', (byte) 0xC3 });
+		ByteBuffer nonAscii = ByteBuffer.wrap("Ñandú".getBytes(StandardCharsets.UTF_8));
+
+		Assertions.assertThrows(CharacterCodingException.class,
+				() -> automaton.count(truncated, StandardCharsets.UTF_8, new TermCounts()));
+		Assertions.assertThrows(CharacterCodingException.class,
+				() -> automaton.count(nonAscii, StandardCharsets.US_ASCII, new TermCounts()));
+	}
+
+	private static TermCounts automatonCounts(String text) throws CharacterCodingException {
+		TermCounts counts = new TermCounts();
+		new TermAutomaton(TERMS).count(ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8)),
+				StandardCharsets.UTF_8, counts);
+		return counts;
+	}
+
+	private static TermCounts tokenizerCounts(String text) {
+		Set<String> terms = new LinkedHashSet<>(TERMS);
+		TermCounts counts = new TermCounts();
+		new CharClassTokenizer().tokenize(text, (chars, length) -> {
+			String token = new String(chars, 0, length);
+			counts.add(terms.contains(token) ? token : "", 1);
+		});
+		return counts;
+	}
+}
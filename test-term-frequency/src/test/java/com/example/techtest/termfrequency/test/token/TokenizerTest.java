@@ -0,0 +1,112 @@
+package com.example.techtest.termfrequency.test.token;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import com.example.techtest.termfrequency.algorithm.TermsFrequencyInFileConfig;
+import com.example.techtest.termfrequency.token.CharClassTokenizer;
+import com.example.techtest.termfrequency.token.RegexTokenizer;
+import com.example.techtest.termfrequency.token.Tokenizer;
+
+/**
+ * Test class for the Tokenizer implementations
+ *
+ */
+public class TokenizerTest {
+
+	private static final String[] SAMPLES = { "", "   ", "one, two three,   one two,  three three",
+			"¿one? $two&,^three!", "Hello-World_foo\tbar\r\nBAZ", "?? ! ,, --", "Ñandú ÁRBOL über", "a|b|c" };
+
+	@Test
+	public void defaultTokenizerFromConfigTest() {
+		Assertions.assertTrue(new TermsFrequencyInFileConfig().newTokenizer() instanceof CharClassTokenizer);
+		Assertions.assertTrue(
+				new TermsFrequencyInFileConfig().tokenSplitRegex("\\|").newTokenizer() instanceof RegexTokenizer);
+		Assertions.assertTrue(new TermsFrequencyInFileConfig().tokenNormalizationRegex("[¿^]")
+				.newTokenizer() instanceof RegexTokenizer);
+	}
+
+	@Test
+	public void charClassEqualsRegexSamplesTest() {
+		Tokenizer charClass = new CharClassTokenizer();
+		Tokenizer regex = regexTokenizer();
+
+		for (String sample : SAMPLES) {
+			Assertions.assertEquals(tokens(regex, sample), tokens(charClass, sample), sample);
+		}
+	}
+
+	@Test
+	public void charClassEqualsRegexScenariosTest() throws Exception {
+		Tokenizer charClass = new CharClassTokenizer();
+		Tokenizer regex = regexTokenizer();
+
+		try (Stream<Path> files = Files.list(Paths.get("src", "test", "resources", "scenarios", "test-patterns"))) {
+			for (Path file : (Iterable<Path>) files::iterator) {
+				for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+					Assertions.assertEquals(tokens(regex, line), tokens(charClass, line), file.toString());
+				}
+			}
+		}
+	}
+
+	@Test
+	public void bytesEqualsCharsSamplesTest() throws Exception {
+		CharClassTokenizer tokenizer = new CharClassTokenizer();
+
+		for (String sample : SAMPLES) {
+			ByteBuffer bytes = ByteBuffer.wrap(sample.getBytes(StandardCharsets.UTF_8));
+			List<String> tokens = new ArrayList<>();
+			tokenizer.tokenize(bytes, StandardCharsets.UTF_8,
+					(chars, length) -> tokens.add(new String(chars, 0, length)));
+
+			Assertions.assertEquals(tokens(tokenizer, sample), tokens, sample);
+		}
+	}
+
+	@Test
+	public void malformedBytesTest() {
+		CharClassTokenizer tokenizer = new CharClassTokenizer();
+		ByteBuffer truncated = ByteBuffer.wrap(new byte[] { 'a', ' ', (byte) 0xC3 });
+		ByteBuffer nonAscii = ByteBuffer.wrap("Ñandú".getBytes(StandardCharsets.UTF_8));
+
+		Assertions.assertThrows(CharacterCodingException.class,
+				() -> tokenizer.tokenize(truncated, StandardCharsets.UTF_8, (chars, length) -> {
+				}));
+		Assertions.assertThrows(CharacterCodingException.class,
+				() -> tokenizer.tokenize(nonAscii, StandardCharsets.US_ASCII, (chars, length) -> {
+				}));
+	}
+
+	@Test
+	public void emptyNormalizedTokensTest() {
+		Assertions.assertEquals(List.of("", "one", ""), tokens(new CharClassTokenizer(), "?? one ¿"));
+	}
+
+	@Test
+	public void normalizeTest() {
+		Assertions.assertEquals("example", new CharClassTokenizer().normalize("¿Example!"));
+		Assertions.assertEquals("example", regexTokenizer().normalize("Example!"));
+	}
+
+	private static Tokenizer regexTokenizer() {
+		return new RegexTokenizer(TermsFrequencyInFileConfig.DEFAULT_TOKEN_SPLIT_REGEX,
+				TermsFrequencyInFileConfig.DEFAULT_TERM_NORMALIZATION_REGEX);
+	}
+
+	private static List<String> tokens(Tokenizer tokenizer, String text) {
+		List<String> tokens = new ArrayList<>();
+		tokenizer.tokenize(text, (chars, length) -> tokens.add(new String(chars, 0, length)));
+		return tokens;
+	}
+}
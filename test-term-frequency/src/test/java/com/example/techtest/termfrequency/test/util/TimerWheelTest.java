@@ -0,0 +1,64 @@
+package com.example.techtest.termfrequency.test.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import com.example.techtest.termfrequency.util.TimerWheel;
+
+/**
+ * Test class for the TimerWheel component
+ *
+ */
+public class TimerWheelTest {
+
+	@Test
+	public void expirationTest() {
+		TimerWheel<String> wheel = new TimerWheel<>(8, 10, 1000);
+		wheel.schedule("a", 1025);
+		wheel.schedule("b", 1030);
+		// Past deadlines expire in the next tick
+		wheel.schedule("c", 500);
+		Assertions.assertEquals(3, wheel.size());
+		Assertions.assertEquals(1010, wheel.nextTickMs());
+
+		List<String> expired = new ArrayList<>();
+		wheel.advance(1009, expired::add);
+		Assertions.assertTrue(expired.isEmpty());
+
+		wheel.advance(1010, expired::add);
+		Assertions.assertEquals(Arrays.asList("c"), expired);
+
+		expired.clear();
+		wheel.advance(1029, expired::add);
+		Assertions.assertTrue(expired.isEmpty(), "Expires in the first tick after its deadline");
+
+		wheel.advance(1035, expired::add);
+		Assertions.assertEquals(Arrays.asList("a", "b"), expired);
+		Assertions.assertEquals(0, wheel.size());
+	}
+
+	@Test
+	public void severalLapsTest() {
+		TimerWheel<Integer> wheel = new TimerWheel<>(8, 10, 0);
+		// Same slot, different laps
+		wheel.schedule(1, 50);
+		wheel.schedule(2, 130);
+		wheel.schedule(3, 1010);
+
+		List<Integer> expired = new ArrayList<>();
+		wheel.advance(100, expired::add);
+		Assertions.assertEquals(Arrays.asList(1), expired);
+
+		wheel.advance(200, expired::add);
+		Assertions.assertEquals(Arrays.asList(1, 2), expired);
+
+		// Jumps over many laps at once
+		wheel.advance(5000, expired::add);
+		Assertions.assertEquals(Arrays.asList(1, 2, 3), expired);
+		Assertions.assertEquals(0, wheel.size());
+	}
+}